@@ -0,0 +1,136 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a reflection-free JSON codec for each message (and each enum used by those messages) in the configured
+ * Java package. The messages are read from the descriptor set that protoc writes when {@code generateDescriptorSet}
+ * is enabled.
+ */
+@CacheableTask
+public abstract class GenerateJsonCodecs extends DefaultTask {
+    /**
+     * @return The protoc descriptor set, which must have been generated with {@code includeImports = true}.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getDescriptorSet();
+
+    /**
+     * @return The Java package of the protobuf messages to generate codecs for.
+     */
+    @Input
+    public abstract Property<String> getJavaPackage();
+
+    /**
+     * @return The Java package the codecs are generated in.
+     */
+    @Input
+    public abstract Property<String> getCodecPackage();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    @TaskAction
+    public void generate() throws IOException {
+        final String javaPackage = getJavaPackage().get();
+        final String codecPackage = getCodecPackage().get();
+
+        final Map<String, Descriptor> messages = new LinkedHashMap<>();
+        for (FileDescriptor file : ProtoDescriptors.load(getDescriptorSet().get().getAsFile())) {
+            if (!file.getOptions().getJavaMultipleFiles() || !javaPackage.equals(ProtoDescriptors.javaPackage(file))) continue;
+            for (Descriptor message : file.getMessageTypes()) {
+                addMessage(message, messages);
+            }
+        }
+
+        // Only the enums that are referenced by one of the messages need a codec
+        final Map<String, EnumDescriptor> enums = new LinkedHashMap<>();
+        for (Descriptor message : messages.values()) {
+            for (FieldDescriptor field : message.getFields()) {
+                if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+                    enums.put(field.getEnumType().getFullName(), field.getEnumType());
+                }
+            }
+        }
+
+        checkUniqueNames(messages.values(), enums.values());
+
+        final File outputDir = new File(getOutputDir().get().getAsFile(), codecPackage.replace('.', File.separatorChar));
+        deleteRecursively(getOutputDir().get().getAsFile());
+        Files.createDirectories(outputDir.toPath());
+
+        final JsonCodecGenerator generator = new JsonCodecGenerator(codecPackage, messages.keySet());
+        for (Descriptor message : messages.values()) {
+            write(new File(outputDir, JsonCodecGenerator.codecName(message) + ".java"), generator.generateMessageCodec(message));
+        }
+        for (EnumDescriptor enumDescriptor : enums.values()) {
+            write(new File(outputDir, JsonCodecGenerator.codecName(enumDescriptor) + ".java"), generator.generateEnumCodec(enumDescriptor));
+        }
+    }
+
+    private static void addMessage(Descriptor message, Map<String, Descriptor> messages) {
+        if (message.getOptions().getMapEntry()) return;
+        messages.put(message.getFullName(), message);
+        for (Descriptor nested : message.getNestedTypes()) {
+            addMessage(nested, messages);
+        }
+    }
+
+    /**
+     * The codecs are all generated in a single package, so the simple names of the messages and enums must be unique.
+     */
+    private static void checkUniqueNames(Iterable<Descriptor> messages, Iterable<EnumDescriptor> enums) {
+        final Set<String> names = new LinkedHashSet<>();
+        final List<String> duplicates = new ArrayList<>();
+        for (Descriptor message : messages) {
+            if (!names.add(JsonCodecGenerator.codecName(message))) duplicates.add(message.getFullName());
+        }
+        for (EnumDescriptor enumDescriptor : enums) {
+            if (!names.add(JsonCodecGenerator.codecName(enumDescriptor))) duplicates.add(enumDescriptor.getFullName());
+        }
+        if (!duplicates.isEmpty()) {
+            throw new GradleException("JSON codec class names must be unique, but these types have duplicate names: " + duplicates);
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static void write(File file, String source) throws IOException {
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+package com.craxiom.messaging.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a script that launches a protoc plugin whose main class is in buildSrc, such as {@link RecordHeaderPlugin},
+ * so that it can be configured as a protobuf plugin {@code path}. The script runs the main class with the Java
+ * installation that runs Gradle and a classpath of buildSrc and protobuf-java. A batch file is written on Windows and
+ * a shell script everywhere else.
+ */
+public abstract class GenerateProtocPluginLauncher extends DefaultTask {
+    /**
+     * @return The fully qualified name of the plugin's main class.
+     */
+    @Input
+    public abstract Property<String> getMainClass();
+
+    /**
+     * @return The script to write, which should end in .bat on Windows.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getLauncher();
+
+    /**
+     * @return The absolute paths of the plugin's classpath entries, which are inputs so that the script is rewritten
+     * if buildSrc or the protobuf version moves.
+     */
+    @Input
+    public List<String> getClasspath() {
+        final List<String> classpath = new ArrayList<>();
+        classpath.add(codeSource(RecordHeaderPlugin.class));
+        classpath.add(codeSource(com.google.protobuf.Message.class));
+        return classpath;
+    }
+
+    @Input
+    public String getJavaExecutable() {
+        final String name = isWindows() ? "java.exe" : "java";
+        return new File(new File(System.getProperty("java.home"), "bin"), name).getAbsolutePath();
+    }
+
+    @TaskAction
+    public void generate() throws IOException {
+        final File launcher = getLauncher().get().getAsFile();
+        final String classpath = String.join(File.pathSeparator, getClasspath());
+        final String script;
+        if (isWindows()) {
+            script = "@echo off\r\n\"" + getJavaExecutable() + "\" -cp \"" + classpath + "\" " + getMainClass().get() + " %*\r\n";
+        } else {
+            script = "#!/bin/sh\nexec '" + getJavaExecutable() + "' -cp '" + classpath + "' " + getMainClass().get() + " \"$@\"\n";
+        }
+        Files.createDirectories(launcher.getParentFile().toPath());
+        Files.write(launcher.toPath(), script.getBytes(StandardCharsets.UTF_8));
+        if (!launcher.setExecutable(true)) {
+            throw new GradleException("Could not make " + launcher + " executable");
+        }
+    }
+
+    private static String codeSource(Class<?> type) {
+        try {
+            return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+        } catch (URISyntaxException e) {
+            throw new GradleException("Could not find the classpath entry of " + type.getName(), e);
+        }
+    }
+
+    static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().startsWith("windows");
+    }
+}
@@ -0,0 +1,86 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates a columnar store (see {@code RecordColumns}) for each of the configured messages. The messages are read
+ * from the descriptor set that protoc writes when {@code generateDescriptorSet} is enabled.
+ */
+@CacheableTask
+public abstract class GenerateRecordColumns extends DefaultTask {
+    /**
+     * @return The protoc descriptor set, which must have been generated with {@code includeImports = true}.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getDescriptorSet();
+
+    /**
+     * @return The full proto names of the messages to generate a store for, e.g. com.craxiom.messaging.LteRecordData.
+     */
+    @Input
+    public abstract ListProperty<String> getMessages();
+
+    /**
+     * @return The Java package the stores are generated in.
+     */
+    @Input
+    public abstract Property<String> getColumnsPackage();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    @TaskAction
+    public void generate() throws IOException {
+        final Map<String, Descriptor> messagesByName = new HashMap<>();
+        for (FileDescriptor file : ProtoDescriptors.load(getDescriptorSet().get().getAsFile())) {
+            for (Descriptor message : file.getMessageTypes()) {
+                messagesByName.put(message.getFullName(), message);
+            }
+        }
+
+        final String columnsPackage = getColumnsPackage().get();
+        final File outputDir = new File(getOutputDir().get().getAsFile(), columnsPackage.replace('.', File.separatorChar));
+        deleteRecursively(getOutputDir().get().getAsFile());
+        Files.createDirectories(outputDir.toPath());
+
+        final RecordColumnsGenerator generator = new RecordColumnsGenerator(columnsPackage);
+        for (String name : getMessages().get()) {
+            final Descriptor message = messagesByName.get(name);
+            if (message == null) throw new GradleException("The message " + name + " is not in the descriptor set");
+            final File file = new File(outputDir, RecordColumnsGenerator.columnsName(message) + ".java");
+            Files.write(file.toPath(), generator.generate(message).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
@@ -0,0 +1,86 @@
+package com.craxiom.messaging.gradle;
+
+/**
+ * A small helper for emitting indented Java source code from the code generators.
+ */
+final class JavaSource {
+    private static final String INDENT = "    ";
+
+    private final StringBuilder source = new StringBuilder(4096);
+    private int indent = 0;
+
+    /**
+     * Appends an empty line.
+     */
+    void line() {
+        source.append('\n');
+    }
+
+    /**
+     * Appends a line at the current indentation.
+     */
+    void line(String text) {
+        for (int i = 0; i < indent; i++) {
+            source.append(INDENT);
+        }
+        source.append(text).append('\n');
+    }
+
+    /**
+     * Appends a line that opens a block and increases the indentation for the lines that follow.
+     */
+    void open(String text) {
+        line(text);
+        indent++;
+    }
+
+    /**
+     * Decreases the indentation and appends the line that closes a block.
+     */
+    void close(String text) {
+        indent--;
+        line(text);
+    }
+
+    void indent() {
+        indent++;
+    }
+
+    void outdent() {
+        indent--;
+    }
+
+    /**
+     * Converts a proto field name to the camel case form protoc uses for the Java accessors. This follows the
+     * UnderscoresToCamelCase logic in protoc: underscores are dropped and the following letter is capitalized, and a
+     * letter that follows a digit is also capitalized.
+     *
+     * @param name                  The proto field name.
+     * @param capitalizeFirstLetter True to capitalize the first letter (e.g. for getter names).
+     */
+    static String camelCase(String name, boolean capitalizeFirstLetter) {
+        final StringBuilder result = new StringBuilder(name.length());
+        boolean capitalizeNext = capitalizeFirstLetter;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                result.append(capitalizeNext ? Character.toUpperCase(c) : c);
+                capitalizeNext = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                result.append(i == 0 && !capitalizeFirstLetter ? Character.toLowerCase(c) : c);
+                capitalizeNext = false;
+            } else if (c >= '0' && c <= '9') {
+                result.append(c);
+                capitalizeNext = true;
+            } else {
+                capitalizeNext = true;
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
@@ -0,0 +1,425 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.OneofDescriptor;
+import org.gradle.api.GradleException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the source of the reflection-free JSON codecs for the protobuf messages and enums.
+ * <p>
+ * The generated writers follow the same rules as {@code JsonFormat.printer().omittingInsignificantWhitespace()}: fields
+ * are written in field number order, proto3 scalar fields are skipped when they hold the default value, message and
+ * optional fields are written when present, repeated fields are written when not empty, and the google.protobuf
+ * wrapper types are written as their bare value.
+ */
+final class JsonCodecGenerator {
+    private static final String INVALID_PROTOCOL_BUFFER_EXCEPTION = "com.google.protobuf.InvalidProtocolBufferException";
+
+    /**
+     * The google.protobuf wrapper types, which are mapped to the bare JSON value of the wrapped type.
+     */
+    private static final Map<String, FieldDescriptor.Type> WRAPPER_TYPES = new LinkedHashMap<>();
+
+    static {
+        WRAPPER_TYPES.put("google.protobuf.DoubleValue", FieldDescriptor.Type.DOUBLE);
+        WRAPPER_TYPES.put("google.protobuf.FloatValue", FieldDescriptor.Type.FLOAT);
+        WRAPPER_TYPES.put("google.protobuf.Int64Value", FieldDescriptor.Type.INT64);
+        WRAPPER_TYPES.put("google.protobuf.UInt64Value", FieldDescriptor.Type.UINT64);
+        WRAPPER_TYPES.put("google.protobuf.Int32Value", FieldDescriptor.Type.INT32);
+        WRAPPER_TYPES.put("google.protobuf.UInt32Value", FieldDescriptor.Type.UINT32);
+        WRAPPER_TYPES.put("google.protobuf.BoolValue", FieldDescriptor.Type.BOOL);
+        WRAPPER_TYPES.put("google.protobuf.StringValue", FieldDescriptor.Type.STRING);
+        WRAPPER_TYPES.put("google.protobuf.BytesValue", FieldDescriptor.Type.BYTES);
+    }
+
+    private final String codecPackage;
+    private final Set<String> supportedMessages;
+
+    /**
+     * @param codecPackage      The Java package of the generated codecs.
+     * @param supportedMessages The full names of all the messages a codec is generated for. Message fields must refer
+     *                          to one of these messages or to a wrapper type.
+     */
+    JsonCodecGenerator(String codecPackage, Set<String> supportedMessages) {
+        this.codecPackage = codecPackage;
+        this.supportedMessages = new HashSet<>(supportedMessages);
+    }
+
+    static String codecName(Descriptor message) {
+        return message.getName() + "JsonCodec";
+    }
+
+    static String codecName(EnumDescriptor enumDescriptor) {
+        return enumDescriptor.getName() + "JsonCodec";
+    }
+
+    static boolean isWrapper(Descriptor message) {
+        return WRAPPER_TYPES.containsKey(message.getFullName());
+    }
+
+    String generateMessageCodec(Descriptor message) {
+        final String javaClass = ProtoDescriptors.javaClassName(message);
+        final String codecName = codecName(message);
+        final JavaSource source = new JavaSource();
+
+        source.line("// Generated by the generateJsonCodecs task from " + message.getFile().getName() + ". DO NOT EDIT!");
+        source.line("package " + codecPackage + ";");
+        source.line();
+        source.line("/**");
+        source.line(" * Reflection-free JSON codec for {@link " + javaClass + "}. The JSON written by this codec is identical to the output");
+        source.line(" * of {@code JsonFormat.printer().omittingInsignificantWhitespace()}.");
+        source.line(" */");
+        source.open("public final class " + codecName + " {");
+
+        source.open("public static final JsonCodec<" + javaClass + "> INSTANCE = new JsonCodec<" + javaClass + ">() {");
+        source.line("@Override");
+        source.open("public void write(" + javaClass + " message, JsonStreamWriter writer) {");
+        source.line(codecName + ".write(message, writer);");
+        source.close("}");
+        source.line();
+        source.line("@Override");
+        source.open("public " + javaClass + " read(JsonStreamReader reader) throws " + INVALID_PROTOCOL_BUFFER_EXCEPTION + " {");
+        source.line("final " + javaClass + ".Builder builder = " + javaClass + ".newBuilder();");
+        source.line("merge(reader, builder);");
+        source.line("return builder.build();");
+        source.close("}");
+        source.close("};");
+        source.line();
+
+        source.line("private static final String MESSAGE_NAME = \"" + message.getFullName() + "\";");
+        final List<String> names = new ArrayList<>();
+        final List<Integer> numbers = new ArrayList<>();
+        for (FieldDescriptor field : message.getFields()) {
+            names.add(field.getJsonName());
+            numbers.add(field.getNumber());
+            if (!field.getName().equals(field.getJsonName())) {
+                names.add(field.getName());
+                numbers.add(field.getNumber());
+            }
+        }
+        source.line("private static final JsonFieldTable FIELDS = new JsonFieldTable(");
+        source.line("        new String[]{" + joinQuoted(names) + "},");
+        source.line("        new int[]{" + join(numbers) + "});");
+        source.line();
+
+        source.open("private " + codecName + "() {");
+        source.close("}");
+        source.line();
+
+        source.open("public static String toJson(" + javaClass + " message) {");
+        source.line("return INSTANCE.toJson(message);");
+        source.close("}");
+        source.line();
+
+        source.open("public static " + javaClass + " fromJson(String json) throws " + INVALID_PROTOCOL_BUFFER_EXCEPTION + " {");
+        source.line("return INSTANCE.fromJson(json);");
+        source.close("}");
+        source.line();
+
+        generateWrite(source, message, javaClass);
+        source.line();
+        generateMerge(source, message, javaClass);
+
+        source.close("}");
+        return source.toString();
+    }
+
+    String generateEnumCodec(EnumDescriptor enumDescriptor) {
+        final String javaClass = ProtoDescriptors.javaClassName(enumDescriptor);
+        final String codecName = codecName(enumDescriptor);
+        final JavaSource source = new JavaSource();
+
+        source.line("// Generated by the generateJsonCodecs task from " + enumDescriptor.getFile().getName() + ". DO NOT EDIT!");
+        source.line("package " + codecPackage + ";");
+        source.line();
+        source.line("/**");
+        source.line(" * Reflection-free JSON codec for the {@link " + javaClass + "} enum values. Known values are written as the");
+        source.line(" * quoted value name and unknown values as a number, the same as the protobuf JsonFormat printer.");
+        source.line(" */");
+        source.open("public final class " + codecName + " {");
+
+        final List<String> names = new ArrayList<>();
+        final List<Integer> numbers = new ArrayList<>();
+        for (EnumValueDescriptor value : enumDescriptor.getValues()) {
+            names.add(value.getName());
+            numbers.add(value.getNumber());
+        }
+        source.line("private static final String ENUM_NAME = \"" + enumDescriptor.getFullName() + "\";");
+        source.line("private static final JsonFieldTable VALUES = new JsonFieldTable(");
+        source.line("        new String[]{" + joinQuoted(names) + "},");
+        source.line("        new int[]{" + join(numbers) + "});");
+        source.line();
+
+        source.open("private " + codecName + "() {");
+        source.close("}");
+        source.line();
+
+        source.open("public static void write(int number, JsonStreamWriter writer) {");
+        source.open("switch (number) {");
+        final Set<Integer> writtenNumbers = new HashSet<>();
+        for (EnumValueDescriptor value : enumDescriptor.getValues()) {
+            // Aliases share a number; the printer uses the first value declared with the number
+            if (!writtenNumbers.add(value.getNumber())) continue;
+            source.line("case " + value.getNumber() + ":");
+            source.line("    writer.unescapedValue(\"" + value.getName() + "\");");
+            source.line("    break;");
+        }
+        source.line("default:");
+        source.line("    writer.value(number);");
+        source.close("}");
+        source.close("}");
+        source.line();
+
+        source.open("public static int read(JsonStreamReader reader) throws " + INVALID_PROTOCOL_BUFFER_EXCEPTION + " {");
+        source.line("return reader.nextEnum(VALUES, ENUM_NAME);");
+        source.close("}");
+
+        source.close("}");
+        return source.toString();
+    }
+
+    private void generateWrite(JavaSource source, Descriptor message, String javaClass) {
+        source.open("public static void write(" + javaClass + " message, JsonStreamWriter writer) {");
+        source.line("writer.beginObject();");
+
+        final List<FieldDescriptor> fields = new ArrayList<>(message.getFields());
+        fields.sort(Comparator.comparingInt(FieldDescriptor::getNumber));
+        for (FieldDescriptor field : fields) {
+            final String accessor = JavaSource.camelCase(field.getName(), true);
+            final String quotedName = "\"\\\"" + field.getJsonName() + "\\\":\"";
+
+            if (field.isMapField()) {
+                throw new GradleException("Map fields are not supported by the JSON codec generator: " + field.getFullName());
+            }
+
+            if (field.isRepeated()) {
+                source.open("if (message.get" + accessor + "Count() > 0) {");
+                source.line("writer.name(" + quotedName + ");");
+                source.line("writer.beginArray();");
+                source.open("for (int i = 0, count = message.get" + accessor + "Count(); i < count; i++) {");
+                source.line(writeValueStatement(field, "message.get" + accessor + (isEnum(field) ? "Value" : "") + "(i)"));
+                source.close("}");
+                source.line("writer.endArray();");
+                source.close("}");
+            } else {
+                final String getter = "message.get" + accessor + (isEnum(field) ? "Value" : "") + "()";
+                source.open("if (" + presenceCondition(field, accessor, getter) + ") {");
+                source.line("writer.name(" + quotedName + ");");
+                source.line(writeValueStatement(field, getter));
+                source.close("}");
+            }
+        }
+
+        source.line("writer.endObject();");
+        source.close("}");
+    }
+
+    private void generateMerge(JavaSource source, Descriptor message, String javaClass) {
+        source.line("/**");
+        source.line(" * Reads a JSON object into the builder. Each field present in the JSON replaces the value in the builder, and a");
+        source.line(" * null value clears the field.");
+        source.line(" */");
+        source.open("public static void merge(JsonStreamReader reader, " + javaClass + ".Builder builder) throws " + INVALID_PROTOCOL_BUFFER_EXCEPTION + " {");
+        source.line("reader.beginObject();");
+        source.open("while (reader.hasNextField()) {");
+        source.open("switch (reader.nextField(FIELDS)) {");
+
+        for (FieldDescriptor field : message.getFields()) {
+            final String accessor = JavaSource.camelCase(field.getName(), true);
+            source.line("case " + field.getNumber() + ":");
+            source.indent();
+
+            final OneofDescriptor oneof = field.getRealContainingOneof();
+            if (field.isRepeated()) {
+                source.line("builder.clear" + accessor + "();");
+                source.open("if (!reader.nextNull()) {");
+                source.line("reader.beginArray();");
+                source.open("while (reader.hasNextElement()) {");
+                if (isMessage(field) && !isWrapper(field.getMessageType())) {
+                    source.line(codecName(field.getMessageType()) + ".merge(reader, builder.add" + accessor + "Builder());");
+                } else {
+                    source.line("builder.add" + accessor + (isEnum(field) ? "Value" : "") + "(" + readValueExpression(field) + ");");
+                }
+                source.close("}");
+                source.close("}");
+            } else if (oneof != null) {
+                source.open("if (!reader.nextNull()) {");
+                final String oneofAccessor = JavaSource.camelCase(oneof.getName(), true);
+                source.line("final int oneofCase = builder.get" + oneofAccessor + "Case().getNumber();");
+                source.open("if (oneofCase != 0 && oneofCase != " + field.getNumber() + ") {");
+                source.line("throw reader.oneofConflict(\"" + field.getFullName() + "\");");
+                source.close("}");
+                source.line("builder.clear" + accessor + "();");
+                writeSingularMerge(source, field, accessor);
+                source.close("}");
+            } else if (isMessage(field)) {
+                source.line("builder.clear" + accessor + "();");
+                source.open("if (!reader.nextNull()) {");
+                writeSingularMerge(source, field, accessor);
+                source.close("}");
+            } else {
+                source.open("if (reader.nextNull()) {");
+                source.line("builder.clear" + accessor + "();");
+                source.close("} else {");
+                source.indent();
+                writeSingularMerge(source, field, accessor);
+                source.close("}");
+            }
+            source.line("break;");
+            source.outdent();
+        }
+
+        source.line("default:");
+        source.line("    reader.unknownField(MESSAGE_NAME);");
+        source.close("}");
+        source.close("}");
+        source.close("}");
+    }
+
+    private void writeSingularMerge(JavaSource source, FieldDescriptor field, String accessor) {
+        if (isMessage(field) && !isWrapper(field.getMessageType())) {
+            source.line(codecName(field.getMessageType()) + ".merge(reader, builder.get" + accessor + "Builder());");
+        } else {
+            source.line("builder.set" + accessor + (isEnum(field) ? "Value" : "") + "(" + readValueExpression(field) + ");");
+        }
+    }
+
+    /**
+     * @return The condition that is true when a singular field is written by the JsonFormat printer.
+     */
+    private String presenceCondition(FieldDescriptor field, String accessor, String getter) {
+        if (field.hasPresence()) return "message.has" + accessor + "()";
+
+        switch (field.getType()) {
+            case STRING:
+            case BYTES:
+                return "!" + getter + ".isEmpty()";
+            case BOOL:
+                return getter;
+            case FLOAT:
+                return "Float.floatToIntBits(" + getter + ") != 0";
+            case DOUBLE:
+                return "Double.doubleToLongBits(" + getter + ") != 0L";
+            case INT64:
+            case UINT64:
+            case SINT64:
+            case FIXED64:
+            case SFIXED64:
+                return getter + " != 0L";
+            default:
+                return getter + " != 0";
+        }
+    }
+
+    private String writeValueStatement(FieldDescriptor field, String value) {
+        if (isEnum(field)) {
+            return codecName(field.getEnumType()) + ".write(" + value + ", writer);";
+        }
+        if (isMessage(field)) {
+            final Descriptor messageType = field.getMessageType();
+            if (isWrapper(messageType)) {
+                return writeScalarStatement(WRAPPER_TYPES.get(messageType.getFullName()), value + ".getValue()");
+            }
+            checkSupported(field);
+            return codecName(messageType) + ".write(" + value + ", writer);";
+        }
+        return writeScalarStatement(field.getType(), value);
+    }
+
+    private static String writeScalarStatement(FieldDescriptor.Type type, String value) {
+        switch (type) {
+            case UINT32:
+            case FIXED32:
+            case UINT64:
+            case FIXED64:
+                return "writer.unsignedValue(" + value + ");";
+            default:
+                return "writer.value(" + value + ");";
+        }
+    }
+
+    private String readValueExpression(FieldDescriptor field) {
+        if (isEnum(field)) return codecName(field.getEnumType()) + ".read(reader)";
+        if (isMessage(field)) {
+            final Descriptor messageType = field.getMessageType();
+            if (!isWrapper(messageType)) throw new IllegalStateException("Not a wrapper type: " + messageType.getFullName());
+            return "com.google.protobuf." + messageType.getName() + ".of(" + readScalarExpression(WRAPPER_TYPES.get(messageType.getFullName())) + ")";
+        }
+        return readScalarExpression(field.getType());
+    }
+
+    private static String readScalarExpression(FieldDescriptor.Type type) {
+        switch (type) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return "reader.nextInt32()";
+            case UINT32:
+            case FIXED32:
+                return "reader.nextUInt32()";
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return "reader.nextInt64()";
+            case UINT64:
+            case FIXED64:
+                return "reader.nextUInt64()";
+            case FLOAT:
+                return "reader.nextFloat()";
+            case DOUBLE:
+                return "reader.nextDouble()";
+            case BOOL:
+                return "reader.nextBool()";
+            case STRING:
+                return "reader.nextString()";
+            case BYTES:
+                return "reader.nextBytes()";
+            default:
+                throw new GradleException("Unsupported scalar type " + type);
+        }
+    }
+
+    private void checkSupported(FieldDescriptor field) {
+        if (!supportedMessages.contains(field.getMessageType().getFullName())) {
+            throw new GradleException("The JSON codec generator does not support the type of " + field.getFullName()
+                    + " (" + field.getMessageType().getFullName() + ")");
+        }
+    }
+
+    private static boolean isEnum(FieldDescriptor field) {
+        return field.getJavaType() == FieldDescriptor.JavaType.ENUM;
+    }
+
+    private static boolean isMessage(FieldDescriptor field) {
+        return field.getJavaType() == FieldDescriptor.JavaType.MESSAGE;
+    }
+
+    private static String joinQuoted(List<String> values) {
+        final StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) builder.append(", ");
+            builder.append('"').append(value).append('"');
+        }
+        return builder.toString();
+    }
+
+    private static String join(List<Integer> values) {
+        final StringBuilder builder = new StringBuilder();
+        for (Integer value : values) {
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import org.gradle.api.GradleException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for loading a protoc descriptor set and for deriving the names that protoc uses in the generated Java code.
+ */
+final class ProtoDescriptors {
+    private ProtoDescriptors() {
+    }
+
+    /**
+     * Loads all the files in a descriptor set that was generated with {@code --include_imports}.
+     *
+     * @param descriptorSetFile The descriptor set file written by protoc.
+     * @return The file descriptors in the order they appear in the descriptor set.
+     */
+    static List<FileDescriptor> load(File descriptorSetFile) {
+        final FileDescriptorSet descriptorSet;
+        try (InputStream inputStream = Files.newInputStream(descriptorSetFile.toPath())) {
+            descriptorSet = FileDescriptorSet.parseFrom(inputStream);
+        } catch (IOException e) {
+            throw new GradleException("Could not read the protobuf descriptor set " + descriptorSetFile, e);
+        }
+
+        final Map<String, FileDescriptorProto> protosByName = new LinkedHashMap<>();
+        for (FileDescriptorProto fileProto : descriptorSet.getFileList()) {
+            protosByName.put(fileProto.getName(), fileProto);
+        }
+
+        final Map<String, FileDescriptor> built = new HashMap<>();
+        final List<FileDescriptor> files = new ArrayList<>();
+        for (String name : protosByName.keySet()) {
+            files.add(build(name, protosByName, built));
+        }
+        return files;
+    }
+
+    private static FileDescriptor build(String name, Map<String, FileDescriptorProto> protosByName, Map<String, FileDescriptor> built) {
+        final FileDescriptor existing = built.get(name);
+        if (existing != null) return existing;
+
+        final FileDescriptorProto fileProto = protosByName.get(name);
+        if (fileProto == null) {
+            throw new GradleException("The descriptor set is missing " + name + "; generate it with includeImports = true");
+        }
+
+        final FileDescriptor[] dependencies = new FileDescriptor[fileProto.getDependencyCount()];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencies[i] = build(fileProto.getDependency(i), protosByName, built);
+        }
+
+        try {
+            final FileDescriptor fileDescriptor = FileDescriptor.buildFrom(fileProto, dependencies);
+            built.put(name, fileDescriptor);
+            return fileDescriptor;
+        } catch (DescriptorValidationException e) {
+            throw new GradleException("Invalid proto file " + name, e);
+        }
+    }
+
+    /**
+     * @return The fully qualified name of the Java class protoc generates for the message.
+     */
+    static String javaClassName(Descriptor message) {
+        if (message.getContainingType() != null) {
+            return javaClassName(message.getContainingType()) + "." + message.getName();
+        }
+        return javaPackage(message.getFile()) + "." + message.getName();
+    }
+
+    /**
+     * @return The fully qualified name of the Java enum protoc generates for the enum.
+     */
+    static String javaClassName(EnumDescriptor enumDescriptor) {
+        if (enumDescriptor.getContainingType() != null) {
+            return javaClassName(enumDescriptor.getContainingType()) + "." + enumDescriptor.getName();
+        }
+        return javaPackage(enumDescriptor.getFile()) + "." + enumDescriptor.getName();
+    }
+
+    static String javaPackage(FileDescriptor file) {
+        if (!file.getOptions().getJavaMultipleFiles()) {
+            throw new GradleException(file.getName() + " must set java_multiple_files = true to be used by the code generators");
+        }
+        return file.getOptions().hasJavaPackage() ? file.getOptions().getJavaPackage() : file.getPackage();
+    }
+}
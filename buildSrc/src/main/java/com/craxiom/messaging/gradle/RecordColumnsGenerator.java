@@ -0,0 +1,166 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import org.gradle.api.GradleException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates the source of a columnar store for a protobuf message, a subclass of {@code RecordColumns} with one
+ * primitive column per field.
+ * <p>
+ * Only flat messages are supported: scalar, string, and enum fields, and the google.protobuf wrapper types, which are
+ * stored as nullable columns of the wrapped type. Enums are stored as their number so that unknown values survive.
+ */
+final class RecordColumnsGenerator {
+    /**
+     * The column class and the Java type of the wrapped value for each supported google.protobuf wrapper type.
+     */
+    private static final Map<String, String[]> WRAPPER_COLUMNS = new HashMap<>();
+
+    static {
+        WRAPPER_COLUMNS.put("google.protobuf.DoubleValue", new String[]{"DoubleColumn", "com.google.protobuf.DoubleValue"});
+        WRAPPER_COLUMNS.put("google.protobuf.FloatValue", new String[]{"FloatColumn", "com.google.protobuf.FloatValue"});
+        WRAPPER_COLUMNS.put("google.protobuf.Int64Value", new String[]{"LongColumn", "com.google.protobuf.Int64Value"});
+        WRAPPER_COLUMNS.put("google.protobuf.UInt64Value", new String[]{"LongColumn", "com.google.protobuf.UInt64Value"});
+        WRAPPER_COLUMNS.put("google.protobuf.Int32Value", new String[]{"IntColumn", "com.google.protobuf.Int32Value"});
+        WRAPPER_COLUMNS.put("google.protobuf.UInt32Value", new String[]{"IntColumn", "com.google.protobuf.UInt32Value"});
+        WRAPPER_COLUMNS.put("google.protobuf.BoolValue", new String[]{"BooleanColumn", "com.google.protobuf.BoolValue"});
+        WRAPPER_COLUMNS.put("google.protobuf.StringValue", new String[]{"StringColumn", "com.google.protobuf.StringValue"});
+    }
+
+    private final String columnsPackage;
+
+    /**
+     * @param columnsPackage The Java package of the generated stores, which must also contain {@code RecordColumns} and
+     *                       the column classes.
+     */
+    RecordColumnsGenerator(String columnsPackage) {
+        this.columnsPackage = columnsPackage;
+    }
+
+    /**
+     * @return The name of the store for the message, e.g. LteRecordColumns for LteRecordData.
+     */
+    static String columnsName(Descriptor message) {
+        final String name = message.getName();
+        return (name.endsWith("Data") ? name.substring(0, name.length() - 4) : name) + "Columns";
+    }
+
+    String generate(Descriptor message) {
+        final String javaClass = ProtoDescriptors.javaClassName(message);
+        final String columnsName = columnsName(message);
+        final JavaSource source = new JavaSource();
+
+        source.line("// Generated by the generateRecordColumns task from " + message.getFile().getName() + ". DO NOT EDIT!");
+        source.line("package " + columnsPackage + ";");
+        source.line();
+        source.line("/**");
+        source.line(" * A columnar store of {@link " + javaClass + "} messages with one primitive column per field.");
+        source.line(" * The wrapper fields are stored as nullable columns and the enum fields as their number.");
+        source.line(" */");
+        source.open("public final class " + columnsName + " extends RecordColumns<" + javaClass + "> {");
+        for (FieldDescriptor field : message.getFields()) {
+            final String column = columnClass(field);
+            source.line("private final " + column + " " + fieldName(field) + " = column(\"" + field.getName() + "\", new "
+                    + column + "(" + isWrapper(field) + "));");
+        }
+        source.line();
+
+        for (FieldDescriptor field : message.getFields()) {
+            source.line("/**");
+            source.line(" * @return The column for the {@code " + field.getName() + "} field.");
+            source.line(" */");
+            source.open("public " + columnClass(field) + " get" + JavaSource.camelCase(field.getName(), true) + "() {");
+            source.line("return " + fieldName(field) + ";");
+            source.close("}");
+            source.line();
+        }
+
+        source.line("@Override");
+        source.open("void append(" + javaClass + " data) {");
+        for (FieldDescriptor field : message.getFields()) {
+            final String accessor = JavaSource.camelCase(field.getName(), true);
+            if (isWrapper(field)) {
+                source.open("if (data.has" + accessor + "()) {");
+                source.line(fieldName(field) + ".add(data.get" + accessor + "().getValue());");
+                source.close("} else {");
+                source.indent();
+                source.line(fieldName(field) + ".addNull();");
+                source.close("}");
+            } else if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+                source.line(fieldName(field) + ".add(data.get" + accessor + "Value());");
+            } else {
+                source.line(fieldName(field) + ".add(data.get" + accessor + "());");
+            }
+        }
+        source.close("}");
+        source.line();
+
+        source.line("@Override");
+        source.open(javaClass + " build(int row) {");
+        source.line("final " + javaClass + ".Builder builder = " + javaClass + ".newBuilder();");
+        for (FieldDescriptor field : message.getFields()) {
+            final String accessor = JavaSource.camelCase(field.getName(), true);
+            final String value = fieldName(field) + ".get(row)";
+            if (isWrapper(field)) {
+                final String wrapperClass = WRAPPER_COLUMNS.get(field.getMessageType().getFullName())[1];
+                source.line("if (" + fieldName(field) + ".isPresent(row)) builder.set" + accessor + "(" + wrapperClass + ".of(" + value + "));");
+            } else if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+                source.line("builder.set" + accessor + "Value(" + value + ");");
+            } else {
+                source.line("builder.set" + accessor + "(" + value + ");");
+            }
+        }
+        source.line("return builder.build();");
+        source.close("}");
+
+        source.close("}");
+        return source.toString();
+    }
+
+    private static boolean isWrapper(FieldDescriptor field) {
+        return field.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+                && WRAPPER_COLUMNS.containsKey(field.getMessageType().getFullName());
+    }
+
+    private static String columnClass(FieldDescriptor field) {
+        if (field.isRepeated() || field.getRealContainingOneof() != null || field.hasPresence() && !isWrapper(field)) {
+            throw unsupported(field);
+        }
+        switch (field.getJavaType()) {
+            case INT:
+            case ENUM:
+                return "IntColumn";
+            case LONG:
+                return "LongColumn";
+            case FLOAT:
+                return "FloatColumn";
+            case DOUBLE:
+                return "DoubleColumn";
+            case BOOLEAN:
+                return "BooleanColumn";
+            case STRING:
+                return "StringColumn";
+            case MESSAGE:
+                if (isWrapper(field)) return WRAPPER_COLUMNS.get(field.getMessageType().getFullName())[0];
+                throw unsupported(field);
+            default:
+                throw unsupported(field);
+        }
+    }
+
+    /**
+     * @return The name of the Java field for the column, which is prefixed so that it cannot clash with a keyword.
+     */
+    private static String fieldName(FieldDescriptor field) {
+        return JavaSource.camelCase(field.getName(), false) + "Column";
+    }
+
+    private static GradleException unsupported(FieldDescriptor field) {
+        return new GradleException("The field " + field.getFullName() + " cannot be stored in a column; only singular"
+                + " scalar, string, enum, and google.protobuf wrapper fields are supported");
+    }
+}
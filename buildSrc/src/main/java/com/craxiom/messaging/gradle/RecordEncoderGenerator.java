@@ -0,0 +1,420 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import org.gradle.api.GradleException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the source of a record encoder for a survey record message, a subclass of {@code RecordEncoder} that
+ * holds each field of the record data as a primitive and serializes the record from them.
+ * <p>
+ * The record must have the usual version, messageType, and data fields. The data fields can be singular scalar
+ * fields (including proto3 optional ones), string, bytes, and enum fields, the google.protobuf wrapper types, and
+ * packed repeated enums. The fields are written in
+ * field number order with the same rules for default values as the protobuf library, so the bytes match those of the
+ * generated message.
+ */
+final class RecordEncoderGenerator {
+    /**
+     * The wire type name (as in CodedOutputStream.computeInt32Size) and the Java type of each scalar type.
+     */
+    private static final Map<FieldDescriptor.Type, String[]> SCALARS = new HashMap<>();
+
+    /**
+     * The size helper (as in RecordEncoder.int32WrapperSize), the write helper (as in writeInt32Wrapper), and the Java
+     * type of each wrapper type.
+     */
+    private static final Map<String, String[]> WRAPPERS = new HashMap<>();
+
+    static {
+        SCALARS.put(FieldDescriptor.Type.INT32, new String[]{"Int32", "int"});
+        SCALARS.put(FieldDescriptor.Type.UINT32, new String[]{"UInt32", "int"});
+        SCALARS.put(FieldDescriptor.Type.SINT32, new String[]{"SInt32", "int"});
+        SCALARS.put(FieldDescriptor.Type.FIXED32, new String[]{"Fixed32", "int"});
+        SCALARS.put(FieldDescriptor.Type.SFIXED32, new String[]{"SFixed32", "int"});
+        SCALARS.put(FieldDescriptor.Type.INT64, new String[]{"Int64", "long"});
+        SCALARS.put(FieldDescriptor.Type.UINT64, new String[]{"UInt64", "long"});
+        SCALARS.put(FieldDescriptor.Type.SINT64, new String[]{"SInt64", "long"});
+        SCALARS.put(FieldDescriptor.Type.FIXED64, new String[]{"Fixed64", "long"});
+        SCALARS.put(FieldDescriptor.Type.SFIXED64, new String[]{"SFixed64", "long"});
+        SCALARS.put(FieldDescriptor.Type.FLOAT, new String[]{"Float", "float"});
+        SCALARS.put(FieldDescriptor.Type.DOUBLE, new String[]{"Double", "double"});
+        SCALARS.put(FieldDescriptor.Type.BOOL, new String[]{"Bool", "boolean"});
+
+        WRAPPERS.put("google.protobuf.Int32Value", new String[]{"int32WrapperSize", "writeInt32Wrapper", "int"});
+        WRAPPERS.put("google.protobuf.UInt32Value", new String[]{"uint32WrapperSize", "writeUInt32Wrapper", "int"});
+        WRAPPERS.put("google.protobuf.Int64Value", new String[]{"int64WrapperSize", "writeInt64Wrapper", "long"});
+        WRAPPERS.put("google.protobuf.UInt64Value", new String[]{"uint64WrapperSize", "writeUInt64Wrapper", "long"});
+        WRAPPERS.put("google.protobuf.FloatValue", new String[]{"floatWrapperSize", "writeFloatWrapper", "float"});
+        WRAPPERS.put("google.protobuf.DoubleValue", new String[]{"doubleWrapperSize", "writeDoubleWrapper", "double"});
+        WRAPPERS.put("google.protobuf.BoolValue", new String[]{"boolWrapperSize", "writeBoolWrapper", "boolean"});
+        WRAPPERS.put("google.protobuf.StringValue", new String[]{"stringWrapperSize", "writeStringWrapper", "String"});
+    }
+
+    private final String encoderPackage;
+
+    /**
+     * @param encoderPackage The Java package of the generated encoders, which must also contain {@code RecordEncoder}.
+     */
+    RecordEncoderGenerator(String encoderPackage) {
+        this.encoderPackage = encoderPackage;
+    }
+
+    /**
+     * @return The name of the encoder for the record, e.g. LteRecordEncoder for LteRecord.
+     */
+    static String encoderName(Descriptor record) {
+        return record.getName() + "Encoder";
+    }
+
+    String generate(Descriptor record) {
+        checkEnvelope(record);
+        final Descriptor data = record.findFieldByName("data").getMessageType();
+        final String encoderName = encoderName(record);
+        final List<FieldDescriptor> fields = data.getFields();
+        final List<FieldDescriptor> fieldsByNumber = new ArrayList<>(fields);
+        fieldsByNumber.sort(Comparator.comparingInt(FieldDescriptor::getNumber));
+        final JavaSource source = new JavaSource();
+
+        source.line("// Generated by the generateRecordEncoders task from " + record.getFile().getName() + ". DO NOT EDIT!");
+        source.line("package " + encoderPackage + ";");
+        source.line();
+        source.line("/**");
+        source.line(" * Serializes {@link " + ProtoDescriptors.javaClassName(record) + "} records from primitive field values,");
+        source.line(" * with the same bytes as the generated message. See {@link RecordEncoder}.");
+        source.line(" */");
+        source.open("public final class " + encoderName + " extends RecordEncoder {");
+        source.line("private static final ThreadLocal<" + encoderName + "> ENCODERS = ThreadLocal.withInitial(" + encoderName + "::new);");
+        source.line();
+        for (FieldDescriptor field : fields) {
+            declareField(source, field);
+        }
+        source.line();
+
+        source.open("public " + encoderName + "() {");
+        source.line("super(\"" + record.getName() + "\");");
+        source.close("}");
+        source.line();
+
+        source.line("/**");
+        source.line(" * @return The encoder of the calling thread, cleared of the last record's data. It must not be used after the");
+        source.line(" * thread calls this method again.");
+        source.line(" */");
+        source.open("public static " + encoderName + " forCurrentThread() {");
+        source.line("final " + encoderName + " encoder = ENCODERS.get();");
+        source.line("encoder.clear();");
+        source.line("return encoder;");
+        source.close("}");
+        source.line();
+
+        source.open("public " + encoderName + " setVersion(String version) {");
+        source.line("this.version = version == null ? \"\" : version;");
+        source.line("return this;");
+        source.close("}");
+
+        for (FieldDescriptor field : fields) {
+            source.line();
+            writeSetters(source, encoderName, field);
+        }
+        source.line();
+
+        source.line("@Override");
+        source.open("public void clear() {");
+        for (FieldDescriptor field : fields) {
+            writeClear(source, field);
+        }
+        source.close("}");
+        source.line();
+
+        source.line("@Override");
+        source.open("public int getDataSize() {");
+        source.line("int size = 0;");
+        for (FieldDescriptor field : fieldsByNumber) {
+            writeSize(source, field);
+        }
+        source.line("return size;");
+        source.close("}");
+        source.line();
+
+        source.line("@Override");
+        source.open("public void writeDataTo(com.google.protobuf.CodedOutputStream output) throws java.io.IOException {");
+        for (FieldDescriptor field : fieldsByNumber) {
+            writeWrite(source, field);
+        }
+        source.close("}");
+
+        source.close("}");
+        return source.toString();
+    }
+
+    private static void checkEnvelope(Descriptor record) {
+        final FieldDescriptor version = record.findFieldByName("version");
+        final FieldDescriptor messageType = record.findFieldByName("messageType");
+        final FieldDescriptor data = record.findFieldByName("data");
+        if (record.getFields().size() != 3
+                || version == null || version.getNumber() != 1 || version.getType() != FieldDescriptor.Type.STRING
+                || messageType == null || messageType.getNumber() != 2 || messageType.getType() != FieldDescriptor.Type.STRING
+                || data == null || data.getNumber() != 3 || data.getType() != FieldDescriptor.Type.MESSAGE
+                || data.isRepeated()) {
+            throw new GradleException("The message " + record.getFullName() + " is not a survey record with the fields"
+                    + " version = 1, messageType = 2, and data = 3");
+        }
+    }
+
+    private static void declareField(JavaSource source, FieldDescriptor field) {
+        final String name = fieldName(field);
+        switch (kind(field)) {
+            case STRING:
+                source.line("private String " + name + ";");
+                break;
+            case BYTES:
+                source.line("private byte[] " + name + ";");
+                source.line("private int " + partName(field, "Offset") + ";");
+                source.line("private int " + partName(field, "Length") + ";");
+                break;
+            case ENUM:
+                source.line("private int " + name + ";");
+                break;
+            case REPEATED_ENUM:
+                source.line("private int[] " + name + " = new int[4];");
+                source.line("private int " + partName(field, "Count") + ";");
+                break;
+            case WRAPPER:
+                source.line("private " + WRAPPERS.get(field.getMessageType().getFullName())[2] + " " + name + ";");
+                source.line("private boolean " + hasName(field) + ";");
+                break;
+            case OPTIONAL_SCALAR:
+                source.line("private " + SCALARS.get(field.getType())[1] + " " + name + ";");
+                source.line("private boolean " + hasName(field) + ";");
+                break;
+            default:
+                source.line("private " + SCALARS.get(field.getType())[1] + " " + name + ";");
+        }
+    }
+
+    private static void writeSetters(JavaSource source, String encoderName, FieldDescriptor field) {
+        final String name = fieldName(field);
+        final String accessor = JavaSource.camelCase(field.getName(), true);
+        switch (kind(field)) {
+            case STRING:
+                source.open("public " + encoderName + " set" + accessor + "(String value) {");
+                source.line(name + " = value;");
+                source.line("return this;");
+                source.close("}");
+                break;
+            case BYTES:
+                source.open("public " + encoderName + " set" + accessor + "(byte[] value) {");
+                source.line("return set" + accessor + "(value, 0, value.length);");
+                source.close("}");
+                source.line();
+                source.line("/**");
+                source.line(" * Sets the field to a part of an array, which is not copied.");
+                source.line(" */");
+                source.open("public " + encoderName + " set" + accessor + "(byte[] value, int offset, int length) {");
+                source.open("if (offset < 0 || length < 0 || offset + length > value.length) {");
+                source.line("throw new IndexOutOfBoundsException(\"Range \" + offset + \"+\" + length + \" is out of bounds for \" + value.length + \" bytes\");");
+                source.close("}");
+                source.line(name + " = value;");
+                source.line(partName(field, "Offset") + " = offset;");
+                source.line(partName(field, "Length") + " = length;");
+                source.line("return this;");
+                source.close("}");
+                break;
+            case ENUM:
+                source.open("public " + encoderName + " set" + accessor + "(" + ProtoDescriptors.javaClassName(field.getEnumType()) + " value) {");
+                source.line("return set" + accessor + "Value(value.getNumber());");
+                source.close("}");
+                source.line();
+                source.open("public " + encoderName + " set" + accessor + "Value(int value) {");
+                source.line(name + " = value;");
+                source.line("return this;");
+                source.close("}");
+                break;
+            case REPEATED_ENUM:
+                source.open("public " + encoderName + " add" + accessor + "(" + ProtoDescriptors.javaClassName(field.getEnumType()) + " value) {");
+                source.line("return add" + accessor + "Value(value.getNumber());");
+                source.close("}");
+                source.line();
+                source.open("public " + encoderName + " add" + accessor + "Value(int value) {");
+                source.line(name + " = ensureCapacity(" + name + ", " + partName(field, "Count") + ");");
+                source.line(name + "[" + partName(field, "Count") + "++] = value;");
+                source.line("return this;");
+                source.close("}");
+                break;
+            case WRAPPER:
+            case OPTIONAL_SCALAR:
+                source.open("public " + encoderName + " set" + accessor + "(" + javaType(field) + " value) {");
+                source.line(name + " = value;");
+                source.line(hasName(field) + " = true;");
+                source.line("return this;");
+                source.close("}");
+                source.line();
+                source.open("public " + encoderName + " clear" + accessor + "() {");
+                source.line(hasName(field) + " = false;");
+                source.line("return this;");
+                source.close("}");
+                break;
+            default:
+                source.open("public " + encoderName + " set" + accessor + "(" + SCALARS.get(field.getType())[1] + " value) {");
+                source.line(name + " = value;");
+                source.line("return this;");
+                source.close("}");
+        }
+    }
+
+    private static void writeClear(JavaSource source, FieldDescriptor field) {
+        final String name = fieldName(field);
+        switch (kind(field)) {
+            case STRING:
+                source.line(name + " = null;");
+                break;
+            case BYTES:
+                source.line(name + " = null;");
+                source.line(partName(field, "Length") + " = 0;");
+                break;
+            case REPEATED_ENUM:
+                source.line(partName(field, "Count") + " = 0;");
+                break;
+            case WRAPPER:
+                if (javaType(field).equals("String")) source.line(name + " = null;");
+                source.line(hasName(field) + " = false;");
+                break;
+            case OPTIONAL_SCALAR:
+                source.line(hasName(field) + " = false;");
+                break;
+            default:
+                source.line(name + " = " + (field.getType() == FieldDescriptor.Type.BOOL ? "false" : "0") + ";");
+        }
+    }
+
+    private static void writeSize(JavaSource source, FieldDescriptor field) {
+        final String name = fieldName(field);
+        final int number = field.getNumber();
+        switch (kind(field)) {
+            case STRING:
+                source.line("size += stringSize(" + number + ", " + name + ");");
+                break;
+            case BYTES:
+                source.line("size += bytesSize(" + number + ", " + partName(field, "Length") + ");");
+                break;
+            case ENUM:
+                source.line("if (" + name + " != 0) size += com.google.protobuf.CodedOutputStream.computeEnumSize(" + number + ", " + name + ");");
+                break;
+            case REPEATED_ENUM:
+                source.line("size += packedEnumSize(" + number + ", " + name + ", " + partName(field, "Count") + ");");
+                break;
+            case WRAPPER:
+                source.line("if (" + hasName(field) + ") size += " + WRAPPERS.get(field.getMessageType().getFullName())[0] + "(" + number + ", " + name + ");");
+                break;
+            case OPTIONAL_SCALAR:
+                source.line("if (" + hasName(field) + ") size += com.google.protobuf.CodedOutputStream.compute" + SCALARS.get(field.getType())[0] + "Size(" + number + ", " + name + ");");
+                break;
+            default:
+                source.line("if (" + isSet(field) + ") size += com.google.protobuf.CodedOutputStream.compute" + SCALARS.get(field.getType())[0] + "Size(" + number + ", " + name + ");");
+        }
+    }
+
+    private static void writeWrite(JavaSource source, FieldDescriptor field) {
+        final String name = fieldName(field);
+        final int number = field.getNumber();
+        switch (kind(field)) {
+            case STRING:
+                source.line("writeString(output, " + number + ", " + name + ");");
+                break;
+            case BYTES:
+                source.line("writeBytes(output, " + number + ", " + name + ", " + partName(field, "Offset") + ", " + partName(field, "Length") + ");");
+                break;
+            case ENUM:
+                source.line("if (" + name + " != 0) output.writeEnum(" + number + ", " + name + ");");
+                break;
+            case REPEATED_ENUM:
+                source.line("writePackedEnum(output, " + number + ", " + name + ", " + partName(field, "Count") + ");");
+                break;
+            case WRAPPER:
+                source.line("if (" + hasName(field) + ") " + WRAPPERS.get(field.getMessageType().getFullName())[1] + "(output, " + number + ", " + name + ");");
+                break;
+            case OPTIONAL_SCALAR:
+                source.line("if (" + hasName(field) + ") output.write" + SCALARS.get(field.getType())[0] + "(" + number + ", " + name + ");");
+                break;
+            default:
+                source.line("if (" + isSet(field) + ") output.write" + SCALARS.get(field.getType())[0] + "(" + number + ", " + name + ");");
+        }
+    }
+
+    /**
+     * @return The condition for a scalar field not being its default value, which is the raw bits for floating point
+     * fields so that -0.0 is written, as the protobuf library does.
+     */
+    private static String isSet(FieldDescriptor field) {
+        final String name = fieldName(field);
+        switch (field.getType()) {
+            case FLOAT:
+                return "Float.floatToRawIntBits(" + name + ") != 0";
+            case DOUBLE:
+                return "Double.doubleToRawLongBits(" + name + ") != 0";
+            case BOOL:
+                return name;
+            default:
+                return name + " != 0";
+        }
+    }
+
+    private static String javaType(FieldDescriptor field) {
+        return field.getType() == FieldDescriptor.Type.MESSAGE ? WRAPPERS.get(field.getMessageType().getFullName())[2]
+                : SCALARS.get(field.getType())[1];
+    }
+
+    private enum Kind {SCALAR, OPTIONAL_SCALAR, STRING, BYTES, ENUM, REPEATED_ENUM, WRAPPER}
+
+    private static Kind kind(FieldDescriptor field) {
+        if (field.getRealContainingOneof() != null) throw unsupported(field);
+        if (field.isRepeated()) {
+            if (field.getType() == FieldDescriptor.Type.ENUM && field.isPacked()) return Kind.REPEATED_ENUM;
+            throw unsupported(field);
+        }
+        switch (field.getType()) {
+            case STRING:
+                return Kind.STRING;
+            case BYTES:
+                return Kind.BYTES;
+            case ENUM:
+                return Kind.ENUM;
+            case MESSAGE:
+                if (WRAPPERS.containsKey(field.getMessageType().getFullName())) return Kind.WRAPPER;
+                throw unsupported(field);
+            default:
+                if (!SCALARS.containsKey(field.getType())) throw unsupported(field);
+                return field.hasPresence() ? Kind.OPTIONAL_SCALAR : Kind.SCALAR;
+        }
+    }
+
+    /**
+     * @return The name of the Java field for the value, with the trailing underscore protoc uses so that it cannot
+     * clash with a keyword.
+     */
+    private static String fieldName(FieldDescriptor field) {
+        return JavaSource.camelCase(field.getName(), false) + "_";
+    }
+
+    /**
+     * @return The name of a Java field for another part of the value, e.g. the length of a bytes field.
+     */
+    private static String partName(FieldDescriptor field, String part) {
+        return JavaSource.camelCase(field.getName(), false) + part + "_";
+    }
+
+    private static String hasName(FieldDescriptor field) {
+        return "has" + JavaSource.camelCase(field.getName(), true) + "_";
+    }
+
+    private static GradleException unsupported(FieldDescriptor field) {
+        return new GradleException("The field " + field.getFullName() + " cannot be encoded; only singular scalar,"
+                + " string, bytes, enum, and google.protobuf wrapper fields and packed repeated enums are supported");
+    }
+}
@@ -0,0 +1,278 @@
+package com.craxiom.messaging.gradle;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A protoc plugin that generates Java interfaces for groups of fields that several messages share, and makes every
+ * message that has all the fields of an interface implement it.
+ * <p>
+ * Each plugin option defines one interface as its fully qualified name and its proto field names separated by plus
+ * signs, e.g. {@code com.craxiom.messaging.SurveyRecordHeader=deviceSerialNumber+deviceTime+latitude}. The fields can
+ * start with an interface defined by an earlier option, which the new interface then extends and whose fields it
+ * requires as well. The interface gets the same accessors that protoc generates for its own fields, and it is added
+ * to the {@code MessageOrBuilder}
+ * interface of each matching message through the {@code interface_extends} insertion point, so both the messages and
+ * their builders implement it. A message matches if it has every field with the same type; the plugin fails if two
+ * matching messages disagree on a field's type or if no message matches.
+ * <p>
+ * The plugin must run in the same protoc invocation as, and after, the builtin Java generator, with the same output
+ * directory. It is launched by the script that {@link GenerateProtocPluginLauncher} writes.
+ */
+public final class RecordHeaderPlugin {
+    private RecordHeaderPlugin() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final CodeGeneratorRequest request = CodeGeneratorRequest.parseFrom(System.in);
+        CodeGeneratorResponse response;
+        try {
+            response = generate(request);
+        } catch (IllegalArgumentException e) {
+            response = CodeGeneratorResponse.newBuilder().setError(e.getMessage()).build();
+        }
+        response.writeTo(System.out);
+        System.out.flush();
+    }
+
+    static CodeGeneratorResponse generate(CodeGeneratorRequest request) {
+        final Map<String, String> javaNames = new HashMap<>();
+        final Map<String, FileDescriptorProto> filesByName = new HashMap<>();
+        for (FileDescriptorProto file : request.getProtoFileList()) {
+            filesByName.put(file.getName(), file);
+            final String javaPackage = javaPackage(file);
+            final String protoPrefix = file.getPackage().isEmpty() ? "." : "." + file.getPackage() + ".";
+            for (DescriptorProto message : file.getMessageTypeList()) {
+                addJavaNames(message, protoPrefix, javaPackage + ".", javaNames);
+            }
+            for (EnumDescriptorProto enumType : file.getEnumTypeList()) {
+                javaNames.put(protoPrefix + enumType.getName(), javaPackage + "." + enumType.getName());
+            }
+        }
+
+        final CodeGeneratorResponse.Builder response = CodeGeneratorResponse.newBuilder()
+                .setSupportedFeatures(CodeGeneratorResponse.Feature.FEATURE_PROTO3_OPTIONAL_VALUE);
+        final Map<String, List<String>> interfaceFieldNames = new HashMap<>();
+        for (String option : request.getParameter().split(",")) {
+            if (option.trim().isEmpty()) continue;
+            final int equals = option.indexOf('=');
+            if (equals < 1) throw new IllegalArgumentException("Expected interface=field+field..., not '" + option + "'");
+            final String interfaceName = option.substring(0, equals).trim();
+
+            String parent = null;
+            final List<String> fieldNames = new ArrayList<>();
+            for (String name : option.substring(equals + 1).trim().split("\\+")) {
+                if (fieldNames.isEmpty() && parent == null && interfaceFieldNames.containsKey(name)) {
+                    parent = name;
+                } else {
+                    fieldNames.add(name);
+                }
+            }
+            final List<String> allFieldNames = new ArrayList<>();
+            if (parent != null) allFieldNames.addAll(interfaceFieldNames.get(parent));
+            allFieldNames.addAll(fieldNames);
+            interfaceFieldNames.put(interfaceName, allFieldNames);
+
+            generateInterface(request, filesByName, javaNames, interfaceName, parent, fieldNames, allFieldNames, response);
+        }
+        return response.build();
+    }
+
+    private static void generateInterface(CodeGeneratorRequest request, Map<String, FileDescriptorProto> filesByName,
+                                          Map<String, String> javaNames, String interfaceName, String parent,
+                                          List<String> fieldNames, List<String> allFieldNames,
+                                          CodeGeneratorResponse.Builder response) {
+        Map<String, FieldDescriptorProto> interfaceFields = null;
+        String firstMessage = null;
+        final List<String> implementers = new ArrayList<>();
+        for (String fileName : request.getFileToGenerateList()) {
+            final FileDescriptorProto file = filesByName.get(fileName);
+            for (DescriptorProto message : file.getMessageTypeList()) {
+                final Map<String, FieldDescriptorProto> fields = matchingFields(message, allFieldNames);
+                if (fields == null) continue;
+
+                final String messageName = file.getPackage().isEmpty() ? message.getName() : file.getPackage() + "." + message.getName();
+                if (interfaceFields == null) {
+                    interfaceFields = fields;
+                    firstMessage = messageName;
+                } else {
+                    checkSameTypes(interfaceName, firstMessage, interfaceFields, messageName, fields);
+                }
+                if (!file.getOptions().getJavaMultipleFiles()) {
+                    throw new IllegalArgumentException(file.getName() + " must set java_multiple_files = true for "
+                            + messageName + " to implement " + interfaceName);
+                }
+
+                final String orBuilderFile = javaPackage(file).replace('.', '/') + "/" + message.getName() + "OrBuilder.java";
+                response.addFile(CodeGeneratorResponse.File.newBuilder()
+                        .setName(orBuilderFile)
+                        .setInsertionPoint("interface_extends:" + messageName)
+                        .setContent(interfaceName + ","));
+                implementers.add(message.getName());
+            }
+        }
+        if (interfaceFields == null) {
+            throw new IllegalArgumentException("No message has all the fields of " + interfaceName + ": " + allFieldNames);
+        }
+
+        response.addFile(CodeGeneratorResponse.File.newBuilder()
+                .setName(interfaceName.replace('.', '/') + ".java")
+                .setContent(interfaceSource(interfaceName, parent, fieldNames, interfaceFields, javaNames, implementers)));
+    }
+
+    /**
+     * @return The message's fields with the given names, or null if the message does not have all of them.
+     */
+    private static Map<String, FieldDescriptorProto> matchingFields(DescriptorProto message, List<String> fieldNames) {
+        final Map<String, FieldDescriptorProto> fields = new LinkedHashMap<>();
+        for (String fieldName : fieldNames) {
+            for (FieldDescriptorProto field : message.getFieldList()) {
+                if (field.getName().equals(fieldName)) {
+                    fields.put(fieldName, field);
+                    break;
+                }
+            }
+            if (!fields.containsKey(fieldName)) return null;
+        }
+        return fields;
+    }
+
+    private static void checkSameTypes(String interfaceName, String firstMessage, Map<String, FieldDescriptorProto> first,
+                                       String messageName, Map<String, FieldDescriptorProto> fields) {
+        for (Map.Entry<String, FieldDescriptorProto> entry : first.entrySet()) {
+            final FieldDescriptorProto expected = entry.getValue();
+            final FieldDescriptorProto actual = fields.get(entry.getKey());
+            if (expected.getType() != actual.getType() || !expected.getTypeName().equals(actual.getTypeName())
+                    || expected.getLabel() != actual.getLabel() || expected.getProto3Optional() != actual.getProto3Optional()) {
+                throw new IllegalArgumentException("The " + entry.getKey() + " field of " + messageName
+                        + " does not have the same type as in " + firstMessage + ", so both cannot implement " + interfaceName);
+            }
+        }
+    }
+
+    private static String interfaceSource(String interfaceName, String parent, List<String> fieldNames,
+                                          Map<String, FieldDescriptorProto> fields, Map<String, String> javaNames,
+                                          List<String> implementers) {
+        final int lastDot = interfaceName.lastIndexOf('.');
+        final JavaSource source = new JavaSource();
+        source.line("// Generated by the record header protoc plugin in buildSrc. Do not edit.");
+        if (lastDot > 0) {
+            source.line("package " + interfaceName.substring(0, lastDot) + ";");
+            source.line();
+        }
+        source.line("/**");
+        comment(source, "The " + String.join(", ", fieldNames) + (fieldNames.size() == 1 ? " field" : " fields")
+                + (parent == null ? "" : ", in addition to the " + parent.substring(parent.lastIndexOf('.') + 1) + " fields,")
+                + " that are shared by the following messages, which implement this interface along with their builders: "
+                + String.join(", ", implementers) + ".");
+        source.line(" */");
+        source.open("public interface " + interfaceName.substring(lastDot + 1) + " extends "
+                + (parent == null ? "com.google.protobuf.MessageOrBuilder" : parent) + " {");
+        for (String fieldName : fieldNames) {
+            final FieldDescriptorProto field = fields.get(fieldName);
+            if (field.getLabel() == FieldDescriptorProto.Label.LABEL_REPEATED) {
+                throw new IllegalArgumentException("Repeated fields such as " + fieldName + " are not supported");
+            }
+            final String name = JavaSource.camelCase(fieldName, true);
+            final boolean hasPresence = field.getProto3Optional() || field.getType() == FieldDescriptorProto.Type.TYPE_MESSAGE;
+            if (hasPresence) source.line("boolean has" + name + "();");
+            switch (field.getType()) {
+                case TYPE_STRING:
+                    source.line("String get" + name + "();");
+                    source.line("com.google.protobuf.ByteString get" + name + "Bytes();");
+                    break;
+                case TYPE_ENUM:
+                    source.line(javaName(field, javaNames) + " get" + name + "();");
+                    source.line("int get" + name + "Value();");
+                    break;
+                case TYPE_MESSAGE:
+                    source.line(javaName(field, javaNames) + " get" + name + "();");
+                    source.line(javaName(field, javaNames) + "OrBuilder get" + name + "OrBuilder();");
+                    break;
+                default:
+                    source.line(scalarType(field) + " get" + name + "();");
+            }
+            source.line();
+        }
+        source.close("}");
+        return source.toString().replace("\n\n}", "\n}");
+    }
+
+    /**
+     * Appends the text as Javadoc lines that are wrapped at 120 characters.
+     */
+    private static void comment(JavaSource source, String text) {
+        final StringBuilder line = new StringBuilder(" *");
+        for (String word : text.split(" ")) {
+            if (line.length() + 1 + word.length() > 120) {
+                source.line(line.toString());
+                line.setLength(2);
+            }
+            line.append(' ').append(word);
+        }
+        source.line(line.toString());
+    }
+
+    private static String javaName(FieldDescriptorProto field, Map<String, String> javaNames) {
+        final String javaName = javaNames.get(field.getTypeName());
+        if (javaName == null) throw new IllegalArgumentException("Unknown type " + field.getTypeName());
+        return javaName;
+    }
+
+    private static String scalarType(FieldDescriptorProto field) {
+        switch (field.getType()) {
+            case TYPE_DOUBLE:
+                return "double";
+            case TYPE_FLOAT:
+                return "float";
+            case TYPE_INT64:
+            case TYPE_UINT64:
+            case TYPE_SINT64:
+            case TYPE_FIXED64:
+            case TYPE_SFIXED64:
+                return "long";
+            case TYPE_INT32:
+            case TYPE_UINT32:
+            case TYPE_SINT32:
+            case TYPE_FIXED32:
+            case TYPE_SFIXED32:
+                return "int";
+            case TYPE_BOOL:
+                return "boolean";
+            case TYPE_BYTES:
+                return "com.google.protobuf.ByteString";
+            default:
+                throw new IllegalArgumentException("Unsupported field type " + field.getType() + " for " + field.getName());
+        }
+    }
+
+    private static void addJavaNames(DescriptorProto message, String protoPrefix, String javaPrefix, Map<String, String> javaNames) {
+        javaNames.put(protoPrefix + message.getName(), javaPrefix + message.getName());
+        for (DescriptorProto nested : message.getNestedTypeList()) {
+            addJavaNames(nested, protoPrefix + message.getName() + ".", javaPrefix + message.getName() + ".", javaNames);
+        }
+        for (EnumDescriptorProto enumType : message.getEnumTypeList()) {
+            javaNames.put(protoPrefix + message.getName() + "." + enumType.getName(),
+                    javaPrefix + message.getName() + "." + enumType.getName());
+        }
+    }
+
+    /**
+     * @return The Java package of the file's classes. The outer class name is not included, which is only correct for
+     * files with java_multiple_files set, the only kind the interfaces can be added to.
+     */
+    private static String javaPackage(FileDescriptorProto file) {
+        return file.getOptions().hasJavaPackage() ? file.getOptions().getJavaPackage() : file.getPackage();
+    }
+}
@@ -0,0 +1,81 @@
+package com.craxiom.messaging.benchmark;
+
+import com.craxiom.messaging.grpc.compression.CompressionCodecs;
+import io.grpc.Codec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU cost of compressing and decompressing each record type with the gRPC message encodings, as one
+ * record per message like the Stream* RPCs send them. The compressed size of the record is printed when each trial
+ * ends, so the bytes saved can be weighed against the time spent:
+ * <pre>
+ *   gradlew jmh -PjmhArgs="CompressionBenchmark -p messageType=LteRecord,DeviceStatus"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    @Param({SampleRecords.GSM_RECORD, SampleRecords.CDMA_RECORD, SampleRecords.UMTS_RECORD, SampleRecords.LTE_RECORD,
+            SampleRecords.NR_RECORD, SampleRecords.WIFI_BEACON_RECORD, SampleRecords.WIFI_PROBE_REQUEST_RECORD,
+            SampleRecords.WIFI_DEAUTHENTICATION_RECORD, SampleRecords.WIFI_OTA_RECORD, SampleRecords.BLUETOOTH_RECORD,
+            SampleRecords.GNSS_RECORD, SampleRecords.ENERGY_DETECTION, SampleRecords.SIGNAL_DETECTION,
+            SampleRecords.DEVICE_STATUS, SampleRecords.PHONE_STATE, SampleRecords.GSM_SIGNALING, SampleRecords.UMTS_NAS,
+            SampleRecords.WCDMA_RRC, SampleRecords.LTE_RRC, SampleRecords.LTE_NAS})
+    public String messageType;
+
+    @Param({"gzip-1", "gzip-6", "deflate-1", "deflate-6"})
+    public String codec;
+
+    private Codec compressionCodec;
+    private byte[] serializedRecord;
+    private byte[] compressedRecord;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+    private final byte[] readBuffer = new byte[4096];
+
+    @Setup
+    public void setup() throws IOException {
+        final String[] parts = codec.split("-");
+        final int level = Integer.parseInt(parts[1]);
+        compressionCodec = parts[0].equals("gzip") ? CompressionCodecs.gzip(level) : CompressionCodecs.deflate(level);
+        serializedRecord = SampleRecords.forMessageType(messageType).toByteArray();
+        compressedRecord = compress();
+    }
+
+    @TearDown
+    public void printSizes() {
+        System.out.printf("%n%s with %s: %d bytes compressed to %d bytes (%.0f%%)%n", messageType, codec,
+                serializedRecord.length, compressedRecord.length, 100.0 * compressedRecord.length / serializedRecord.length);
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        output.reset();
+        try (OutputStream compressing = compressionCodec.compress(output)) {
+            compressing.write(serializedRecord);
+        }
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public int decompress() throws IOException {
+        int total = 0;
+        try (InputStream decompressing = compressionCodec.decompress(new ByteArrayInputStream(compressedRecord))) {
+            int read;
+            while ((read = decompressing.read(readBuffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,128 @@
+package com.craxiom.messaging.benchmark;
+
+import com.craxiom.messaging.json.*;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generated reflection-free JSON codecs on the same records as {@link JsonFormatBenchmark}, so the two
+ * can be compared directly. The printWithReusedWriter benchmark shows the cost when a caller keeps one
+ * {@link JsonStreamWriter} per thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    @Param({SampleRecords.GSM_RECORD, SampleRecords.CDMA_RECORD, SampleRecords.UMTS_RECORD, SampleRecords.LTE_RECORD,
+            SampleRecords.NR_RECORD, SampleRecords.WIFI_BEACON_RECORD, SampleRecords.WIFI_PROBE_REQUEST_RECORD,
+            SampleRecords.WIFI_DEAUTHENTICATION_RECORD, SampleRecords.WIFI_OTA_RECORD, SampleRecords.BLUETOOTH_RECORD,
+            SampleRecords.GNSS_RECORD, SampleRecords.ENERGY_DETECTION, SampleRecords.SIGNAL_DETECTION,
+            SampleRecords.DEVICE_STATUS, SampleRecords.PHONE_STATE, SampleRecords.GSM_SIGNALING, SampleRecords.UMTS_NAS,
+            SampleRecords.WCDMA_RRC, SampleRecords.LTE_RRC, SampleRecords.LTE_NAS})
+    public String messageType;
+
+    private JsonCodec<Message> codec;
+    private Message record;
+    private String recordJson;
+    private final JsonStreamWriter writer = new JsonStreamWriter();
+
+    @Setup
+    public void setup() {
+        codec = codecFor(messageType);
+        record = SampleRecords.forMessageType(messageType);
+        recordJson = codec.toJson(record);
+    }
+
+    @Benchmark
+    public String print() {
+        return codec.toJson(record);
+    }
+
+    @Benchmark
+    public int printWithReusedWriter() {
+        writer.reset();
+        codec.write(record, writer);
+        return writer.getOutput().length();
+    }
+
+    @Benchmark
+    public Message parse() throws InvalidProtocolBufferException {
+        return codec.fromJson(recordJson);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JsonCodec<Message> codecFor(String messageType) {
+        final JsonCodec<? extends Message> codec;
+        switch (messageType) {
+            case SampleRecords.GSM_RECORD:
+                codec = GsmRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.CDMA_RECORD:
+                codec = CdmaRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.UMTS_RECORD:
+                codec = UmtsRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.LTE_RECORD:
+                codec = LteRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.NR_RECORD:
+                codec = NrRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.WIFI_BEACON_RECORD:
+                codec = WifiBeaconRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.WIFI_PROBE_REQUEST_RECORD:
+                codec = WifiProbeRequestRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.WIFI_DEAUTHENTICATION_RECORD:
+                codec = WifiDeauthenticationRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.WIFI_OTA_RECORD:
+                codec = WifiOtaRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.BLUETOOTH_RECORD:
+                codec = BluetoothRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.GNSS_RECORD:
+                codec = GnssRecordJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.ENERGY_DETECTION:
+                codec = EnergyDetectionJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.SIGNAL_DETECTION:
+                codec = SignalDetectionJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.DEVICE_STATUS:
+                codec = DeviceStatusJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.PHONE_STATE:
+                codec = PhoneStateJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.GSM_SIGNALING:
+                codec = GsmSignalingJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.UMTS_NAS:
+                codec = UmtsNasJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.WCDMA_RRC:
+                codec = WcdmaRrcJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.LTE_RRC:
+                codec = LteRrcJsonCodec.INSTANCE;
+                break;
+            case SampleRecords.LTE_NAS:
+                codec = LteNasJsonCodec.INSTANCE;
+                break;
+            default:
+                throw new IllegalArgumentException("No JSON codec for message type " + messageType);
+        }
+        return (JsonCodec<Message>) codec;
+    }
+}
@@ -0,0 +1,52 @@
+package com.craxiom.messaging.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of converting every record type to and from the AsyncAPI JSON representation using the protobuf
+ * {@link JsonFormat} printer and parser, configured the same way as in JsonConversionTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonFormatBenchmark {
+    @Param({SampleRecords.GSM_RECORD, SampleRecords.CDMA_RECORD, SampleRecords.UMTS_RECORD, SampleRecords.LTE_RECORD,
+            SampleRecords.NR_RECORD, SampleRecords.WIFI_BEACON_RECORD, SampleRecords.WIFI_PROBE_REQUEST_RECORD,
+            SampleRecords.WIFI_DEAUTHENTICATION_RECORD, SampleRecords.WIFI_OTA_RECORD, SampleRecords.BLUETOOTH_RECORD,
+            SampleRecords.GNSS_RECORD, SampleRecords.ENERGY_DETECTION, SampleRecords.SIGNAL_DETECTION,
+            SampleRecords.DEVICE_STATUS, SampleRecords.PHONE_STATE, SampleRecords.GSM_SIGNALING, SampleRecords.UMTS_NAS,
+            SampleRecords.WCDMA_RRC, SampleRecords.LTE_RRC, SampleRecords.LTE_NAS})
+    public String messageType;
+
+    private final JsonFormat.Printer jsonFormatter = JsonFormat.printer().omittingInsignificantWhitespace();
+    private final JsonFormat.Parser jsonParser = JsonFormat.parser();
+
+    private Message record;
+    private String recordJson;
+
+    @Setup
+    public void setup() throws InvalidProtocolBufferException {
+        record = SampleRecords.forMessageType(messageType);
+        recordJson = jsonFormatter.print(record);
+    }
+
+    @Benchmark
+    public String print() throws InvalidProtocolBufferException {
+        return jsonFormatter.print(record);
+    }
+
+    @Benchmark
+    public Message parse() throws InvalidProtocolBufferException {
+        final Message.Builder builder = record.newBuilderForType();
+        jsonParser.merge(recordJson, builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.craxiom.messaging.benchmark;
+
+import com.craxiom.messaging.MessageType;
+import com.craxiom.messaging.MessageTypeRegistry;
+import com.craxiom.messaging.parse.AliasingParsers;
+import com.craxiom.messaging.parse.InterningParser;
+import com.craxiom.messaging.parse.ProjectedRecord;
+import com.craxiom.messaging.parse.RecordProjection;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the protobuf binary serialize and parse cost of every record type. Run with {@code -prof gc} (the default
+ * arguments of the {@code jmh} Gradle task) to also report the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtobufBenchmark {
+    @Param({SampleRecords.GSM_RECORD, SampleRecords.CDMA_RECORD, SampleRecords.UMTS_RECORD, SampleRecords.LTE_RECORD,
+            SampleRecords.NR_RECORD, SampleRecords.WIFI_BEACON_RECORD, SampleRecords.WIFI_PROBE_REQUEST_RECORD,
+            SampleRecords.WIFI_DEAUTHENTICATION_RECORD, SampleRecords.WIFI_OTA_RECORD, SampleRecords.BLUETOOTH_RECORD,
+            SampleRecords.GNSS_RECORD, SampleRecords.ENERGY_DETECTION, SampleRecords.SIGNAL_DETECTION,
+            SampleRecords.DEVICE_STATUS, SampleRecords.PHONE_STATE, SampleRecords.GSM_SIGNALING, SampleRecords.UMTS_NAS,
+            SampleRecords.WCDMA_RRC, SampleRecords.LTE_RRC, SampleRecords.LTE_NAS})
+    public String messageType;
+
+    private Message record;
+    private Parser<? extends Message> parser;
+    private Parser<? extends Message> interningParser;
+    private byte[] serializedRecord;
+    private RecordProjection routingProjection;
+    private ProjectedRecord projectedRecord;
+
+    @Setup
+    public void setup() {
+        record = SampleRecords.forMessageType(messageType);
+        parser = record.getParserForType();
+        interningParser = InterningParser.newParser(record.getClass());
+        serializedRecord = record.toByteArray();
+        routingProjection = RecordProjection.of("messageType", "data.deviceSerialNumber", "data.missionId",
+                "data.latitude", "data.longitude");
+        projectedRecord = routingProjection.newRecord();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return record.toByteArray();
+    }
+
+    @Benchmark
+    public Message parse() throws InvalidProtocolBufferException {
+        return parser.parseFrom(serializedRecord);
+    }
+
+    /**
+     * Parses with the header strings deduplicated, as when replaying a stream of records from one device.
+     */
+    @Benchmark
+    public Message parseInterned() throws InvalidProtocolBufferException {
+        return interningParser.parseFrom(serializedRecord);
+    }
+
+    /**
+     * Parses with the bytes fields aliasing the input, which avoids copying the pcapRecord of the OTA record types.
+     */
+    @Benchmark
+    public Message parseAliased() throws InvalidProtocolBufferException {
+        return AliasingParsers.parseFrom(parser, serializedRecord);
+    }
+
+    /**
+     * Finds the message type of the serialized record, as a consumer of a mixed feed does before choosing a parser.
+     */
+    @Benchmark
+    public MessageType<?, ?> peekMessageType() {
+        return MessageTypeRegistry.peek(serializedRecord);
+    }
+
+    /**
+     * Parses a record of unknown type by peeking at its messageType first.
+     */
+    @Benchmark
+    public Message parseAnyType() throws InvalidProtocolBufferException {
+        return MessageTypeRegistry.parse(serializedRecord);
+    }
+
+    /**
+     * Reads only the fields a router needs to shard the records, compare with {@link #parseAnyType()}.
+     */
+    @Benchmark
+    public ProjectedRecord projectRoutingFields() throws InvalidProtocolBufferException {
+        routingProjection.project(serializedRecord, projectedRecord);
+        return projectedRecord;
+    }
+}
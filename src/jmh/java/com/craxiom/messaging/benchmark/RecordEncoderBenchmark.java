@@ -0,0 +1,95 @@
+package com.craxiom.messaging.benchmark;
+
+import com.craxiom.messaging.LteBandwidth;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.encode.LteRecordEncoder;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building and serializing an LteRecord on the producer side with the generated message builders to
+ * serializing the same fields with the {@link LteRecordEncoder}. Run with {@code -prof gc} to see the allocations per
+ * record of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordEncoderBenchmark {
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private int recordNumber = 0;
+
+    @Benchmark
+    public int builder() throws IOException {
+        final int number = recordNumber++;
+        final LteRecord record = LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("1234")
+                        .setDeviceName("Craxiom Pixel")
+                        .setDeviceTime("1996-12-19T16:39:57-08:00")
+                        .setLatitude(51.470334)
+                        .setLongitude(-0.486594)
+                        .setAltitude(13.3f)
+                        .setMissionId("Survey1 20200724-154325")
+                        .setRecordNumber(number)
+                        .setMcc(Int32Value.newBuilder().setValue(310).build())
+                        .setMnc(Int32Value.newBuilder().setValue(260).build())
+                        .setTac(Int32Value.newBuilder().setValue(14).build())
+                        .setEci(Int32Value.newBuilder().setValue(181405696 + (number & 0xFF)).build())
+                        .setEarfcn(Int32Value.newBuilder().setValue(5230).build())
+                        .setPci(Int32Value.newBuilder().setValue(number & 0x1FF).build())
+                        .setRsrp(FloatValue.newBuilder().setValue(-95.5f - (number & 0xF)).build())
+                        .setRsrq(FloatValue.newBuilder().setValue(-10.2f).build())
+                        .setTa(Int32Value.newBuilder().setValue(4).build())
+                        .setServingCell(BoolValue.newBuilder().setValue(true).build())
+                        .setLteBandwidth(LteBandwidth.MHZ_20)
+                        .setProvider("T-Mobile"))
+                .build();
+        buffer.clear();
+        final CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+        record.writeTo(output);
+        output.flush();
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int encoder() {
+        final int number = recordNumber++;
+        buffer.clear();
+        return LteRecordEncoder.forCurrentThread()
+                .setVersion("1.6.0")
+                .setDeviceSerialNumber("1234")
+                .setDeviceName("Craxiom Pixel")
+                .setDeviceTime("1996-12-19T16:39:57-08:00")
+                .setLatitude(51.470334)
+                .setLongitude(-0.486594)
+                .setAltitude(13.3f)
+                .setMissionId("Survey1 20200724-154325")
+                .setRecordNumber(number)
+                .setMcc(310)
+                .setMnc(260)
+                .setTac(14)
+                .setEci(181405696 + (number & 0xFF))
+                .setEarfcn(5230)
+                .setPci(number & 0x1FF)
+                .setRsrp(-95.5f - (number & 0xF))
+                .setRsrq(-10.2f)
+                .setTa(4)
+                .setServingCell(true)
+                .setLteBandwidth(LteBandwidth.MHZ_20)
+                .setProvider("T-Mobile")
+                .writeTo(buffer);
+    }
+}
@@ -0,0 +1,771 @@
+package com.craxiom.messaging.benchmark;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.bluetooth.SupportedTechnologies;
+import com.craxiom.messaging.bluetooth.Technology;
+import com.craxiom.messaging.gnss.Constellation;
+import com.craxiom.messaging.phonestate.Domain;
+import com.craxiom.messaging.phonestate.NetworkType;
+import com.craxiom.messaging.phonestate.SimState;
+import com.craxiom.messaging.wifi.*;
+import com.google.protobuf.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Representative instances of every record type defined in the Network Survey Messaging API. The field values mirror
+ * the examples in network_survey_messaging.yaml (and JsonConversionTest) so that the benchmark numbers reflect the size
+ * and shape of the messages produced by the Network Survey apps.
+ */
+public final class SampleRecords {
+    // The messageType value of every record type that has a sample
+    public static final String GSM_RECORD = "GsmRecord";
+    public static final String CDMA_RECORD = "CdmaRecord";
+    public static final String UMTS_RECORD = "UmtsRecord";
+    public static final String LTE_RECORD = "LteRecord";
+    public static final String NR_RECORD = "NrRecord";
+    public static final String WIFI_BEACON_RECORD = "WifiBeaconRecord";
+    public static final String WIFI_PROBE_REQUEST_RECORD = "WifiProbeRequestRecord";
+    public static final String WIFI_DEAUTHENTICATION_RECORD = "WifiDeauthenticationRecord";
+    public static final String WIFI_OTA_RECORD = "WifiOtaRecord";
+    public static final String BLUETOOTH_RECORD = "BluetoothRecord";
+    public static final String GNSS_RECORD = "GnssRecord";
+    public static final String ENERGY_DETECTION = "EnergyDetection";
+    public static final String SIGNAL_DETECTION = "SignalDetection";
+    public static final String DEVICE_STATUS = "DeviceStatus";
+    public static final String PHONE_STATE = "PhoneState";
+    public static final String GSM_SIGNALING = "GsmSignaling";
+    public static final String UMTS_NAS = "UmtsNas";
+    public static final String WCDMA_RRC = "WcdmaRrc";
+    public static final String LTE_RRC = "LteRrc";
+    public static final String LTE_NAS = "LteNas";
+
+    private static final String DEVICE_SERIAL = "1234";
+    private static final String DEVICE_NAME = "Craxiom Pixel";
+    private static final String DEVICE_TIME = "1996-12-19T16:39:57-08:00";
+    private static final double LATITUDE = 51.470334;
+    private static final double LONGITUDE = -0.486594;
+    private static final float ALTITUDE = 13.3f;
+    private static final String MISSION_ID = "Survey1 20200724-154325";
+    private static final int ACCURACY = 40;
+    private static final float HEADING = -32.7f;
+    private static final float PITCH = 0.1f;
+    private static final float ROLL = 0.2f;
+    private static final float FIELD_OF_VIEW = 10.0f;
+    private static final float RECEIVER_SENSITIVITY = 30.0f;
+    private static final float SPEED = 12.5f;
+    private static final ByteString PCAP_RECORD = ByteString.copyFrom(new byte[]{(byte) 0x14, (byte) 0x0e, (byte) 0x30, (byte) 0x00, (byte) 0xed, (byte) 0x01, (byte) 0x6b, (byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) 0x59, (byte) 0x39, (byte) 0x05, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x09, (byte) 0x00, (byte) 0x40, (byte) 0x01, (byte) 0x7c, (byte) 0x6b, (byte) 0x5f, (byte) 0x91, (byte) 0x20, (byte) 0x00, (byte) 0x00});
+
+    private SampleRecords() {
+    }
+
+    /**
+     * Returns a fully populated record for the provided messageType.
+     *
+     * @param messageType The messageType value of the record (e.g. "LteRecord").
+     * @return The sample record.
+     * @throws IllegalArgumentException If there is no sample for the provided message type.
+     */
+    public static Message forMessageType(String messageType) {
+        switch (messageType) {
+            case GSM_RECORD:
+                return gsmRecord();
+            case CDMA_RECORD:
+                return cdmaRecord();
+            case UMTS_RECORD:
+                return umtsRecord();
+            case LTE_RECORD:
+                return lteRecord();
+            case NR_RECORD:
+                return nrRecord();
+            case WIFI_BEACON_RECORD:
+                return wifiBeaconRecord();
+            case WIFI_PROBE_REQUEST_RECORD:
+                return wifiProbeRequestRecord();
+            case WIFI_DEAUTHENTICATION_RECORD:
+                return wifiDeauthenticationRecord();
+            case WIFI_OTA_RECORD:
+                return wifiOtaRecord();
+            case BLUETOOTH_RECORD:
+                return bluetoothRecord();
+            case GNSS_RECORD:
+                return gnssRecord();
+            case ENERGY_DETECTION:
+                return energyDetection();
+            case SIGNAL_DETECTION:
+                return signalDetection();
+            case DEVICE_STATUS:
+                return deviceStatus();
+            case PHONE_STATE:
+                return phoneState();
+            case GSM_SIGNALING:
+                return gsmSignaling();
+            case UMTS_NAS:
+                return umtsNas();
+            case WCDMA_RRC:
+                return wcdmaRrc();
+            case LTE_RRC:
+                return lteRrc();
+            case LTE_NAS:
+                return lteNas();
+            default:
+                throw new IllegalArgumentException("No sample record for message type " + messageType);
+        }
+    }
+
+    public static GsmRecord gsmRecord() {
+        return GsmRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(GSM_RECORD)
+                .setData(GsmRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setMcc(int32(310))
+                        .setMnc(int32(410))
+                        .setLac(int32(174))
+                        .setCi(int32(47241))
+                        .setArfcn(int32(557))
+                        .setBsic(int32(25))
+                        .setSignalStrength(float32(-73))
+                        .setTa(int32(4))
+                        .setServingCell(bool(false))
+                        .setProvider("ATT")
+                        .setSlot(int32(0)))
+                .build();
+    }
+
+    public static CdmaRecord cdmaRecord() {
+        return CdmaRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(CDMA_RECORD)
+                .setData(CdmaRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setSid(int32(139))
+                        .setNid(int32(4))
+                        .setZone(int32(232))
+                        .setBsid(int32(12731))
+                        .setChannel(int32(384))
+                        .setPnOffset(int32(136))
+                        .setSignalStrength(float32(-73))
+                        .setEcio(float32(-11.4f))
+                        .setServingCell(bool(false))
+                        .setProvider("Verizon")
+                        .setSlot(int32(0)))
+                .build();
+    }
+
+    public static UmtsRecord umtsRecord() {
+        return UmtsRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(UMTS_RECORD)
+                .setData(UmtsRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setMcc(int32(310))
+                        .setMnc(int32(410))
+                        .setLac(int32(174))
+                        .setCid(int32(47241))
+                        .setUarfcn(int32(557))
+                        .setPsc(int32(25))
+                        .setRscp(float32(-73))
+                        .setSignalStrength(float32(-73))
+                        .setEcno(float32(-11.5f))
+                        .setServingCell(bool(true))
+                        .setProvider("ATT")
+                        .setSlot(int32(0)))
+                .build();
+    }
+
+    public static LteRecord lteRecord() {
+        return LteRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(LTE_RECORD)
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setMcc(int32(311))
+                        .setMnc(int32(480))
+                        .setTac(int32(52803))
+                        .setEci(int32(52824577))
+                        .setEarfcn(int32(5230))
+                        .setPci(int32(234))
+                        .setRsrp(float32(-107))
+                        .setRsrq(float32(-11))
+                        .setTa(int32(27))
+                        .setServingCell(bool(true))
+                        .setLteBandwidth(LteBandwidth.MHZ_10)
+                        .setProvider("Verizon")
+                        .setSignalStrength(float32(-88.5f))
+                        .setCqi(int32(9))
+                        .setSlot(int32(0))
+                        .setSnr(float32(19)))
+                .build();
+    }
+
+    public static NrRecord nrRecord() {
+        return NrRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(NR_RECORD)
+                .setData(NrRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setMcc(int32(311))
+                        .setMnc(int32(480))
+                        .setTac(int32(52803))
+                        .setNci(Int64Value.newBuilder().setValue(68719476735L).build())
+                        .setNarfcn(int32(632448))
+                        .setPci(int32(234))
+                        .setSsRsrp(float32(-97))
+                        .setSsRsrq(float32(-11))
+                        .setSsSinr(float32(14.5f))
+                        .setCsiRsrp(float32(-98))
+                        .setCsiRsrq(float32(-12))
+                        .setCsiSinr(float32(13.5f))
+                        .setTa(int32(27))
+                        .setServingCell(bool(true))
+                        .setProvider("T-Mobile")
+                        .setSlot(int32(0)))
+                .build();
+    }
+
+    public static WifiBeaconRecord wifiBeaconRecord() {
+        return WifiBeaconRecord.newBuilder()
+                .setVersion("0.13.0")
+                .setMessageType(WIFI_BEACON_RECORD)
+                .setData(WifiBeaconRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setSourceAddress("68:7F:74:B0:14:98")
+                        .setDestinationAddress("68:7F:74:B0:14:22")
+                        .setBssid("68:7F:74:B0:14:98")
+                        .setBeaconInterval(int32(100))
+                        .setServiceSetType(ServiceSetType.BSS)
+                        .setSsid("My Wi-Fi Network")
+                        .setSupportedRates("1; 2; 5.5; 11; 18; 24; 36; 54")
+                        .setExtendedSupportedRates("6; 9; 12; 48")
+                        .addAllCipherSuites(Arrays.asList(CipherSuite.TKIP, CipherSuite.CCMP))
+                        .addAllAkmSuites(Collections.singletonList(AkmSuite.OPEN))
+                        .setEncryptionType(EncryptionType.WPA_WPA2)
+                        .setWps(bool(true))
+                        .setPasspoint(bool(true))
+                        .setBandwidth(WifiBandwidth.MHZ_160)
+                        .setChannel(int32(2))
+                        .setFrequencyMhz(int32(2417))
+                        .setSignalStrength(float32(-58.5f))
+                        .setSnr(float32(26.7f))
+                        .setNodeType(NodeType.AP)
+                        .setStandard(Standard.IEEE80211N))
+                .build();
+    }
+
+    public static WifiProbeRequestRecord wifiProbeRequestRecord() {
+        return WifiProbeRequestRecord.newBuilder()
+                .setVersion("0.9.0")
+                .setMessageType(WIFI_PROBE_REQUEST_RECORD)
+                .setData(WifiProbeRequestRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setSourceAddress("68:7F:74:B0:14:98")
+                        .setDestinationAddress("FF:FF:FF:FF:FF:FF")
+                        .setBssid("FF:FF:FF:FF:FF:FF")
+                        .setSsid("My Wi-Fi Network")
+                        .setChannel(int32(2))
+                        .setFrequencyMhz(int32(2417))
+                        .setSignalStrength(float32(-58.5f))
+                        .setSnr(float32(26.7f))
+                        .setNodeType(NodeType.STA)
+                        .setStandard(Standard.IEEE80211N))
+                .build();
+    }
+
+    public static WifiDeauthenticationRecord wifiDeauthenticationRecord() {
+        return WifiDeauthenticationRecord.newBuilder()
+                .setVersion("0.9.0")
+                .setMessageType(WIFI_DEAUTHENTICATION_RECORD)
+                .setData(WifiDeauthenticationRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setSourceAddress("68:7F:74:B0:14:98")
+                        .setDestinationAddress("68:7F:74:B0:14:22")
+                        .setBssid("68:7F:74:B0:14:98")
+                        .setSsid("My Wi-Fi Network")
+                        .setReason(7)
+                        .setChannel(int32(2))
+                        .setFrequencyMhz(int32(2417))
+                        .setSignalStrength(float32(-58.5f))
+                        .setSnr(float32(26.7f))
+                        .setNodeType(NodeType.AP)
+                        .setStandard(Standard.IEEE80211N))
+                .build();
+    }
+
+    public static WifiOtaRecord wifiOtaRecord() {
+        return WifiOtaRecord.newBuilder()
+                .setVersion("0.12.0")
+                .setMessageType(WIFI_OTA_RECORD)
+                .setData(WifiOtaRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setPcapRecord(PCAP_RECORD)
+                        .setFrameType(0)
+                        .setFrameSubtype(4))
+                .build();
+    }
+
+    public static BluetoothRecord bluetoothRecord() {
+        return BluetoothRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(BLUETOOTH_RECORD)
+                .setData(BluetoothRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setSourceAddress("E1:A1:19:A9:68:B0")
+                        .setDestinationAddress("56:14:62:0D:98:01")
+                        .setSignalStrength(float32(-78))
+                        .setTxPower(float32(8))
+                        .setTechnology(Technology.LE)
+                        .setSupportedTechnologies(SupportedTechnologies.DUAL)
+                        .setOtaDeviceName("846B2162E22433AFE9")
+                        .setChannel(int32(6)))
+                .build();
+    }
+
+    public static GnssRecord gnssRecord() {
+        return GnssRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(GNSS_RECORD)
+                .setData(GnssRecordData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(23)
+                        .setDeviceModel("Pixel 5")
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setConstellation(Constellation.GLONASS)
+                        .setSpaceVehicleId(UInt32Value.newBuilder().setValue(4567).build())
+                        .setCarrierFreqHz(UInt64Value.newBuilder().setValue(120_000_000).build())
+                        .setClockOffset(DoubleValue.newBuilder().setValue(0.01).build())
+                        .setUsedInSolution(bool(false))
+                        .setUndulationM(float32(2.1f))
+                        .setLatitudeStdDevM(float32(3.1f))
+                        .setLongitudeStdDevM(float32(2.2f))
+                        .setAltitudeStdDevM(float32(1.3f))
+                        .setAgcDb(float32(0.4f))
+                        .setCn0DbHz(float32(0.05f))
+                        .setHdop(float32(1.1f))
+                        .setVdop(float32(2.2f)))
+                .build();
+    }
+
+    public static EnergyDetection energyDetection() {
+        return EnergyDetection.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(ENERGY_DETECTION)
+                .setData(EnergyDetectionData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setFrequencyHz(162000000)
+                        .setBandwidthHz(int32(12500))
+                        .setSignalStrength(-73)
+                        .setSnr(float32(19.2f))
+                        .setTimeUp(DEVICE_TIME)
+                        .setDurationSec(float32(4.2f)))
+                .build();
+    }
+
+    public static SignalDetection signalDetection() {
+        return SignalDetection.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(SIGNAL_DETECTION)
+                .setData(SignalDetectionData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setGroupNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setFrequencyHz(162000000)
+                        .setBandwidthHz(int32(12500))
+                        .setSignalStrength(-73)
+                        .setSnr(float32(19.2f))
+                        .setTimeUp(DEVICE_TIME)
+                        .setDurationSec(float32(4.2f))
+                        .setModulation("4FSK")
+                        .setSignalName("DMR"))
+                .build();
+    }
+
+    public static DeviceStatus deviceStatus() {
+        return DeviceStatus.newBuilder()
+                .setVersion("0.9.0")
+                .setMessageType(DEVICE_STATUS)
+                .setData(DeviceStatusData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setDeviceModel("SM-G981U1")
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setBatteryLevelPercent(int32(38))
+                        .setError(com.craxiom.messaging.Error.newBuilder().setErrorMessage("The scan stopped unexpectedly"))
+                        .setMdmOverride(bool(true))
+                        .setAppVersion("1.20.0")
+                        .setGnssLatitude(LATITUDE)
+                        .setGnssLongitude(LONGITUDE)
+                        .setGnssAltitude(ALTITUDE)
+                        .setGnssAccuracy(ACCURACY))
+                .build();
+    }
+
+    public static PhoneState phoneState() {
+        final NetworkRegistrationInfo.Builder registrationInfo = NetworkRegistrationInfo.newBuilder()
+                .setAccessNetworkTechnology(NetworkType.LTE)
+                .setRoaming(bool(false))
+                .setRejectCause(int32(0))
+                .setCellIdentityLte(CellIdentityLte.newBuilder()
+                        .setMcc(int32(311))
+                        .setMnc(int32(480))
+                        .setTac(int32(40198))
+                        .setEci(int32(116995606))
+                        .setEarfcn(int32(66586))
+                        .setPci(int32(250)));
+
+        return PhoneState.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(PHONE_STATE)
+                .setData(PhoneStateData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setRecordNumber(1)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setSimState(SimState.READY)
+                        .setSimOperator("311480")
+                        .addNetworkRegistrationInfo(registrationInfo.clone().setDomain(Domain.CS))
+                        .addNetworkRegistrationInfo(registrationInfo.clone().setDomain(Domain.PS))
+                        .setSlot(int32(0))
+                        .setNonTerrestrialNetwork(bool(false)))
+                .build();
+    }
+
+    public static GsmSignaling gsmSignaling() {
+        return GsmSignaling.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(GSM_SIGNALING)
+                .setData(GsmSignalingData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setChannelType(GsmSignalingChannelType.BCCH)
+                        .setPcapRecord(PCAP_RECORD))
+                .build();
+    }
+
+    public static UmtsNas umtsNas() {
+        return UmtsNas.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(UMTS_NAS)
+                .setData(UmtsNasData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setPcapRecord(PCAP_RECORD))
+                .build();
+    }
+
+    public static WcdmaRrc wcdmaRrc() {
+        return WcdmaRrc.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(WCDMA_RRC)
+                .setData(WcdmaRrcData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setChannelType(WcdmaRrcChannelType.BCCH_BCH)
+                        .setPcapRecord(PCAP_RECORD))
+                .build();
+    }
+
+    public static LteRrc lteRrc() {
+        return LteRrc.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(LTE_RRC)
+                .setData(LteRrcData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setChannelType(LteRrcChannelType.BCCH_BCH)
+                        .setPcapRecord(PCAP_RECORD))
+                .build();
+    }
+
+    public static LteNas lteNas() {
+        return LteNas.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType(LTE_NAS)
+                .setData(LteNasData.newBuilder()
+                        .setDeviceSerialNumber(DEVICE_SERIAL)
+                        .setDeviceName(DEVICE_NAME)
+                        .setDeviceTime(DEVICE_TIME)
+                        .setLatitude(LATITUDE)
+                        .setLongitude(LONGITUDE)
+                        .setAltitude(ALTITUDE)
+                        .setMissionId(MISSION_ID)
+                        .setAccuracy(ACCURACY)
+                        .setHeading(HEADING)
+                        .setPitch(PITCH)
+                        .setRoll(ROLL)
+                        .setFieldOfView(FIELD_OF_VIEW)
+                        .setReceiverSensitivity(RECEIVER_SENSITIVITY)
+                        .setSpeed(SPEED)
+                        .setChannelType(LteNasChannelType.PLAIN)
+                        .setPcapRecord(PCAP_RECORD))
+                .build();
+    }
+
+    private static Int32Value int32(int value) {
+        return Int32Value.newBuilder().setValue(value).build();
+    }
+
+    private static FloatValue float32(float value) {
+        return FloatValue.newBuilder().setValue(value).build();
+    }
+
+    private static BoolValue bool(boolean value) {
+        return BoolValue.newBuilder().setValue(value).build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.craxiom.messaging.benchmark;
+
+import com.craxiom.messaging.time.Rfc3339Codec;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing the deviceTime with {@link OffsetDateTime} to parsing it with the {@link Rfc3339Codec}, for a stream
+ * of timestamps that share the date and offset like the records from one device do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampBenchmark {
+    private final String[] deviceTimes = new String[64];
+    private final Rfc3339Codec codec = new Rfc3339Codec();
+    private final StringBuilder builder = new StringBuilder(64);
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < deviceTimes.length; i++) {
+            deviceTimes[i] = String.format("2024-10-17T10:%02d:%02d.%03d-04:00", i / 60 % 60, i % 60, i * 7 % 1000);
+        }
+    }
+
+    @Benchmark
+    public long offsetDateTime() {
+        final OffsetDateTime time = OffsetDateTime.parse(next());
+        return time.toEpochSecond() * 1_000_000_000L + time.getNano();
+    }
+
+    @Benchmark
+    public long rfc3339Codec() {
+        return codec.parseEpochNanos(next());
+    }
+
+    @Benchmark
+    public int format() {
+        builder.setLength(0);
+        codec.formatTo(builder, 1_729_173_600_123_000_000L + index++ * 1_000_000L, -4 * 3600);
+        return builder.length();
+    }
+
+    private String next() {
+        return deviceTimes[index++ & (deviceTimes.length - 1)];
+    }
+}
@@ -0,0 +1,114 @@
+package com.craxiom.messaging;
+
+import com.craxiom.messaging.json.JsonCodec;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * One of the survey record messages, along with everything needed to handle it without reflection: its protobuf
+ * parser, its generated JSON codec, and an accessor for its data message. See {@link MessageTypeRegistry} for looking
+ * them up by the messageType of a record.
+ *
+ * @param <T> The record message, e.g. {@link LteRecord}.
+ * @param <D> The data message of the record, e.g. {@link LteRecordData}.
+ */
+public final class MessageType<T extends Message, D extends Message & SurveyRecordHeader> {
+    private final String messageType;
+    private final byte[] messageTypeBytes;
+    private final String channel;
+    private final T defaultInstance;
+    private final Parser<T> parser;
+    private final JsonCodec<T> jsonCodec;
+    private final Function<T, D> dataAccessor;
+
+    MessageType(String channel, T defaultInstance, Parser<T> parser, JsonCodec<T> jsonCodec,
+                Function<T, D> dataAccessor) {
+        this.messageType = defaultInstance.getDescriptorForType().getName();
+        this.messageTypeBytes = messageType.getBytes(StandardCharsets.UTF_8);
+        this.channel = channel;
+        this.defaultInstance = defaultInstance;
+        this.parser = parser;
+        this.jsonCodec = jsonCodec;
+        this.dataAccessor = dataAccessor;
+    }
+
+    /**
+     * @return The messageType value of the records, which is also the name of the record message (e.g. "LteRecord").
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return The AsyncAPI channel that the records are published on (e.g. "lte_message"). Some channels carry more than
+     * one message type, such as "cellular_ota_message".
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    public T getDefaultInstance() {
+        return defaultInstance;
+    }
+
+    public Parser<T> getParser() {
+        return parser;
+    }
+
+    public JsonCodec<T> getJsonCodec() {
+        return jsonCodec;
+    }
+
+    /**
+     * @return The data message of the record, which holds the common record header fields and the measurements.
+     * @throws ClassCastException If the record is not of this message type.
+     */
+    public D getData(Message record) {
+        return dataAccessor.apply(cast(record));
+    }
+
+    /**
+     * @return True if the record is of this message type.
+     */
+    public boolean isInstance(Message record) {
+        return record.getClass() == defaultInstance.getClass();
+    }
+
+    @Override
+    public String toString() {
+        return messageType;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Message record) {
+        if (!isInstance(record)) {
+            throw new ClassCastException(record.getClass().getName() + " is not a " + messageType);
+        }
+        return (T) record;
+    }
+
+    /**
+     * @return True if the UTF-8 bytes are the messageType of this message type.
+     */
+    boolean matches(byte[] bytes, int offset, int length) {
+        if (length != messageTypeBytes.length) return false;
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != messageTypeBytes[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return True if the characters are the messageType of this message type.
+     */
+    boolean matches(CharSequence chars, int offset, int length) {
+        if (length != messageType.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (chars.charAt(offset + i) != messageType.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,279 @@
+package com.craxiom.messaging;
+
+import com.craxiom.messaging.json.*;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+import java.util.*;
+
+/**
+ * Finds the {@link MessageType} of a survey record from its messageType or from the AsyncAPI channel it was published
+ * on, so that consumers of mixed feeds can choose the protobuf parser or JSON codec without chains of string
+ * comparisons or reflection.
+ * <p>
+ * {@link #peek(byte[])} reads the messageType straight from the protobuf wire format, skipping over the data message
+ * without parsing it, and {@link #peekJson(CharSequence, int, int)} does the same for the JSON form. Neither allocates.
+ * <pre>{@code
+ * final MessageType<?, ?> type = MessageTypeRegistry.peek(payload);
+ * if (type == MessageTypeRegistry.LTE_RECORD) {
+ *     final LteRecord record = MessageTypeRegistry.LTE_RECORD.getParser().parseFrom(payload);
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class MessageTypeRegistry {
+    public static final MessageType<GsmRecord, GsmRecordData> GSM_RECORD = new MessageType<>("gsm_message",
+            GsmRecord.getDefaultInstance(), GsmRecord.parser(), GsmRecordJsonCodec.INSTANCE, GsmRecord::getData);
+    public static final MessageType<CdmaRecord, CdmaRecordData> CDMA_RECORD = new MessageType<>("cdma_message",
+            CdmaRecord.getDefaultInstance(), CdmaRecord.parser(), CdmaRecordJsonCodec.INSTANCE, CdmaRecord::getData);
+    public static final MessageType<UmtsRecord, UmtsRecordData> UMTS_RECORD = new MessageType<>("umts_message",
+            UmtsRecord.getDefaultInstance(), UmtsRecord.parser(), UmtsRecordJsonCodec.INSTANCE, UmtsRecord::getData);
+    public static final MessageType<LteRecord, LteRecordData> LTE_RECORD = new MessageType<>("lte_message",
+            LteRecord.getDefaultInstance(), LteRecord.parser(), LteRecordJsonCodec.INSTANCE, LteRecord::getData);
+    public static final MessageType<NrRecord, NrRecordData> NR_RECORD = new MessageType<>("nr_message",
+            NrRecord.getDefaultInstance(), NrRecord.parser(), NrRecordJsonCodec.INSTANCE, NrRecord::getData);
+    public static final MessageType<WifiBeaconRecord, WifiBeaconRecordData> WIFI_BEACON_RECORD = new MessageType<>(
+            "80211_beacon_message", WifiBeaconRecord.getDefaultInstance(), WifiBeaconRecord.parser(),
+            WifiBeaconRecordJsonCodec.INSTANCE, WifiBeaconRecord::getData);
+    public static final MessageType<WifiProbeRequestRecord, WifiProbeRequestRecordData> WIFI_PROBE_REQUEST_RECORD =
+            new MessageType<>("80211_probe_request_message", WifiProbeRequestRecord.getDefaultInstance(),
+                    WifiProbeRequestRecord.parser(), WifiProbeRequestRecordJsonCodec.INSTANCE,
+                    WifiProbeRequestRecord::getData);
+    public static final MessageType<WifiDeauthenticationRecord, WifiDeauthenticationRecordData>
+            WIFI_DEAUTHENTICATION_RECORD = new MessageType<>("80211_deauthentication_message", WifiDeauthenticationRecord.getDefaultInstance(),
+                    WifiDeauthenticationRecord.parser(), WifiDeauthenticationRecordJsonCodec.INSTANCE,
+                    WifiDeauthenticationRecord::getData);
+    public static final MessageType<WifiOtaRecord, WifiOtaRecordData> WIFI_OTA_RECORD = new MessageType<>(
+            "80211_ota_message", WifiOtaRecord.getDefaultInstance(), WifiOtaRecord.parser(),
+            WifiOtaRecordJsonCodec.INSTANCE, WifiOtaRecord::getData);
+    public static final MessageType<BluetoothRecord, BluetoothRecordData> BLUETOOTH_RECORD = new MessageType<>(
+            "bluetooth_message", BluetoothRecord.getDefaultInstance(), BluetoothRecord.parser(),
+            BluetoothRecordJsonCodec.INSTANCE, BluetoothRecord::getData);
+    public static final MessageType<GnssRecord, GnssRecordData> GNSS_RECORD = new MessageType<>("gnss_message",
+            GnssRecord.getDefaultInstance(), GnssRecord.parser(), GnssRecordJsonCodec.INSTANCE, GnssRecord::getData);
+    public static final MessageType<EnergyDetection, EnergyDetectionData> ENERGY_DETECTION = new MessageType<>(
+            "energy_detection_message", EnergyDetection.getDefaultInstance(), EnergyDetection.parser(),
+            EnergyDetectionJsonCodec.INSTANCE, EnergyDetection::getData);
+    public static final MessageType<SignalDetection, SignalDetectionData> SIGNAL_DETECTION = new MessageType<>(
+            "signal_detection_message", SignalDetection.getDefaultInstance(), SignalDetection.parser(),
+            SignalDetectionJsonCodec.INSTANCE, SignalDetection::getData);
+    public static final MessageType<DeviceStatus, DeviceStatusData> DEVICE_STATUS = new MessageType<>(
+            "device_status_message", DeviceStatus.getDefaultInstance(), DeviceStatus.parser(),
+            DeviceStatusJsonCodec.INSTANCE, DeviceStatus::getData);
+    public static final MessageType<PhoneState, PhoneStateData> PHONE_STATE = new MessageType<>(
+            "device_status_message", PhoneState.getDefaultInstance(), PhoneState.parser(),
+            PhoneStateJsonCodec.INSTANCE, PhoneState::getData);
+    public static final MessageType<GsmSignaling, GsmSignalingData> GSM_SIGNALING = new MessageType<>(
+            "cellular_ota_message", GsmSignaling.getDefaultInstance(), GsmSignaling.parser(),
+            GsmSignalingJsonCodec.INSTANCE, GsmSignaling::getData);
+    public static final MessageType<UmtsNas, UmtsNasData> UMTS_NAS = new MessageType<>("cellular_ota_message",
+            UmtsNas.getDefaultInstance(), UmtsNas.parser(), UmtsNasJsonCodec.INSTANCE, UmtsNas::getData);
+    public static final MessageType<WcdmaRrc, WcdmaRrcData> WCDMA_RRC = new MessageType<>("cellular_ota_message",
+            WcdmaRrc.getDefaultInstance(), WcdmaRrc.parser(), WcdmaRrcJsonCodec.INSTANCE, WcdmaRrc::getData);
+    public static final MessageType<LteRrc, LteRrcData> LTE_RRC = new MessageType<>("cellular_ota_message",
+            LteRrc.getDefaultInstance(), LteRrc.parser(), LteRrcJsonCodec.INSTANCE, LteRrc::getData);
+    public static final MessageType<LteNas, LteNasData> LTE_NAS = new MessageType<>("cellular_ota_message",
+            LteNas.getDefaultInstance(), LteNas.parser(), LteNasJsonCodec.INSTANCE, LteNas::getData);
+
+    private static final int MESSAGE_TYPE_FIELD_NUMBER = 2;
+    private static final String MESSAGE_TYPE_KEY = "\"messageType\"";
+
+    private static final List<MessageType<?, ?>> MESSAGE_TYPES = Collections.unmodifiableList(Arrays.asList(
+            GSM_RECORD, CDMA_RECORD, UMTS_RECORD, LTE_RECORD, NR_RECORD, WIFI_BEACON_RECORD, WIFI_PROBE_REQUEST_RECORD,
+            WIFI_DEAUTHENTICATION_RECORD, WIFI_OTA_RECORD, BLUETOOTH_RECORD, GNSS_RECORD, ENERGY_DETECTION,
+            SIGNAL_DETECTION, DEVICE_STATUS, PHONE_STATE, GSM_SIGNALING, UMTS_NAS, WCDMA_RRC, LTE_RRC, LTE_NAS));
+    private static final MessageType<?, ?>[] MESSAGE_TYPE_ARRAY = MESSAGE_TYPES.toArray(new MessageType<?, ?>[0]);
+    private static final Map<String, MessageType<?, ?>> BY_MESSAGE_TYPE = new HashMap<>();
+    private static final Map<Class<?>, MessageType<?, ?>> BY_CLASS = new HashMap<>();
+    private static final Map<String, List<MessageType<?, ?>>> BY_CHANNEL = new HashMap<>();
+
+    static {
+        for (MessageType<?, ?> type : MESSAGE_TYPES) {
+            BY_MESSAGE_TYPE.put(type.getMessageType(), type);
+            BY_CLASS.put(type.getDefaultInstance().getClass(), type);
+            BY_CHANNEL.computeIfAbsent(type.getChannel(), channel -> new ArrayList<>()).add(type);
+        }
+        BY_CHANNEL.replaceAll((channel, types) -> Collections.unmodifiableList(types));
+    }
+
+    private MessageTypeRegistry() {
+    }
+
+    /**
+     * @return All of the survey record message types.
+     */
+    public static List<MessageType<?, ?>> getMessageTypes() {
+        return MESSAGE_TYPES;
+    }
+
+    /**
+     * @return The message type with the messageType value, e.g. "LteRecord", or null if there is none.
+     */
+    public static MessageType<?, ?> forMessageType(String messageType) {
+        return BY_MESSAGE_TYPE.get(messageType);
+    }
+
+    /**
+     * @return The message type of the record, or null if it is not a survey record.
+     */
+    public static MessageType<?, ?> forRecord(Message record) {
+        return BY_CLASS.get(record.getClass());
+    }
+
+    /**
+     * @return The message types published on the AsyncAPI channel, e.g. "lte_message", or an empty list if the channel
+     * is not known.
+     */
+    public static List<MessageType<?, ?>> forChannel(String channel) {
+        final List<MessageType<?, ?>> types = BY_CHANNEL.get(channel);
+        return types == null ? Collections.emptyList() : types;
+    }
+
+    /**
+     * Finds the message type of a serialized survey record by reading its messageType field (field 2) from the wire
+     * format. The other fields, including the data message, are skipped over without being parsed, and since the
+     * messageType is written before the data, usually only a few dozen bytes are read.
+     *
+     * @return The message type of the record, or null if the bytes are not a survey record with a known messageType.
+     */
+    public static MessageType<?, ?> peek(byte[] bytes) {
+        return peek(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Finds the message type of a serialized survey record in part of an array, see {@link #peek(byte[])}.
+     */
+    public static MessageType<?, ?> peek(byte[] bytes, int offset, int length) {
+        final int end = offset + length;
+        int position = offset;
+        while (position < end) {
+            final int tagEnd = varintEnd(bytes, position, end);
+            if (tagEnd == -1) return null;
+            final long tag = readVarint(bytes, position, tagEnd);
+            position = tagEnd;
+
+            switch ((int) tag & 7) {
+                case 0:
+                    position = varintEnd(bytes, position, end);
+                    if (position == -1) return null;
+                    break;
+                case 1:
+                    position += 8;
+                    break;
+                case 2:
+                    final int lengthEnd = varintEnd(bytes, position, end);
+                    if (lengthEnd == -1) return null;
+                    final long valueLength = readVarint(bytes, position, lengthEnd);
+                    if (valueLength < 0 || valueLength > end - lengthEnd) return null;
+                    if (tag >>> 3 == MESSAGE_TYPE_FIELD_NUMBER) {
+                        return find(bytes, lengthEnd, (int) valueLength);
+                    }
+                    position = lengthEnd + (int) valueLength;
+                    break;
+                case 5:
+                    position += 4;
+                    break;
+                default:
+                    // Groups are not used by any of the records
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the message type of a survey record in JSON form from its messageType field, without parsing the rest of
+     * the JSON. The messageType value must not contain escape sequences, which none of the message types need.
+     *
+     * @param json  The characters that contain the JSON object, e.g. a String or a line of a larger file.
+     * @param start The index of the first character of the JSON object.
+     * @param end   The index after the last character of the JSON object.
+     * @return The message type of the record, or null if the JSON has no known messageType.
+     */
+    public static MessageType<?, ?> peekJson(CharSequence json, int start, int end) {
+        final int key = indexOf(json, MESSAGE_TYPE_KEY, start, end);
+        if (key == -1) return null;
+        int i = skipWhitespace(json, key + MESSAGE_TYPE_KEY.length(), end);
+        if (i == end || json.charAt(i) != ':') return null;
+        i = skipWhitespace(json, i + 1, end);
+        if (i == end || json.charAt(i) != '"') return null;
+        final int valueStart = i + 1;
+        int valueEnd = valueStart;
+        while (valueEnd < end && json.charAt(valueEnd) != '"') valueEnd++;
+        if (valueEnd == end) return null;
+
+        for (MessageType<?, ?> type : MESSAGE_TYPE_ARRAY) {
+            if (type.matches(json, valueStart, valueEnd - valueStart)) return type;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a serialized survey record of any message type.
+     *
+     * @throws InvalidProtocolBufferException If the bytes are not a survey record with a known messageType.
+     */
+    public static Message parse(byte[] bytes) throws InvalidProtocolBufferException {
+        final MessageType<?, ?> type = peek(bytes);
+        if (type == null) throw new InvalidProtocolBufferException("The record does not have a known messageType");
+        return type.getParser().parseFrom(bytes);
+    }
+
+    /**
+     * Parses a survey record of any message type from JSON.
+     *
+     * @throws InvalidProtocolBufferException If the JSON is not a survey record with a known messageType.
+     */
+    public static Message parseJson(String json) throws InvalidProtocolBufferException {
+        final MessageType<?, ?> type = peekJson(json, 0, json.length());
+        if (type == null) throw new InvalidProtocolBufferException("The record does not have a known messageType");
+        return type.getJsonCodec().fromJson(json);
+    }
+
+    private static MessageType<?, ?> find(byte[] bytes, int offset, int length) {
+        for (MessageType<?, ?> type : MESSAGE_TYPE_ARRAY) {
+            if (type.matches(bytes, offset, length)) return type;
+        }
+        return null;
+    }
+
+    /**
+     * @return The index after the varint that starts at the position, or -1 if it does not end before the end.
+     */
+    private static int varintEnd(byte[] bytes, int position, int end) {
+        final int limit = Math.min(end, position + 10);
+        for (int i = position; i < limit; i++) {
+            if (bytes[i] >= 0) return i + 1;
+        }
+        return -1;
+    }
+
+    private static long readVarint(byte[] bytes, int position, int varintEnd) {
+        long value = 0;
+        for (int i = position, shift = 0; i < varintEnd; i++, shift += 7) {
+            value |= (long) (bytes[i] & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private static int indexOf(CharSequence text, String target, int start, int end) {
+        final int last = end - target.length();
+        final char first = target.charAt(0);
+        for (int i = start; i <= last; i++) {
+            if (text.charAt(i) != first) continue;
+            int matched = 1;
+            while (matched < target.length() && text.charAt(i + matched) == target.charAt(matched)) matched++;
+            if (matched == target.length()) return i;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\r'
+                || text.charAt(i) == '\n')) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,63 @@
+package com.craxiom.messaging;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Puts back the -0.0 float and double values that are lost when a message is copied with {@code toBuilder()}.
+ * <p>
+ * The generated {@code mergeFrom} only copies a float or double field without presence when it is {@code != 0}, which
+ * is false for -0.0, so the copy ends up with 0.0 in its place. The nested messages of the original are shared by the
+ * copy rather than merged into it, so only the message's own fields can lose a value. Those fields are resolved once
+ * per message type, which leaves a few {@code getField} calls per copy.
+ */
+public final class NegativeZeros {
+    private static final ConcurrentMap<Descriptor, FieldDescriptor[]> FIELDS = new ConcurrentHashMap<>();
+
+    private NegativeZeros() {
+    }
+
+    /**
+     * Sets each -0.0 value of the original message on the builder of its copy.
+     *
+     * @param original The message that was copied.
+     * @param copy     The builder created with {@code original.toBuilder()}.
+     */
+    public static void restore(Message original, Message.Builder copy) {
+        for (FieldDescriptor field : getFields(original.getDescriptorForType())) {
+            final Object value = original.getField(field);
+            if (isNegativeZero(value)) copy.setField(field, value);
+        }
+    }
+
+    private static boolean isNegativeZero(Object value) {
+        if (value instanceof Double) return Double.doubleToRawLongBits((Double) value) == Long.MIN_VALUE;
+        return Float.floatToRawIntBits((Float) value) == Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return The singular float and double fields without presence of the type.
+     */
+    private static FieldDescriptor[] getFields(Descriptor descriptor) {
+        final FieldDescriptor[] fields = FIELDS.get(descriptor);
+        if (fields != null) return fields;
+
+        final List<FieldDescriptor> floatingPoint = new ArrayList<>();
+        for (FieldDescriptor field : descriptor.getFields()) {
+            final FieldDescriptor.JavaType type = field.getJavaType();
+            if (!field.isRepeated() && !field.hasPresence()
+                    && (type == FieldDescriptor.JavaType.FLOAT || type == FieldDescriptor.JavaType.DOUBLE)) {
+                floatingPoint.add(field);
+            }
+        }
+        final FieldDescriptor[] created = floatingPoint.toArray(new FieldDescriptor[0]);
+        final FieldDescriptor[] existing = FIELDS.putIfAbsent(descriptor, created);
+        return existing == null ? created : existing;
+    }
+}
@@ -0,0 +1,84 @@
+package com.craxiom.messaging.arrow;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A growable little endian buffer of one Arrow array, such as the values of an int column or the validity bitmap of a
+ * nullable column. The buffers are reused for every batch, so a writer stops allocating once the buffers have grown to
+ * the size of a batch.
+ */
+final class ArrowBuffer {
+    private ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    void putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void putFloat(float value) {
+        ensure(4);
+        buffer.putFloat(value);
+    }
+
+    void putDouble(double value) {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    void put(byte[] bytes) {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    void put(ByteString bytes) {
+        ensure(bytes.size());
+        bytes.copyTo(buffer);
+    }
+
+    /**
+     * Sets or clears a bit of a bitmap, in the least significant bit first order of Arrow. Bits must be appended in
+     * order, starting at zero after each {@link #clear()}.
+     */
+    void putBit(int index, boolean value) {
+        final int byteIndex = index >>> 3;
+        if (byteIndex == buffer.position()) {
+            ensure(1);
+            buffer.put((byte) 0);
+        }
+        if (value) buffer.put(byteIndex, (byte) (buffer.get(byteIndex) | 1 << (index & 7)));
+    }
+
+    /**
+     * @return The backing array, which holds the {@link #size()} bytes of the buffer at its start.
+     */
+    byte[] array() {
+        return buffer.array();
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    void clear() {
+        Arrays.fill(buffer.array(), 0, buffer.position(), (byte) 0);
+        buffer.clear();
+    }
+
+    private void ensure(int size) {
+        if (buffer.remaining() >= size) return;
+        final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,724 @@
+package com.craxiom.messaging.arrow;
+
+import com.craxiom.messaging.arrow.FieldAccessors.BooleanAccessor;
+import com.craxiom.messaging.arrow.FieldAccessors.DoubleAccessor;
+import com.craxiom.messaging.arrow.FieldAccessors.LongAccessor;
+import com.craxiom.messaging.arrow.FieldAccessors.ObjectAccessor;
+import com.craxiom.messaging.arrow.FlatBufferEncoder.Table;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Internal;
+import com.google.protobuf.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * The rows of one field of a batch, held in the Arrow memory layout, along with the Arrow field that describes them.
+ * <p>
+ * The columns are created from the protobuf descriptor of the message: the google.protobuf wrapper types become
+ * nullable columns of the wrapped type, enums become dictionary encoded string columns whose dictionary holds every
+ * value name of the enum (and an UNKNOWN_&lt;number&gt; entry for each number that is not in the enum), repeated
+ * fields become lists, and other messages become structs. A field with presence (a wrapper, a message, or a oneof
+ * member) is null when it is not set.
+ * <p>
+ * The values are read from the generated messages with the typed getters of their fields (see {@link FieldAccessors}),
+ * so a row is added without boxing its values.
+ */
+abstract class ArrowColumn {
+    // The type ids of the Type union in the Arrow Schema.fbs
+    static final int TYPE_INT = 2;
+    static final int TYPE_FLOATING_POINT = 3;
+    static final int TYPE_BINARY = 4;
+    static final int TYPE_UTF8 = 5;
+    static final int TYPE_BOOL = 6;
+    static final int TYPE_LIST = 12;
+    static final int TYPE_STRUCT = 13;
+
+    private static final int PRECISION_SINGLE = 1;
+    private static final int PRECISION_DOUBLE = 2;
+
+    private final String name;
+    private final boolean nullable;
+    private final ArrowBuffer validity = new ArrowBuffer();
+    private Predicate<Object> presence;
+    private int length = 0;
+    private int nullCount = 0;
+
+    ArrowColumn(String name, boolean nullable) {
+        this.name = name;
+        this.nullable = nullable;
+    }
+
+    /**
+     * Creates the column for a field of a message.
+     *
+     * @param type          The generated class of the message.
+     * @param dictionaryIds The next dictionary id, which is incremented for each enum column.
+     */
+    static ArrowColumn forField(FieldDescriptor field, Class<?> type, int[] dictionaryIds) {
+        if (field.isRepeated()) {
+            return new ListColumn(field.getName(), FieldAccessors.count(type, field),
+                    forValue(field, type, "item", false, dictionaryIds));
+        }
+        final ArrowColumn column = forValue(field, type, field.getName(), field.hasPresence(), dictionaryIds);
+        if (field.hasPresence()) column.presence = FieldAccessors.has(type, field);
+        return column;
+    }
+
+    private static ArrowColumn forValue(FieldDescriptor field, Class<?> type, String name, boolean nullable,
+                                        int[] dictionaryIds) {
+        final FieldDescriptor wrappedValue = FieldAccessors.wrappedValue(field);
+        final FieldDescriptor value = wrappedValue == null ? field : wrappedValue;
+        nullable |= wrappedValue != null;
+        switch (value.getType()) {
+            case MESSAGE:
+            case GROUP:
+                return new StructColumn(name, nullable, FieldAccessors.messageClass(type, field),
+                        FieldAccessors.messages(type, field), dictionaryIds);
+            case ENUM:
+                return new DictionaryColumn(name, value.getEnumType(), dictionaryIds[0]++,
+                        FieldAccessors.longs(type, field));
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return new IntColumn(name, nullable, 32, true, FieldAccessors.longs(type, field));
+            case UINT32:
+            case FIXED32:
+                return new IntColumn(name, nullable, 32, false, FieldAccessors.longs(type, field));
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return new IntColumn(name, nullable, 64, true, FieldAccessors.longs(type, field));
+            case UINT64:
+            case FIXED64:
+                return new IntColumn(name, nullable, 64, false, FieldAccessors.longs(type, field));
+            case FLOAT:
+                return new FloatingPointColumn(name, nullable, PRECISION_SINGLE, FieldAccessors.doubles(type, field));
+            case DOUBLE:
+                return new FloatingPointColumn(name, nullable, PRECISION_DOUBLE, FieldAccessors.doubles(type, field));
+            case BOOL:
+                return new BoolColumn(name, nullable, FieldAccessors.booleans(type, field));
+            case STRING:
+                return new BinaryColumn(name, nullable, true, FieldAccessors.byteStrings(type, field));
+            default:
+                return new BinaryColumn(name, nullable, false, FieldAccessors.byteStrings(type, field));
+        }
+    }
+
+    /**
+     * Adds the row of a message, which is null if the field has presence and is not set.
+     *
+     * @param message The message that holds the field of this column, or the message itself for the root column.
+     * @param index   The element of a repeated field, which is ignored for a singular one.
+     */
+    final void append(Object message, int index) {
+        final boolean valid = presence == null || presence.test(message);
+        if (valid) {
+            appendValue(message, index);
+        } else {
+            appendNull();
+        }
+        appendValidity(valid);
+    }
+
+    /**
+     * Sets the validity bit of the row that has just been added.
+     */
+    final void appendValidity(boolean valid) {
+        if (!valid) nullCount++;
+        validity.putBit(length++, valid);
+    }
+
+    final int length() {
+        return length;
+    }
+
+    /**
+     * Adds the field node of this column and its children, in the depth first order of the record batch.
+     */
+    final void collectNodes(List<long[]> nodes) {
+        nodes.add(new long[]{length, nullCount});
+        for (ArrowColumn child : children()) {
+            child.collectNodes(nodes);
+        }
+    }
+
+    /**
+     * Adds the buffers of this column and its children, in the depth first order of the record batch. A null buffer is
+     * an empty one, which is what the validity bitmap of a column without nulls is.
+     */
+    final void collectBuffers(List<ArrowBuffer> buffers) {
+        buffers.add(nullCount == 0 ? null : validity);
+        collectValueBuffers(buffers);
+        for (ArrowColumn child : children()) {
+            child.collectBuffers(buffers);
+        }
+    }
+
+    /**
+     * Adds the dictionary columns of this column and its children, in the order of their ids.
+     */
+    final void collectDictionaries(List<DictionaryColumn> dictionaries) {
+        if (this instanceof DictionaryColumn) dictionaries.add((DictionaryColumn) this);
+        for (ArrowColumn child : children()) {
+            child.collectDictionaries(dictionaries);
+        }
+    }
+
+    /**
+     * @return The approximate number of bytes buffered by this column and its children.
+     */
+    final long sizeInBytes() {
+        long size = validity.size() + valueSizeInBytes();
+        for (ArrowColumn child : children()) {
+            size += child.sizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Removes every row, keeping the buffers for the next batch.
+     */
+    void clear() {
+        length = 0;
+        nullCount = 0;
+        validity.clear();
+        for (ArrowColumn child : children()) {
+            child.clear();
+        }
+    }
+
+    /**
+     * @return The Arrow Field table of this column.
+     */
+    final Table field() {
+        final List<Table> childFields = new ArrayList<>();
+        for (ArrowColumn child : children()) {
+            childFields.add(child.field());
+        }
+        final Table field = new Table()
+                .addObject(0, FlatBufferEncoder.string(name))
+                .addBoolean(1, nullable)
+                .addByte(2, typeId())
+                .addObject(3, type())
+                .addObject(5, FlatBufferEncoder.tables(childFields));
+        final Table dictionary = dictionaryEncoding();
+        if (dictionary != null) field.addObject(4, dictionary);
+        return field;
+    }
+
+    /**
+     * Adds the value of the field, which is set.
+     *
+     * @see #append(Object, int)
+     */
+    abstract void appendValue(Object message, int index);
+
+    /**
+     * Adds the placeholder value of a null row.
+     */
+    abstract void appendNull();
+
+    abstract void collectValueBuffers(List<ArrowBuffer> buffers);
+
+    abstract long valueSizeInBytes();
+
+    abstract int typeId();
+
+    abstract Table type();
+
+    List<ArrowColumn> children() {
+        return Collections.emptyList();
+    }
+
+    Table dictionaryEncoding() {
+        return null;
+    }
+
+    static final class IntColumn extends ArrowColumn {
+        private final ArrowBuffer values = new ArrowBuffer();
+        private final int bitWidth;
+        private final boolean signed;
+        private final LongAccessor accessor;
+
+        IntColumn(String name, boolean nullable, int bitWidth, boolean signed, LongAccessor accessor) {
+            super(name, nullable);
+            this.bitWidth = bitWidth;
+            this.signed = signed;
+            this.accessor = accessor;
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            // The unsigned protobuf types are held in the signed Java types with the same bits
+            final long value = accessor.get(message, index);
+            if (bitWidth == 32) {
+                values.putInt((int) value);
+            } else {
+                values.putLong(value);
+            }
+        }
+
+        @Override
+        void appendNull() {
+            if (bitWidth == 32) {
+                values.putInt(0);
+            } else {
+                values.putLong(0);
+            }
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+            buffers.add(values);
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return values.size();
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            values.clear();
+        }
+
+        @Override
+        int typeId() {
+            return TYPE_INT;
+        }
+
+        @Override
+        Table type() {
+            return new Table().addInt(0, bitWidth).addBoolean(1, signed);
+        }
+    }
+
+    static final class FloatingPointColumn extends ArrowColumn {
+        private final ArrowBuffer values = new ArrowBuffer();
+        private final int precision;
+        private final DoubleAccessor accessor;
+
+        FloatingPointColumn(String name, boolean nullable, int precision, DoubleAccessor accessor) {
+            super(name, nullable);
+            this.precision = precision;
+            this.accessor = accessor;
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            final double value = accessor.get(message, index);
+            if (precision == PRECISION_SINGLE) {
+                values.putFloat((float) value);
+            } else {
+                values.putDouble(value);
+            }
+        }
+
+        @Override
+        void appendNull() {
+            if (precision == PRECISION_SINGLE) {
+                values.putFloat(0);
+            } else {
+                values.putDouble(0);
+            }
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+            buffers.add(values);
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return values.size();
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            values.clear();
+        }
+
+        @Override
+        int typeId() {
+            return TYPE_FLOATING_POINT;
+        }
+
+        @Override
+        Table type() {
+            return new Table().addShort(0, precision);
+        }
+    }
+
+    static final class BoolColumn extends ArrowColumn {
+        private final ArrowBuffer values = new ArrowBuffer();
+
+        private final BooleanAccessor accessor;
+
+        BoolColumn(String name, boolean nullable, BooleanAccessor accessor) {
+            super(name, nullable);
+            this.accessor = accessor;
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            values.putBit(length(), accessor.get(message, index));
+        }
+
+        @Override
+        void appendNull() {
+            values.putBit(length(), false);
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+            buffers.add(values);
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return values.size();
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            values.clear();
+        }
+
+        @Override
+        int typeId() {
+            return TYPE_BOOL;
+        }
+
+        @Override
+        Table type() {
+            return new Table();
+        }
+    }
+
+    static final class BinaryColumn extends ArrowColumn {
+        private final ArrowBuffer offsets = new ArrowBuffer();
+        private final ArrowBuffer data = new ArrowBuffer();
+        private final boolean utf8;
+        private final ObjectAccessor accessor;
+
+        /**
+         * @param accessor The accessor of the field, which reads a string as its UTF-8 bytes, or null for the entries
+         *                 of a dictionary.
+         */
+        BinaryColumn(String name, boolean nullable, boolean utf8, ObjectAccessor accessor) {
+            super(name, nullable);
+            this.utf8 = utf8;
+            this.accessor = accessor;
+            offsets.putInt(0);
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            data.put((ByteString) accessor.get(message, index));
+            offsets.putInt(data.size());
+        }
+
+        /**
+         * Adds an entry of a dictionary.
+         */
+        void appendEntry(String value) {
+            data.put(value.getBytes(StandardCharsets.UTF_8));
+            offsets.putInt(data.size());
+            appendValidity(true);
+        }
+
+        @Override
+        void appendNull() {
+            offsets.putInt(data.size());
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+            buffers.add(offsets);
+            buffers.add(data);
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return offsets.size() + data.size();
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            offsets.clear();
+            data.clear();
+            offsets.putInt(0);
+        }
+
+        @Override
+        int typeId() {
+            return utf8 ? TYPE_UTF8 : TYPE_BINARY;
+        }
+
+        @Override
+        Table type() {
+            return new Table();
+        }
+    }
+
+    /**
+     * An enum column, stored as int32 indexes into a dictionary of the enum value names.
+     * <p>
+     * A number that is not in the enum, such as a value added to the schema after this library was built, gets an
+     * UNKNOWN_&lt;number&gt; entry at the end of the dictionary the first time it is seen, which is written as a delta
+     * dictionary batch before the record batch that uses it.
+     * <p>
+     * The index of each number below {@link #MAX_DENSE_NUMBER} is looked up in an array, and only the other numbers,
+     * which enums rarely use, go through a map.
+     */
+    static final class DictionaryColumn extends ArrowColumn {
+        private static final int MAX_DENSE_NUMBER = 1024;
+
+        private final ArrowBuffer indexes = new ArrowBuffer();
+        private final Map<Integer, Integer> sparseIndexes = new HashMap<>();
+        private final BinaryColumn dictionary;
+        private final long id;
+        private final LongAccessor accessor;
+        private int[] denseIndexes = new int[0];
+        private int entryCount = 0;
+
+        DictionaryColumn(String name, EnumDescriptor enumType, long id, LongAccessor accessor) {
+            super(name, true);
+            this.id = id;
+            this.accessor = accessor;
+            this.dictionary = new BinaryColumn(name, false, true, null);
+            for (EnumValueDescriptor value : enumType.getValues()) {
+                // Aliases share a number, and the first name is the canonical one
+                if (indexOf(value.getNumber()) < 0) addEntry(value.getNumber(), value.getName());
+            }
+        }
+
+        long getId() {
+            return id;
+        }
+
+        /**
+         * @return The column of the dictionary entries that have not been written yet: all of the enum value names at
+         * first, and then the entries for the unknown numbers. It is cleared once it has been written.
+         */
+        BinaryColumn getDictionary() {
+            return dictionary;
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            final int number = (int) accessor.get(message, index);
+            int entry = indexOf(number);
+            if (entry < 0) entry = addEntry(number, "UNKNOWN_" + number);
+            indexes.putInt(entry);
+        }
+
+        @Override
+        void appendNull() {
+            indexes.putInt(0);
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+            buffers.add(indexes);
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return indexes.size();
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            indexes.clear();
+        }
+
+        @Override
+        int typeId() {
+            return TYPE_UTF8;
+        }
+
+        @Override
+        Table type() {
+            return new Table();
+        }
+
+        @Override
+        Table dictionaryEncoding() {
+            return new Table()
+                    .addLong(0, id)
+                    .addObject(1, new Table().addInt(0, 32).addBoolean(1, true))
+                    .addBoolean(2, false);
+        }
+
+        /**
+         * @return The index of the number's dictionary entry, or -1 if it has none.
+         */
+        private int indexOf(int number) {
+            if (number >= 0 && number < MAX_DENSE_NUMBER) {
+                return number < denseIndexes.length ? denseIndexes[number] : -1;
+            }
+            final Integer entry = sparseIndexes.get(number);
+            return entry == null ? -1 : entry;
+        }
+
+        /**
+         * @return The index of the new entry.
+         */
+        private int addEntry(int number, String name) {
+            final int entry = entryCount++;
+            if (number >= 0 && number < MAX_DENSE_NUMBER) {
+                if (number >= denseIndexes.length) {
+                    final int length = denseIndexes.length;
+                    final int grown = Math.min(Math.max(length * 2, number + 1), MAX_DENSE_NUMBER);
+                    denseIndexes = Arrays.copyOf(denseIndexes, grown);
+                    Arrays.fill(denseIndexes, length, grown, -1);
+                }
+                denseIndexes[number] = entry;
+            } else {
+                sparseIndexes.put(number, entry);
+            }
+            dictionary.appendEntry(name);
+            return entry;
+        }
+    }
+
+    static final class ListColumn extends ArrowColumn {
+        private final ArrowBuffer offsets = new ArrowBuffer();
+        private final ToIntFunction<Object> count;
+        private final ArrowColumn item;
+
+        ListColumn(String name, ToIntFunction<Object> count, ArrowColumn item) {
+            super(name, false);
+            this.count = count;
+            this.item = item;
+            offsets.putInt(0);
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            final int count = this.count.applyAsInt(message);
+            for (int i = 0; i < count; i++) {
+                item.append(message, i);
+            }
+            offsets.putInt(item.length());
+        }
+
+        @Override
+        void appendNull() {
+            offsets.putInt(item.length());
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+            buffers.add(offsets);
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return offsets.size();
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            offsets.clear();
+            offsets.putInt(0);
+        }
+
+        @Override
+        List<ArrowColumn> children() {
+            return Collections.singletonList(item);
+        }
+
+        @Override
+        int typeId() {
+            return TYPE_LIST;
+        }
+
+        @Override
+        Table type() {
+            return new Table();
+        }
+    }
+
+    /**
+     * A message column with a child column per field. It is also the root of a batch, whose children are the columns
+     * of the record batch.
+     */
+    static final class StructColumn extends ArrowColumn {
+        private final Class<? extends Message> type;
+        private final ObjectAccessor accessor;
+        private final List<ArrowColumn> children = new ArrayList<>();
+        private final Message defaultInstance;
+
+        /**
+         * @param type     The generated class of the message.
+         * @param accessor The accessor of the field, or null for the root column, whose rows are the messages.
+         */
+        StructColumn(String name, boolean nullable, Class<?> type, ObjectAccessor accessor, int[] dictionaryIds) {
+            super(name, nullable);
+            this.type = type.asSubclass(Message.class);
+            this.accessor = accessor;
+            this.defaultInstance = Internal.getDefaultInstance(this.type);
+            for (FieldDescriptor field : defaultInstance.getDescriptorForType().getFields()) {
+                children.add(forField(field, type, dictionaryIds));
+            }
+        }
+
+        Class<? extends Message> getType() {
+            return type;
+        }
+
+        @Override
+        void appendValue(Object message, int index) {
+            final Object value = accessor == null ? message : accessor.get(message, index);
+            for (int i = 0; i < children.size(); i++) {
+                children.get(i).append(value, 0);
+            }
+        }
+
+        @Override
+        void appendNull() {
+            // The children of a null struct still need a row each, so they get the default values
+            for (int i = 0; i < children.size(); i++) {
+                children.get(i).append(defaultInstance, 0);
+            }
+        }
+
+        @Override
+        void collectValueBuffers(List<ArrowBuffer> buffers) {
+        }
+
+        @Override
+        long valueSizeInBytes() {
+            return 0;
+        }
+
+        @Override
+        List<ArrowColumn> children() {
+            return children;
+        }
+
+        @Override
+        int typeId() {
+            return TYPE_STRUCT;
+        }
+
+        @Override
+        Table type() {
+            return new Table();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.craxiom.messaging.arrow;
+
+import com.craxiom.messaging.MessageType;
+import com.craxiom.messaging.MessageTypeRegistry;
+import com.craxiom.messaging.grpc.server.RecordSink;
+import com.craxiom.messaging.time.ExportFileNames;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the data of survey records to Arrow IPC files as the records arrive, with a file per record type so that each
+ * file has the columns of one *RecordData message.
+ * <p>
+ * The data of each record type is buffered in columns until the batch reaches the maximum number of rows or the
+ * maximum size, and is then written to the file of the type as a record batch, so memory use is bounded by a batch
+ * per record type. A new file is started when the current one reaches the maximum size. The files are named after the
+ * prefix, the message type, the time they were started, and a sequence number, e.g.
+ * {@code survey_LteRecord_20241017T140000Z_0001.arrow}. See {@link ArrowFileWriter} for how the fields map to columns.
+ * <p>
+ * The exporter is a {@link RecordSink}, so it can be given to a {@link com.craxiom.messaging.grpc.server.SurveyServer}
+ * to export a live survey:
+ * <pre>{@code
+ * final ArrowExporter exporter = ArrowExporter.newBuilder(Paths.get("survey"), "survey")
+ *         .setMaxFileSize(256 * 1024 * 1024)
+ *         .build();
+ * final SurveyServer server = SurveyServer.newBuilder(NettyServerBuilder.forPort(2621), exporter).build().start();
+ * }</pre>
+ * The rows of a batch are not written until the batch is full or the exporter is closed, so the files are only
+ * readable once they are complete. This class is not thread safe.
+ */
+public final class ArrowExporter implements RecordSink, Closeable {
+    public static final int DEFAULT_BATCH_ROWS = 64 * 1024;
+    public static final long DEFAULT_MAX_BATCH_SIZE = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_FILE_SIZE = 512L * 1024 * 1024;
+
+    private final Path directory;
+    private final String filePrefix;
+    private final int batchRows;
+    private final long maxBatchSize;
+    private final long maxFileSize;
+    private final Clock clock;
+    private final Map<MessageType<?, ?>, ArrowFileWriter> writers = new HashMap<>();
+    private final List<Path> completedFiles = new ArrayList<>();
+
+    private int fileSequence = 0;
+    private long rowCount = 0;
+
+    private ArrowExporter(Builder builder) {
+        this.directory = builder.directory;
+        this.filePrefix = builder.filePrefix;
+        this.batchRows = builder.batchRows;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxFileSize = builder.maxFileSize;
+        this.clock = builder.clock;
+    }
+
+    /**
+     * @param directory  The directory to write the files to.
+     * @param filePrefix The start of the file names.
+     */
+    public static Builder newBuilder(Path directory, String filePrefix) {
+        return new Builder(directory, filePrefix);
+    }
+
+    /**
+     * Adds the data of a survey record. Records of unknown types are ignored.
+     */
+    @Override
+    public void accept(Message record) throws IOException {
+        write(record);
+    }
+
+    /**
+     * Adds the data of a survey record to the batch of its type, writing the batch if it is full.
+     *
+     * @return True if the record was added, false if it is not one of the survey record types.
+     */
+    public boolean write(Message record) throws IOException {
+        final MessageType<?, ?> type = MessageTypeRegistry.forRecord(record);
+        if (type == null) return false;
+
+        final Message data = type.getData(record);
+        ArrowFileWriter writer = writers.get(type);
+        if (writer == null) {
+            final String name = ExportFileNames.fileName(filePrefix + "_" + type.getMessageType(), clock.millis(),
+                    ++fileSequence, "arrow");
+            writer = ArrowFileWriter.create(directory.resolve(name), data.getClass());
+            writers.put(type, writer);
+        }
+
+        writer.add(data);
+        rowCount++;
+        if (writer.getBufferedRowCount() >= batchRows || writer.getBufferedSize() >= maxBatchSize) {
+            writer.writeBatch();
+            if (writer.getFileSize() >= maxFileSize) finishFile(type);
+        }
+        return true;
+    }
+
+    /**
+     * @return The files that have been completed, in the order they were completed.
+     */
+    public List<Path> getCompletedFiles() {
+        return Collections.unmodifiableList(completedFiles);
+    }
+
+    /**
+     * @return The number of records added, including those in batches that have not been written yet.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes the current batches and completes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (MessageType<?, ?> type : new ArrayList<>(writers.keySet())) {
+            try {
+                finishFile(type);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void finishFile(MessageType<?, ?> type) throws IOException {
+        final ArrowFileWriter writer = writers.remove(type);
+        try {
+            writer.close();
+        } finally {
+            completedFiles.add(writer.getPath());
+        }
+    }
+
+    /**
+     * Configures an {@link ArrowExporter}. By default a batch is written every 65536 rows or 16 MiB, and a new file is
+     * started every 512 MiB.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private final String filePrefix;
+        private int batchRows = DEFAULT_BATCH_ROWS;
+        private long maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(Path directory, String filePrefix) {
+            if (directory == null || filePrefix == null) throw new NullPointerException("The directory and file prefix are required");
+            this.directory = directory;
+            this.filePrefix = filePrefix;
+        }
+
+        /**
+         * @param batchRows The number of rows at which a batch is written.
+         */
+        public Builder setBatchRows(int batchRows) {
+            if (batchRows < 1) throw new IllegalArgumentException("A batch must hold at least 1 row");
+            this.batchRows = batchRows;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize The approximate size in bytes at which a batch is written, whatever its number of rows.
+         */
+        public Builder setMaxBatchSize(long maxBatchSize) {
+            if (maxBatchSize < 1) throw new IllegalArgumentException("The maximum batch size must be at least 1 byte");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxFileSize The size at which a new file is started. Files are only split between batches, so a file
+         *                    can exceed this by up to a batch.
+         */
+        public Builder setMaxFileSize(long maxFileSize) {
+            if (maxFileSize < 1) throw new IllegalArgumentException("The maximum file size must be at least 1 byte");
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * @param clock The clock used to name the files.
+         */
+        public Builder setClock(Clock clock) {
+            if (clock == null) throw new NullPointerException("The clock is required");
+            this.clock = clock;
+            return this;
+        }
+
+        public ArrowExporter build() {
+            return new ArrowExporter(this);
+        }
+    }
+}
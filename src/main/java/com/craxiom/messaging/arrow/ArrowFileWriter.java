@@ -0,0 +1,282 @@
+package com.craxiom.messaging.arrow;
+
+import com.craxiom.messaging.arrow.ArrowColumn.DictionaryColumn;
+import com.craxiom.messaging.arrow.ArrowColumn.StructColumn;
+import com.craxiom.messaging.arrow.FlatBufferEncoder.Table;
+import com.google.protobuf.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes messages of one type to an Arrow IPC file (the format also known as Feather version 2), which pyarrow,
+ * DuckDB, Polars, and Spark can read directly or convert to Parquet.
+ * <p>
+ * Each field of the message is a column, with the types mapped as described in {@link ArrowColumn}: the wrapper types
+ * are nullable columns, enums are dictionary encoded strings, and repeated fields are lists. The messages are added to
+ * column buffers that are written out as a record batch by {@link #writeBatch()}, and the buffers are then reused for
+ * the next batch, so memory use is bounded by the size of a batch. The dictionaries hold every value name of the
+ * enums and are written once, after the schema. An enum number that is not in the schema is added to its dictionary as
+ * UNKNOWN_&lt;number&gt; with a delta dictionary batch before the record batch that first uses it.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class ArrowFileWriter implements Closeable {
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final int METADATA_VERSION_V5 = 4;
+    private static final int HEADER_SCHEMA = 1;
+    private static final int HEADER_DICTIONARY_BATCH = 2;
+    private static final int HEADER_RECORD_BATCH = 3;
+    private static final byte[] PADDING = new byte[8];
+
+    private final Path path;
+    private final OutputStream output;
+    private final StructColumn root;
+    private final List<DictionaryColumn> dictionaries = new ArrayList<>();
+    private final List<long[]> dictionaryBlocks = new ArrayList<>();
+    private final List<long[]> recordBatchBlocks = new ArrayList<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long position = 0;
+    private long rowCount = 0;
+    private boolean closed = false;
+
+    private ArrowFileWriter(Path path, OutputStream output, Class<? extends Message> type) {
+        this.path = path;
+        this.output = output;
+        this.root = new StructColumn("", false, type, null, new int[1]);
+        root.collectDictionaries(dictionaries);
+    }
+
+    /**
+     * Creates the file, replacing any existing file, and writes the schema of the message type to it.
+     *
+     * @param type The generated class of the messages, e.g. {@code LteRecordData.class}.
+     */
+    public static ArrowFileWriter create(Path path, Class<? extends Message> type) throws IOException {
+        final ArrowFileWriter writer = new ArrowFileWriter(path,
+                new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024), type);
+        try {
+            writer.writeStart();
+        } catch (IOException | RuntimeException e) {
+            writer.output.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * Adds a message to the current batch.
+     *
+     * @throws IllegalArgumentException If the message is not of the type the file was created for.
+     */
+    public void add(Message message) {
+        if (message.getClass() != root.getType()) {
+            throw new IllegalArgumentException("The file holds " + root.getType().getName() + ", not "
+                    + message.getClass().getName());
+        }
+        root.append(message, 0);
+    }
+
+    /**
+     * @return The number of messages added since the last batch was written.
+     */
+    public int getBufferedRowCount() {
+        return root.length();
+    }
+
+    /**
+     * @return The approximate number of bytes the current batch will take up in the file.
+     */
+    public long getBufferedSize() {
+        return root.sizeInBytes();
+    }
+
+    /**
+     * Writes the messages added since the last batch as a record batch. Nothing is written if there are none.
+     */
+    public void writeBatch() throws IOException {
+        final int length = root.length();
+        if (length == 0) return;
+
+        writeDictionaries(true);
+        final List<long[]> nodes = new ArrayList<>();
+        final List<ArrowBuffer> buffers = new ArrayList<>();
+        for (ArrowColumn column : root.children()) {
+            column.collectNodes(nodes);
+            column.collectBuffers(buffers);
+        }
+        recordBatchBlocks.add(writeMessage(HEADER_RECORD_BATCH, recordBatch(length, nodes, buffers), buffers));
+        rowCount += length;
+        root.clear();
+    }
+
+    /**
+     * @return The number of bytes written to the file so far, not counting the current batch.
+     */
+    public long getFileSize() {
+        return position;
+    }
+
+    /**
+     * @return The number of messages written to the file, not counting the current batch.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes the current batch and the footer of the file, and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writeBatch();
+
+            writeInt(CONTINUATION);
+            writeInt(0);
+
+            final Table footer = new Table()
+                    .addShort(0, METADATA_VERSION_V5)
+                    .addObject(1, schema())
+                    .addObject(2, blocks(dictionaryBlocks))
+                    .addObject(3, blocks(recordBatchBlocks));
+            final byte[] encoded = FlatBufferEncoder.encode(footer);
+            write(encoded, encoded.length);
+            writeInt(encoded.length);
+            write(MAGIC, MAGIC.length);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeStart() throws IOException {
+        write(MAGIC, MAGIC.length);
+        write(PADDING, 8 - MAGIC.length);
+        writeMessage(HEADER_SCHEMA, schema(), new ArrayList<>());
+        writeDictionaries(false);
+    }
+
+    /**
+     * Writes a dictionary batch with the entries that have not been written yet of each dictionary.
+     *
+     * @param delta False for the first dictionary batches, which are written for every dictionary, and true for the
+     *              batches that add entries to them, which are only written for the dictionaries that have new entries.
+     */
+    private void writeDictionaries(boolean delta) throws IOException {
+        for (DictionaryColumn column : dictionaries) {
+            final ArrowColumn dictionary = column.getDictionary();
+            if (delta && dictionary.length() == 0) continue;
+            final List<long[]> nodes = new ArrayList<>();
+            final List<ArrowBuffer> buffers = new ArrayList<>();
+            dictionary.collectNodes(nodes);
+            dictionary.collectBuffers(buffers);
+            final Table batch = new Table()
+                    .addLong(0, column.getId())
+                    .addObject(1, recordBatch(dictionary.length(), nodes, buffers))
+                    .addBoolean(2, delta);
+            dictionaryBlocks.add(writeMessage(HEADER_DICTIONARY_BATCH, batch, buffers));
+            dictionary.clear();
+        }
+    }
+
+    private Table schema() {
+        final List<Table> fields = new ArrayList<>();
+        for (ArrowColumn column : root.children()) {
+            fields.add(column.field());
+        }
+        return new Table()
+                .addShort(0, 0) // Little endian
+                .addObject(1, FlatBufferEncoder.tables(fields));
+    }
+
+    /**
+     * @return The RecordBatch table, with the buffers laid out one after the other in the body, each padded to 8 bytes.
+     */
+    private static Table recordBatch(int length, List<long[]> nodes, List<ArrowBuffer> buffers) {
+        final ByteBuffer nodeBytes = ByteBuffer.allocate(16 * nodes.size()).order(ByteOrder.LITTLE_ENDIAN);
+        for (long[] node : nodes) {
+            nodeBytes.putLong(node[0]).putLong(node[1]);
+        }
+        final ByteBuffer bufferBytes = ByteBuffer.allocate(16 * buffers.size()).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = 0;
+        for (ArrowBuffer buffer : buffers) {
+            final int size = buffer == null ? 0 : buffer.size();
+            bufferBytes.putLong(offset).putLong(size);
+            offset += padded(size);
+        }
+        return new Table()
+                .addLong(0, length)
+                .addObject(1, FlatBufferEncoder.structs(nodes.size(), nodeBytes.array()))
+                .addObject(2, FlatBufferEncoder.structs(buffers.size(), bufferBytes.array()));
+    }
+
+    private static Object blocks(List<long[]> blocks) {
+        final ByteBuffer bytes = ByteBuffer.allocate(24 * blocks.size()).order(ByteOrder.LITTLE_ENDIAN);
+        for (long[] block : blocks) {
+            bytes.putLong(block[0]).putInt((int) block[1]).putInt(0).putLong(block[2]);
+        }
+        return FlatBufferEncoder.structs(blocks.size(), bytes.array());
+    }
+
+    /**
+     * Writes an encapsulated message: the continuation marker, the length of the metadata, the Message flatbuffer
+     * padded to 8 bytes, and the body.
+     *
+     * @return The block of the message for the footer: its offset, metadata length, and body length.
+     */
+    private long[] writeMessage(int headerType, Table header, List<ArrowBuffer> buffers) throws IOException {
+        long bodyLength = 0;
+        for (ArrowBuffer buffer : buffers) {
+            bodyLength += padded(buffer == null ? 0 : buffer.size());
+        }
+        final byte[] metadata = FlatBufferEncoder.encode(new Table()
+                .addShort(0, METADATA_VERSION_V5)
+                .addByte(1, headerType)
+                .addObject(2, header)
+                .addLong(3, bodyLength));
+
+        final long offset = position;
+        final int paddedLength = (int) padded(8 + metadata.length) - 8;
+        writeInt(CONTINUATION);
+        writeInt(paddedLength);
+        write(metadata, metadata.length);
+        write(PADDING, paddedLength - metadata.length);
+        for (ArrowBuffer buffer : buffers) {
+            if (buffer == null) continue;
+            write(buffer.array(), buffer.size());
+            write(PADDING, (int) (padded(buffer.size()) - buffer.size()));
+        }
+        return new long[]{offset, 8 + paddedLength, bodyLength};
+    }
+
+    private void writeInt(int value) throws IOException {
+        scratch.putInt(0, value);
+        write(scratch.array(), 4);
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        output.write(bytes, 0, length);
+        position += length;
+    }
+
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+}
@@ -0,0 +1,230 @@
+package com.craxiom.messaging.arrow;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads the fields of generated messages through their typed getters, so that the columns are filled without
+ * {@link com.google.protobuf.Message#getField} and without boxing the values.
+ * <p>
+ * Each accessor is a lambda that calls a getter of the generated class, such as {@code getRsrp()},
+ * {@code getAkmSuitesValue(int)}, or {@code hasRsrp()}, found by the name that protoc gives it. The accessors of a
+ * field take the message and an index, which is the element of a repeated field and is ignored for a singular one.
+ * The integer and floating point getters are widened to long and double, which is exact, and enums are read as their
+ * number. A google.protobuf wrapper field is read as the value of the wrapper.
+ */
+final class FieldAccessors {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private FieldAccessors() {
+    }
+
+    interface LongAccessor {
+        long get(Object message, int index);
+    }
+
+    interface DoubleAccessor {
+        double get(Object message, int index);
+    }
+
+    interface BooleanAccessor {
+        boolean get(Object message, int index);
+    }
+
+    interface ObjectAccessor {
+        Object get(Object message, int index);
+    }
+
+    /**
+     * @return The {@code hasX()} getter of a singular field with presence.
+     */
+    @SuppressWarnings("unchecked")
+    static Predicate<Object> has(Class<?> type, FieldDescriptor field) {
+        return lambda(Predicate.class, method(type, "has" + camelCase(field), false));
+    }
+
+    /**
+     * @return The {@code getXCount()} getter of a repeated field.
+     */
+    @SuppressWarnings("unchecked")
+    static ToIntFunction<Object> count(Class<?> type, FieldDescriptor field) {
+        return lambda(ToIntFunction.class, method(type, "get" + camelCase(field) + "Count", false));
+    }
+
+    /**
+     * @return The class of the field's messages, or of the wrapper for a wrapper field.
+     */
+    static Class<?> messageClass(Class<?> type, FieldDescriptor field) {
+        return getter(type, field, "").getReturnType();
+    }
+
+    /**
+     * @return An accessor of an integer or enum field.
+     */
+    @SuppressWarnings("unchecked")
+    static LongAccessor longs(Class<?> type, FieldDescriptor field) {
+        if (isWrapper(field)) {
+            final ObjectAccessor wrapper = messages(type, field);
+            final ToLongFunction<Object> value = lambda(ToLongFunction.class, wrappedGetter(type, field, ""));
+            return (message, index) -> value.applyAsLong(wrapper.get(message, index));
+        }
+        final Method getter = getter(type, field, field.getJavaType() == FieldDescriptor.JavaType.ENUM ? "Value" : "");
+        if (field.isRepeated()) return lambda(LongAccessor.class, getter);
+        final ToLongFunction<Object> value = lambda(ToLongFunction.class, getter);
+        return (message, index) -> value.applyAsLong(message);
+    }
+
+    /**
+     * @return An accessor of a float or double field.
+     */
+    @SuppressWarnings("unchecked")
+    static DoubleAccessor doubles(Class<?> type, FieldDescriptor field) {
+        if (isWrapper(field)) {
+            final ObjectAccessor wrapper = messages(type, field);
+            final ToDoubleFunction<Object> value = lambda(ToDoubleFunction.class, wrappedGetter(type, field, ""));
+            return (message, index) -> value.applyAsDouble(wrapper.get(message, index));
+        }
+        final Method getter = getter(type, field, "");
+        if (field.isRepeated()) return lambda(DoubleAccessor.class, getter);
+        final ToDoubleFunction<Object> value = lambda(ToDoubleFunction.class, getter);
+        return (message, index) -> value.applyAsDouble(message);
+    }
+
+    /**
+     * @return An accessor of a bool field.
+     */
+    @SuppressWarnings("unchecked")
+    static BooleanAccessor booleans(Class<?> type, FieldDescriptor field) {
+        if (isWrapper(field)) {
+            final ObjectAccessor wrapper = messages(type, field);
+            final Predicate<Object> value = lambda(Predicate.class, wrappedGetter(type, field, ""));
+            return (message, index) -> value.test(wrapper.get(message, index));
+        }
+        final Method getter = getter(type, field, "");
+        if (field.isRepeated()) return lambda(BooleanAccessor.class, getter);
+        final Predicate<Object> value = lambda(Predicate.class, getter);
+        return (message, index) -> value.test(message);
+    }
+
+    /**
+     * @return An accessor of a string or bytes field, which reads both as a ByteString. Strings are read with the
+     * {@code getXBytes()} getter, which returns the UTF-8 bytes that the message was parsed from.
+     */
+    @SuppressWarnings("unchecked")
+    static ObjectAccessor byteStrings(Class<?> type, FieldDescriptor field) {
+        if (isWrapper(field)) {
+            final ObjectAccessor wrapper = messages(type, field);
+            final String suffix = wrappedValue(field).getJavaType() == FieldDescriptor.JavaType.STRING ? "Bytes" : "";
+            final Function<Object, Object> value = lambda(Function.class, wrappedGetter(type, field, suffix));
+            return (message, index) -> value.apply(wrapper.get(message, index));
+        }
+        return objects(type, field, field.getJavaType() == FieldDescriptor.JavaType.STRING ? "Bytes" : "");
+    }
+
+    /**
+     * @return An accessor of a message field.
+     */
+    static ObjectAccessor messages(Class<?> type, FieldDescriptor field) {
+        return objects(type, field, "");
+    }
+
+    /**
+     * @return The value field of a google.protobuf wrapper type, or null if the field is not a wrapper.
+     */
+    static FieldDescriptor wrappedValue(FieldDescriptor field) {
+        return isWrapper(field) ? field.getMessageType().getFields().get(0) : null;
+    }
+
+    private static boolean isWrapper(FieldDescriptor field) {
+        if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) return false;
+        final Descriptor message = field.getMessageType();
+        return message.getFile().getPackage().equals("google.protobuf") && message.getName().endsWith("Value")
+                && message.getFields().size() == 1 && message.getFields().get(0).getName().equals("value");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectAccessor objects(Class<?> type, FieldDescriptor field, String suffix) {
+        final Method getter = getter(type, field, suffix);
+        if (field.isRepeated()) return lambda(ObjectAccessor.class, getter);
+        final Function<Object, Object> value = lambda(Function.class, getter);
+        return (message, index) -> value.apply(message);
+    }
+
+    private static Method wrappedGetter(Class<?> type, FieldDescriptor field, String suffix) {
+        return getter(messageClass(type, field), wrappedValue(field), suffix);
+    }
+
+    /**
+     * @return The getter of the field, which takes the element index if the field is repeated.
+     */
+    private static Method getter(Class<?> type, FieldDescriptor field, String suffix) {
+        return method(type, "get" + camelCase(field) + suffix, field.isRepeated());
+    }
+
+    private static Method method(Class<?> type, String name, boolean indexed) {
+        try {
+            return indexed ? type.getMethod(name, int.class) : type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no " + name + " getter", e);
+        }
+    }
+
+    /**
+     * Creates a lambda of the functional interface that calls the getter, which is how the compiler would implement
+     * {@code LteRecordData::getRsrp}.
+     */
+    private static <T> T lambda(Class<T> functionalInterface, Method getter) {
+        Method function = null;
+        for (Method method : functionalInterface.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) function = method;
+        }
+        try {
+            final MethodHandle target = LOOKUP.unreflect(getter);
+            final MethodType functionType = MethodType.methodType(function.getReturnType(),
+                    function.getParameterTypes());
+            return functionalInterface.cast(LambdaMetafactory.metafactory(LOOKUP, function.getName(),
+                    MethodType.methodType(functionalInterface), functionType, target, target.type())
+                    .getTarget()
+                    .invoke());
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Could not create an accessor for " + getter, e);
+        }
+    }
+
+    /**
+     * @return The name protoc gives the field in the getters, e.g. Cn0DbHz for cn0DbHz.
+     */
+    private static String camelCase(FieldDescriptor field) {
+        final String name = field.getName();
+        final StringBuilder result = new StringBuilder(name.length());
+        boolean capitalizeNext = true;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                result.append(capitalizeNext ? Character.toUpperCase(c) : c);
+                capitalizeNext = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                result.append(c);
+                capitalizeNext = false;
+            } else if (c >= '0' && c <= '9') {
+                result.append(c);
+                capitalizeNext = true;
+            } else {
+                capitalizeNext = true;
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,261 @@
+package com.craxiom.messaging.arrow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A minimal FlatBuffers encoder for the Arrow IPC metadata, which is small and written once per batch, so it does not
+ * need the flatbuffers library or generated code.
+ * <p>
+ * The objects are laid out front to back: the root offset, then each table preceded by its vtable and followed by the
+ * strings, vectors, and tables it refers to. That keeps every offset pointing forward, as the format requires. Tables
+ * are not deduplicated and scalar fields are always written, even when they hold their default value.
+ */
+final class FlatBufferEncoder {
+    private ByteBuffer buffer = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FlatBufferEncoder() {
+    }
+
+    /**
+     * @return The encoded buffer with the table as its root.
+     */
+    static byte[] encode(Table root) {
+        final FlatBufferEncoder encoder = new FlatBufferEncoder();
+        encoder.putInt(0);
+        final int rootPosition = encoder.writeTable(root);
+        encoder.buffer.putInt(0, rootPosition);
+        return Arrays.copyOf(encoder.buffer.array(), encoder.buffer.position());
+    }
+
+    static Object string(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Object tables(List<Table> tables) {
+        return new TableVector(tables);
+    }
+
+    /**
+     * @param structs The little endian bytes of the structs, which must all be 8 byte aligned.
+     */
+    static Object structs(int count, byte[] structs) {
+        return new StructVector(count, structs);
+    }
+
+    private int writeTable(Table table) {
+        final List<Field> fields = new ArrayList<>(table.fields);
+        // The widest fields go first, so the table only needs padding after the soffset to the vtable
+        fields.sort((a, b) -> Integer.compare(b.size, a.size));
+
+        int inlineSize = 4;
+        int alignment = 4;
+        final int[] inlineOffsets = new int[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            final int size = fields.get(i).size;
+            inlineSize = align(inlineSize, size);
+            inlineOffsets[i] = inlineSize;
+            inlineSize += size;
+            alignment = Math.max(alignment, size);
+        }
+
+        int slotCount = 0;
+        for (Field field : fields) {
+            slotCount = Math.max(slotCount, field.slot + 1);
+        }
+        pad(2, 0);
+        final int vtablePosition = buffer.position();
+        putShort(4 + 2 * slotCount);
+        putShort(inlineSize);
+        final int[] slotOffsets = new int[slotCount];
+        for (int i = 0; i < fields.size(); i++) {
+            slotOffsets[fields.get(i).slot] = inlineOffsets[i];
+        }
+        for (int slotOffset : slotOffsets) {
+            putShort(slotOffset);
+        }
+
+        pad(alignment, 0);
+        final int tablePosition = buffer.position();
+        putInt(tablePosition - vtablePosition);
+        final int[] offsetPositions = new int[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            final Field field = fields.get(i);
+            pad(field.size, 0);
+            offsetPositions[i] = buffer.position();
+            switch (field.size) {
+                case 1:
+                    ensure(1);
+                    buffer.put((byte) field.value);
+                    break;
+                case 2:
+                    putShort((int) field.value);
+                    break;
+                case 4:
+                    putInt((int) field.value);
+                    break;
+                default:
+                    ensure(8);
+                    buffer.putLong(field.value);
+            }
+        }
+
+        for (int i = 0; i < fields.size(); i++) {
+            final Object child = fields.get(i).child;
+            if (child == null) continue;
+            // Writing the child can replace the buffer, so it has to happen before the buffer is read
+            final int childPosition = writeObject(child);
+            buffer.putInt(offsetPositions[i], childPosition - offsetPositions[i]);
+        }
+        return tablePosition;
+    }
+
+    private int writeObject(Object object) {
+        if (object instanceof Table) return writeTable((Table) object);
+
+        if (object instanceof byte[]) {
+            final byte[] bytes = (byte[]) object;
+            pad(4, 0);
+            final int position = buffer.position();
+            putInt(bytes.length);
+            ensure(bytes.length + 1);
+            buffer.put(bytes).put((byte) 0);
+            return position;
+        }
+
+        if (object instanceof StructVector) {
+            final StructVector structs = (StructVector) object;
+            pad(8, 4);
+            final int position = buffer.position();
+            putInt(structs.count);
+            ensure(structs.bytes.length);
+            buffer.put(structs.bytes);
+            return position;
+        }
+
+        final List<Table> tables = ((TableVector) object).tables;
+        pad(4, 0);
+        final int position = buffer.position();
+        putInt(tables.size());
+        final int elements = buffer.position();
+        for (int i = 0; i < tables.size(); i++) {
+            putInt(0);
+        }
+        for (int i = 0; i < tables.size(); i++) {
+            final int elementPosition = elements + 4 * i;
+            final int tablePosition = writeTable(tables.get(i));
+            buffer.putInt(elementPosition, tablePosition - elementPosition);
+        }
+        return position;
+    }
+
+    /**
+     * Pads with zeros until the position is the remainder more than a multiple of the alignment.
+     */
+    private void pad(int alignment, int remainder) {
+        while (buffer.position() % alignment != remainder) {
+            ensure(1);
+            buffer.put((byte) 0);
+        }
+    }
+
+    private void putShort(int value) {
+        ensure(2);
+        buffer.putShort((short) value);
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    private void ensure(int size) {
+        if (buffer.remaining() >= size) return;
+        final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * A table under construction. The slots are the field ids of the schema, counting each union as two slots: the
+     * type and then the value.
+     */
+    static final class Table {
+        private final List<Field> fields = new ArrayList<>();
+
+        Table addBoolean(int slot, boolean value) {
+            return addByte(slot, value ? 1 : 0);
+        }
+
+        Table addByte(int slot, int value) {
+            fields.add(new Field(slot, 1, value, null));
+            return this;
+        }
+
+        Table addShort(int slot, int value) {
+            fields.add(new Field(slot, 2, value, null));
+            return this;
+        }
+
+        Table addInt(int slot, int value) {
+            fields.add(new Field(slot, 4, value, null));
+            return this;
+        }
+
+        Table addLong(int slot, long value) {
+            fields.add(new Field(slot, 8, value, null));
+            return this;
+        }
+
+        /**
+         * @param child A table, or an object from {@link #string(String)}, {@link #tables(List)}, or
+         *              {@link #structs(int, byte[])}.
+         */
+        Table addObject(int slot, Object child) {
+            fields.add(new Field(slot, 4, 0, child));
+            return this;
+        }
+    }
+
+    private static final class Field {
+        private final int slot;
+        private final int size;
+        private final long value;
+        private final Object child;
+
+        private Field(int slot, int size, long value, Object child) {
+            this.slot = slot;
+            this.size = size;
+            this.value = value;
+            this.child = child;
+        }
+    }
+
+    private static final class TableVector {
+        private final List<Table> tables;
+
+        private TableVector(List<Table> tables) {
+            this.tables = tables;
+        }
+    }
+
+    private static final class StructVector {
+        private final int count;
+        private final byte[] bytes;
+
+        private StructVector(int count, byte[] bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+}
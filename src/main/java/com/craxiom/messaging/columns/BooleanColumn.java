@@ -0,0 +1,54 @@
+package com.craxiom.messaging.columns;
+
+import java.util.Arrays;
+
+/**
+ * A column of {@code boolean} values, packed into a bitmap with one bit per row.
+ */
+public final class BooleanColumn extends Column {
+    private long[] bits = new long[(INITIAL_CAPACITY + 63) >>> 6];
+
+    BooleanColumn(boolean nullable) {
+        super(nullable);
+    }
+
+    /**
+     * @return The value of the row, or false if the row does not have a value.
+     */
+    public boolean get(int row) {
+        checkRow(row);
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return The backing bitmap, where bit {@code row % 64} of word {@code row / 64} is set if the row is true.
+     */
+    public long[] valueBits() {
+        return bits;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return super.sizeInBytes() + 16L + 8L * bits.length;
+    }
+
+    void add(boolean value) {
+        final int row = nextRow(true);
+        if (value) bits[row >>> 6] |= 1L << row;
+    }
+
+    void addNull() {
+        nextRow(false);
+    }
+
+    @Override
+    int capacity() {
+        return bits.length << 6;
+    }
+
+    @Override
+    void resize(int capacity) {
+        bits = Arrays.copyOf(bits, (capacity + 63) >>> 6);
+        super.resize(capacity);
+    }
+}
@@ -0,0 +1,117 @@
+package com.craxiom.messaging.columns;
+
+import java.util.Arrays;
+
+/**
+ * One column of a {@link RecordColumns} store. The values are held in a primitive array that grows as rows are added,
+ * and nullable columns (the ones for the google.protobuf wrapper fields) also keep a presence bitmap with one bit per
+ * row.
+ * <p>
+ * The subclasses expose their backing arrays so that scans can run over a plain array instead of calling a getter for
+ * every row. Only the first {@link #size()} entries of a backing array are valid.
+ */
+public abstract class Column {
+    static final int INITIAL_CAPACITY = 16;
+
+    private final boolean nullable;
+    private long[] presence;
+    int size = 0;
+
+    Column(boolean nullable) {
+        this.nullable = nullable;
+        this.presence = nullable ? new long[bitmapLength(INITIAL_CAPACITY)] : null;
+    }
+
+    /**
+     * @return The number of rows in this column.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * @return True if rows can be missing a value, which is the case for the google.protobuf wrapper fields.
+     */
+    public final boolean isNullable() {
+        return nullable;
+    }
+
+    /**
+     * @return True if the row has a value. Always true for a column that is not nullable.
+     */
+    public final boolean isPresent(int row) {
+        checkRow(row);
+        return presence == null || (presence[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return The presence bitmap, where bit {@code row % 64} of word {@code row / 64} is set if the row has a value, or
+     * null if this column is not nullable.
+     */
+    public final long[] presenceBits() {
+        return presence;
+    }
+
+    /**
+     * @return The number of rows that have a value.
+     */
+    public final int countPresent() {
+        if (presence == null) return size;
+        int count = 0;
+        for (int i = 0; i < bitmapLength(size); i++) {
+            count += Long.bitCount(presence[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return An estimate of the heap used by this column, in bytes.
+     */
+    public long sizeInBytes() {
+        return presence == null ? 0 : 16L + 8L * presence.length;
+    }
+
+    /**
+     * Shrinks the backing arrays to the number of rows.
+     */
+    public final void trimToSize() {
+        resize(Math.max(size, 1));
+    }
+
+    /**
+     * Reserves a new row and records whether it has a value.
+     *
+     * @return The index of the new row.
+     */
+    final int nextRow(boolean present) {
+        final int row = size;
+        if (row == capacity()) {
+            final int newCapacity = row + (row >> 1) + 1;
+            if (newCapacity < 0) throw new IllegalStateException("A column cannot hold more than 2^31 - 1 rows");
+            resize(newCapacity);
+        }
+        if (present && presence != null) presence[row >>> 6] |= 1L << row;
+        size = row + 1;
+        return row;
+    }
+
+    final void checkRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " is out of range for " + size + " rows");
+    }
+
+    /**
+     * @return The length of the value array.
+     */
+    abstract int capacity();
+
+    /**
+     * Resizes the value array. Subclasses must call this method so that the presence bitmap is resized too.
+     */
+    void resize(int capacity) {
+        if (presence != null) presence = Arrays.copyOf(presence, bitmapLength(capacity));
+    }
+
+    private static int bitmapLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+}
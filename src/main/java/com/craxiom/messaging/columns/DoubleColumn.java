@@ -0,0 +1,55 @@
+package com.craxiom.messaging.columns;
+
+import java.util.Arrays;
+
+/**
+ * A column of {@code double} values.
+ */
+public final class DoubleColumn extends Column {
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    DoubleColumn(boolean nullable) {
+        super(nullable);
+    }
+
+    /**
+     * @return The value of the row, or 0 if the row does not have a value.
+     */
+    public double get(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    /**
+     * @return The backing array. Only the first {@link #size()} values are valid, and rows without a value hold 0.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return super.sizeInBytes() + 16L + 8L * values.length;
+    }
+
+    void add(double value) {
+        // The row has to be reserved first because it may replace the values array
+        final int row = nextRow(true);
+        values[row] = value;
+    }
+
+    void addNull() {
+        nextRow(false);
+    }
+
+    @Override
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+        super.resize(capacity);
+    }
+}
@@ -0,0 +1,111 @@
+package com.craxiom.messaging.columns;
+
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The base class of the generated columnar stores (e.g. {@code LteRecordColumns}), which hold many record data messages
+ * as one primitive array per field instead of one object per record and per wrapper field.
+ * <p>
+ * Rows can only be appended. A row is converted back to a protobuf message with {@link #get(int)}, while scans can read
+ * the columns directly, for example {@code columns.getRsrp().values()} along with
+ * {@code columns.getRsrp().isPresent(row)}. Unknown fields are not stored.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <D> The record data type, e.g. LteRecordData.
+ */
+public abstract class RecordColumns<D extends Message> {
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private int size = 0;
+
+    /**
+     * Adds a row with the values of the record data.
+     */
+    public final void add(D data) {
+        append(data);
+        size++;
+    }
+
+    /**
+     * Adds a row for each record data message.
+     */
+    public final void addAll(Iterable<? extends D> data) {
+        for (D item : data) {
+            add(item);
+        }
+    }
+
+    /**
+     * @return The record data message for the row.
+     * @throws IndexOutOfBoundsException If the row does not exist.
+     */
+    public final D get(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " is out of range for " + size + " rows");
+        return build(row);
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * @return The column for the proto field with the given name (e.g. "rsrp"), or null if there is no such column.
+     */
+    public final Column getColumn(String fieldName) {
+        return columns.get(fieldName);
+    }
+
+    /**
+     * @return The proto field names of all the columns, in field declaration order.
+     */
+    public final List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    /**
+     * @return An estimate of the heap used by all the columns, in bytes.
+     */
+    public final long sizeInBytes() {
+        long bytes = 0;
+        for (Column column : columns.values()) {
+            bytes += column.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Shrinks the backing arrays of all the columns to the number of rows, for when no more rows will be added.
+     */
+    public final void trimToSize() {
+        for (Column column : columns.values()) {
+            column.trimToSize();
+        }
+    }
+
+    /**
+     * Registers a column. Called from the field initializers of the generated subclasses.
+     */
+    final <C extends Column> C column(String fieldName, C column) {
+        columns.put(fieldName, column);
+        return column;
+    }
+
+    /**
+     * Appends one value to every column.
+     */
+    abstract void append(D data);
+
+    /**
+     * Builds the record data message for a row that is known to exist.
+     */
+    abstract D build(int row);
+}
@@ -0,0 +1,170 @@
+package com.craxiom.messaging.columns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column of strings. The column starts out dictionary encoded: each distinct value is stored once and the rows hold
+ * an index into the dictionary, which suits the survey record strings (device serial number, mission ID, provider,
+ * etc.) that only have a few distinct values across millions of records.
+ * <p>
+ * Once the dictionary holds more than {@link #MAX_DICTIONARY_SIZE} values (for example the deviceTime column, where
+ * almost every value is distinct) the dictionary would cost more than it saves, so the column switches to holding a
+ * reference to each row's string instead.
+ */
+public final class StringColumn extends Column {
+    /**
+     * The code of a row that does not have a value.
+     */
+    public static final int NULL_CODE = -1;
+    public static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private List<String> dictionary = new ArrayList<>();
+    private Map<String, Integer> dictionaryCodes = new HashMap<>();
+    private long dictionaryBytes = 0;
+
+    private String[] values;
+    private long valueBytes = 0;
+
+    StringColumn(boolean nullable) {
+        super(nullable);
+    }
+
+    /**
+     * @return The value of the row, or null if the row does not have a value.
+     */
+    public String get(int row) {
+        checkRow(row);
+        if (values != null) return values[row];
+        final int code = codes[row];
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    /**
+     * @return True while the column is dictionary encoded, in which case the codes can be used for scans.
+     */
+    public boolean isDictionaryEncoded() {
+        return values == null;
+    }
+
+    /**
+     * @return The dictionary index of the row's value, or {@link #NULL_CODE} if the row does not have a value.
+     * @throws IllegalStateException If the column is no longer dictionary encoded.
+     */
+    public int getCode(int row) {
+        checkRow(row);
+        checkDictionaryEncoded();
+        return codes[row];
+    }
+
+    /**
+     * @return The backing array of dictionary indexes. Only the first {@link #size()} codes are valid.
+     * @throws IllegalStateException If the column is no longer dictionary encoded.
+     */
+    public int[] codes() {
+        checkDictionaryEncoded();
+        return codes;
+    }
+
+    /**
+     * @return The distinct values in the order they were first added, or an empty list if the column is no longer
+     * dictionary encoded.
+     */
+    public List<String> getDictionary() {
+        return values == null ? Collections.unmodifiableList(dictionary) : Collections.emptyList();
+    }
+
+    /**
+     * @return The dictionary index of the value, or {@link #NULL_CODE} if no row has this value. Use this to compare
+     * the codes instead of the strings when scanning the column.
+     * @throws IllegalStateException If the column is no longer dictionary encoded.
+     */
+    public int findCode(String value) {
+        checkDictionaryEncoded();
+        final Integer code = dictionaryCodes.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        if (values != null) return super.sizeInBytes() + 16L + 4L * values.length + valueBytes;
+        // Each dictionary entry costs a map entry and a boxed Integer on top of the string itself
+        return super.sizeInBytes() + 16L + 4L * codes.length + dictionaryBytes;
+    }
+
+    void add(String value) {
+        if (values != null) {
+            final int row = nextRow(true);
+            values[row] = value;
+            valueBytes += stringBytes(value);
+            return;
+        }
+
+        Integer code = dictionaryCodes.get(value);
+        if (code == null) {
+            if (dictionary.size() == MAX_DICTIONARY_SIZE) {
+                convertToValues();
+                add(value);
+                return;
+            }
+            code = dictionary.size();
+            dictionary.add(value);
+            dictionaryCodes.put(value, code);
+            dictionaryBytes += 56L + stringBytes(value);
+        }
+        // The row has to be reserved first because it may replace the codes array
+        final int row = nextRow(true);
+        codes[row] = code;
+    }
+
+    void addNull() {
+        final int row = nextRow(false);
+        if (values == null) codes[row] = NULL_CODE;
+    }
+
+    @Override
+    int capacity() {
+        return values == null ? codes.length : values.length;
+    }
+
+    @Override
+    void resize(int capacity) {
+        if (values == null) {
+            codes = Arrays.copyOf(codes, capacity);
+        } else {
+            values = Arrays.copyOf(values, capacity);
+        }
+        super.resize(capacity);
+    }
+
+    private void convertToValues() {
+        values = new String[codes.length];
+        for (int row = 0; row < size; row++) {
+            final int code = codes[row];
+            if (code != NULL_CODE) {
+                values[row] = dictionary.get(code);
+                valueBytes += stringBytes(values[row]);
+            }
+        }
+        codes = null;
+        dictionary = null;
+        dictionaryCodes = null;
+        dictionaryBytes = 0;
+    }
+
+    private void checkDictionaryEncoded() {
+        if (values != null) throw new IllegalStateException("The column is no longer dictionary encoded");
+    }
+
+    /**
+     * @return A rough estimate of the heap used by a string and its character array.
+     */
+    private static long stringBytes(String value) {
+        return 40L + 2L * value.length();
+    }
+}
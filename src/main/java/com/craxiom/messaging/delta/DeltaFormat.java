@@ -0,0 +1,182 @@
+package com.craxiom.messaging.delta;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The constants and helpers of the delta encoding.
+ * <p>
+ * A frame starts with a varint kind: {@link #KEYFRAME} means that the record is encoded against an empty message, and
+ * {@link #DELTA} that it is encoded against the previous record of the stream. The rest of the frame is the encoded
+ * message, which works on the protobuf wire format one message level at a time. Each field of the message has a slot,
+ * in field number order, and one last slot holds the unknown fields. A level is written as a changed bitmap of the
+ * slots whose bytes differ from the previous message, as one varint per 64 slots, followed by a nested bitmap in the
+ * same layout if any slot changed. A nested slot is a singular message field that is present in both messages, and
+ * its value is encoded as a level of its own. Every other changed slot holds the new bytes of all of its fields, tags
+ * included, written as a varint of their length shifted left by one and then the bytes, where a length of zero means
+ * that the field has been cleared. If the lowest bit of that varint is set, the bytes are trimmed instead: it is
+ * followed by the varint number of bytes at the start and at the end that are the same as in the previous message, and
+ * only the bytes between them are written. Unchanged slots take no space at all.
+ * <p>
+ * The Java protobuf runtime serializes the fields in field number order, followed by the unknown fields, so putting
+ * the slots back together in order gives the exact bytes of the record.
+ * <p>
+ * A delta stream starts with an 8 byte header: the magic bytes "NSMD", a format version byte, and three reserved zero
+ * bytes. Each entry is the record type byte (see {@link com.craxiom.messaging.log.SurveyRecordType}), the varint id of
+ * the stream context, the varint size of the frame, and then the frame. A context is the sequence of records of one
+ * type from one device, and the ids are assigned in the order that the contexts first appear, starting from zero.
+ */
+final class DeltaFormat {
+    static final byte[] MAGIC = {'N', 'S', 'M', 'D'};
+    static final int VERSION = 1;
+
+    static final int KEYFRAME = 0;
+    static final int DELTA = 1;
+
+    /**
+     * The field number of the data message of every survey record, which holds the device serial number.
+     */
+    static final int DATA_FIELD_NUMBER = 3;
+
+    static final byte[] EMPTY = new byte[0];
+
+    private DeltaFormat() {
+    }
+
+    /**
+     * The slots of a message type: its field numbers in order, plus one slot for the unknown fields.
+     */
+    static final class Layout {
+        private static final Map<Descriptor, Layout> LAYOUTS = new ConcurrentHashMap<>();
+
+        private final int[] fieldNumbers;
+        private final FieldDescriptor[] fields;
+        private final Layout[] nested;
+
+        private Layout(Descriptor descriptor) {
+            fields = descriptor.getFields().toArray(new FieldDescriptor[0]);
+            Arrays.sort(fields, (a, b) -> Integer.compare(a.getNumber(), b.getNumber()));
+            fieldNumbers = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fieldNumbers[i] = fields[i].getNumber();
+            }
+            nested = new Layout[fields.length];
+        }
+
+        static Layout of(Descriptor descriptor) {
+            return LAYOUTS.computeIfAbsent(descriptor, Layout::new);
+        }
+
+        /**
+         * @return The number of slots, which is the number of fields plus one.
+         */
+        int getSlotCount() {
+            return fields.length + 1;
+        }
+
+        /**
+         * @return The number of varints in a bitmap of the slots.
+         */
+        int getBitmapSize() {
+            return (getSlotCount() + 63) >>> 6;
+        }
+
+        /**
+         * @return The slot of the field number, which is the last slot if the field is not known.
+         */
+        int slot(int fieldNumber) {
+            final int slot = Arrays.binarySearch(fieldNumbers, fieldNumber);
+            return slot < 0 ? fields.length : slot;
+        }
+
+        int getFieldNumber(int slot) {
+            return fieldNumbers[slot];
+        }
+
+        /**
+         * @return True if the slot is a singular message field, which can be encoded as a level of its own.
+         */
+        boolean canNest(int slot) {
+            if (slot == fields.length) return false;
+            final FieldDescriptor field = fields[slot];
+            return !field.isRepeated() && field.getType() == FieldDescriptor.Type.MESSAGE;
+        }
+
+        /**
+         * @return The layout of the message type of a slot for which {@link #canNest(int)} is true.
+         */
+        Layout getNested(int slot) {
+            Layout layout = nested[slot];
+            if (layout == null) {
+                // Looked up lazily, since a message type can contain itself
+                layout = of(fields[slot].getMessageType());
+                nested[slot] = layout;
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * The byte ranges of the slots of one serialized message.
+     */
+    static final class Slots {
+        final int[] start;
+        final int[] end;
+        final int[] count;
+
+        private Slots(int slotCount) {
+            start = new int[slotCount];
+            end = new int[slotCount];
+            count = new int[slotCount];
+        }
+
+        /**
+         * Splits a serialized message into its slots.
+         *
+         * @throws InvalidProtocolBufferException If the bytes are not a valid message, or its fields are not in field
+         *                                        number order.
+         */
+        static Slots split(Layout layout, byte[] bytes, int offset, int length) throws IOException {
+            final Slots slots = new Slots(layout.getSlotCount());
+            final CodedInputStream input = CodedInputStream.newInstance(bytes, offset, length);
+            int previousSlot = -1;
+            while (true) {
+                final int fieldStart = offset + input.getTotalBytesRead();
+                final int tag = input.readTag();
+                if (tag == 0) break;
+                input.skipField(tag);
+
+                final int slot = layout.slot(WireFormat.getTagFieldNumber(tag));
+                if (slot < previousSlot) {
+                    throw new InvalidProtocolBufferException("The fields of the message are not in field number order");
+                }
+                if (slots.count[slot]++ == 0) slots.start[slot] = fieldStart;
+                slots.end[slot] = offset + input.getTotalBytesRead();
+                previousSlot = slot;
+            }
+            return slots;
+        }
+
+        int length(int slot) {
+            return count[slot] == 0 ? 0 : end[slot] - start[slot];
+        }
+
+        /**
+         * @return The offset of the value of a length delimited field that is the only field in its slot.
+         */
+        int valueStart(byte[] bytes, int slot) throws IOException {
+            final CodedInputStream input = CodedInputStream.newInstance(bytes, start[slot], length(slot));
+            input.readTag();
+            input.readUInt32();
+            return start[slot] + input.getTotalBytesRead();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.craxiom.messaging.delta;
+
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Message;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the records from a delta stream written by {@link DeltaStreamWriter}, in the order that they were written.
+ * <pre>{@code
+ * try (DeltaStreamReader reader = DeltaStreamReader.open(Paths.get("survey.nsmd"))) {
+ *     Message record;
+ *     while ((record = reader.read()) != null) {
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ * This class is not thread safe.
+ */
+public final class DeltaStreamReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private final CodedInputStream codedInput;
+    private final List<Context> contexts = new ArrayList<>();
+
+    /**
+     * Opens a delta stream file and reads its header.
+     *
+     * @throws IOException If the file could not be read or is not a delta stream.
+     */
+    public static DeltaStreamReader open(Path path) throws IOException {
+        final InputStream inputStream = Files.newInputStream(path);
+        try {
+            return new DeltaStreamReader(inputStream);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a delta stream from a stream, which is closed when this reader is closed.
+     *
+     * @throws IOException If the stream could not be read or is not a delta stream.
+     */
+    public DeltaStreamReader(InputStream inputStream) throws IOException {
+        this.inputStream = inputStream;
+        this.codedInput = CodedInputStream.newInstance(new BufferedInputStream(inputStream, BUFFER_SIZE));
+        codedInput.setSizeLimit(Integer.MAX_VALUE);
+
+        if (codedInput.isAtEnd()) throw new IOException("The stream is not a delta stream");
+        final byte[] magic = codedInput.readRawBytes(DeltaFormat.MAGIC.length);
+        if (!Arrays.equals(DeltaFormat.MAGIC, magic)) throw new IOException("The stream is not a delta stream");
+        final int version = codedInput.readRawByte() & 0xFF;
+        if (version != DeltaFormat.VERSION) {
+            throw new IOException("The stream uses delta stream format version " + version + ", which is not supported");
+        }
+        codedInput.skipRawBytes(3);
+    }
+
+    /**
+     * @return The next record, or null if the end of the stream has been reached.
+     * @throws IOException If the stream is corrupt or ends in the middle of a record. The rest of the stream cannot be
+     *                     read after that, since the records that follow depend on the bad one.
+     */
+    public Message read() throws IOException {
+        // The size counter only guards against reading too much at once, so reset it for every record
+        codedInput.resetSizeCounter();
+        if (codedInput.isAtEnd()) return null;
+
+        final int typeByte = codedInput.readRawByte() & 0xFF;
+        final SurveyRecordType type = SurveyRecordType.forTypeByte(typeByte);
+        if (type == null) throw new IOException("Unknown record type " + typeByte);
+
+        final int id = codedInput.readUInt32();
+        final Context context;
+        if (id == contexts.size()) {
+            context = new Context(type, new RecordDeltaDecoder<>(type.getDefaultInstance()));
+            contexts.add(context);
+        } else if (id >= 0 && id < contexts.size()) {
+            context = contexts.get(id);
+            if (context.type != type) throw new IOException("Context " + id + " is not a " + type.getMessageType());
+        } else {
+            throw new IOException("Unknown context " + id);
+        }
+
+        final int frameSize = codedInput.readUInt32();
+        if (frameSize < 0) throw new IOException("Invalid frame size");
+        final int limit = codedInput.pushLimit(frameSize);
+        final Message record = context.decoder.readFrom(codedInput);
+        if (codedInput.getBytesUntilLimit() != 0) throw new IOException("The frame of context " + id + " is invalid");
+        codedInput.popLimit(limit);
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private static final class Context {
+        private final SurveyRecordType type;
+        private final RecordDeltaDecoder<Message> decoder;
+
+        private Context(SurveyRecordType type, RecordDeltaDecoder<Message> decoder) {
+            this.type = type;
+            this.decoder = decoder;
+        }
+    }
+}
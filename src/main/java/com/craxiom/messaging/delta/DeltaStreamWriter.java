@@ -0,0 +1,154 @@
+package com.craxiom.messaging.delta;
+
+import com.craxiom.messaging.SurveyRecordHeader;
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes survey records to a delta stream, in which each record is encoded as the difference from the previous record
+ * of the same type from the same device (see {@link RecordDeltaEncoder}). The records can be interleaved in any way,
+ * for example as they arrive from several devices, and {@link DeltaStreamReader} reads them back in the same order.
+ * <pre>{@code
+ * try (DeltaStreamWriter writer = DeltaStreamWriter.create(Paths.get("survey.nsmd"))) {
+ *     writer.write(lteRecord);
+ *     writer.write(nrRecord);
+ * }
+ * }</pre>
+ * Unlike a survey log, a delta stream has to be read from the start, since every record depends on the ones before
+ * it. The writer keeps the last record of every device and record type in memory. This class is not thread safe.
+ */
+public final class DeltaStreamWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+    private final CodedOutputStream codedOutput;
+    private final Map<ContextKey, Context> contexts = new HashMap<>();
+
+    private long recordCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a delta stream file, replacing the file if it already exists.
+     */
+    public static DeltaStreamWriter create(Path path) throws IOException {
+        return new DeltaStreamWriter(Files.newOutputStream(path));
+    }
+
+    /**
+     * Writes a delta stream to a stream, which is closed when this writer is closed.
+     */
+    public DeltaStreamWriter(OutputStream outputStream) throws IOException {
+        this.outputStream = outputStream;
+        this.codedOutput = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+
+        codedOutput.writeRawBytes(DeltaFormat.MAGIC);
+        codedOutput.writeRawByte(DeltaFormat.VERSION);
+        codedOutput.writeRawBytes(new byte[3]);
+    }
+
+    /**
+     * Appends a record to the stream.
+     *
+     * @param record One of the survey records (see {@link SurveyRecordType}).
+     * @throws IllegalArgumentException If the message is not one of the survey records.
+     */
+    public void write(Message record) throws IOException {
+        if (closed) throw new IOException("The delta stream writer has been closed");
+        final SurveyRecordType type = SurveyRecordType.forRecord(record);
+        final ContextKey key = new ContextKey(type, getDeviceSerialNumber(record));
+        Context context = contexts.get(key);
+        if (context == null) {
+            context = new Context(contexts.size(), new RecordDeltaEncoder(record.getDescriptorForType()));
+            contexts.put(key, context);
+        }
+
+        final byte[] frame = context.encoder.encode(record);
+        codedOutput.writeRawByte(type.getTypeByte());
+        codedOutput.writeUInt32NoTag(context.id);
+        codedOutput.writeUInt32NoTag(frame.length);
+        codedOutput.writeRawBytes(frame);
+        recordCount++;
+    }
+
+    /**
+     * @return The number of bytes written so far, including the ones still buffered.
+     */
+    public long getPosition() {
+        return codedOutput.getTotalBytesWritten();
+    }
+
+    /**
+     * @return The number of records written.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        codedOutput.flush();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static String getDeviceSerialNumber(Message record) {
+        final FieldDescriptor dataField = record.getDescriptorForType().findFieldByNumber(DeltaFormat.DATA_FIELD_NUMBER);
+        final Object data = dataField == null ? null : record.getField(dataField);
+        return data instanceof SurveyRecordHeader ? ((SurveyRecordHeader) data).getDeviceSerialNumber() : "";
+    }
+
+    private static final class ContextKey {
+        private final SurveyRecordType type;
+        private final String deviceSerialNumber;
+
+        private ContextKey(SurveyRecordType type, String deviceSerialNumber) {
+            this.type = type;
+            this.deviceSerialNumber = deviceSerialNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ContextKey)) return false;
+            final ContextKey other = (ContextKey) o;
+            return type == other.type && deviceSerialNumber.equals(other.deviceSerialNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, deviceSerialNumber);
+        }
+    }
+
+    private static final class Context {
+        private final int id;
+        private final RecordDeltaEncoder encoder;
+
+        private Context(int id, RecordDeltaEncoder encoder) {
+            this.id = id;
+            this.encoder = encoder;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.craxiom.messaging.delta;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decodes the frames written by a {@link RecordDeltaEncoder} back into the exact records that were encoded. The frames
+ * must be decoded in the order that they were encoded, starting from a keyframe.
+ * <pre>{@code
+ * final RecordDeltaDecoder<LteRecord> decoder = new RecordDeltaDecoder<>(LteRecord.getDefaultInstance());
+ * final LteRecord record = decoder.decode(frame);
+ * }</pre>
+ * This class is not thread safe.
+ *
+ * @param <T> The record message type.
+ */
+public final class RecordDeltaDecoder<T extends Message> {
+    private final Parser<T> parser;
+    private final DeltaFormat.Layout layout;
+
+    private byte[] previous;
+
+    @SuppressWarnings("unchecked")
+    public RecordDeltaDecoder(T defaultInstance) {
+        if (defaultInstance == null) throw new NullPointerException("The default instance is required");
+        this.parser = (Parser<T>) defaultInstance.getParserForType();
+        this.layout = DeltaFormat.Layout.of(defaultInstance.getDescriptorForType());
+    }
+
+    /**
+     * @return The record encoded by the frame.
+     * @throws InvalidProtocolBufferException If the frame is invalid, or if it is a delta and the frame before it has
+     *                                        not been decoded.
+     */
+    public T decode(byte[] frame) throws InvalidProtocolBufferException {
+        final CodedInputStream input = CodedInputStream.newInstance(frame);
+        final T record = readFrom(input);
+        if (input.getTotalBytesRead() != frame.length) {
+            throw new InvalidProtocolBufferException("The frame has trailing bytes");
+        }
+        return record;
+    }
+
+    /**
+     * Reads one frame from the input.
+     *
+     * @return The record encoded by the frame.
+     * @throws InvalidProtocolBufferException If the frame is invalid, or if it is a delta and the frame before it has
+     *                                        not been decoded.
+     */
+    public T readFrom(CodedInputStream input) throws InvalidProtocolBufferException {
+        final byte[] current;
+        try {
+            final int kind = input.readUInt32();
+            if (kind == DeltaFormat.KEYFRAME) {
+                current = readLevel(layout, DeltaFormat.EMPTY, 0, 0, input);
+            } else if (kind == DeltaFormat.DELTA) {
+                if (previous == null) throw new InvalidProtocolBufferException("A delta frame must follow another frame");
+                current = readLevel(layout, previous, 0, previous.length, input);
+            } else {
+                throw new InvalidProtocolBufferException("Unknown frame kind " + kind);
+            }
+        } catch (InvalidProtocolBufferException e) {
+            previous = null;
+            throw e;
+        } catch (IOException e) {
+            previous = null;
+            throw new InvalidProtocolBufferException(e);
+        }
+        previous = current;
+        return parser.parseFrom(current);
+    }
+
+    /**
+     * Forgets the previous record, so that the next frame must be a keyframe.
+     */
+    public void reset() {
+        previous = null;
+    }
+
+    private static byte[] readLevel(DeltaFormat.Layout layout, byte[] previous, int previousOffset, int previousLength,
+                                    CodedInputStream input) throws IOException {
+        final long[] changed = new long[layout.getBitmapSize()];
+        final long[] nested = new long[changed.length];
+        boolean anyChanged = false;
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = input.readUInt64();
+            anyChanged |= changed[i] != 0;
+        }
+        if (!anyChanged) return Arrays.copyOfRange(previous, previousOffset, previousOffset + previousLength);
+        for (int i = 0; i < nested.length; i++) {
+            nested[i] = input.readUInt64();
+            if ((nested[i] & ~changed[i]) != 0) throw new InvalidProtocolBufferException("Invalid nested bitmap");
+        }
+
+        final DeltaFormat.Slots before = DeltaFormat.Slots.split(layout, previous, previousOffset, previousLength);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(previousLength + 64);
+        final CodedOutputStream output = CodedOutputStream.newInstance(bytes, 256);
+        final int slotCount = layout.getSlotCount();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((changed[slot >>> 6] & 1L << slot) == 0) {
+                output.writeRawBytes(previous, before.start[slot], before.length(slot));
+            } else if ((nested[slot >>> 6] & 1L << slot) != 0) {
+                if (!layout.canNest(slot) || before.count[slot] != 1) {
+                    throw new InvalidProtocolBufferException("Invalid nested field in slot " + slot);
+                }
+                final int valueStart = before.valueStart(previous, slot);
+                final byte[] value = readLevel(layout.getNested(slot), previous, valueStart,
+                        before.end[slot] - valueStart, input);
+                output.writeTag(layout.getFieldNumber(slot), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(value.length);
+                output.writeRawBytes(value);
+            } else {
+                final int header = input.readUInt32();
+                if ((header & 1) != 0) {
+                    final int prefix = input.readUInt32();
+                    final int suffix = input.readUInt32();
+                    if (prefix < 0 || suffix < 0 || prefix + suffix > before.length(slot) || prefix + suffix < 0) {
+                        throw new InvalidProtocolBufferException("Invalid shared bytes in slot " + slot);
+                    }
+                    output.writeRawBytes(previous, before.start[slot], prefix);
+                    output.writeRawBytes(input.readRawBytes(header >>> 1));
+                    output.writeRawBytes(previous, before.start[slot] + before.length(slot) - suffix, suffix);
+                } else {
+                    output.writeRawBytes(input.readRawBytes(header >>> 1));
+                }
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.craxiom.messaging.delta;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes a stream of records of one message type, each as the difference from the record before it: a bitmap of the
+ * fields that changed and only their new values (see {@link DeltaFormat} for the format). Consecutive records from one
+ * device share the device header, the serving cell identity, and often the location, so a delta is usually a fraction
+ * of the size of the record. The frames are decoded by a {@link RecordDeltaDecoder}, which must see every frame in the
+ * same order.
+ * <pre>{@code
+ * final RecordDeltaEncoder encoder = new RecordDeltaEncoder(LteRecord.getDescriptor());
+ * for (LteRecord record : records) {
+ *     final byte[] frame = encoder.encode(record);
+ *     ...
+ * }
+ * }</pre>
+ * This class is not thread safe.
+ */
+public final class RecordDeltaEncoder {
+    private final Descriptor descriptor;
+    private final DeltaFormat.Layout layout;
+
+    private byte[] previous;
+
+    public RecordDeltaEncoder(Descriptor descriptor) {
+        if (descriptor == null) throw new NullPointerException("The message descriptor is required");
+        this.descriptor = descriptor;
+        this.layout = DeltaFormat.Layout.of(descriptor);
+    }
+
+    /**
+     * @return The frame that encodes the record.
+     * @throws IllegalArgumentException If the record is not of this encoder's message type.
+     */
+    public byte[] encode(Message record) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            final CodedOutputStream output = CodedOutputStream.newInstance(bytes, 256);
+            writeTo(record, output);
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode the " + descriptor.getName() + " record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the frame that encodes the record.
+     *
+     * @throws IllegalArgumentException If the record is not of this encoder's message type.
+     */
+    public void writeTo(Message record, CodedOutputStream output) throws IOException {
+        final byte[] current = serialize(record);
+        write(current, output);
+        previous = current;
+    }
+
+    /**
+     * Makes the next frame a keyframe, which can be decoded without the frames before it.
+     */
+    public void reset() {
+        previous = null;
+    }
+
+    private byte[] serialize(Message record) {
+        if (record.getDescriptorForType() != descriptor) {
+            throw new IllegalArgumentException("Expected a " + descriptor.getName() + " but got a "
+                    + record.getDescriptorForType().getName());
+        }
+        return record.toByteArray();
+    }
+
+    private void write(byte[] current, CodedOutputStream output) throws IOException {
+        if (previous == null) {
+            output.writeUInt32NoTag(DeltaFormat.KEYFRAME);
+            writeLevel(layout, DeltaFormat.EMPTY, 0, 0, current, 0, current.length, output);
+        } else {
+            output.writeUInt32NoTag(DeltaFormat.DELTA);
+            writeLevel(layout, previous, 0, previous.length, current, 0, current.length, output);
+        }
+    }
+
+    private static void writeLevel(DeltaFormat.Layout layout, byte[] previous, int previousOffset, int previousLength,
+                                   byte[] current, int currentOffset, int currentLength, CodedOutputStream output)
+            throws IOException {
+        final DeltaFormat.Slots before = DeltaFormat.Slots.split(layout, previous, previousOffset, previousLength);
+        final DeltaFormat.Slots after = DeltaFormat.Slots.split(layout, current, currentOffset, currentLength);
+        final int slotCount = layout.getSlotCount();
+        final long[] changed = new long[layout.getBitmapSize()];
+        final long[] nested = new long[changed.length];
+        boolean anyChanged = false;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (equal(previous, before, current, after, slot)) continue;
+            changed[slot >>> 6] |= 1L << slot;
+            anyChanged = true;
+            if (layout.canNest(slot) && before.count[slot] == 1 && after.count[slot] == 1) {
+                nested[slot >>> 6] |= 1L << slot;
+            }
+        }
+
+        for (long word : changed) {
+            output.writeUInt64NoTag(word);
+        }
+        if (!anyChanged) return;
+        for (long word : nested) {
+            output.writeUInt64NoTag(word);
+        }
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((changed[slot >>> 6] & 1L << slot) == 0) continue;
+            if ((nested[slot >>> 6] & 1L << slot) != 0) {
+                final int previousStart = before.valueStart(previous, slot);
+                final int currentStart = after.valueStart(current, slot);
+                writeLevel(layout.getNested(slot), previous, previousStart, before.end[slot] - previousStart,
+                        current, currentStart, after.end[slot] - currentStart, output);
+            } else {
+                writeSlot(previous, before.start[slot], before.length(slot), current, after.start[slot],
+                        after.length(slot), output);
+            }
+        }
+    }
+
+    /**
+     * Writes the new bytes of a slot without the bytes at its start and end that are the same as before, which for
+     * example leaves only the changed digits of the deviceTime, or the low bytes of the latitude and longitude.
+     */
+    private static void writeSlot(byte[] previous, int previousStart, int previousLength, byte[] current,
+                                  int currentStart, int currentLength, CodedOutputStream output) throws IOException {
+        final int maxShared = Math.min(previousLength, currentLength);
+        int prefix = 0;
+        while (prefix < maxShared && previous[previousStart + prefix] == current[currentStart + prefix]) prefix++;
+        int suffix = 0;
+        while (suffix < maxShared - prefix && previous[previousStart + previousLength - 1 - suffix]
+                == current[currentStart + currentLength - 1 - suffix]) {
+            suffix++;
+        }
+
+        // Trimming costs two more varints, so only trim when that saves more than it costs
+        if (prefix + suffix > 2) {
+            final int middleLength = currentLength - prefix - suffix;
+            output.writeUInt32NoTag(middleLength << 1 | 1);
+            output.writeUInt32NoTag(prefix);
+            output.writeUInt32NoTag(suffix);
+            output.writeRawBytes(current, currentStart + prefix, middleLength);
+        } else {
+            output.writeUInt32NoTag(currentLength << 1);
+            output.writeRawBytes(current, currentStart, currentLength);
+        }
+    }
+
+    private static boolean equal(byte[] previous, DeltaFormat.Slots before, byte[] current, DeltaFormat.Slots after,
+                                 int slot) {
+        final int length = before.length(slot);
+        if (length != after.length(slot)) return false;
+        final int previousStart = before.start[slot];
+        final int currentStart = after.start[slot];
+        for (int i = 0; i < length; i++) {
+            if (previous[previousStart + i] != current[currentStart + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,299 @@
+package com.craxiom.messaging.encode;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The base class of the generated record encoders (e.g. {@code LteRecordEncoder}), which serialize a survey record from
+ * primitive field values without building the record, its data message, or the wrapper message of each field.
+ * <p>
+ * The bytes are the same as those of the generated message with the same field values, so the output can be parsed
+ * with the generated parser or sent anywhere the serialized record is expected. The data message is always written,
+ * as it is for a record built with {@code setData(...)}.
+ * <p>
+ * An encoder is meant to be reused: set the fields, write the record, and {@link #clear()} it for the next one. The
+ * generated {@code forCurrentThread()} method returns a cleared encoder that belongs to the calling thread, so a
+ * producer does not allocate anything per record once the encoder exists:
+ * <pre>{@code
+ * final LteRecordEncoder encoder = LteRecordEncoder.forCurrentThread()
+ *         .setVersion("1.6.0")
+ *         .setDeviceSerialNumber(serialNumber)
+ *         .setRecordNumber(recordNumber)
+ *         .setMcc(310)
+ *         .setRsrp(rsrp);
+ * encoder.writeTo(buffer);
+ * }</pre>
+ * The field values are kept by reference, so strings and byte arrays must not be changed until the record is written.
+ * The version is kept by {@link #clear()}, since it is usually the same for every record. This class is not thread
+ * safe.
+ */
+public abstract class RecordEncoder {
+    static final int VERSION_FIELD_NUMBER = 1;
+    static final int MESSAGE_TYPE_FIELD_NUMBER = 2;
+    static final int DATA_FIELD_NUMBER = 3;
+
+    private final String messageType;
+    private final ByteBufferOutputStream bufferOutput = new ByteBufferOutputStream();
+    private final CodedOutputStream bufferStream = CodedOutputStream.newInstance(bufferOutput, 4096);
+    String version = "";
+
+    RecordEncoder(String messageType) {
+        this.messageType = messageType;
+    }
+
+    /**
+     * @return The messageType that is written in the record, e.g. LteRecord.
+     */
+    public final String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * Clears the data fields, but not the version.
+     */
+    public abstract void clear();
+
+    /**
+     * @return The serialized size of the record data message.
+     */
+    public abstract int getDataSize();
+
+    /**
+     * Writes the record data message, without the record around it.
+     */
+    public abstract void writeDataTo(CodedOutputStream output) throws IOException;
+
+    /**
+     * @return The serialized size of the record.
+     */
+    public final int getSerializedSize() {
+        return getEnvelopeSize(getDataSize());
+    }
+
+    /**
+     * Writes the record.
+     */
+    public final void writeTo(CodedOutputStream output) throws IOException {
+        writeTo(output, getDataSize());
+    }
+
+    /**
+     * Writes the record.
+     *
+     * @param dataSize The size from {@link #getDataSize()}, which is not computed again.
+     */
+    private void writeTo(CodedOutputStream output, int dataSize) throws IOException {
+        if (!version.isEmpty()) output.writeString(VERSION_FIELD_NUMBER, version);
+        output.writeString(MESSAGE_TYPE_FIELD_NUMBER, messageType);
+        output.writeTag(DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(dataSize);
+        writeDataTo(output);
+    }
+
+    /**
+     * Writes the record at the position of the buffer and advances the position past it.
+     *
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the record does not fit in the rest of the buffer, in which case nothing is
+     *                                 written.
+     */
+    public final int writeTo(ByteBuffer buffer) {
+        final int dataSize = getDataSize();
+        final int size = getEnvelopeSize(dataSize);
+        if (size > buffer.remaining()) throw new BufferOverflowException();
+
+        bufferOutput.target = buffer;
+        try {
+            writeTo(bufferStream, dataSize);
+            bufferStream.flush();
+        } catch (IOException e) {
+            // The stream only writes to the buffer, which has room for the record
+            throw new UncheckedIOException(e);
+        } finally {
+            bufferOutput.target = null;
+        }
+        return size;
+    }
+
+    /**
+     * @return The serialized record in a new array.
+     */
+    public final byte[] toByteArray() {
+        final byte[] bytes = new byte[getSerializedSize()];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    private int getEnvelopeSize(int dataSize) {
+        int size = CodedOutputStream.computeStringSize(MESSAGE_TYPE_FIELD_NUMBER, messageType)
+                + CodedOutputStream.computeTagSize(DATA_FIELD_NUMBER)
+                + CodedOutputStream.computeUInt32SizeNoTag(dataSize) + dataSize;
+        if (!version.isEmpty()) size += CodedOutputStream.computeStringSize(VERSION_FIELD_NUMBER, version);
+        return size;
+    }
+
+    // The helpers below are called by the generated encoders. A field with implicit presence is only written when it
+    // is not its default value, and a wrapper field is written whenever it is set, with the wrapped value left out of
+    // the wrapper when it is the default, the same as the generated messages do.
+
+    static int stringSize(int fieldNumber, String value) {
+        return value == null || value.isEmpty() ? 0 : CodedOutputStream.computeStringSize(fieldNumber, value);
+    }
+
+    static void writeString(CodedOutputStream output, int fieldNumber, String value) throws IOException {
+        if (value != null && !value.isEmpty()) output.writeString(fieldNumber, value);
+    }
+
+    static int bytesSize(int fieldNumber, int length) {
+        return length == 0 ? 0 : CodedOutputStream.computeTagSize(fieldNumber)
+                + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+    }
+
+    static void writeBytes(CodedOutputStream output, int fieldNumber, byte[] bytes, int offset, int length)
+            throws IOException {
+        if (length != 0) output.writeByteArray(fieldNumber, bytes, offset, length);
+    }
+
+    static int packedEnumSize(int fieldNumber, int[] values, int count) {
+        if (count == 0) return 0;
+        final int dataSize = packedEnumDataSize(values, count);
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeUInt32SizeNoTag(dataSize)
+                + dataSize;
+    }
+
+    static void writePackedEnum(CodedOutputStream output, int fieldNumber, int[] values, int count)
+            throws IOException {
+        if (count == 0) return;
+        output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(packedEnumDataSize(values, count));
+        for (int i = 0; i < count; i++) {
+            output.writeEnumNoTag(values[i]);
+        }
+    }
+
+    static int int32WrapperSize(int fieldNumber, int value) {
+        return wrapperSize(fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeInt32SizeNoTag(value));
+    }
+
+    static void writeInt32Wrapper(CodedOutputStream output, int fieldNumber, int value) throws IOException {
+        writeWrapperHeader(output, fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeInt32SizeNoTag(value));
+        if (value != 0) output.writeInt32(1, value);
+    }
+
+    static int uint32WrapperSize(int fieldNumber, int value) {
+        return wrapperSize(fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeUInt32SizeNoTag(value));
+    }
+
+    static void writeUInt32Wrapper(CodedOutputStream output, int fieldNumber, int value) throws IOException {
+        writeWrapperHeader(output, fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeUInt32SizeNoTag(value));
+        if (value != 0) output.writeUInt32(1, value);
+    }
+
+    static int int64WrapperSize(int fieldNumber, long value) {
+        return wrapperSize(fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeInt64SizeNoTag(value));
+    }
+
+    static void writeInt64Wrapper(CodedOutputStream output, int fieldNumber, long value) throws IOException {
+        writeWrapperHeader(output, fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeInt64SizeNoTag(value));
+        if (value != 0) output.writeInt64(1, value);
+    }
+
+    static int uint64WrapperSize(int fieldNumber, long value) {
+        return wrapperSize(fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeUInt64SizeNoTag(value));
+    }
+
+    static void writeUInt64Wrapper(CodedOutputStream output, int fieldNumber, long value) throws IOException {
+        writeWrapperHeader(output, fieldNumber, value == 0 ? 0 : 1 + CodedOutputStream.computeUInt64SizeNoTag(value));
+        if (value != 0) output.writeUInt64(1, value);
+    }
+
+    static int floatWrapperSize(int fieldNumber, float value) {
+        return wrapperSize(fieldNumber, Float.floatToRawIntBits(value) == 0 ? 0 : 5);
+    }
+
+    static void writeFloatWrapper(CodedOutputStream output, int fieldNumber, float value) throws IOException {
+        final boolean isDefault = Float.floatToRawIntBits(value) == 0;
+        writeWrapperHeader(output, fieldNumber, isDefault ? 0 : 5);
+        if (!isDefault) output.writeFloat(1, value);
+    }
+
+    static int doubleWrapperSize(int fieldNumber, double value) {
+        return wrapperSize(fieldNumber, Double.doubleToRawLongBits(value) == 0 ? 0 : 9);
+    }
+
+    static void writeDoubleWrapper(CodedOutputStream output, int fieldNumber, double value) throws IOException {
+        final boolean isDefault = Double.doubleToRawLongBits(value) == 0;
+        writeWrapperHeader(output, fieldNumber, isDefault ? 0 : 9);
+        if (!isDefault) output.writeDouble(1, value);
+    }
+
+    static int boolWrapperSize(int fieldNumber, boolean value) {
+        return wrapperSize(fieldNumber, value ? 2 : 0);
+    }
+
+    static void writeBoolWrapper(CodedOutputStream output, int fieldNumber, boolean value) throws IOException {
+        writeWrapperHeader(output, fieldNumber, value ? 2 : 0);
+        if (value) output.writeBool(1, true);
+    }
+
+    static int stringWrapperSize(int fieldNumber, String value) {
+        return wrapperSize(fieldNumber, stringSize(1, value));
+    }
+
+    static void writeStringWrapper(CodedOutputStream output, int fieldNumber, String value) throws IOException {
+        writeWrapperHeader(output, fieldNumber, stringSize(1, value));
+        writeString(output, 1, value);
+    }
+
+    /**
+     * @return The array with room for one more value, grown if it is full.
+     */
+    static int[] ensureCapacity(int[] values, int count) {
+        if (count < values.length) return values;
+        final int[] larger = new int[Math.max(4, values.length * 2)];
+        System.arraycopy(values, 0, larger, 0, count);
+        return larger;
+    }
+
+    private static int packedEnumDataSize(int[] values, int count) {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            size += CodedOutputStream.computeEnumSizeNoTag(values[i]);
+        }
+        return size;
+    }
+
+    private static int wrapperSize(int fieldNumber, int valueSize) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeUInt32SizeNoTag(valueSize)
+                + valueSize;
+    }
+
+    private static void writeWrapperHeader(CodedOutputStream output, int fieldNumber, int valueSize)
+            throws IOException {
+        output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(valueSize);
+    }
+
+    /**
+     * Lets one coded output stream write to whichever buffer a record is written to.
+     */
+    private static final class ByteBufferOutputStream extends OutputStream {
+        private ByteBuffer target;
+
+        @Override
+        public void write(int b) {
+            target.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            target.put(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.craxiom.messaging.geo;
+
+/**
+ * An immutable latitude/longitude bounding box, inclusive of its edges. Boxes that cross the antimeridian are not
+ * supported; query those as two boxes.
+ */
+public final class GeoBox {
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    /**
+     * @throws IllegalArgumentException If a corner is not a valid location or the minimum is greater than the maximum.
+     */
+    public GeoBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        if (!Geohash.isValid(minLatitude, minLongitude) || !Geohash.isValid(maxLatitude, maxLongitude)) {
+            throw new IllegalArgumentException("Invalid bounding box corners");
+        }
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new IllegalArgumentException("The minimum corner of the bounding box must not be greater than the maximum");
+        }
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    /**
+     * @return True if the boxes share any point, including an edge.
+     */
+    public boolean intersects(GeoBox other) {
+        return other.minLatitude <= maxLatitude && other.maxLatitude >= minLatitude
+                && other.minLongitude <= maxLongitude && other.maxLongitude >= minLongitude;
+    }
+
+    /**
+     * @return True if the other box is entirely inside this one.
+     */
+    public boolean contains(GeoBox other) {
+        return other.minLatitude >= minLatitude && other.maxLatitude <= maxLatitude
+                && other.minLongitude >= minLongitude && other.maxLongitude <= maxLongitude;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GeoBox)) return false;
+        final GeoBox other = (GeoBox) o;
+        return minLatitude == other.minLatitude && minLongitude == other.minLongitude
+                && maxLatitude == other.maxLatitude && maxLongitude == other.maxLongitude;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(minLatitude);
+        result = 31 * result + Double.hashCode(minLongitude);
+        result = 31 * result + Double.hashCode(maxLatitude);
+        result = 31 * result + Double.hashCode(maxLongitude);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "GeoBox[" + minLatitude + ", " + minLongitude + " to " + maxLatitude + ", " + maxLongitude + "]";
+    }
+}
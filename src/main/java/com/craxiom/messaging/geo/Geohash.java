@@ -0,0 +1,195 @@
+package com.craxiom.messaging.geo;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Encodes latitude/longitude pairs as geohash cells held in a long, without allocating.
+ * <p>
+ * A geohash of precision {@code p} is {@code 5 * p} bits that alternately split the longitude and latitude ranges in
+ * half, starting with the longitude, so the cell for a precision is a prefix of the cell for any higher precision.
+ * The bits are stored in the low bits of the long. Precision 7 cells are about 153 by 153 meters at the equator, and
+ * precision 8 cells about 38 by 19 meters.
+ */
+public final class Geohash {
+    /**
+     * The maximum precision, which uses 60 of the 64 bits.
+     */
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] BASE32_VALUES = new int[128];
+
+    static {
+        Arrays.fill(BASE32_VALUES, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            BASE32_VALUES[BASE32[i]] = i;
+        }
+    }
+
+    private Geohash() {
+    }
+
+    /**
+     * @param latitude  The latitude in degrees, from -90 to 90.
+     * @param longitude The longitude in degrees, from -180 to 180.
+     * @param precision The number of geohash characters, from 1 to {@link #MAX_PRECISION}.
+     * @return The geohash of the cell that contains the location.
+     * @throws IllegalArgumentException If the location or precision is out of range.
+     */
+    public static long encode(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        if (!isValid(latitude, longitude)) {
+            throw new IllegalArgumentException("Invalid location " + latitude + ", " + longitude);
+        }
+        return interleave(longitudeIndex(longitude, precision), latitudeIndex(latitude, precision), precision);
+    }
+
+    /**
+     * @return True if the latitude is from -90 to 90 and the longitude is from -180 to 180 (which excludes NaN).
+     */
+    public static boolean isValid(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    /**
+     * @return The geohash as a string of base 32 characters, e.g. "dqcjq".
+     */
+    public static String toString(long geohash, int precision) {
+        checkPrecision(precision);
+        final char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (geohash & 0x1f)];
+            geohash >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return The geohash that the string represents, whose precision is the string length.
+     * @throws IllegalArgumentException If the string is not a valid geohash.
+     */
+    public static long parse(CharSequence geohash) {
+        checkPrecision(geohash.length());
+        long result = 0;
+        for (int i = 0; i < geohash.length(); i++) {
+            final char c = Character.toLowerCase(geohash.charAt(i));
+            final int value = c < 128 ? BASE32_VALUES[c] : -1;
+            if (value < 0) throw new IllegalArgumentException("Invalid geohash " + geohash);
+            result = result << 5 | value;
+        }
+        return result;
+    }
+
+    /**
+     * @return The bounds of the geohash cell.
+     */
+    public static GeoBox bounds(long geohash, int precision) {
+        checkPrecision(precision);
+        final int bits = precision * 5;
+        final int longitudeBits = (bits + 1) / 2;
+        final int latitudeBits = bits / 2;
+        final long longitudeIndex;
+        final long latitudeIndex;
+        if ((bits & 1) == 0) {
+            longitudeIndex = compact(geohash >>> 1);
+            latitudeIndex = compact(geohash);
+        } else {
+            longitudeIndex = compact(geohash);
+            latitudeIndex = compact(geohash >>> 1);
+        }
+        final double cellHeight = 180.0 / (1L << latitudeBits);
+        final double cellWidth = 360.0 / (1L << longitudeBits);
+        return new GeoBox(latitudeIndex * cellHeight - 90, longitudeIndex * cellWidth - 180,
+                Math.min(90, (latitudeIndex + 1) * cellHeight - 90), Math.min(180, (longitudeIndex + 1) * cellWidth - 180));
+    }
+
+    /**
+     * @return The number of cells of the precision that intersect the box.
+     */
+    public static long coverSize(GeoBox box, int precision) {
+        checkPrecision(precision);
+        final long latitudes = latitudeIndex(box.getMaxLatitude(), precision) - latitudeIndex(box.getMinLatitude(), precision) + 1;
+        final long longitudes = longitudeIndex(box.getMaxLongitude(), precision) - longitudeIndex(box.getMinLongitude(), precision) + 1;
+        return latitudes * longitudes;
+    }
+
+    /**
+     * Calls the consumer with each cell of the precision that intersects the box. Use {@link #coverSize(GeoBox, int)}
+     * first to check that there are not too many of them.
+     */
+    public static void cover(GeoBox box, int precision, LongConsumer consumer) {
+        checkPrecision(precision);
+        final long minLatitudeIndex = latitudeIndex(box.getMinLatitude(), precision);
+        final long maxLatitudeIndex = latitudeIndex(box.getMaxLatitude(), precision);
+        final long minLongitudeIndex = longitudeIndex(box.getMinLongitude(), precision);
+        final long maxLongitudeIndex = longitudeIndex(box.getMaxLongitude(), precision);
+        for (long latitudeIndex = minLatitudeIndex; latitudeIndex <= maxLatitudeIndex; latitudeIndex++) {
+            for (long longitudeIndex = minLongitudeIndex; longitudeIndex <= maxLongitudeIndex; longitudeIndex++) {
+                consumer.accept(interleave(longitudeIndex, latitudeIndex, precision));
+            }
+        }
+    }
+
+    private static long latitudeIndex(double latitude, int precision) {
+        final int latitudeBits = precision * 5 / 2;
+        return index((latitude + 90) / 180, latitudeBits);
+    }
+
+    private static long longitudeIndex(double longitude, int precision) {
+        final int longitudeBits = (precision * 5 + 1) / 2;
+        return index((longitude + 180) / 360, longitudeBits);
+    }
+
+    /**
+     * @return The index of the cell that contains the fraction of the range, where the maximum of the range belongs to
+     * the last cell.
+     */
+    private static long index(double fraction, int bits) {
+        final long cells = 1L << bits;
+        final long index = (long) (fraction * cells);
+        return index >= cells ? cells - 1 : index;
+    }
+
+    /**
+     * Interleaves the bits so that the most significant bit is a longitude bit, as the geohash definition requires.
+     */
+    private static long interleave(long longitudeIndex, long latitudeIndex, int precision) {
+        if ((precision * 5 & 1) == 0) {
+            return spread(longitudeIndex) << 1 | spread(latitudeIndex);
+        }
+        return spread(longitudeIndex) | spread(latitudeIndex) << 1;
+    }
+
+    /**
+     * @return The low 32 bits of the value spread out to the even bits of the result.
+     */
+    private static long spread(long value) {
+        value &= 0xffffffffL;
+        value = (value | value << 16) & 0x0000ffff0000ffffL;
+        value = (value | value << 8) & 0x00ff00ff00ff00ffL;
+        value = (value | value << 4) & 0x0f0f0f0f0f0f0f0fL;
+        value = (value | value << 2) & 0x3333333333333333L;
+        value = (value | value << 1) & 0x5555555555555555L;
+        return value;
+    }
+
+    /**
+     * @return The even bits of the value packed into the low 32 bits of the result; the inverse of {@link #spread}.
+     */
+    private static long compact(long value) {
+        value &= 0x5555555555555555L;
+        value = (value | value >>> 1) & 0x3333333333333333L;
+        value = (value | value >>> 2) & 0x0f0f0f0f0f0f0f0fL;
+        value = (value | value >>> 4) & 0x00ff00ff00ff00ffL;
+        value = (value | value >>> 8) & 0x0000ffff0000ffffL;
+        value = (value | value >>> 16) & 0x00000000ffffffffL;
+        return value;
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("The geohash precision must be from 1 to " + MAX_PRECISION + ", not " + precision);
+        }
+    }
+}
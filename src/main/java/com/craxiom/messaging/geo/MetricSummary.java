@@ -0,0 +1,70 @@
+package com.craxiom.messaging.geo;
+
+/**
+ * The aggregate of one {@link TileMetric} over the records in a tile: the number of records that had a value, and the
+ * sum, minimum, and maximum of the values.
+ */
+public final class MetricSummary {
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    MetricSummary() {
+    }
+
+    private MetricSummary(MetricSummary other) {
+        count = other.count;
+        sum = other.sum;
+        min = other.min;
+        max = other.max;
+    }
+
+    void add(double value) {
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    MetricSummary copy() {
+        return new MetricSummary(this);
+    }
+
+    /**
+     * @return The number of records in the tile that had a value for the metric.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return The minimum value, or NaN if there are none.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return The maximum value, or NaN if there are none.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return The mean value, or NaN if there are none.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricSummary[count=" + count + ", min=" + getMin() + ", mean=" + getMean() + ", max=" + getMax() + "]";
+    }
+}
@@ -0,0 +1,325 @@
+package com.craxiom.messaging.geo;
+
+import com.craxiom.messaging.SurveyRecordHeader;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * A concurrent spatial index that buffers survey records in geohash tiles and aggregates their metrics per tile, for
+ * building coverage maps straight from the record streams.
+ * <pre>{@code
+ * final SpatialTileIndex<LteRecordData> index = SpatialTileIndex.<LteRecordData>newBuilder()
+ *         .setPrecision(7)
+ *         .addMetric(TileMetric.lteRsrp())
+ *         .build();
+ * index.add(lteRecord.getData());
+ * for (TileSummary tile : index.getTiles(new GeoBox(38.8, -77.1, 39.0, -76.9))) {
+ *     System.out.println(tile.getGeohashString() + " " + tile.getMetric("rsrp").getMean());
+ * }
+ * }</pre>
+ * The index holds references to the record data messages, which are immutable, rather than copying their fields out.
+ * Each tile keeps its most recent records up to a limit for queries, while the metrics cover every record added to
+ * the tile.
+ * <p>
+ * The tiles are spread over shards by a hash of their geohash, and each shard has its own read/write lock, so adding
+ * records from several threads only contends when two records land in the same shard at the same time. Queries read
+ * lock one shard at a time, so they see each tile in a consistent state but do not see a single snapshot of the index.
+ *
+ * @param <T> The record data type, e.g. {@link com.craxiom.messaging.LteRecordData}.
+ */
+public final class SpatialTileIndex<T extends SurveyRecordHeader> {
+    static final int DEFAULT_PRECISION = 7;
+    static final int DEFAULT_SHARD_COUNT = 64;
+    static final int DEFAULT_MAX_RECORDS_PER_TILE = 1024;
+
+    private final int precision;
+    private final int maxRecordsPerTile;
+    private final List<TileMetric<? super T>> metrics;
+    private final List<Shard<T>> shards;
+    private final int shardShift;
+    private final AtomicInteger tileCount = new AtomicInteger();
+
+    private SpatialTileIndex(Builder<T> builder) {
+        precision = builder.precision;
+        maxRecordsPerTile = builder.maxRecordsPerTile;
+        metrics = new ArrayList<>(builder.metrics);
+        final int shardCount = builder.shardCount == 1 ? 1 : Integer.highestOneBit(builder.shardCount - 1) << 1;
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard<>());
+        }
+        shardShift = 32 - Integer.numberOfTrailingZeros(shardCount);
+    }
+
+    public static <T extends SurveyRecordHeader> Builder<T> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Adds the record to the tile that contains its location. Safe to call from any thread.
+     *
+     * @return False if the record's latitude or longitude is out of range, or both are 0 (the unset values of a record
+     * without a location fix), in which case it is not added.
+     */
+    public boolean add(T record) {
+        final double latitude = record.getLatitude();
+        final double longitude = record.getLongitude();
+        if (latitude == 0 && longitude == 0) return false;
+        if (!Geohash.isValid(latitude, longitude)) return false;
+
+        final long geohash = Geohash.encode(latitude, longitude, precision);
+        final Shard<T> shard = shard(geohash);
+        shard.lock.writeLock().lock();
+        try {
+            Tile<T> tile = shard.tiles.get(geohash);
+            if (tile == null) {
+                tile = new Tile<>(geohash, metrics.size());
+                shard.tiles.put(geohash, tile);
+                tileCount.incrementAndGet();
+            }
+            tile.add(record, metrics, maxRecordsPerTile);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Passes each retained record whose location is inside the box to the consumer. The consumer is called while a
+     * shard is read locked, so it must not add records to this index.
+     *
+     * @return The number of records passed to the consumer.
+     */
+    public long query(GeoBox box, Consumer<? super T> consumer) {
+        final long[] count = new long[1];
+        forEachTile(box, tile -> {
+            final boolean inside = box.contains(Geohash.bounds(tile.geohash, precision));
+            for (T record : tile.records) {
+                if (inside || box.contains(record.getLatitude(), record.getLongitude())) {
+                    consumer.accept(record);
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @return A snapshot of each tile that intersects the box, in no particular order.
+     */
+    public List<TileSummary> getTiles(GeoBox box) {
+        final List<TileSummary> summaries = new ArrayList<>();
+        forEachTile(box, tile -> summaries.add(summarize(tile)));
+        return summaries;
+    }
+
+    /**
+     * @return A snapshot of the tile with the geohash, or null if no record has been added to it.
+     */
+    public TileSummary getTile(long geohash) {
+        final Shard<T> shard = shard(geohash);
+        shard.lock.readLock().lock();
+        try {
+            final Tile<T> tile = shard.tiles.get(geohash);
+            return tile == null ? null : summarize(tile);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return A snapshot of the tile that contains the location, or null if no record has been added to it.
+     */
+    public TileSummary getTile(double latitude, double longitude) {
+        return getTile(Geohash.encode(latitude, longitude, precision));
+    }
+
+    /**
+     * @return The number of tiles that hold records. It is kept as the tiles are added, so it does not lock the shards.
+     */
+    public int getTileCount() {
+        return tileCount.get();
+    }
+
+    /**
+     * @return The number of records that have been added to the index.
+     */
+    public long getRecordCount() {
+        long count = 0;
+        for (Shard<T> shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                for (Tile<T> tile : shard.tiles.values()) {
+                    count += tile.recordCount;
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Removes all the tiles.
+     */
+    public void clear() {
+        for (Shard<T> shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                tileCount.addAndGet(-shard.tiles.size());
+                shard.tiles.clear();
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Calls the action with each tile that intersects the box, while its shard is read locked. The tiles are looked up
+     * by the geohash cells that cover the box, unless there are more of those cells than tiles in the index, in which
+     * case every tile is checked against the box instead.
+     */
+    private void forEachTile(GeoBox box, Consumer<Tile<T>> action) {
+        final long coverSize = Geohash.coverSize(box, precision);
+        if (coverSize <= getTileCount()) {
+            Geohash.cover(box, precision, geohash -> {
+                final Shard<T> shard = shard(geohash);
+                shard.lock.readLock().lock();
+                try {
+                    final Tile<T> tile = shard.tiles.get(geohash);
+                    if (tile != null) action.accept(tile);
+                } finally {
+                    shard.lock.readLock().unlock();
+                }
+            });
+            return;
+        }
+
+        for (Shard<T> shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                for (Tile<T> tile : shard.tiles.values()) {
+                    if (box.intersects(Geohash.bounds(tile.geohash, precision))) action.accept(tile);
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+    }
+
+    private TileSummary summarize(Tile<T> tile) {
+        final Map<String, MetricSummary> summaries = new LinkedHashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            summaries.put(metrics.get(i).getName(), tile.metrics[i].copy());
+        }
+        return new TileSummary(tile.geohash, precision, tile.recordCount, tile.records.size(), summaries);
+    }
+
+    private Shard<T> shard(long geohash) {
+        if (shards.size() == 1) return shards.get(0);
+        // Fibonacci hashing, so that neighboring tiles, whose geohashes differ in the low bits, land in different shards
+        final int hash = (int) (geohash ^ geohash >>> 32) * 0x9E3779B9;
+        return shards.get(hash >>> shardShift);
+    }
+
+    private static final class Shard<T> {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Tile<T>> tiles = new HashMap<>();
+    }
+
+    private static final class Tile<T> {
+        private final long geohash;
+        private final ArrayDeque<T> records = new ArrayDeque<>();
+        private final MetricSummary[] metrics;
+        private long recordCount;
+
+        Tile(long geohash, int metricCount) {
+            this.geohash = geohash;
+            metrics = new MetricSummary[metricCount];
+            for (int i = 0; i < metricCount; i++) {
+                metrics[i] = new MetricSummary();
+            }
+        }
+
+        void add(T record, List<TileMetric<? super T>> tileMetrics, int maxRecords) {
+            recordCount++;
+            if (maxRecords > 0) {
+                if (records.size() == maxRecords) records.removeFirst();
+                records.addLast(record);
+            }
+            for (int i = 0; i < metrics.length; i++) {
+                final TileMetric<? super T> metric = tileMetrics.get(i);
+                if (metric.hasValue(record)) metrics[i].add(metric.getValue(record));
+            }
+        }
+    }
+
+    /**
+     * Configures a {@link SpatialTileIndex}. By default the tiles are precision 7 geohash cells, there are 64 shards,
+     * and each tile retains its most recent 1024 records.
+     */
+    public static final class Builder<T extends SurveyRecordHeader> {
+        private int precision = DEFAULT_PRECISION;
+        private int shardCount = DEFAULT_SHARD_COUNT;
+        private int maxRecordsPerTile = DEFAULT_MAX_RECORDS_PER_TILE;
+        private final List<TileMetric<? super T>> metrics = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param precision The geohash precision of the tiles, from 1 to {@link Geohash#MAX_PRECISION}.
+         */
+        public Builder<T> setPrecision(int precision) {
+            if (precision < 1 || precision > Geohash.MAX_PRECISION) {
+                throw new IllegalArgumentException("The geohash precision must be from 1 to " + Geohash.MAX_PRECISION);
+            }
+            this.precision = precision;
+            return this;
+        }
+
+        /**
+         * @param shardCount The number of shards, which is rounded up to the next power of two.
+         */
+        public Builder<T> setShardCount(int shardCount) {
+            if (shardCount < 1 || shardCount > 1 << 16) throw new IllegalArgumentException("The shard count must be from 1 to 65536");
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        /**
+         * @param maxRecordsPerTile The number of the most recent records each tile retains for queries, or 0 to only
+         *                          keep the metrics.
+         */
+        public Builder<T> setMaxRecordsPerTile(int maxRecordsPerTile) {
+            if (maxRecordsPerTile < 0) throw new IllegalArgumentException("The maximum records per tile must not be negative");
+            this.maxRecordsPerTile = maxRecordsPerTile;
+            return this;
+        }
+
+        /**
+         * Adds a metric that is aggregated per tile, such as {@link TileMetric#lteRsrp()}.
+         */
+        public Builder<T> addMetric(TileMetric<? super T> metric) {
+            if (metric == null) throw new NullPointerException("The metric is required");
+            for (TileMetric<? super T> existing : metrics) {
+                if (existing.getName().equals(metric.getName())) {
+                    throw new IllegalArgumentException("The index already has a metric named " + metric.getName());
+                }
+            }
+            metrics.add(metric);
+            return this;
+        }
+
+        public SpatialTileIndex<T> build() {
+            return new SpatialTileIndex<>(this);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.craxiom.messaging.geo;
+
+import com.craxiom.messaging.*;
+
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A numeric field of the records that a {@link SpatialTileIndex} aggregates per tile. The value is read straight from
+ * the record, so nothing is copied out of the protobuf messages.
+ *
+ * @param <T> The record data type, e.g. {@link LteRecordData}.
+ */
+public final class TileMetric<T> {
+    private final String name;
+    private final Predicate<? super T> hasValue;
+    private final ToDoubleFunction<? super T> value;
+
+    private TileMetric(String name, Predicate<? super T> hasValue, ToDoubleFunction<? super T> value) {
+        this.name = name;
+        this.hasValue = hasValue;
+        this.value = value;
+    }
+
+    /**
+     * @param name     The name the aggregate is reported under, which must be unique within an index.
+     * @param hasValue Returns false for records that do not have the field set, which are left out of the aggregate.
+     * @param value    Reads the value of the field.
+     */
+    public static <T> TileMetric<T> of(String name, Predicate<? super T> hasValue, ToDoubleFunction<? super T> value) {
+        return new TileMetric<>(name, hasValue, value);
+    }
+
+    /**
+     * The LTE RSRP, in dBm.
+     */
+    public static TileMetric<LteRecordDataOrBuilder> lteRsrp() {
+        return of("rsrp", LteRecordDataOrBuilder::hasRsrp, data -> data.getRsrp().getValue());
+    }
+
+    /**
+     * The LTE RSRQ, in dB.
+     */
+    public static TileMetric<LteRecordDataOrBuilder> lteRsrq() {
+        return of("rsrq", LteRecordDataOrBuilder::hasRsrq, data -> data.getRsrq().getValue());
+    }
+
+    /**
+     * The NR SS-RSRP, in dBm.
+     */
+    public static TileMetric<NrRecordDataOrBuilder> nrSsRsrp() {
+        return of("ssRsrp", NrRecordDataOrBuilder::hasSsRsrp, data -> data.getSsRsrp().getValue());
+    }
+
+    /**
+     * The NR SS-RSRQ, in dB.
+     */
+    public static TileMetric<NrRecordDataOrBuilder> nrSsRsrq() {
+        return of("ssRsrq", NrRecordDataOrBuilder::hasSsRsrq, data -> data.getSsRsrq().getValue());
+    }
+
+    /**
+     * The Wi-Fi beacon signal strength, in dBm.
+     */
+    public static TileMetric<WifiBeaconRecordDataOrBuilder> wifiSignalStrength() {
+        return of("signalStrength", WifiBeaconRecordDataOrBuilder::hasSignalStrength, data -> data.getSignalStrength().getValue());
+    }
+
+    /**
+     * The Bluetooth signal strength, in dBm.
+     */
+    public static TileMetric<BluetoothRecordDataOrBuilder> bluetoothSignalStrength() {
+        return of("signalStrength", BluetoothRecordDataOrBuilder::hasSignalStrength, data -> data.getSignalStrength().getValue());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    boolean hasValue(T record) {
+        return hasValue.test(record);
+    }
+
+    double getValue(T record) {
+        return value.applyAsDouble(record);
+    }
+}
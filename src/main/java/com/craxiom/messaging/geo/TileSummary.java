@@ -0,0 +1,79 @@
+package com.craxiom.messaging.geo;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of one tile of a {@link SpatialTileIndex}: its geohash cell, the number of records added to it, and the
+ * aggregate of each of the index's metrics.
+ */
+public final class TileSummary {
+    private final long geohash;
+    private final int precision;
+    private final long recordCount;
+    private final int retainedRecordCount;
+    private final Map<String, MetricSummary> metrics;
+
+    TileSummary(long geohash, int precision, long recordCount, int retainedRecordCount, Map<String, MetricSummary> metrics) {
+        this.geohash = geohash;
+        this.precision = precision;
+        this.recordCount = recordCount;
+        this.retainedRecordCount = retainedRecordCount;
+        this.metrics = Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * @return The geohash of the tile, see {@link Geohash}.
+     */
+    public long getGeohash() {
+        return geohash;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return The geohash as a string, e.g. "dqcjqcp".
+     */
+    public String getGeohashString() {
+        return Geohash.toString(geohash, precision);
+    }
+
+    public GeoBox getBounds() {
+        return Geohash.bounds(geohash, precision);
+    }
+
+    /**
+     * @return The number of records that have been added to the tile, which the metrics cover.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return The number of the most recent records that the tile still holds and that a query can return.
+     */
+    public int getRetainedRecordCount() {
+        return retainedRecordCount;
+    }
+
+    /**
+     * @return The aggregate of the metric, or null if the index does not have a metric with the name.
+     */
+    public MetricSummary getMetric(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * @return The aggregates by metric name, in the order the metrics were added to the index.
+     */
+    public Map<String, MetricSummary> getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "TileSummary[" + getGeohashString() + ", records=" + recordCount + ", metrics=" + metrics + "]";
+    }
+}
@@ -0,0 +1,321 @@
+package com.craxiom.messaging.grpc.batch;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.grpc.*;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Describes how the records of one survey message type are converted to and from the batch messages defined in
+ * survey_record_batch.proto. There is one constant for each record type that has a batch RPC on the WirelessSurvey
+ * service, for example {@link #LTE} for the StreamLteSurveyBatch RPC.
+ * <p>
+ * When a record is added to a batch the version, messageType, deviceSerialNumber, deviceName, and missionId values
+ * move to the batch header and are cleared from the record data. {@link #toRecords(Message)} restores them. Records
+ * that were sent without a data message are batched separately, with {@code noData} set in the header, so that they
+ * are restored without one.
+ *
+ * @param <R> The record type (e.g. LteRecord).
+ * @param <D> The record data type (e.g. LteRecordData).
+ * @param <B> The batch type (e.g. LteRecordBatch).
+ */
+public final class SurveyBatchType<R extends Message, D extends Message, B extends Message> {
+
+    public static final SurveyBatchType<GsmRecord, GsmRecordData, GsmRecordBatch> GSM = new SurveyBatchType<>(
+            GsmRecord.getDefaultInstance(),
+            GsmRecord::getVersion, GsmRecord::getMessageType, GsmRecord::getData, GsmRecord::hasData,
+            GsmRecordData::getDeviceSerialNumber, GsmRecordData::getDeviceName, GsmRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> GsmRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> GsmRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            GsmRecordBatch::getHeader, GsmRecordBatch::getDataList);
+
+    public static final SurveyBatchType<CdmaRecord, CdmaRecordData, CdmaRecordBatch> CDMA = new SurveyBatchType<>(
+            CdmaRecord.getDefaultInstance(),
+            CdmaRecord::getVersion, CdmaRecord::getMessageType, CdmaRecord::getData, CdmaRecord::hasData,
+            CdmaRecordData::getDeviceSerialNumber, CdmaRecordData::getDeviceName, CdmaRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> CdmaRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> CdmaRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            CdmaRecordBatch::getHeader, CdmaRecordBatch::getDataList);
+
+    public static final SurveyBatchType<UmtsRecord, UmtsRecordData, UmtsRecordBatch> UMTS = new SurveyBatchType<>(
+            UmtsRecord.getDefaultInstance(),
+            UmtsRecord::getVersion, UmtsRecord::getMessageType, UmtsRecord::getData, UmtsRecord::hasData,
+            UmtsRecordData::getDeviceSerialNumber, UmtsRecordData::getDeviceName, UmtsRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> UmtsRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> UmtsRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            UmtsRecordBatch::getHeader, UmtsRecordBatch::getDataList);
+
+    public static final SurveyBatchType<LteRecord, LteRecordData, LteRecordBatch> LTE = new SurveyBatchType<>(
+            LteRecord.getDefaultInstance(),
+            LteRecord::getVersion, LteRecord::getMessageType, LteRecord::getData, LteRecord::hasData,
+            LteRecordData::getDeviceSerialNumber, LteRecordData::getDeviceName, LteRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> LteRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> LteRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            LteRecordBatch::getHeader, LteRecordBatch::getDataList);
+
+    public static final SurveyBatchType<NrRecord, NrRecordData, NrRecordBatch> NR = new SurveyBatchType<>(
+            NrRecord.getDefaultInstance(),
+            NrRecord::getVersion, NrRecord::getMessageType, NrRecord::getData, NrRecord::hasData,
+            NrRecordData::getDeviceSerialNumber, NrRecordData::getDeviceName, NrRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> NrRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> NrRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            NrRecordBatch::getHeader, NrRecordBatch::getDataList);
+
+    public static final SurveyBatchType<PhoneState, PhoneStateData, PhoneStateBatch> PHONE_STATE = new SurveyBatchType<>(
+            PhoneState.getDefaultInstance(),
+            PhoneState::getVersion, PhoneState::getMessageType, PhoneState::getData, PhoneState::hasData,
+            PhoneStateData::getDeviceSerialNumber, PhoneStateData::getDeviceName, PhoneStateData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> PhoneState.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> PhoneStateBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            PhoneStateBatch::getHeader, PhoneStateBatch::getDataList);
+
+    public static final SurveyBatchType<WifiBeaconRecord, WifiBeaconRecordData, WifiBeaconRecordBatch> WIFI_BEACON = new SurveyBatchType<>(
+            WifiBeaconRecord.getDefaultInstance(),
+            WifiBeaconRecord::getVersion, WifiBeaconRecord::getMessageType, WifiBeaconRecord::getData, WifiBeaconRecord::hasData,
+            WifiBeaconRecordData::getDeviceSerialNumber, WifiBeaconRecordData::getDeviceName, WifiBeaconRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> WifiBeaconRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> WifiBeaconRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            WifiBeaconRecordBatch::getHeader, WifiBeaconRecordBatch::getDataList);
+
+    public static final SurveyBatchType<WifiProbeRequestRecord, WifiProbeRequestRecordData, WifiProbeRequestRecordBatch> WIFI_PROBE_REQUEST = new SurveyBatchType<>(
+            WifiProbeRequestRecord.getDefaultInstance(),
+            WifiProbeRequestRecord::getVersion, WifiProbeRequestRecord::getMessageType, WifiProbeRequestRecord::getData, WifiProbeRequestRecord::hasData,
+            WifiProbeRequestRecordData::getDeviceSerialNumber, WifiProbeRequestRecordData::getDeviceName, WifiProbeRequestRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> WifiProbeRequestRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> WifiProbeRequestRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            WifiProbeRequestRecordBatch::getHeader, WifiProbeRequestRecordBatch::getDataList);
+
+    public static final SurveyBatchType<WifiOtaRecord, WifiOtaRecordData, WifiOtaRecordBatch> WIFI_OTA = new SurveyBatchType<>(
+            WifiOtaRecord.getDefaultInstance(),
+            WifiOtaRecord::getVersion, WifiOtaRecord::getMessageType, WifiOtaRecord::getData, WifiOtaRecord::hasData,
+            WifiOtaRecordData::getDeviceSerialNumber, WifiOtaRecordData::getDeviceName, WifiOtaRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> WifiOtaRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> WifiOtaRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            WifiOtaRecordBatch::getHeader, WifiOtaRecordBatch::getDataList);
+
+    public static final SurveyBatchType<BluetoothRecord, BluetoothRecordData, BluetoothRecordBatch> BLUETOOTH = new SurveyBatchType<>(
+            BluetoothRecord.getDefaultInstance(),
+            BluetoothRecord::getVersion, BluetoothRecord::getMessageType, BluetoothRecord::getData, BluetoothRecord::hasData,
+            BluetoothRecordData::getDeviceSerialNumber, BluetoothRecordData::getDeviceName, BluetoothRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> BluetoothRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> BluetoothRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            BluetoothRecordBatch::getHeader, BluetoothRecordBatch::getDataList);
+
+    public static final SurveyBatchType<GnssRecord, GnssRecordData, GnssRecordBatch> GNSS = new SurveyBatchType<>(
+            GnssRecord.getDefaultInstance(),
+            GnssRecord::getVersion, GnssRecord::getMessageType, GnssRecord::getData, GnssRecord::hasData,
+            GnssRecordData::getDeviceSerialNumber, GnssRecordData::getDeviceName, GnssRecordData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> GnssRecord.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> GnssRecordBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            GnssRecordBatch::getHeader, GnssRecordBatch::getDataList);
+
+    public static final SurveyBatchType<EnergyDetection, EnergyDetectionData, EnergyDetectionBatch> ENERGY_DETECTION = new SurveyBatchType<>(
+            EnergyDetection.getDefaultInstance(),
+            EnergyDetection::getVersion, EnergyDetection::getMessageType, EnergyDetection::getData, EnergyDetection::hasData,
+            EnergyDetectionData::getDeviceSerialNumber, EnergyDetectionData::getDeviceName, EnergyDetectionData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> EnergyDetection.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> EnergyDetectionBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            EnergyDetectionBatch::getHeader, EnergyDetectionBatch::getDataList);
+
+    public static final SurveyBatchType<SignalDetection, SignalDetectionData, SignalDetectionBatch> SIGNAL_DETECTION = new SurveyBatchType<>(
+            SignalDetection.getDefaultInstance(),
+            SignalDetection::getVersion, SignalDetection::getMessageType, SignalDetection::getData, SignalDetection::hasData,
+            SignalDetectionData::getDeviceSerialNumber, SignalDetectionData::getDeviceName, SignalDetectionData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> SignalDetection.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> SignalDetectionBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            SignalDetectionBatch::getHeader, SignalDetectionBatch::getDataList);
+
+    public static final SurveyBatchType<LteRrc, LteRrcData, LteRrcBatch> LTE_RRC = new SurveyBatchType<>(
+            LteRrc.getDefaultInstance(),
+            LteRrc::getVersion, LteRrc::getMessageType, LteRrc::getData, LteRrc::hasData,
+            LteRrcData::getDeviceSerialNumber, LteRrcData::getDeviceName, LteRrcData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> LteRrc.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> LteRrcBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            LteRrcBatch::getHeader, LteRrcBatch::getDataList);
+
+    public static final SurveyBatchType<LteNas, LteNasData, LteNasBatch> LTE_NAS = new SurveyBatchType<>(
+            LteNas.getDefaultInstance(),
+            LteNas::getVersion, LteNas::getMessageType, LteNas::getData, LteNas::hasData,
+            LteNasData::getDeviceSerialNumber, LteNasData::getDeviceName, LteNasData::getMissionId,
+            (data, serial, name, mission) -> data.toBuilder().setDeviceSerialNumber(serial).setDeviceName(name).setMissionId(mission),
+            (version, messageType, data) -> LteNas.newBuilder().setVersion(version).setMessageType(messageType).setData(data).build(),
+            (header, data) -> LteNasBatch.newBuilder().setHeader(header).addAllData(data).build(),
+            LteNasBatch::getHeader, LteNasBatch::getDataList);
+
+    private final R defaultRecord;
+    private final FieldDescriptor versionField;
+    private final FieldDescriptor messageTypeField;
+    private final Function<R, String> version;
+    private final Function<R, String> messageType;
+    private final Function<R, D> recordData;
+    private final Predicate<R> hasData;
+    private final Function<D, String> deviceSerialNumber;
+    private final Function<D, String> deviceName;
+    private final Function<D, String> missionId;
+    private final SharedFieldsSetter<D> sharedFieldsSetter;
+    private final RecordFactory<R, D> recordFactory;
+    private final BiFunction<RecordBatchHeader, List<D>, B> batchFactory;
+    private final Function<B, RecordBatchHeader> batchHeader;
+    private final Function<B, List<D>> batchData;
+
+    private SurveyBatchType(R defaultRecord, Function<R, String> version, Function<R, String> messageType,
+                            Function<R, D> recordData, Predicate<R> hasData, Function<D, String> deviceSerialNumber, Function<D, String> deviceName,
+                            Function<D, String> missionId, SharedFieldsSetter<D> sharedFieldsSetter,
+                            RecordFactory<R, D> recordFactory, BiFunction<RecordBatchHeader, List<D>, B> batchFactory,
+                            Function<B, RecordBatchHeader> batchHeader, Function<B, List<D>> batchData) {
+        final Descriptor descriptor = defaultRecord.getDescriptorForType();
+        this.defaultRecord = defaultRecord;
+        this.versionField = descriptor.findFieldByName("version");
+        this.messageTypeField = descriptor.findFieldByName("messageType");
+        this.version = version;
+        this.messageType = messageType;
+        this.recordData = recordData;
+        this.hasData = hasData;
+        this.deviceSerialNumber = deviceSerialNumber;
+        this.deviceName = deviceName;
+        this.missionId = missionId;
+        this.sharedFieldsSetter = sharedFieldsSetter;
+        this.recordFactory = recordFactory;
+        this.batchFactory = batchFactory;
+        this.batchHeader = batchHeader;
+        this.batchData = batchData;
+    }
+
+    /**
+     * @return The header values of the provided record.
+     */
+    public RecordBatchHeader header(R record) {
+        final D data = recordData.apply(record);
+        return RecordBatchHeader.newBuilder()
+                .setVersion(version.apply(record))
+                .setMessageType(messageType.apply(record))
+                .setDeviceSerialNumber(deviceSerialNumber.apply(data))
+                .setDeviceName(deviceName.apply(data))
+                .setMissionId(missionId.apply(data))
+                .setNoData(!hasData.test(record))
+                .build();
+    }
+
+    /**
+     * @return True if the record can be added to a batch with the provided header without losing any of its values.
+     */
+    public boolean hasHeader(R record, RecordBatchHeader header) {
+        final D data = recordData.apply(record);
+        return header.getVersion().equals(version.apply(record))
+                && header.getMessageType().equals(messageType.apply(record))
+                && header.getDeviceSerialNumber().equals(deviceSerialNumber.apply(data))
+                && header.getDeviceName().equals(deviceName.apply(data))
+                && header.getMissionId().equals(missionId.apply(data))
+                && header.getNoData() != hasData.test(record);
+    }
+
+    /**
+     * @return The data portion of the record with the values that are carried in the batch header cleared.
+     */
+    public D batchEntry(R record) {
+        final D data = recordData.apply(record);
+        if (deviceSerialNumber.apply(data).isEmpty() && deviceName.apply(data).isEmpty() && missionId.apply(data).isEmpty()) {
+            return data;
+        }
+        return copy(data, "", "", "");
+    }
+
+    /**
+     * Creates a batch message.
+     *
+     * @param header  The values shared by all the records in the batch.
+     * @param entries The record data, typically created with {@link #batchEntry(Message)}.
+     */
+    public B newBatch(RecordBatchHeader header, List<D> entries) {
+        return batchFactory.apply(header, entries);
+    }
+
+    /**
+     * Converts a batch back to the individual records, restoring the shared values from the batch header. A shared
+     * value that is set on an entry is left as is.
+     */
+    public List<R> toRecords(B batch) {
+        final RecordBatchHeader header = batchHeader.apply(batch);
+        final List<D> entries = batchData.apply(batch);
+        final List<R> records = new ArrayList<>(entries.size());
+        for (D entry : entries) {
+            records.add(toRecord(header, entry));
+        }
+        return records;
+    }
+
+    /**
+     * Creates the record for one entry of a batch, restoring the shared values from the batch header.
+     */
+    @SuppressWarnings("unchecked")
+    public R toRecord(RecordBatchHeader header, D entry) {
+        if (header.getNoData()) {
+            // Only the version and messageType are set on such a record
+            return (R) defaultRecord.newBuilderForType()
+                    .setField(versionField, header.getVersion())
+                    .setField(messageTypeField, header.getMessageType())
+                    .build();
+        }
+
+        final String entrySerialNumber = deviceSerialNumber.apply(entry);
+        final String entryDeviceName = deviceName.apply(entry);
+        final String entryMissionId = missionId.apply(entry);
+
+        D data = entry;
+        if (entrySerialNumber.isEmpty() || entryDeviceName.isEmpty() || entryMissionId.isEmpty()) {
+            data = copy(entry,
+                    entrySerialNumber.isEmpty() ? header.getDeviceSerialNumber() : entrySerialNumber,
+                    entryDeviceName.isEmpty() ? header.getDeviceName() : entryDeviceName,
+                    entryMissionId.isEmpty() ? header.getMissionId() : entryMissionId);
+        }
+        return recordFactory.create(header.getVersion(), header.getMessageType(), data);
+    }
+
+    /**
+     * @return The number of entries in the batch.
+     */
+    public int size(B batch) {
+        return batchData.apply(batch).size();
+    }
+
+    /**
+     * @return A copy of the data with the shared values replaced, which keeps any -0.0 values of the data.
+     */
+    @SuppressWarnings("unchecked")
+    private D copy(D data, String deviceSerialNumber, String deviceName, String missionId) {
+        final Message.Builder builder = sharedFieldsSetter.set(data, deviceSerialNumber, deviceName, missionId);
+        NegativeZeros.restore(data, builder);
+        return (D) builder.build();
+    }
+
+    @FunctionalInterface
+    private interface SharedFieldsSetter<D> {
+        Message.Builder set(D data, String deviceSerialNumber, String deviceName, String missionId);
+    }
+
+    @FunctionalInterface
+    private interface RecordFactory<R, D> {
+        R create(String version, String messageType, D data);
+    }
+}
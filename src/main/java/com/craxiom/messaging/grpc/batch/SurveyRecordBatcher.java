@@ -0,0 +1,236 @@
+package com.craxiom.messaging.grpc.batch;
+
+import com.craxiom.messaging.grpc.RecordBatchHeader;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects survey records into batch messages for the batch RPCs on the WirelessSurvey service (e.g.
+ * StreamLteSurveyBatch).
+ * <p>
+ * A batch is sent to the sink when it reaches the maximum number of records, when adding another record would exceed
+ * the maximum serialized size, or when the oldest record in the batch has waited for the maximum delay. A record with a
+ * different header (version, messageType, deviceSerialNumber, deviceName, or missionId) than the records already in the
+ * batch also causes the batch to be sent first, so that every batch has a single header.
+ * <p>
+ * The maximum delay is only checked when a record is added or {@link #flushIfDue()} is called. Use
+ * {@link #scheduleFlushes(ScheduledExecutorService)} to check it periodically when records arrive slowly.
+ * <p>
+ * This class is thread safe. The sink is always called while holding this batcher's lock so batches are delivered in
+ * order, one at a time, which allows the sink to be a gRPC request {@code StreamObserver} (which is not thread safe):
+ * <pre>{@code
+ * final StreamObserver<LteRecordBatch> requestObserver = stub.streamLteSurveyBatch(responseObserver);
+ * final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher =
+ *         SurveyRecordBatcher.newBuilder(SurveyBatchType.LTE, requestObserver::onNext)
+ *                 .setMaxRecords(500)
+ *                 .setMaxDelay(1, TimeUnit.SECONDS)
+ *                 .build();
+ * }</pre>
+ *
+ * @param <R> The record type (e.g. LteRecord).
+ * @param <D> The record data type (e.g. LteRecordData).
+ * @param <B> The batch type (e.g. LteRecordBatch).
+ */
+public final class SurveyRecordBatcher<R extends Message, D extends Message, B extends Message> implements AutoCloseable {
+    public static final int DEFAULT_MAX_RECORDS = 500;
+    /**
+     * The default limit is well below the 4 MiB maximum inbound message size that gRPC servers use by default.
+     */
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The batch entries are field 2 and the header is field 1 of every batch message.
+     */
+    private static final int TAG_SIZE = 1;
+
+    private final SurveyBatchType<R, D, B> batchType;
+    private final Consumer<? super B> sink;
+    private final int maxRecords;
+    private final int maxBytes;
+    private final long maxDelayNanos;
+    private final LongSupplier nanoClock;
+
+    private final List<D> entries;
+    private RecordBatchHeader header;
+    private int batchBytes;
+    private long oldestRecordNanos;
+    private boolean closed = false;
+
+    private SurveyRecordBatcher(Builder<R, D, B> builder) {
+        this.batchType = builder.batchType;
+        this.sink = builder.sink;
+        this.maxRecords = builder.maxRecords;
+        this.maxBytes = builder.maxBytes;
+        this.maxDelayNanos = builder.maxDelayNanos;
+        this.nanoClock = builder.nanoClock;
+        this.entries = new ArrayList<>(Math.min(maxRecords, 1024));
+    }
+
+    /**
+     * @param batchType The record type to batch, for example {@link SurveyBatchType#LTE}.
+     * @param sink      Receives each completed batch, for example the {@code onNext} method of a request stream.
+     */
+    public static <R extends Message, D extends Message, B extends Message> Builder<R, D, B> newBuilder(
+            SurveyBatchType<R, D, B> batchType, Consumer<? super B> sink) {
+        return new Builder<>(batchType, sink);
+    }
+
+    /**
+     * Adds a record to the current batch, sending the batch to the sink if one of the limits is reached.
+     *
+     * @throws IllegalStateException If this batcher has been closed.
+     */
+    public synchronized void add(R record) {
+        if (closed) throw new IllegalStateException("The batcher has been closed");
+
+        if (header == null) {
+            header = batchType.header(record);
+        } else if (!batchType.hasHeader(record, header)) {
+            flush();
+            header = batchType.header(record);
+        }
+
+        final D entry = batchType.batchEntry(record);
+        final int entryBytes = entrySize(entry);
+        if (!entries.isEmpty() && batchBytes + entryBytes > maxBytes) {
+            flush();
+        }
+
+        if (entries.isEmpty()) {
+            oldestRecordNanos = nanoClock.getAsLong();
+            batchBytes = TAG_SIZE + CodedOutputStream.computeUInt32SizeNoTag(header.getSerializedSize()) + header.getSerializedSize();
+        }
+        entries.add(entry);
+        batchBytes += entryBytes;
+
+        if (entries.size() >= maxRecords || batchBytes >= maxBytes || isDue()) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the current batch if its oldest record has waited for the maximum delay.
+     *
+     * @return True if a batch was sent.
+     */
+    public synchronized boolean flushIfDue() {
+        if (entries.isEmpty() || !isDue()) return false;
+        flush();
+        return true;
+    }
+
+    /**
+     * Sends the current batch to the sink now, if it has any records.
+     */
+    public synchronized void flush() {
+        if (entries.isEmpty()) return;
+
+        final B batch = batchType.newBatch(header, entries);
+        entries.clear();
+        batchBytes = 0;
+        sink.accept(batch);
+    }
+
+    /**
+     * @return The number of records waiting in the current batch.
+     */
+    public synchronized int getPendingCount() {
+        return entries.size();
+    }
+
+    /**
+     * Schedules {@link #flushIfDue()} to run periodically so that a batch is sent within roughly the maximum delay even
+     * when no more records are added. Cancel the returned future when the stream is finished.
+     */
+    public ScheduledFuture<?> scheduleFlushes(ScheduledExecutorService scheduler) {
+        final long period = Math.max(maxDelayNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+        return scheduler.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends any remaining records and stops accepting new ones. This does not complete the sink, so for a gRPC stream
+     * {@code onCompleted} still has to be called after closing the batcher.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        flush();
+        closed = true;
+    }
+
+    private boolean isDue() {
+        return nanoClock.getAsLong() - oldestRecordNanos >= maxDelayNanos;
+    }
+
+    private static int entrySize(Message entry) {
+        final int size = entry.getSerializedSize();
+        return TAG_SIZE + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    /**
+     * Configures a {@link SurveyRecordBatcher}. All the limits are optional.
+     */
+    public static final class Builder<R extends Message, D extends Message, B extends Message> {
+        private final SurveyBatchType<R, D, B> batchType;
+        private final Consumer<? super B> sink;
+        private int maxRecords = DEFAULT_MAX_RECORDS;
+        private int maxBytes = DEFAULT_MAX_BYTES;
+        private long maxDelayNanos = DEFAULT_MAX_DELAY_NANOS;
+        private LongSupplier nanoClock = System::nanoTime;
+
+        private Builder(SurveyBatchType<R, D, B> batchType, Consumer<? super B> sink) {
+            if (batchType == null || sink == null) throw new NullPointerException("The batch type and sink are required");
+            this.batchType = batchType;
+            this.sink = sink;
+        }
+
+        /**
+         * @param maxRecords The maximum number of records in a batch.
+         */
+        public Builder<R, D, B> setMaxRecords(int maxRecords) {
+            if (maxRecords < 1) throw new IllegalArgumentException("The maximum number of records must be at least 1");
+            this.maxRecords = maxRecords;
+            return this;
+        }
+
+        /**
+         * @param maxBytes The maximum serialized size of a batch. A single record that is larger than this limit is
+         *                 still sent, in a batch of its own.
+         */
+        public Builder<R, D, B> setMaxBytes(int maxBytes) {
+            if (maxBytes < 1) throw new IllegalArgumentException("The maximum batch size must be at least 1 byte");
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @param maxDelay The maximum time a record waits in a batch before the batch is sent.
+         */
+        public Builder<R, D, B> setMaxDelay(long maxDelay, TimeUnit unit) {
+            if (maxDelay < 0) throw new IllegalArgumentException("The maximum delay cannot be negative");
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * Replaces the clock used for the maximum delay, for testing.
+         */
+        Builder<R, D, B> setNanoClock(LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            return this;
+        }
+
+        public SurveyRecordBatcher<R, D, B> build() {
+            return new SurveyRecordBatcher<>(this);
+        }
+    }
+}
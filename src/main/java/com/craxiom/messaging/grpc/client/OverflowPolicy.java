@@ -0,0 +1,23 @@
+package com.craxiom.messaging.grpc.client;
+
+/**
+ * What a {@link SurveyStreamClient} does with a new record when its send queue is full because the gRPC stream is not
+ * ready for more messages (e.g. the network link is slower than the rate records are produced).
+ */
+public enum OverflowPolicy {
+    /**
+     * The sending thread waits until there is room in the queue.
+     */
+    BLOCK,
+
+    /**
+     * The oldest record in the queue is dropped to make room for the new record.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Records that do not fit in the queue are written to a file on disk and are sent once the stream catches up. If
+     * the spill file reaches its size limit then new records are dropped.
+     */
+    SPILL_TO_DISK
+}
@@ -0,0 +1,247 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The records that are waiting to be sent by a {@link SurveyStreamClient} or {@link ResumableSurveyClient}: a bounded
+ * in memory queue, followed by the {@link SpillFile} for the {@link OverflowPolicy#SPILL_TO_DISK} policy. Adding a
+ * record to a full queue is handled by the {@link OverflowPolicy}.
+ * <p>
+ * This class is not thread safe; every method must be called while holding the client's lock, which is the lock of the
+ * condition that senders wait on for room in the queue.
+ *
+ * @param <T> The type of record sent on the stream.
+ */
+final class PendingRecords<T extends Message> {
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ArrayDeque<T> queue;
+    private final SpillFile<T> spillFile;
+    private final Condition notFull;
+    private final BooleanSupplier stopped;
+
+    private boolean removed = false;
+
+    private volatile long droppedCount = 0;
+    private volatile long spilledCount = 0;
+    private volatile int queueDepth = 0;
+    private volatile int spillDepth = 0;
+
+    /**
+     * @param notFull        The condition that senders wait on while the queue is full with the
+     *                       {@link OverflowPolicy#BLOCK} policy.
+     * @param stopped        True once the client no longer accepts records, checked again after waiting for room.
+     * @param capacity       The maximum number of records held in memory.
+     * @param overflowPolicy The policy for when the queue is full.
+     * @param spillDirectory The directory for the spill file, only used with the {@link OverflowPolicy#SPILL_TO_DISK}
+     *                       policy.
+     * @param spillParser    The parser for the spilled records.
+     * @param maxSpillBytes  The maximum size of the spill file.
+     * @throws UncheckedIOException If the spill file could not be created.
+     */
+    PendingRecords(Condition notFull, BooleanSupplier stopped, int capacity, OverflowPolicy overflowPolicy,
+                   Path spillDirectory, Parser<T> spillParser, long maxSpillBytes) {
+        this.notFull = notFull;
+        this.stopped = stopped;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+            try {
+                spillFile = new SpillFile<>(spillDirectory, spillParser, maxSpillBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create the spill file in " + spillDirectory, e);
+            }
+        } else {
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Adds a record after the ones that are already waiting. With the {@link OverflowPolicy#BLOCK} policy this waits
+     * until there is room in the queue. If the waiting thread is interrupted the record is dropped and the interrupt
+     * flag is set again.
+     *
+     * @return True if the record was added, false if it was dropped because the client has stopped, the spill file is
+     * full, or the thread was interrupted while waiting.
+     */
+    boolean add(T record) {
+        if (stopped.getAsBoolean()) {
+            droppedCount++;
+            return false;
+        }
+
+        if (spillFile != null && !spillFile.isEmpty()) {
+            // Records are already waiting on disk, so this one has to go after them to keep the records in order
+            return spill(record);
+        }
+        if (queue.size() < capacity) {
+            enqueue(record);
+            return true;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                if (!awaitRoom()) {
+                    droppedCount++;
+                    return false;
+                }
+                enqueue(record);
+                return true;
+            case DROP_OLDEST:
+                queue.poll();
+                droppedCount++;
+                enqueue(record);
+                return true;
+            case SPILL_TO_DISK:
+                return spill(record);
+            default:
+                throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+        }
+    }
+
+    /**
+     * Removes the oldest record. Call {@link #finishPolling()} once done, including when this throws.
+     *
+     * @return The oldest record, or null if there are none.
+     * @throws IOException If the spill file could not be read.
+     */
+    T poll() throws IOException {
+        T next = queue.poll();
+        if (next == null && spillFile != null) next = spillFile.poll();
+        if (next != null) removed = true;
+        return next;
+    }
+
+    /**
+     * Updates the depths after records have been polled, and wakes the senders waiting for room if any were removed.
+     */
+    void finishPolling() {
+        queueDepth = queue.size();
+        if (spillFile != null) spillDepth = spillFile.size();
+        if (removed) {
+            removed = false;
+            notFull.signalAll();
+        }
+    }
+
+    /**
+     * Puts records in front of the ones that are waiting, for example the unacknowledged records that are resent after
+     * a reconnect. The queue can go over its capacity this way, since the records have already been accepted.
+     *
+     * @param records The records in the order they are to be sent.
+     */
+    void addFirst(Deque<T> records) {
+        for (Iterator<T> iterator = records.descendingIterator(); iterator.hasNext(); ) {
+            queue.addFirst(iterator.next());
+        }
+        queueDepth = queue.size();
+    }
+
+    /**
+     * @return True if no records are waiting, neither in memory nor in the spill file.
+     */
+    boolean isEmpty() {
+        return queue.isEmpty() && (spillFile == null || spillFile.isEmpty());
+    }
+
+    /**
+     * Counts records that were dropped outside this queue, for example the unacknowledged window of a failed client.
+     */
+    void countDropped(long count) {
+        droppedCount += count;
+    }
+
+    /**
+     * Drops all the waiting records, which are counted as dropped, deletes the spill file, and wakes the waiting
+     * senders.
+     */
+    void discard() {
+        droppedCount += queue.size() + (spillFile == null ? 0 : spillFile.size());
+        queue.clear();
+        queueDepth = 0;
+        spillDepth = 0;
+        close();
+        notFull.signalAll();
+    }
+
+    /**
+     * Wakes the senders waiting for room, so that they see that the client has stopped.
+     */
+    void wakeSenders() {
+        notFull.signalAll();
+    }
+
+    /**
+     * Deletes the spill file.
+     */
+    void close() {
+        if (spillFile == null) return;
+        try {
+            spillFile.close();
+        } catch (IOException ignored) {
+            // The file is temporary, there is nothing else to do with it
+        }
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    int getSpillDepth() {
+        return spillDepth;
+    }
+
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+    long getSpilledCount() {
+        return spilledCount;
+    }
+
+    private boolean awaitRoom() {
+        try {
+            while (queue.size() >= capacity) {
+                if (stopped.getAsBoolean()) return false;
+                notFull.await();
+            }
+            return !stopped.getAsBoolean();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void enqueue(T record) {
+        queue.add(record);
+        queueDepth = queue.size();
+    }
+
+    private boolean spill(T record) {
+        try {
+            if (spillFile.append(record)) {
+                spilledCount++;
+                spillDepth = spillFile.size();
+                return true;
+            }
+        } catch (IOException e) {
+            // Treated the same as a full spill file
+        }
+        droppedCount++;
+        return false;
+    }
+}
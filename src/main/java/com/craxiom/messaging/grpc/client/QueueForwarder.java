@@ -0,0 +1,257 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.craxiom.messaging.queue.SurveyRecordQueue;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the records of a {@link SurveyRecordQueue} to the WirelessSurvey service, and commits them in the queue once
+ * the server has acknowledged them.
+ * <p>
+ * Each record type is sent through its own {@link ResumableSurveyClient}, which keeps resending the unacknowledged
+ * records over a reconnecting stream while the uplink comes and goes. The forwarder only reads from the queue as fast
+ * as the clients take the records, so during a long outage the records wait in the queue on disk rather than on the
+ * heap. The queue is committed up to the first record that has not been acknowledged yet, so if the app is stopped
+ * before the records make it to the server, a new forwarder on the reopened queue sends them again.
+ * <pre>{@code
+ * final WirelessSurveyGrpc.WirelessSurveyStub stub = WirelessSurveyGrpc.newStub(channel);
+ * final QueueForwarder forwarder = QueueForwarder.newBuilder(queue)
+ *         .route(LteRecord.class, ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked).start())
+ *         .route(NrRecord.class, ResumableSurveyClient.newBuilder(stub::streamNrSurveyAcked).start())
+ *         .route(GnssRecord.class, ResumableSurveyClient.newBuilder(stub::streamGnssSurveyAcked).start())
+ *         .start();
+ * ...
+ * forwarder.close();
+ * forwarder.getCompletion().get(5, TimeUnit.MINUTES);
+ * }</pre>
+ * Records of a type that has no route are committed without being sent. The forwarder reads from the queue on its own
+ * thread and owns the clients it is given, but not the queue, which has to stay open until the forwarder completes.
+ */
+public final class QueueForwarder implements AutoCloseable {
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int COMMIT_INTERVAL = 64;
+
+    private final SurveyRecordQueue queue;
+    private final Map<Class<?>, Route> routes;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+    private volatile long forwardedCount = 0;
+    private volatile long skippedCount = 0;
+
+    private QueueForwarder(Builder builder) {
+        this.queue = builder.queue;
+        this.routes = new HashMap<>(builder.routes);
+        this.thread = new Thread(this::run, "survey-queue-forwarder");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * @param queue The queue to send the records of. Any records that were read but not committed are read again.
+     */
+    public static Builder newBuilder(SurveyRecordQueue queue) {
+        return new Builder(queue);
+    }
+
+    /**
+     * Stops reading from the queue and closes the clients. The records that have not been read yet stay in the queue
+     * for the next forwarder. The forwarder is complete once every record it sent has been acknowledged and committed.
+     * This method does not wait; use {@link #getCompletion()} for that.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Stops reading from the queue right away and cancels the clients. The records that have not been acknowledged
+     * stay in the queue.
+     */
+    public void cancel(String message) {
+        closed = true;
+        for (Route route : routes.values()) {
+            route.client.cancel(message);
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * @return A future that is completed once the forwarder has been closed and everything it sent has been committed,
+     * or completed exceptionally if one of the clients fails or the queue can not be read.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return The number of records passed to the clients.
+     */
+    public long getForwardedCount() {
+        return forwardedCount;
+    }
+
+    /**
+     * @return The number of records that were committed without being sent because their type has no route.
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    private void run() {
+        try {
+            queue.rewind();
+            int sinceCommit = 0;
+            while (!closed) {
+                final Message record = queue.read();
+                if (record == null) {
+                    commitAcknowledged();
+                    checkClients();
+                    if (!queue.awaitRecords(IDLE_WAIT_NANOS, TimeUnit.NANOSECONDS)) queue.sync();
+                    continue;
+                }
+
+                forward(record);
+                if (++sinceCommit == COMMIT_INTERVAL) {
+                    sinceCommit = 0;
+                    commitAcknowledged();
+                }
+            }
+
+            for (Route route : routes.values()) {
+                route.client.close();
+            }
+            for (Route route : routes.values()) {
+                route.client.getCompletion().get();
+            }
+            commitAcknowledged();
+            queue.sync();
+            completion.complete(null);
+        } catch (ExecutionException e) {
+            fail(e.getCause());
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    private void forward(Message record) throws ExecutionException, InterruptedException {
+        final Route route = routes.get(record.getClass());
+        if (route == null) {
+            pending.add(new Pending(null, 0, queue.getReadPosition()));
+            skippedCount++;
+            return;
+        }
+
+        if (!route.client.send(record)) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            // The client only refuses records once it has been closed or has failed
+            route.client.getCompletion().get();
+            throw new IllegalStateException("The client for " + record.getClass().getSimpleName()
+                    + " records has completed");
+        }
+        pending.add(new Pending(route.client, ++route.sentCount, queue.getReadPosition()));
+        forwardedCount++;
+    }
+
+    /**
+     * Throws the failure of any client that has failed, which is otherwise only noticed when the next record of its
+     * type is sent.
+     */
+    private void checkClients() throws ExecutionException, InterruptedException {
+        for (Route route : routes.values()) {
+            if (route.client.getCompletion().isCompletedExceptionally()) route.client.getCompletion().get();
+        }
+    }
+
+    /**
+     * Commits the queue up to the first record that has not been acknowledged.
+     */
+    private void commitAcknowledged() throws IOException {
+        long position = -1;
+        while (!pending.isEmpty()) {
+            final Pending next = pending.peek();
+            if (next.client != null && next.client.getAckedCount() < next.sequence) break;
+            position = pending.poll().position;
+        }
+        if (position != -1) queue.commit(position);
+    }
+
+    private void fail(Throwable throwable) {
+        for (Route route : routes.values()) {
+            route.client.cancel("The queue forwarder failed");
+        }
+        completion.completeExceptionally(throwable);
+    }
+
+    private static final class Route {
+        private final ResumableSurveyClient<Message> client;
+        private long sentCount = 0;
+
+        private Route(ResumableSurveyClient<Message> client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * A record that was read from the queue and is waiting to be acknowledged.
+     */
+    private static final class Pending {
+        private final ResumableSurveyClient<?> client;
+        private final long sequence;
+        private final long position;
+
+        private Pending(ResumableSurveyClient<?> client, long sequence, long position) {
+            this.client = client;
+            this.sequence = sequence;
+            this.position = position;
+        }
+    }
+
+    public static final class Builder {
+        private final SurveyRecordQueue queue;
+        private final Map<Class<?>, Route> routes = new HashMap<>();
+
+        private Builder(SurveyRecordQueue queue) {
+            if (queue == null) throw new NullPointerException("The queue can not be null");
+            this.queue = queue;
+        }
+
+        /**
+         * Sends the records of a type through a client.
+         *
+         * @param recordClass The record class, e.g. {@code LteRecord.class}.
+         * @param client      A client for the acknowledged RPC of the record type, which must use the
+         *                    {@link OverflowPolicy#BLOCK} policy so that no record is dropped before it is committed.
+         *                    No other code should send records through it.
+         */
+        @SuppressWarnings("unchecked")
+        public <T extends Message> Builder route(Class<T> recordClass, ResumableSurveyClient<T> client) {
+            if (client.getOverflowPolicy() != OverflowPolicy.BLOCK) {
+                throw new IllegalArgumentException("The client for " + recordClass.getSimpleName()
+                        + " records must use the BLOCK overflow policy");
+            }
+            if (routes.putIfAbsent(recordClass, new Route((ResumableSurveyClient<Message>) client)) != null) {
+                throw new IllegalArgumentException(recordClass.getSimpleName() + " records already have a route");
+            }
+            return this;
+        }
+
+        /**
+         * Starts forwarding the records on a new thread.
+         */
+        public QueueForwarder start() {
+            if (routes.isEmpty()) throw new IllegalStateException("At least one route is required");
+            final QueueForwarder forwarder = new QueueForwarder(this);
+            forwarder.thread.start();
+            return forwarder;
+        }
+    }
+}
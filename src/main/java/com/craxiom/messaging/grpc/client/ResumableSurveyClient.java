@@ -0,0 +1,589 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.craxiom.messaging.grpc.SurveyAck;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A client for the acknowledged RPCs on the WirelessSurvey service (e.g. StreamLteSurveyAcked) that survives dropped
+ * connections without losing records or resending the whole survey.
+ * <p>
+ * Every record that has been sent is kept in an unacknowledged window until the server's {@link SurveyAck} says that it
+ * has been committed. If the stream fails with a status that is worth retrying (e.g. UNAVAILABLE because the cellular
+ * link dropped), the client opens a new stream after a backoff and resends only the records in the window, followed by
+ * the records that were still waiting to be sent. The server may already have committed some of the resent records if
+ * their ack was lost along with the connection, so the records are delivered at least once and a sink that has to be
+ * exact should drop duplicates, for example by the deviceSerialNumber, missionId and recordNumber.
+ * <p>
+ * Like the {@link SurveyStreamClient}, records are only passed to the stream while it is ready, and the records waiting
+ * to be sent are held in a bounded queue whose overflow is handled by the {@link OverflowPolicy}, including spilling
+ * them to disk. Sending also pauses while the window is full, so the window bounds how many records are resent after a
+ * reconnect.
+ * <pre>{@code
+ * final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+ *         .setWindowSize(5_000)
+ *         .setSpillToDisk(spillDirectory, LteRecord.parser(), 256 * 1024 * 1024)
+ *         .start();
+ * client.send(lteRecord);
+ * ...
+ * client.close();
+ * client.getCompletion().get(5, TimeUnit.MINUTES);
+ * }</pre>
+ * This class is thread safe; records can be sent from any number of threads.
+ *
+ * @param <T> The type of record sent on the stream (e.g. LteRecord).
+ */
+public final class ResumableSurveyClient<T extends Message> implements AutoCloseable {
+    public static final int DEFAULT_WINDOW_SIZE = 1000;
+    public static final long DEFAULT_INITIAL_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final long DEFAULT_MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+    public static final int DEFAULT_MAX_RECONNECT_ATTEMPTS = 20;
+
+    /**
+     * The status codes after which the records are resent on a new stream. Any other status ends the client, because
+     * a new stream would fail the same way. That includes INTERNAL and UNKNOWN, which are what a server that can not
+     * handle the records (e.g. a bug in its sink) fails with.
+     */
+    private static final Set<Status.Code> RETRYABLE_CODES = EnumSet.of(Status.Code.UNAVAILABLE,
+            Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED, Status.Code.ABORTED);
+
+    private final Function<StreamObserver<SurveyAck>, StreamObserver<T>> call;
+    private final int windowSize;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final int maxReconnectAttempts;
+    private final Consumer<SurveyAck> ackListener;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<T> window;
+    private final PendingRecords<T> pending;
+
+    private Attempt attempt;
+    private ScheduledFuture<?> reconnect;
+    private int failedAttempts = 0;
+    private int resendRemaining = 0;
+    private boolean closed = false;
+    private boolean done = false;
+
+    private volatile long sentCount = 0;
+    private volatile long resentCount = 0;
+    private volatile long ackedCount = 0;
+    private volatile int reconnectCount = 0;
+    private volatile int windowDepth = 0;
+
+    private ResumableSurveyClient(Builder<T> builder) {
+        this.call = builder.call;
+        this.windowSize = builder.windowSize;
+        this.initialBackoffNanos = builder.initialBackoffNanos;
+        this.maxBackoffNanos = builder.maxBackoffNanos;
+        this.maxReconnectAttempts = builder.maxReconnectAttempts;
+        this.ackListener = builder.ackListener;
+        this.window = new ArrayDeque<>(Math.min(windowSize, 1024));
+        this.pending = new PendingRecords<>(notFull, () -> closed || done, builder.queueCapacity,
+                builder.overflowPolicy, builder.spillDirectory, builder.spillParser, builder.maxSpillBytes);
+
+        this.ownsScheduler = builder.scheduler == null;
+        this.scheduler = ownsScheduler ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "survey-stream-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        }) : builder.scheduler;
+    }
+
+    /**
+     * @param call The stub method that starts the acknowledged stream, for example {@code stub::streamLteSurveyAcked}
+     *             where stub is a {@code WirelessSurveyGrpc.WirelessSurveyStub}.
+     */
+    public static <T extends Message> Builder<T> newBuilder(Function<StreamObserver<SurveyAck>, StreamObserver<T>> call) {
+        return new Builder<>(call);
+    }
+
+    /**
+     * Queues a record to be sent. The record is passed to the stream right away if the stream is ready, the window has
+     * room, and no other records are waiting.
+     * <p>
+     * With the {@link OverflowPolicy#BLOCK} policy this waits until there is room in the queue. If the waiting thread is
+     * interrupted the record is dropped and the interrupt flag is set again.
+     *
+     * @return True if the record was queued, false if it was dropped because the client has been closed or has failed,
+     * the spill file is full, or the thread was interrupted while waiting.
+     */
+    public boolean send(T record) {
+        lock.lock();
+        try {
+            if (!pending.add(record)) return false;
+            drain();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting records. The stream is completed once all the queued records have been sent and acknowledged,
+     * reconnecting as often as needed. This method does not wait; use {@link #getCompletion()} for that.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            pending.wakeSenders();
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the stream and discards all the records that have not been acknowledged, which are counted as dropped.
+     */
+    public void cancel(String message) {
+        lock.lock();
+        try {
+            closed = true;
+            if (attempt != null && attempt.started) attempt.requestStream.cancel(message, null);
+        } finally {
+            lock.unlock();
+        }
+        fail(Status.CANCELLED.withDescription(message).asRuntimeException());
+    }
+
+    /**
+     * @return A future that is completed once the client has been closed and every record has been acknowledged, or
+     * completed exceptionally if the stream fails with a status that is not retried, the reconnect attempts run out, or
+     * the client is cancelled.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return The number of records that have been sent and are waiting to be acknowledged.
+     */
+    public int getWindowDepth() {
+        return windowDepth;
+    }
+
+    /**
+     * @return The number of records waiting in the in memory queue to be sent.
+     */
+    public int getQueueDepth() {
+        return pending.getQueueDepth();
+    }
+
+    /**
+     * @return The number of records waiting in the spill file.
+     */
+    public int getSpillDepth() {
+        return pending.getSpillDepth();
+    }
+
+    /**
+     * @return The number of records passed to the gRPC streams, including the resent ones.
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return The number of records that were sent again on a new stream because they had not been acknowledged.
+     */
+    public long getResentCount() {
+        return resentCount;
+    }
+
+    /**
+     * @return The number of records acknowledged by the server.
+     */
+    public long getAckedCount() {
+        return ackedCount;
+    }
+
+    /**
+     * @return The number of records that were dropped, either because of the overflow policy or because the client had
+     * been closed or failed.
+     */
+    public long getDroppedCount() {
+        return pending.getDroppedCount();
+    }
+
+    /**
+     * @return The total number of records that have been written to the spill file.
+     */
+    public long getSpilledCount() {
+        return pending.getSpilledCount();
+    }
+
+    /**
+     * @return The number of times a new stream was opened after a failure.
+     */
+    public int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return pending.getOverflowPolicy();
+    }
+
+    private void connect() {
+        final Attempt next = new Attempt();
+        lock.lock();
+        try {
+            if (done) return;
+            attempt = next;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            call.apply(next);
+        } catch (RuntimeException e) {
+            next.onError(e);
+            return;
+        }
+
+        lock.lock();
+        try {
+            // The stream can only be used once the call has started, which is after beforeStart
+            next.started = true;
+            if (done) {
+                next.requestStream.cancel("The client has been cancelled", null);
+            } else if (next == attempt) {
+                drain();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes queued records to the current stream for as long as it is ready and the window has room, and half closes
+     * the stream once the client is closed and everything has been sent. Must be called while holding the lock.
+     */
+    private void drain() {
+        final Attempt current = attempt;
+        if (done || current == null || !current.started || current.halfClosed) return;
+
+        try {
+            while (window.size() < windowSize && current.requestStream.isReady()) {
+                final T next = pending.poll();
+                if (next == null) break;
+
+                window.add(next);
+                current.requestStream.onNext(next);
+                sentCount++;
+                if (resendRemaining > 0) {
+                    resendRemaining--;
+                    resentCount++;
+                }
+            }
+        } catch (IOException e) {
+            current.requestStream.cancel("Could not read the spill file", e);
+            fail(e);
+            return;
+        } finally {
+            windowDepth = window.size();
+            pending.finishPolling();
+        }
+
+        if (closed && pending.isEmpty()) {
+            current.halfClosed = true;
+            current.requestStream.onCompleted();
+        }
+    }
+
+    private void onAck(Attempt source, SurveyAck ack) {
+        lock.lock();
+        try {
+            if (source != attempt || done) return;
+
+            final long newlyAcked = Math.min(ack.getCommittedCount() - source.ackedCount, window.size());
+            if (newlyAcked <= 0) return;
+            for (long i = 0; i < newlyAcked; i++) {
+                window.poll();
+            }
+            source.ackedCount = ack.getCommittedCount();
+            ackedCount += newlyAcked;
+            windowDepth = window.size();
+            failedAttempts = 0;
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onStreamError(Attempt source, Throwable throwable) {
+        lock.lock();
+        try {
+            if (source != attempt || done) return;
+            attempt = null;
+
+            final Status.Code code = Status.fromThrowable(throwable).getCode();
+            if (RETRYABLE_CODES.contains(code) && failedAttempts < maxReconnectAttempts) {
+                scheduleReconnect();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        fail(throwable);
+    }
+
+    /**
+     * Puts the unacknowledged records back in front of the queue, in the order they were sent, and opens a new stream
+     * after the backoff. Must be called while holding the lock.
+     */
+    private void scheduleReconnect() {
+        resendRemaining += window.size();
+        pending.addFirst(window);
+        window.clear();
+        windowDepth = 0;
+
+        final long backoffNanos = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(failedAttempts, 30));
+        failedAttempts++;
+        reconnectCount++;
+        reconnect = scheduler.schedule(this::connect, backoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onStreamCompleted(Attempt source) {
+        final boolean acknowledged;
+        lock.lock();
+        try {
+            if (source != attempt || done) return;
+            acknowledged = source.halfClosed && window.isEmpty();
+            if (acknowledged) {
+                done = true;
+                closeResources();
+            } else {
+                // The server ended the stream before every record was acknowledged, so it is treated as dropped
+                attempt = null;
+                if (failedAttempts < maxReconnectAttempts) {
+                    scheduleReconnect();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (acknowledged) {
+            completion.complete(null);
+        } else {
+            fail(Status.UNAVAILABLE.withDescription("The server ended the stream before every record was acknowledged")
+                    .asRuntimeException());
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        lock.lock();
+        try {
+            if (done) return;
+            done = true;
+            closed = true;
+            pending.countDropped(window.size());
+            window.clear();
+            windowDepth = 0;
+            pending.discard();
+            if (reconnect != null) reconnect.cancel(false);
+            closeResources();
+        } finally {
+            lock.unlock();
+        }
+        completion.completeExceptionally(throwable);
+    }
+
+    private void closeResources() {
+        if (ownsScheduler) scheduler.shutdownNow();
+        pending.close();
+    }
+
+    /**
+     * One stream. Callbacks from a stream that has been replaced are ignored.
+     */
+    private final class Attempt implements ClientResponseObserver<T, SurveyAck> {
+        private ClientCallStreamObserver<T> requestStream;
+        private boolean started = false;
+        private long ackedCount = 0;
+        private boolean halfClosed = false;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<T> stream) {
+            lock.lock();
+            try {
+                requestStream = stream;
+            } finally {
+                lock.unlock();
+            }
+            stream.setOnReadyHandler(() -> {
+                lock.lock();
+                try {
+                    if (this == attempt) drain();
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(SurveyAck ack) {
+            onAck(this, ack);
+            if (ackListener != null) ackListener.accept(ack);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            onStreamError(this, throwable);
+        }
+
+        @Override
+        public void onCompleted() {
+            onStreamCompleted(this);
+        }
+    }
+
+    /**
+     * Configures and starts a {@link ResumableSurveyClient}.
+     */
+    public static final class Builder<T extends Message> {
+        private final Function<StreamObserver<SurveyAck>, StreamObserver<T>> call;
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        private int queueCapacity = SurveyStreamClient.DEFAULT_QUEUE_CAPACITY;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private Path spillDirectory;
+        private Parser<T> spillParser;
+        private long maxSpillBytes;
+        private long initialBackoffNanos = DEFAULT_INITIAL_BACKOFF_NANOS;
+        private long maxBackoffNanos = DEFAULT_MAX_BACKOFF_NANOS;
+        private int maxReconnectAttempts = DEFAULT_MAX_RECONNECT_ATTEMPTS;
+        private Consumer<SurveyAck> ackListener;
+        private ScheduledExecutorService scheduler;
+
+        private Builder(Function<StreamObserver<SurveyAck>, StreamObserver<T>> call) {
+            if (call == null) throw new NullPointerException("The stub call is required");
+            this.call = call;
+        }
+
+        /**
+         * @param windowSize The maximum number of records that have been sent and not yet acknowledged. These are the
+         *                   records that are resent after a reconnect.
+         */
+        public Builder<T> setWindowSize(int windowSize) {
+            if (windowSize < 1) throw new IllegalArgumentException("The window size must be at least 1");
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity The maximum number of records held in memory while waiting to be sent.
+         */
+        public Builder<T> setQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) throw new IllegalArgumentException("The queue capacity must be at least 1");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the policy for when the queue is full, {@link OverflowPolicy#BLOCK} by default. Use
+         * {@link #setSpillToDisk(Path, Parser, long)} for the {@link OverflowPolicy#SPILL_TO_DISK} policy.
+         */
+        public Builder<T> setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK && spillDirectory == null) {
+                throw new IllegalArgumentException("Use setSpillToDisk to configure the spill file");
+            }
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Selects the {@link OverflowPolicy#SPILL_TO_DISK} policy.
+         *
+         * @param directory The directory for the spill file, which is deleted when the client completes.
+         * @param parser    The parser for the record type, for example {@code LteRecord.parser()}.
+         * @param maxBytes  The maximum size of the spill file. Records are dropped once it is full.
+         */
+        public Builder<T> setSpillToDisk(Path directory, Parser<T> parser, long maxBytes) {
+            if (directory == null || parser == null) throw new NullPointerException("The directory and parser are required");
+            if (maxBytes < 1) throw new IllegalArgumentException("The maximum spill file size must be at least 1 byte");
+            this.spillDirectory = directory;
+            this.spillParser = parser;
+            this.maxSpillBytes = maxBytes;
+            this.overflowPolicy = OverflowPolicy.SPILL_TO_DISK;
+            return this;
+        }
+
+        /**
+         * @param initial The delay before the first reconnect after a failure, doubled for each failure in a row.
+         * @param max     The longest delay between reconnects.
+         */
+        public Builder<T> setReconnectBackoff(long initial, long max, TimeUnit unit) {
+            if (initial < 0 || max < initial) {
+                throw new IllegalArgumentException("The backoff must satisfy 0 <= initial <= max");
+            }
+            this.initialBackoffNanos = unit.toNanos(initial);
+            this.maxBackoffNanos = unit.toNanos(max);
+            return this;
+        }
+
+        /**
+         * @param maxReconnectAttempts The number of reconnects in a row without any record being acknowledged before the
+         *                             client gives up, {@link #DEFAULT_MAX_RECONNECT_ATTEMPTS} by default. With the
+         *                             default backoff that is about 15 minutes without a connection.
+         */
+        public Builder<T> setMaxReconnectAttempts(int maxReconnectAttempts) {
+            if (maxReconnectAttempts < 0) throw new IllegalArgumentException("The reconnect attempts cannot be negative");
+            this.maxReconnectAttempts = maxReconnectAttempts;
+            return this;
+        }
+
+        /**
+         * @param ackListener Called with every ack from the server, for example to record the highest committed
+         *                    recordNumber of each device. It is called on a gRPC thread and must not block.
+         */
+        public Builder<T> setAckListener(Consumer<SurveyAck> ackListener) {
+            this.ackListener = ackListener;
+            return this;
+        }
+
+        /**
+         * @param scheduler Runs the reconnects, and is not shut down by the client. By default the client uses its own
+         *                  daemon thread.
+         */
+        public Builder<T> setScheduler(ScheduledExecutorService scheduler) {
+            if (scheduler == null) throw new NullPointerException("The scheduler is required");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Starts the first stream by calling the stub method.
+         *
+         * @throws UncheckedIOException If the spill file could not be created.
+         */
+        public ResumableSurveyClient<T> start() {
+            final ResumableSurveyClient<T> client = new ResumableSurveyClient<>(this);
+            client.connect();
+            return client;
+        }
+    }
+}
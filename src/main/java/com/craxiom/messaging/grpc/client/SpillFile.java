@@ -0,0 +1,102 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A first in, first out queue of protobuf messages stored in a file, used by {@link PendingRecords} for the
+ * {@link OverflowPolicy#SPILL_TO_DISK} policy. Each message is written length delimited. The file is truncated each time
+ * all the spilled messages have been read back so that it does not grow without bound over a long stream.
+ * <p>
+ * This class is not thread safe; it is only accessed while holding the client's lock.
+ *
+ * @param <T> The type of message stored in the file.
+ */
+final class SpillFile<T extends MessageLite> implements Closeable {
+    private final Path path;
+    private final Parser<T> parser;
+    private final long maxBytes;
+
+    private OutputStream out;
+    private InputStream in;
+    private long writtenBytes = 0;
+    private int count = 0;
+
+    /**
+     * @param directory The directory to create the spill file in.
+     * @param parser    The parser for the spilled messages.
+     * @param maxBytes  The maximum size of the spill file.
+     */
+    SpillFile(Path directory, Parser<T> parser, long maxBytes) throws IOException {
+        this.path = Files.createTempFile(directory, "survey-stream-", ".spill");
+        this.parser = parser;
+        this.maxBytes = maxBytes;
+        this.out = new BufferedOutputStream(Files.newOutputStream(path));
+    }
+
+    /**
+     * @return False if the message was not written because the file has reached its size limit.
+     */
+    boolean append(T message) throws IOException {
+        final int size = message.getSerializedSize();
+        final int delimitedSize = CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+        if (writtenBytes + delimitedSize > maxBytes) return false;
+
+        message.writeDelimitedTo(out);
+        writtenBytes += delimitedSize;
+        count++;
+        return true;
+    }
+
+    /**
+     * @return The oldest message in the file, or null if the file is empty.
+     */
+    T poll() throws IOException {
+        if (count == 0) return null;
+
+        // Messages may have been appended since the last read, so they have to be in the file before reading
+        out.flush();
+        if (in == null) in = new BufferedInputStream(Files.newInputStream(path));
+        final T message = parser.parseDelimitedFrom(in);
+        if (message == null) throw new EOFException("The spill file " + path + " ended before all the messages were read");
+        count--;
+
+        if (count == 0) reset();
+        return message;
+    }
+
+    /**
+     * @return The number of messages in the file.
+     */
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        count = 0;
+        try {
+            if (in != null) in.close();
+            out.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void reset() throws IOException {
+        in.close();
+        in = null;
+        out.close();
+        out = new BufferedOutputStream(Files.newOutputStream(path));
+        writtenBytes = 0;
+    }
+}
@@ -0,0 +1,315 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A flow controlled wrapper around one of the client streaming RPCs on the WirelessSurvey service (or any other client
+ * streaming RPC).
+ * <p>
+ * The generated async stubs buffer every message passed to {@code onNext} in the transport, whether or not the
+ * stream is ready, so a client that produces records faster than the link can carry them eventually runs out of
+ * memory. This client instead holds records in a bounded queue and only passes them to the stream while
+ * {@link ClientCallStreamObserver#isReady()} is true, continuing from the stream's on ready handler when the link
+ * catches up. What happens when the queue is full is controlled by the {@link OverflowPolicy}.
+ * <pre>{@code
+ * final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+ *         .setQueueCapacity(10_000)
+ *         .setOverflowPolicy(OverflowPolicy.DROP_OLDEST)
+ *         .start();
+ * client.send(lteRecord);
+ * ...
+ * client.close();
+ * client.getResponse().get(30, TimeUnit.SECONDS);
+ * }</pre>
+ * This class is thread safe; records can be sent from any number of threads.
+ *
+ * @param <T> The type of record sent on the stream (e.g. LteRecord or LteRecordBatch).
+ * @param <R> The type of the response message (e.g. LteSurveyResponse).
+ */
+public final class SurveyStreamClient<T extends Message, R> implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final CompletableFuture<R> response = new CompletableFuture<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final PendingRecords<T> pending;
+
+    private ClientCallStreamObserver<T> requestStream;
+    private R responseValue;
+    private boolean closed = false;
+    private boolean completed = false;
+    private boolean cancelled = false;
+    private Throwable failure;
+
+    private volatile long sentCount = 0;
+
+    private SurveyStreamClient(Builder<T, R> builder) {
+        this.pending = new PendingRecords<>(notFull, () -> closed || failure != null, builder.queueCapacity,
+                builder.overflowPolicy, builder.spillDirectory, builder.spillParser, builder.maxSpillBytes);
+    }
+
+    /**
+     * @param call The stub method that starts the stream, for example {@code stub::streamLteSurvey} where stub is a
+     *             {@code WirelessSurveyGrpc.WirelessSurveyStub}.
+     */
+    public static <T extends Message, R> Builder<T, R> newBuilder(Function<StreamObserver<R>, StreamObserver<T>> call) {
+        return new Builder<>(call);
+    }
+
+    /**
+     * Queues a record to be sent on the stream. The record is passed to the stream right away if the stream is ready and
+     * no other records are waiting.
+     * <p>
+     * With the {@link OverflowPolicy#BLOCK} policy this waits until there is room in the queue. If the waiting thread is
+     * interrupted the record is dropped and the interrupt flag is set again.
+     *
+     * @return True if the record was queued, false if it was dropped because the stream has been closed or has failed,
+     * the spill file is full, or the thread was interrupted while waiting.
+     */
+    public boolean send(T record) {
+        lock.lock();
+        try {
+            if (!pending.add(record)) return false;
+            drain();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting records and completes the stream once all the queued records have been sent. This method does not
+     * wait; use {@link #getResponse()} to wait for the server's response.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            pending.wakeSenders();
+            if (failure == null) drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the stream and discards all the queued records, which are counted as dropped before this method returns.
+     */
+    public void cancel(String message) {
+        lock.lock();
+        try {
+            closed = true;
+            cancelled = true;
+            pending.discard();
+            if (requestStream != null && !completed && failure == null) requestStream.cancel(message, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return A future that is completed with the server's response once the stream has completed, or completed
+     * exceptionally if the stream fails.
+     */
+    public CompletableFuture<R> getResponse() {
+        return response;
+    }
+
+    /**
+     * @return The number of records waiting in the in memory queue.
+     */
+    public int getQueueDepth() {
+        return pending.getQueueDepth();
+    }
+
+    /**
+     * @return The number of records waiting in the spill file.
+     */
+    public int getSpillDepth() {
+        return pending.getSpillDepth();
+    }
+
+    /**
+     * @return The number of records passed to the gRPC stream.
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return The number of records that were dropped, either because of the overflow policy or because the stream had
+     * been closed or failed.
+     */
+    public long getDroppedCount() {
+        return pending.getDroppedCount();
+    }
+
+    /**
+     * @return The total number of records that have been written to the spill file.
+     */
+    public long getSpilledCount() {
+        return pending.getSpilledCount();
+    }
+
+    private void start(Function<StreamObserver<R>, StreamObserver<T>> call) {
+        call.apply(new ResponseObserver());
+    }
+
+    /**
+     * Passes queued records to the stream for as long as it is ready. Must be called while holding the lock, which also
+     * guarantees that only one thread at a time calls the request stream.
+     */
+    private void drain() {
+        if (requestStream == null || completed || cancelled || failure != null) return;
+
+        try {
+            while (requestStream.isReady()) {
+                final T next = pending.poll();
+                if (next == null) break;
+
+                requestStream.onNext(next);
+                sentCount++;
+            }
+        } catch (IOException e) {
+            requestStream.cancel("Could not read the spill file", e);
+            fail(e);
+            return;
+        } finally {
+            pending.finishPolling();
+        }
+
+        if (closed && pending.isEmpty()) {
+            completed = true;
+            requestStream.onCompleted();
+            pending.close();
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        lock.lock();
+        try {
+            if (failure != null) return;
+            failure = throwable;
+            pending.discard();
+        } finally {
+            lock.unlock();
+        }
+        response.completeExceptionally(throwable);
+    }
+
+    private final class ResponseObserver implements ClientResponseObserver<T, R> {
+        @Override
+        public void beforeStart(ClientCallStreamObserver<T> stream) {
+            lock.lock();
+            try {
+                requestStream = stream;
+            } finally {
+                lock.unlock();
+            }
+            stream.setOnReadyHandler(() -> {
+                lock.lock();
+                try {
+                    drain();
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(R value) {
+            responseValue = value;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onCompleted() {
+            response.complete(responseValue);
+        }
+    }
+
+    /**
+     * Configures and starts a {@link SurveyStreamClient}.
+     */
+    public static final class Builder<T extends Message, R> {
+        private final Function<StreamObserver<R>, StreamObserver<T>> call;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private Path spillDirectory;
+        private Parser<T> spillParser;
+        private long maxSpillBytes;
+
+        private Builder(Function<StreamObserver<R>, StreamObserver<T>> call) {
+            if (call == null) throw new NullPointerException("The stub call is required");
+            this.call = call;
+        }
+
+        /**
+         * @param queueCapacity The maximum number of records held in memory while the stream is not ready.
+         */
+        public Builder<T, R> setQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) throw new IllegalArgumentException("The queue capacity must be at least 1");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the policy for when the queue is full, {@link OverflowPolicy#BLOCK} by default. Use
+         * {@link #setSpillToDisk(Path, Parser, long)} for the {@link OverflowPolicy#SPILL_TO_DISK} policy.
+         */
+        public Builder<T, R> setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK && spillDirectory == null) {
+                throw new IllegalArgumentException("Use setSpillToDisk to configure the spill file");
+            }
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Selects the {@link OverflowPolicy#SPILL_TO_DISK} policy.
+         *
+         * @param directory The directory for the spill file, which is deleted when the stream completes.
+         * @param parser    The parser for the record type, for example {@code LteRecord.parser()}.
+         * @param maxBytes  The maximum size of the spill file. Records are dropped once it is full.
+         */
+        public Builder<T, R> setSpillToDisk(Path directory, Parser<T> parser, long maxBytes) {
+            if (directory == null || parser == null) throw new NullPointerException("The directory and parser are required");
+            if (maxBytes < 1) throw new IllegalArgumentException("The maximum spill file size must be at least 1 byte");
+            this.spillDirectory = directory;
+            this.spillParser = parser;
+            this.maxSpillBytes = maxBytes;
+            this.overflowPolicy = OverflowPolicy.SPILL_TO_DISK;
+            return this;
+        }
+
+        /**
+         * Starts the stream by calling the stub method.
+         *
+         * @throws UncheckedIOException If the spill file could not be created.
+         */
+        public SurveyStreamClient<T, R> start() {
+            final SurveyStreamClient<T, R> client = new SurveyStreamClient<>(this);
+            client.start(call);
+            return client;
+        }
+    }
+}
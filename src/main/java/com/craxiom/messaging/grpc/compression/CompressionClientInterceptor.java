@@ -0,0 +1,48 @@
+package com.craxiom.messaging.grpc.compression;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.*;
+
+/**
+ * Compresses the messages that a client sends according to a {@link CompressionPolicy}. The calls of a compressed
+ * method use the policy's message encoding, and each message is only compressed if its serialized size, which
+ * protobuf messages cache, is at least the policy's minimum for the method.
+ * <pre>{@code
+ * final Channel channel = ClientInterceptors.intercept(managedChannel, new CompressionClientInterceptor(policy));
+ * }</pre>
+ * The channel must have the policy's codecs registered, see {@link CompressionPolicy#configure(ManagedChannelBuilder)}.
+ */
+public final class CompressionClientInterceptor implements ClientInterceptor {
+    private final CompressionPolicy policy;
+
+    public CompressionClientInterceptor(CompressionPolicy policy) {
+        if (policy == null) throw new NullPointerException("The compression policy is required");
+        this.policy = policy;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        final String fullMethodName = method.getFullMethodName();
+        final String encoding = policy.getEncoding(fullMethodName);
+        if (encoding == null) return next.newCall(method, callOptions);
+
+        final ClientCall<ReqT, RespT> call = next.newCall(method, callOptions.withCompression(encoding));
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+            @Override
+            public void sendMessage(ReqT message) {
+                setMessageCompression(shouldCompress(policy, fullMethodName, message));
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    /**
+     * @return True if the message is large enough to compress. Messages that are not protobuf messages are always
+     * compressed, since their size is not known before they are serialized.
+     */
+    static boolean shouldCompress(CompressionPolicy policy, String fullMethodName, Object message) {
+        final int size = message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : Integer.MAX_VALUE;
+        return policy.shouldCompress(fullMethodName, size);
+    }
+}
@@ -0,0 +1,211 @@
+package com.craxiom.messaging.grpc.compression;
+
+import com.craxiom.messaging.grpc.DeviceStatusGrpc;
+import io.grpc.*;
+
+import java.util.*;
+
+/**
+ * Decides which gRPC calls are compressed, with which message encoding, and from what message size. Small messages,
+ * such as the DeviceStatus updates, are sent uncompressed because compressing them saves a few bytes at most and can
+ * even make them larger, while the survey records and especially the batches of records repeat their headers and
+ * compress well.
+ * <pre>{@code
+ * final CompressionPolicy policy = CompressionPolicy.newBuilder()
+ *         .addCodec(CompressionCodecs.gzip(CompressionCodecs.FAST_LEVEL))
+ *         .setDefault("gzip", 256)
+ *         .setMethod(DeviceStatusGrpc.getStatusUpdateMethod(), null, 0)
+ *         .build();
+ * final ManagedChannel channel = policy.configure(ManagedChannelBuilder.forAddress(host, port)).build();
+ * }</pre>
+ * A policy is applied on the client side by a {@link CompressionClientInterceptor}, and on the server side, for the
+ * responses, by a {@link CompressionServerInterceptor}. The codecs of the policy must be registered on both sides so
+ * that each side can decompress what the other sends, which {@link #configure(ManagedChannelBuilder)} and
+ * {@link #configure(ServerBuilder)} do.
+ */
+public final class CompressionPolicy {
+    /**
+     * The default minimum message size for compression, in bytes. The gzip framing alone is 18 bytes, and the repeated
+     * header strings of a survey record only make compression worthwhile from a few hundred bytes.
+     */
+    public static final int DEFAULT_MIN_MESSAGE_SIZE = 256;
+
+    private static final Rule NO_COMPRESSION = new Rule(null, Integer.MAX_VALUE);
+
+    private final Rule defaultRule;
+    private final Map<String, Rule> methodRules;
+    private final CompressorRegistry compressorRegistry;
+    private final DecompressorRegistry decompressorRegistry;
+
+    private CompressionPolicy(Builder builder) {
+        defaultRule = builder.defaultRule;
+        methodRules = new HashMap<>(builder.methodRules);
+
+        compressorRegistry = CompressorRegistry.newEmptyInstance();
+        compressorRegistry.register(new Codec.Gzip());
+        compressorRegistry.register(Codec.Identity.NONE);
+        DecompressorRegistry decompressors = DecompressorRegistry.getDefaultInstance();
+        for (Codec codec : builder.codecs) {
+            compressorRegistry.register(codec);
+            decompressors = decompressors.with(codec, true);
+        }
+        decompressorRegistry = decompressors;
+
+        final Set<String> encodings = new HashSet<>();
+        encodings.add(defaultRule.encoding);
+        for (Rule rule : methodRules.values()) {
+            encodings.add(rule.encoding);
+        }
+        for (String encoding : encodings) {
+            if (encoding != null && compressorRegistry.lookupCompressor(encoding) == null) {
+                throw new IllegalArgumentException("No codec is registered for the " + encoding + " message encoding");
+            }
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The policy for the survey streams: gzip at the fastest level for messages of at least
+     * {@link #DEFAULT_MIN_MESSAGE_SIZE} bytes, and no compression for the DeviceStatus updates.
+     */
+    public static CompressionPolicy surveyDefaults() {
+        return newBuilder()
+                .addCodec(CompressionCodecs.gzip(CompressionCodecs.FAST_LEVEL))
+                .setDefault("gzip", DEFAULT_MIN_MESSAGE_SIZE)
+                .setMethod(DeviceStatusGrpc.getStatusUpdateMethod(), null, 0)
+                .build();
+    }
+
+    /**
+     * @return The message encoding for the method, or null if its messages are not compressed.
+     */
+    public String getEncoding(String fullMethodName) {
+        return rule(fullMethodName).encoding;
+    }
+
+    /**
+     * @return The serialized size from which the messages of the method are compressed.
+     */
+    public int getMinMessageSize(String fullMethodName) {
+        return rule(fullMethodName).minMessageSize;
+    }
+
+    /**
+     * @return True if a message of the method with the serialized size should be compressed.
+     */
+    public boolean shouldCompress(String fullMethodName, int messageSize) {
+        final Rule rule = rule(fullMethodName);
+        return rule.encoding != null && messageSize >= rule.minMessageSize;
+    }
+
+    public CompressorRegistry getCompressorRegistry() {
+        return compressorRegistry;
+    }
+
+    public DecompressorRegistry getDecompressorRegistry() {
+        return decompressorRegistry;
+    }
+
+    /**
+     * Registers the codecs of this policy with the channel builder and adds a {@link CompressionClientInterceptor}.
+     *
+     * @return The channel builder.
+     */
+    public <T extends ManagedChannelBuilder<T>> T configure(ManagedChannelBuilder<T> channelBuilder) {
+        return channelBuilder.compressorRegistry(compressorRegistry)
+                .decompressorRegistry(decompressorRegistry)
+                .intercept(new CompressionClientInterceptor(this));
+    }
+
+    /**
+     * Registers the codecs of this policy with the server builder and adds a {@link CompressionServerInterceptor} for
+     * all of its services.
+     *
+     * @return The server builder.
+     */
+    public <T extends ServerBuilder<T>> T configure(ServerBuilder<T> serverBuilder) {
+        return serverBuilder.compressorRegistry(compressorRegistry)
+                .decompressorRegistry(decompressorRegistry)
+                .intercept(new CompressionServerInterceptor(this));
+    }
+
+    private Rule rule(String fullMethodName) {
+        final Rule rule = methodRules.get(fullMethodName);
+        return rule == null ? defaultRule : rule;
+    }
+
+    private static final class Rule {
+        private final String encoding;
+        private final int minMessageSize;
+
+        private Rule(String encoding, int minMessageSize) {
+            this.encoding = encoding;
+            this.minMessageSize = minMessageSize;
+        }
+    }
+
+    /**
+     * Configures a {@link CompressionPolicy}. By default nothing is compressed.
+     */
+    public static final class Builder {
+        private Rule defaultRule = NO_COMPRESSION;
+        private final Map<String, Rule> methodRules = new HashMap<>();
+        private final List<Codec> codecs = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Registers a codec, such as one from {@link CompressionCodecs}, which replaces any registered codec with the
+         * same message encoding. The gRPC gzip codec is registered by default.
+         */
+        public Builder addCodec(Codec codec) {
+            if (codec == null) throw new NullPointerException("The codec is required");
+            codecs.add(codec);
+            return this;
+        }
+
+        /**
+         * @param encoding       The message encoding for the methods without a rule of their own, e.g. "gzip", or null
+         *                       to not compress them.
+         * @param minMessageSize The serialized size in bytes from which their messages are compressed.
+         */
+        public Builder setDefault(String encoding, int minMessageSize) {
+            defaultRule = rule(encoding, minMessageSize);
+            return this;
+        }
+
+        /**
+         * @param method         The method, e.g. {@code WirelessSurveyGrpc.getStreamLteSurveyMethod()}.
+         * @param encoding       The message encoding for the method, or null to not compress it.
+         * @param minMessageSize The serialized size in bytes from which its messages are compressed.
+         */
+        public Builder setMethod(MethodDescriptor<?, ?> method, String encoding, int minMessageSize) {
+            return setMethod(method.getFullMethodName(), encoding, minMessageSize);
+        }
+
+        /**
+         * @param fullMethodName The full method name, e.g. "com.craxiom.messaging.grpc.WirelessSurvey/StreamLteSurvey".
+         * @param encoding       The message encoding for the method, or null to not compress it.
+         * @param minMessageSize The serialized size in bytes from which its messages are compressed.
+         */
+        public Builder setMethod(String fullMethodName, String encoding, int minMessageSize) {
+            if (fullMethodName == null) throw new NullPointerException("The method name is required");
+            methodRules.put(fullMethodName, rule(encoding, minMessageSize));
+            return this;
+        }
+
+        public CompressionPolicy build() {
+            return new CompressionPolicy(this);
+        }
+
+        private static Rule rule(String encoding, int minMessageSize) {
+            if (minMessageSize < 0) throw new IllegalArgumentException("The minimum message size must not be negative");
+            if (encoding == null || encoding.equals(Codec.Identity.NONE.getMessageEncoding())) return NO_COMPRESSION;
+            return new Rule(encoding, minMessageSize);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.craxiom.messaging.grpc.compression;
+
+import io.grpc.*;
+
+/**
+ * Compresses the responses that a server sends according to a {@link CompressionPolicy}, the server side counterpart
+ * of {@link CompressionClientInterceptor}. The requests are decompressed by gRPC itself, as long as the server has
+ * the policy's codecs registered, see {@link CompressionPolicy#configure(ServerBuilder)}.
+ * <p>
+ * The WirelessSurvey responses are a single small acknowledgement per stream, so they are usually below the minimum
+ * message size; the interceptor matters for services with larger responses.
+ */
+public final class CompressionServerInterceptor implements ServerInterceptor {
+    private final CompressionPolicy policy;
+
+    public CompressionServerInterceptor(CompressionPolicy policy) {
+        if (policy == null) throw new NullPointerException("The compression policy is required");
+        this.policy = policy;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final String fullMethodName = call.getMethodDescriptor().getFullMethodName();
+        final String encoding = policy.getEncoding(fullMethodName);
+        if (encoding == null) return next.startCall(call, headers);
+
+        call.setCompression(encoding);
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                setMessageCompression(CompressionClientInterceptor.shouldCompress(policy, fullMethodName, message));
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+}
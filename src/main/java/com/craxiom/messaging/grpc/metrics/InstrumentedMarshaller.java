@@ -0,0 +1,150 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Wraps a method's marshaller to measure the size of each message and the time spent serializing and parsing it.
+ * <p>
+ * The protobuf marshallers serialize lazily, when the transport drains the stream returned by {@link #stream(Object)},
+ * so the returned stream times the draining (or the reads, for transports that read the stream instead).
+ */
+final class InstrumentedMarshaller<T> implements MethodDescriptor.Marshaller<T> {
+    private final MethodDescriptor.Marshaller<T> delegate;
+    private final RpcMetrics metrics;
+    private final RpcMetrics.Side side;
+    private final MethodDescriptor<?, ?> method;
+
+    private InstrumentedMarshaller(MethodDescriptor.Marshaller<T> delegate, RpcMetrics metrics, RpcMetrics.Side side,
+                                   MethodDescriptor<?, ?> method) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.side = side;
+        this.method = method;
+    }
+
+    /**
+     * Wraps the request and response marshallers of a method. The measurements are reported against the original
+     * method rather than the wrapped copy.
+     */
+    static <ReqT, RespT> MethodDescriptor<ReqT, RespT> instrument(MethodDescriptor<ReqT, RespT> method, RpcMetrics metrics,
+                                                                RpcMetrics.Side side) {
+        return method.toBuilder(new InstrumentedMarshaller<>(method.getRequestMarshaller(), metrics, side, method),
+                        new InstrumentedMarshaller<>(method.getResponseMarshaller(), metrics, side, method))
+                .build();
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        final TimedInputStream stream = new TimedInputStream(delegate.stream(value));
+        // An empty message might never be read, so it is recorded right away
+        if (value instanceof MessageLite && ((MessageLite) value).getSerializedSize() == 0) stream.record();
+        return stream;
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        int bytes = -1;
+        if (stream instanceof KnownLength) {
+            try {
+                bytes = stream.available();
+            } catch (IOException e) {
+                // Fall back to the size of the parsed message
+            }
+        }
+
+        final long start = System.nanoTime();
+        final T value = delegate.parse(stream);
+        final long nanos = System.nanoTime() - start;
+
+        if (bytes < 0) bytes = value instanceof MessageLite ? ((MessageLite) value).getSerializedSize() : 0;
+        metrics.recordMessage(side, method, RpcMetrics.Direction.RECEIVED, bytes, nanos);
+        return value;
+    }
+
+    /**
+     * Times the serialization of a message, which happens while the stream is drained or read.
+     */
+    private final class TimedInputStream extends InputStream implements Drainable, KnownLength {
+        private final InputStream stream;
+        private long nanos = 0;
+        private int bytes = 0;
+        private boolean recorded = false;
+
+        private TimedInputStream(InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            final long start = System.nanoTime();
+            final int drained;
+            if (stream instanceof Drainable) {
+                drained = ((Drainable) stream).drainTo(target);
+            } else {
+                final byte[] buffer = new byte[8192];
+                int total = 0;
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    target.write(buffer, 0, read);
+                    total += read;
+                }
+                drained = total;
+            }
+            nanos += System.nanoTime() - start;
+            bytes += drained;
+            record();
+            return drained;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final long start = System.nanoTime();
+            final int value = stream.read();
+            nanos += System.nanoTime() - start;
+            if (value == -1) {
+                record();
+            } else {
+                bytes++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final long start = System.nanoTime();
+            final int read = stream.read(buffer, offset, length);
+            nanos += System.nanoTime() - start;
+            if (read == -1) {
+                record();
+            } else {
+                bytes += read;
+                if (stream.available() == 0 && stream instanceof KnownLength) record();
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return stream.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+            record();
+        }
+
+        private void record() {
+            if (recorded) return;
+            recorded = true;
+            metrics.recordMessage(side, method, RpcMetrics.Direction.SENT, bytes, nanos);
+        }
+    }
+}
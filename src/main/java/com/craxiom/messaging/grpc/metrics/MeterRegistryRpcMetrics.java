@@ -0,0 +1,160 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+/**
+ * An {@link RpcMetrics} that publishes the measurements as tagged counters, distribution summaries and timers. The
+ * meters that Micrometer's own gRPC interceptors also publish have the same names and tags, so that dashboards built
+ * for those work with these as well. The meters are created through a {@link MeterFactory}, so this library does not
+ * depend on Micrometer; a factory for a Micrometer {@code MeterRegistry} is only a few lines:
+ * <pre>{@code
+ * final RpcMetrics metrics = new MeterRegistryRpcMetrics(new MeterRegistryRpcMetrics.MeterFactory() {
+ *     public LongConsumer counter(String name, String... tags) {
+ *         return registry.counter(name, tags)::increment;
+ *     }
+ *
+ *     public LongConsumer summary(String name, String baseUnit, String... tags) {
+ *         return DistributionSummary.builder(name).baseUnit(baseUnit).tags(tags).register(registry)::record;
+ *     }
+ *
+ *     public LongConsumer timer(String name, String... tags) {
+ *         final Timer timer = registry.timer(name, tags);
+ *         return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ * });
+ * }</pre>
+ * The meters, with "client" or "server" in place of the side, are:
+ * <ul>
+ *     <li>grpc.client.requests.sent and grpc.client.responses.received, or grpc.server.requests.received and
+ *     grpc.server.responses.sent: counters of the messages, from which the monitoring system derives the messages per
+ *     second. These are the same as Micrometer's.</li>
+ *     <li>grpc.[side].processing.duration: a timer of the call durations, tagged with the statusCode. This is the same
+ *     as Micrometer's.</li>
+ *     <li>grpc.[side].message.size: a distribution summary of the message sizes in bytes, tagged with the direction.
+ *     Micrometer has no such meter.</li>
+ *     <li>grpc.[side].serialization.duration: a timer of the time spent serializing (direction "sent") or parsing
+ *     (direction "received") each message. Micrometer has no such meter.</li>
+ * </ul>
+ * Every meter is also tagged with the service, method and methodType of the RPC.
+ */
+public final class MeterRegistryRpcMetrics implements RpcMetrics {
+    /**
+     * Creates the meters. Each method is called once for every distinct name and set of tags, and the returned consumer
+     * is called with each measurement.
+     */
+    public interface MeterFactory {
+        /**
+         * @param tags Alternating tag keys and values.
+         * @return A consumer that increments the counter by the given amount.
+         */
+        LongConsumer counter(String name, String... tags);
+
+        /**
+         * @param tags Alternating tag keys and values.
+         * @return A consumer that records one value in the distribution summary.
+         */
+        LongConsumer summary(String name, String baseUnit, String... tags);
+
+        /**
+         * @param tags Alternating tag keys and values.
+         * @return A consumer that records one duration, in nanoseconds, in the timer.
+         */
+        LongConsumer timer(String name, String... tags);
+    }
+
+    private final MeterFactory factory;
+    private final ConcurrentMap<String, MethodMeters> clientMeters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MethodMeters> serverMeters = new ConcurrentHashMap<>();
+
+    public MeterRegistryRpcMetrics(MeterFactory factory) {
+        if (factory == null) throw new NullPointerException("The meter factory is required");
+        this.factory = factory;
+    }
+
+    @Override
+    public void recordMessage(Side side, MethodDescriptor<?, ?> method, Direction direction, int bytes, long codecNanos) {
+        final MethodMeters meters = meters(side, method);
+        if (direction == Direction.SENT) {
+            meters.messagesSent.accept(1);
+            meters.sentSize.accept(bytes);
+            meters.serializationDuration.accept(codecNanos);
+        } else {
+            meters.messagesReceived.accept(1);
+            meters.receivedSize.accept(bytes);
+            meters.parseDuration.accept(codecNanos);
+        }
+    }
+
+    @Override
+    public void recordCall(Side side, MethodDescriptor<?, ?> method, Status.Code status, long durationNanos) {
+        meters(side, method).processingDuration(status).accept(durationNanos);
+    }
+
+    private MethodMeters meters(Side side, MethodDescriptor<?, ?> method) {
+        final ConcurrentMap<String, MethodMeters> map = side == Side.CLIENT ? clientMeters : serverMeters;
+        final MethodMeters meters = map.get(method.getFullMethodName());
+        return meters != null ? meters : map.computeIfAbsent(method.getFullMethodName(), n -> new MethodMeters(side, method));
+    }
+
+    /**
+     * The meters for one RPC on one side of the calls, so that the factory is not called for every measurement.
+     */
+    private final class MethodMeters {
+        private final String prefix;
+        private final String[] tags;
+        private final LongConsumer messagesSent;
+        private final LongConsumer messagesReceived;
+        private final LongConsumer sentSize;
+        private final LongConsumer receivedSize;
+        private final LongConsumer serializationDuration;
+        private final LongConsumer parseDuration;
+        private final AtomicReferenceArray<LongConsumer> processingDurations =
+                new AtomicReferenceArray<>(Status.Code.values().length);
+
+        private MethodMeters(Side side, MethodDescriptor<?, ?> method) {
+            prefix = "grpc." + side.name().toLowerCase(Locale.ROOT) + ".";
+            final String serviceName = method.getServiceName();
+            final String methodName = method.getBareMethodName();
+            tags = new String[]{"service", serviceName == null ? "" : serviceName, "method",
+                    methodName == null ? method.getFullMethodName() : methodName, "methodType", method.getType().name()};
+
+            // A client sends requests and receives responses, and a server the other way around
+            final boolean client = side == Side.CLIENT;
+            messagesSent = factory.counter(prefix + (client ? "requests.sent" : "responses.sent"), tags);
+            messagesReceived = factory.counter(prefix + (client ? "responses.received" : "requests.received"), tags);
+            sentSize = factory.summary(prefix + "message.size", "bytes", with("direction", "sent"));
+            receivedSize = factory.summary(prefix + "message.size", "bytes", with("direction", "received"));
+            serializationDuration = factory.timer(prefix + "serialization.duration", with("direction", "sent"));
+            parseDuration = factory.timer(prefix + "serialization.duration", with("direction", "received"));
+        }
+
+        private LongConsumer processingDuration(Status.Code status) {
+            LongConsumer timer = processingDurations.get(status.ordinal());
+            if (timer == null) {
+                synchronized (this) {
+                    timer = processingDurations.get(status.ordinal());
+                    if (timer == null) {
+                        timer = factory.timer(prefix + "processing.duration", with("statusCode", status.name()));
+                        processingDurations.set(status.ordinal(), timer);
+                    }
+                }
+            }
+            return timer;
+        }
+
+        private String[] with(String key, String value) {
+            final String[] all = new String[tags.length + 2];
+            System.arraycopy(tags, 0, all, 0, tags.length);
+            all[tags.length] = key;
+            all[tags.length + 1] = value;
+            return all;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import io.grpc.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Measures every call made through a channel and reports the measurements to an {@link RpcMetrics}: the size and
+ * serialization time of each message sent, the size and parse time of each message received, and the duration and
+ * status of the call.
+ * <pre>{@code
+ * final RpcMetricsCollector metrics = new RpcMetricsCollector();
+ * final Channel channel = ClientInterceptors.intercept(managedChannel, new MetricsClientInterceptor(metrics));
+ * final WirelessSurveyGrpc.WirelessSurveyStub stub = WirelessSurveyGrpc.newStub(channel);
+ * }</pre>
+ * The interceptor works for any service, including WirelessSurvey, DeviceStatus and ConnectionHandshake.
+ */
+public final class MetricsClientInterceptor implements ClientInterceptor {
+    private final RpcMetrics metrics;
+    private final ConcurrentMap<MethodDescriptor<?, ?>, MethodDescriptor<?, ?>> instrumentedMethods = new ConcurrentHashMap<>();
+
+    public MetricsClientInterceptor(RpcMetrics metrics) {
+        if (metrics == null) throw new NullPointerException("The metrics are required");
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        return new MeasuredCall<>(next.newCall(instrumented(method), callOptions), method);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <ReqT, RespT> MethodDescriptor<ReqT, RespT> instrumented(MethodDescriptor<ReqT, RespT> method) {
+        return (MethodDescriptor<ReqT, RespT>) instrumentedMethods.computeIfAbsent(method,
+                m -> InstrumentedMarshaller.instrument(method, metrics, RpcMetrics.Side.CLIENT));
+    }
+
+    /**
+     * Records the duration of the call from the time it is started until the listener is closed.
+     */
+    private final class MeasuredCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+
+        private MeasuredCall(ClientCall<ReqT, RespT> delegate, MethodDescriptor<ReqT, RespT> method) {
+            super(delegate);
+            this.method = method;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            final long start = System.nanoTime();
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    metrics.recordCall(RpcMetrics.Side.CLIENT, method, status.getCode(), System.nanoTime() - start);
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+    }
+}
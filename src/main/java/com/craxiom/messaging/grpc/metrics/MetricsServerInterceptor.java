@@ -0,0 +1,79 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import io.grpc.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures every call handled by a service and reports the measurements to an {@link RpcMetrics}.
+ * <p>
+ * A server interceptor only sees the parsed messages, so on its own it records the duration and status of each call.
+ * {@link #instrument(BindableService, RpcMetrics)} also wraps the marshallers of the service's methods so that the size
+ * and serialization time of every message are recorded, and is the usual way to add the metrics to a server:
+ * <pre>{@code
+ * final RpcMetricsCollector metrics = new RpcMetricsCollector();
+ * final Server server = NettyServerBuilder.forPort(2621)
+ *         .addService(MetricsServerInterceptor.instrument(new MySurveyService(), metrics))
+ *         .addService(MetricsServerInterceptor.instrument(new MyDeviceStatusService(), metrics))
+ *         .build();
+ * }</pre>
+ */
+public final class MetricsServerInterceptor implements ServerInterceptor {
+    private final RpcMetrics metrics;
+
+    public MetricsServerInterceptor(RpcMetrics metrics) {
+        if (metrics == null) throw new NullPointerException("The metrics are required");
+        this.metrics = metrics;
+    }
+
+    /**
+     * @see #instrument(ServerServiceDefinition, RpcMetrics)
+     */
+    public static ServerServiceDefinition instrument(BindableService service, RpcMetrics metrics) {
+        return instrument(service.bindService(), metrics);
+    }
+
+    /**
+     * Wraps a service so that the size and serialization time of every message, and the duration and status of every
+     * call, are reported to the metrics.
+     */
+    public static ServerServiceDefinition instrument(ServerServiceDefinition service, RpcMetrics metrics) {
+        final ServiceDescriptor serviceDescriptor = service.getServiceDescriptor();
+        final ServiceDescriptor.Builder descriptorBuilder = ServiceDescriptor.newBuilder(serviceDescriptor.getName())
+                .setSchemaDescriptor(serviceDescriptor.getSchemaDescriptor());
+        final List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> definition : service.getMethods()) {
+            final ServerMethodDefinition<?, ?> instrumented = instrument(definition, metrics);
+            descriptorBuilder.addMethod(instrumented.getMethodDescriptor());
+            methods.add(instrumented);
+        }
+
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+        for (ServerMethodDefinition<?, ?> definition : methods) {
+            builder.addMethod(definition);
+        }
+        return ServerInterceptors.intercept(builder.build(), new MetricsServerInterceptor(metrics));
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final long start = System.nanoTime();
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                metrics.recordCall(RpcMetrics.Side.SERVER, getMethodDescriptor(), status.getCode(),
+                        System.nanoTime() - start);
+                super.close(status, trailers);
+            }
+        }, headers);
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> instrument(ServerMethodDefinition<ReqT, RespT> definition,
+                                                                              RpcMetrics metrics) {
+        return ServerMethodDefinition.create(
+                InstrumentedMarshaller.instrument(definition.getMethodDescriptor(), metrics, RpcMetrics.Side.SERVER),
+                definition.getServerCallHandler());
+    }
+}
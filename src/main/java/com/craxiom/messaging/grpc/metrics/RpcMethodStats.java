@@ -0,0 +1,142 @@
+package com.craxiom.messaging.grpc.metrics;
+
+/**
+ * A snapshot of the totals that a {@link RpcMetricsCollector} has recorded for one RPC on one side of the calls.
+ */
+public final class RpcMethodStats {
+    private final RpcMetrics.Side side;
+    private final String fullMethodName;
+    private final long elapsedNanos;
+    private final long messagesSent;
+    private final long bytesSent;
+    private final long serializationNanos;
+    private final long messagesReceived;
+    private final long bytesReceived;
+    private final long parseNanos;
+    private final long calls;
+    private final long failedCalls;
+    private final long callNanos;
+
+    RpcMethodStats(RpcMetrics.Side side, String fullMethodName, long elapsedNanos, long messagesSent, long bytesSent,
+                   long serializationNanos, long messagesReceived, long bytesReceived, long parseNanos, long calls,
+                   long failedCalls, long callNanos) {
+        this.side = side;
+        this.fullMethodName = fullMethodName;
+        this.elapsedNanos = elapsedNanos;
+        this.messagesSent = messagesSent;
+        this.bytesSent = bytesSent;
+        this.serializationNanos = serializationNanos;
+        this.messagesReceived = messagesReceived;
+        this.bytesReceived = bytesReceived;
+        this.parseNanos = parseNanos;
+        this.calls = calls;
+        this.failedCalls = failedCalls;
+        this.callNanos = callNanos;
+    }
+
+    public RpcMetrics.Side getSide() {
+        return side;
+    }
+
+    /**
+     * @return The full name of the RPC, e.g. "com.craxiom.messaging.grpc.WirelessSurvey/StreamLteSurvey".
+     */
+    public String getFullMethodName() {
+        return fullMethodName;
+    }
+
+    /**
+     * @return The time since the collector was created or reset.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return The total time spent serializing the messages that were sent.
+     */
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return The total time spent parsing the messages that were received.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return The number of calls that have been closed.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return The number of calls that were closed with a status other than OK.
+     */
+    public long getFailedCalls() {
+        return failedCalls;
+    }
+
+    /**
+     * @return The total duration of the calls that have been closed.
+     */
+    public long getCallNanos() {
+        return callNanos;
+    }
+
+    /**
+     * @return The number of messages sent and received per second since the collector was created or reset.
+     */
+    public double getMessagesPerSecond() {
+        return elapsedNanos <= 0 ? 0 : (messagesSent + messagesReceived) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The mean size of the messages sent and received, or 0 if there have not been any.
+     */
+    public double getMeanMessageBytes() {
+        final long messages = messagesSent + messagesReceived;
+        return messages == 0 ? 0 : (double) (bytesSent + bytesReceived) / messages;
+    }
+
+    /**
+     * @return The mean time spent serializing or parsing a message, or 0 if there have not been any.
+     */
+    public double getMeanCodecNanos() {
+        final long messages = messagesSent + messagesReceived;
+        return messages == 0 ? 0 : (double) (serializationNanos + parseNanos) / messages;
+    }
+
+    /**
+     * @return The mean duration of the closed calls, or 0 if there have not been any.
+     */
+    public double getMeanCallNanos() {
+        return calls == 0 ? 0 : (double) callNanos / calls;
+    }
+
+    @Override
+    public String toString() {
+        return side + " " + fullMethodName + ": " + messagesSent + " messages (" + bytesSent + " bytes) sent, "
+                + messagesReceived + " messages (" + bytesReceived + " bytes) received, " + calls + " calls ("
+                + failedCalls + " failed)";
+    }
+}
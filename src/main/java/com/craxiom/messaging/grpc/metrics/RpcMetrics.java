@@ -0,0 +1,50 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Receives the measurements taken by the {@link MetricsClientInterceptor} and {@link MetricsServerInterceptor}. This
+ * is the extension point for exporting the measurements to a metrics library; use {@link RpcMetricsCollector} to keep
+ * them in memory, or {@link MeterRegistryRpcMetrics} to publish them as Micrometer style meters.
+ * <p>
+ * The methods are called on the gRPC threads of every call, so implementations must be thread safe and fast.
+ */
+public interface RpcMetrics {
+    /**
+     * Which end of the call took the measurement.
+     */
+    enum Side {
+        CLIENT,
+        SERVER
+    }
+
+    /**
+     * Whether a message was sent or received by the side that took the measurement.
+     */
+    enum Direction {
+        SENT,
+        RECEIVED
+    }
+
+    /**
+     * Called for every message that is serialized or parsed.
+     *
+     * @param side       The side of the call that handled the message.
+     * @param method     The RPC, e.g. {@code WirelessSurveyGrpc.getStreamLteSurveyMethod()}.
+     * @param direction  SENT if the message was serialized, RECEIVED if it was parsed.
+     * @param bytes      The serialized size of the message.
+     * @param codecNanos The time spent serializing or parsing the message.
+     */
+    void recordMessage(Side side, MethodDescriptor<?, ?> method, Direction direction, int bytes, long codecNanos);
+
+    /**
+     * Called once when a call is closed.
+     *
+     * @param side          The side of the call that took the measurement.
+     * @param method        The RPC.
+     * @param status        The status the call was closed with.
+     * @param durationNanos The time from the start of the call until it was closed.
+     */
+    void recordCall(Side side, MethodDescriptor<?, ?> method, Status.Code status, long durationNanos);
+}
@@ -0,0 +1,98 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link RpcMetrics} that keeps running totals for each RPC in memory, for use without a metrics library or in
+ * tests. {@link #getStats()} takes a snapshot of the totals, from which the message rate, the mean message size and
+ * the time spent serializing the messages of each RPC can be read.
+ */
+public final class RpcMetricsCollector implements RpcMetrics {
+    private final ConcurrentMap<String, Totals> clientTotals = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Totals> serverTotals = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    @Override
+    public void recordMessage(Side side, MethodDescriptor<?, ?> method, Direction direction, int bytes, long codecNanos) {
+        final Totals totals = totals(side, method);
+        if (direction == Direction.SENT) {
+            totals.messagesSent.increment();
+            totals.bytesSent.add(bytes);
+            totals.serializationNanos.add(codecNanos);
+        } else {
+            totals.messagesReceived.increment();
+            totals.bytesReceived.add(bytes);
+            totals.parseNanos.add(codecNanos);
+        }
+    }
+
+    @Override
+    public void recordCall(Side side, MethodDescriptor<?, ?> method, Status.Code status, long durationNanos) {
+        final Totals totals = totals(side, method);
+        totals.calls.increment();
+        totals.callNanos.add(durationNanos);
+        if (status != Status.Code.OK) totals.failedCalls.increment();
+    }
+
+    /**
+     * @return The totals for one RPC, or null if nothing has been recorded for it.
+     */
+    public RpcMethodStats getStats(Side side, String fullMethodName) {
+        final Totals totals = (side == Side.CLIENT ? clientTotals : serverTotals).get(fullMethodName);
+        return totals == null ? null : totals.snapshot(side, fullMethodName, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The totals for every RPC that has recorded something, with the RPCs that transferred the most bytes first.
+     */
+    public List<RpcMethodStats> getStats() {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final List<RpcMethodStats> stats = new ArrayList<>();
+        clientTotals.forEach((name, totals) -> stats.add(totals.snapshot(Side.CLIENT, name, elapsedNanos)));
+        serverTotals.forEach((name, totals) -> stats.add(totals.snapshot(Side.SERVER, name, elapsedNanos)));
+        stats.sort(Comparator.comparingLong((RpcMethodStats s) -> s.getBytesSent() + s.getBytesReceived()).reversed());
+        return stats;
+    }
+
+    /**
+     * Clears the totals and restarts the interval that the rates are calculated over.
+     */
+    public void reset() {
+        clientTotals.clear();
+        serverTotals.clear();
+        startNanos = System.nanoTime();
+    }
+
+    private Totals totals(Side side, MethodDescriptor<?, ?> method) {
+        final ConcurrentMap<String, Totals> map = side == Side.CLIENT ? clientTotals : serverTotals;
+        final String name = method.getFullMethodName();
+        final Totals totals = map.get(name);
+        return totals != null ? totals : map.computeIfAbsent(name, n -> new Totals());
+    }
+
+    private static final class Totals {
+        private final LongAdder messagesSent = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder serializationNanos = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder parseNanos = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failedCalls = new LongAdder();
+        private final LongAdder callNanos = new LongAdder();
+
+        private RpcMethodStats snapshot(Side side, String fullMethodName, long elapsedNanos) {
+            return new RpcMethodStats(side, fullMethodName, elapsedNanos, messagesSent.sum(), bytesSent.sum(),
+                    serializationNanos.sum(), messagesReceived.sum(), bytesReceived.sum(), parseNanos.sum(), calls.sum(),
+                    failedCalls.sum(), callNanos.sum());
+        }
+    }
+}
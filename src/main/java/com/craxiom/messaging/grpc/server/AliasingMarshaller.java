@@ -0,0 +1,138 @@
+package com.craxiom.messaging.grpc.server;
+
+import com.craxiom.messaging.parse.AliasingParsers;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import io.grpc.*;
+import io.grpc.protobuf.ProtoUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A gRPC marshaller that parses each message with {@link AliasingParsers}, so the bytes fields of the message (e.g.
+ * the pcapRecord of a WifiOtaRecord) share the buffer that the message was read into instead of being copied out of
+ * it.
+ * <p>
+ * The default protobuf marshaller reads each message into a buffer that it reuses and then copies every bytes field
+ * out of that buffer. This marshaller reads each message into a buffer of its own, once, and the message keeps that
+ * buffer, so a large capture is copied off the transport once and never again. Messages are serialized the same way
+ * as with the default marshaller.
+ *
+ * @param <T> The message type.
+ */
+public final class AliasingMarshaller<T extends Message> implements MethodDescriptor.PrototypeMarshaller<T> {
+    private static final int UNKNOWN_LENGTH_BUFFER_SIZE = 4096;
+
+    private final T defaultInstance;
+    private final MethodDescriptor.Marshaller<T> delegate;
+
+    private AliasingMarshaller(T defaultInstance) {
+        this.defaultInstance = defaultInstance;
+        this.delegate = ProtoUtils.marshaller(defaultInstance);
+    }
+
+    public static <T extends Message> AliasingMarshaller<T> marshaller(T defaultInstance) {
+        return new AliasingMarshaller<>(defaultInstance);
+    }
+
+    /**
+     * Replaces the request marshaller of every method of the service that uses protobuf messages with an aliasing
+     * marshaller.
+     */
+    public static ServerServiceDefinition aliasRequests(ServerServiceDefinition service) {
+        final ServiceDescriptor serviceDescriptor = service.getServiceDescriptor();
+        final ServiceDescriptor.Builder descriptorBuilder = ServiceDescriptor.newBuilder(serviceDescriptor.getName())
+                .setSchemaDescriptor(serviceDescriptor.getSchemaDescriptor());
+        final List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> definition : service.getMethods()) {
+            final ServerMethodDefinition<?, ?> aliased = aliasRequests(definition);
+            descriptorBuilder.addMethod(aliased.getMethodDescriptor());
+            methods.add(aliased);
+        }
+
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+        for (ServerMethodDefinition<?, ?> definition : methods) {
+            builder.addMethod(definition);
+        }
+        return builder.build();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Class<T> getMessageClass() {
+        return (Class<T>) defaultInstance.getClass();
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return defaultInstance;
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return delegate.stream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        // An in-process transport passes the sender's stream, which the default marshaller can turn back into the
+        // sender's message without parsing it at all
+        if (stream instanceof Drainable && !(stream instanceof HasByteBuffer)) return delegate.parse(stream);
+
+        try {
+            final byte[] bytes;
+            final int length;
+            if (stream instanceof KnownLength) {
+                length = stream.available();
+                bytes = new byte[length];
+                readFully(stream, bytes, length);
+            } else {
+                byte[] buffer = new byte[UNKNOWN_LENGTH_BUFFER_SIZE];
+                int size = 0;
+                int read;
+                while ((read = stream.read(buffer, size, buffer.length - size)) != -1) {
+                    size += read;
+                    if (size == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                bytes = buffer;
+                length = size;
+            }
+
+            @SuppressWarnings("unchecked") final T message = (T) AliasingParsers.parseFrom(defaultInstance.getParserForType(),
+                    bytes, 0, length);
+            return message;
+        } catch (InvalidProtocolBufferException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Could not read the message").withCause(e).asRuntimeException();
+        }
+    }
+
+    private static void readFully(InputStream stream, byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            final int read = stream.read(bytes, offset, length - offset);
+            if (read == -1) throw new IOException("The stream ended after " + offset + " of " + length + " bytes");
+            offset += read;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> aliasRequests(ServerMethodDefinition<ReqT, RespT> definition) {
+        final MethodDescriptor<ReqT, RespT> method = definition.getMethodDescriptor();
+        final MethodDescriptor.Marshaller<ReqT> requestMarshaller = method.getRequestMarshaller();
+        if (!(requestMarshaller instanceof MethodDescriptor.PrototypeMarshaller)
+                || !(((MethodDescriptor.PrototypeMarshaller<ReqT>) requestMarshaller).getMessagePrototype() instanceof Message)) {
+            return definition;
+        }
+
+        final Message prototype = (Message) ((MethodDescriptor.PrototypeMarshaller<ReqT>) requestMarshaller).getMessagePrototype();
+        final MethodDescriptor.Marshaller<ReqT> aliasing = (MethodDescriptor.Marshaller<ReqT>) marshaller(prototype);
+        return ServerMethodDefinition.create(method.toBuilder(aliasing, method.getResponseMarshaller()).build(),
+                definition.getServerCallHandler());
+    }
+}
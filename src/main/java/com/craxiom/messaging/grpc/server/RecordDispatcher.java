@@ -0,0 +1,265 @@
+package com.craxiom.messaging.grpc.server;
+
+import com.google.protobuf.Message;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves records from the gRPC threads to a {@link RecordSink} through a bounded ring buffer that is drained by a
+ * single dispatcher thread.
+ * <p>
+ * Producers never block. When the ring buffer is full, {@link #offer(Message)} returns false and the producer
+ * registers a task with {@link #awaitCapacity(Runnable)}. The dispatcher thread runs that task once it has made room,
+ * so a gRPC stream can hold back its flow control window instead of tying up a gRPC thread.
+ * <p>
+ * Records offered with a delivery listener are tracked until the sink has been flushed after them, which is
+ * how the acknowledged streams learn that their records have been committed. While such records are waiting, the sink
+ * is flushed at least every 100 milliseconds even if the ring buffer never runs empty.
+ */
+public final class RecordDispatcher implements AutoCloseable {
+    /**
+     * How long the dispatcher thread parks when there is nothing to do. Producers wake it up early, so this only bounds
+     * how long a missed wake up can delay delivery.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The longest time that a tracked record waits for the sink to be flushed while the ring buffer is busy.
+     */
+    static final long MAX_COMMIT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RecordSink sink;
+    private final RecordRingBuffer<Object> ringBuffer;
+    private final Queue<Runnable> capacityWaiters = new ConcurrentLinkedQueue<>();
+    private final Set<DeliveryListener> unflushedListeners = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Thread thread;
+
+    private long lastFlushNanos = System.nanoTime();
+
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+    private volatile long deliveredCount = 0;
+    private volatile long sinkErrorCount = 0;
+
+    /**
+     * @param sink          The sink to deliver the records to.
+     * @param capacity      The ring buffer capacity, rounded up to a power of two.
+     * @param threadFactory Creates the dispatcher thread.
+     */
+    public RecordDispatcher(RecordSink sink, int capacity, ThreadFactory threadFactory) {
+        if (sink == null) throw new NullPointerException("The record sink is required");
+        this.sink = sink;
+        this.ringBuffer = new RecordRingBuffer<>(capacity);
+        this.thread = threadFactory.newThread(this::run);
+    }
+
+    /**
+     * Starts the dispatcher thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Adds a record to the ring buffer. Safe to call from any thread.
+     *
+     * @return False if the ring buffer is full, in which case the caller should use {@link #awaitCapacity(Runnable)}.
+     */
+    public boolean offer(Message record) {
+        if (!ringBuffer.offer(record)) return false;
+        if (parked) LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Adds a record to the ring buffer like {@link #offer(Message)}, and tells the listener once the record has been
+     * delivered and once the sink has been flushed after it.
+     */
+    boolean offer(Message record, DeliveryListener listener) {
+        if (!ringBuffer.offer(new TrackedRecord(record, listener))) return false;
+        if (parked) LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Registers a task that the dispatcher thread runs once it has removed records from a full ring buffer. The task is
+     * run once; it must register again if there is still not enough room.
+     */
+    public void awaitCapacity(Runnable task) {
+        capacityWaiters.add(task);
+        // The buffer may have emptied since the failed offer, in which case the dispatcher could be parked
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return The number of records waiting in the ring buffer.
+     */
+    public int getBufferedCount() {
+        return ringBuffer.size();
+    }
+
+    /**
+     * @return The capacity of the ring buffer.
+     */
+    public int getCapacity() {
+        return ringBuffer.capacity();
+    }
+
+    /**
+     * @return The number of records delivered to the sink, including the ones for which the sink threw an exception.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return The number of exceptions thrown by the sink.
+     */
+    public long getSinkErrorCount() {
+        return sinkErrorCount;
+    }
+
+    /**
+     * Delivers the records that are still in the ring buffer and stops the dispatcher thread. Records offered after this
+     * method is called may not be delivered. If the calling thread is interrupted, this stops waiting for the records to
+     * be delivered and sets the interrupt flag again.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            if (thread.isAlive()) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        boolean needsFlush = false;
+        while (true) {
+            final Object element = ringBuffer.poll();
+            if (element != null) {
+                deliver(element);
+                needsFlush = true;
+                if (!capacityWaiters.isEmpty()) runCapacityWaiters();
+                if (!unflushedListeners.isEmpty() && System.nanoTime() - lastFlushNanos >= MAX_COMMIT_DELAY_NANOS) {
+                    needsFlush = false;
+                    flushSink();
+                }
+                continue;
+            }
+
+            runCapacityWaiters();
+            if (ringBuffer.size() > 0) continue;
+
+            if (needsFlush) {
+                needsFlush = false;
+                flushSink();
+                continue;
+            }
+
+            if (!running && capacityWaiters.isEmpty()) {
+                if (ringBuffer.size() == 0) return;
+                continue;
+            }
+
+            parked = true;
+            if (ringBuffer.size() == 0) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            parked = false;
+        }
+    }
+
+    private void deliver(Object element) {
+        final TrackedRecord tracked = element instanceof TrackedRecord ? (TrackedRecord) element : null;
+        final Message record = tracked == null ? (Message) element : tracked.record;
+        boolean accepted = true;
+        try {
+            sink.accept(record);
+        } catch (Exception e) {
+            sinkErrorCount++;
+            accepted = false;
+        }
+        deliveredCount++;
+
+        if (tracked != null) {
+            unflushedListeners.add(tracked.listener);
+            try {
+                tracked.listener.onDelivered(record, accepted);
+            } catch (RuntimeException e) {
+                // Same as for the capacity waiters, one stream must not stop the dispatcher
+            }
+        }
+    }
+
+    private void flushSink() {
+        boolean flushed = true;
+        try {
+            sink.flush();
+        } catch (Exception e) {
+            sinkErrorCount++;
+            flushed = false;
+        }
+        lastFlushNanos = System.nanoTime();
+
+        if (unflushedListeners.isEmpty()) return;
+        final DeliveryListener[] listeners = unflushedListeners.toArray(new DeliveryListener[0]);
+        unflushedListeners.clear();
+        for (DeliveryListener listener : listeners) {
+            try {
+                listener.onFlushed(flushed);
+            } catch (RuntimeException e) {
+                // Same as for the capacity waiters, one stream must not stop the dispatcher
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks that were waiting when this method was called. Tasks that register again while running are left
+     * for the next call so that a stream that still does not fit cannot keep the dispatcher from delivering records.
+     */
+    private void runCapacityWaiters() {
+        for (int i = capacityWaiters.size(); i > 0; i--) {
+            final Runnable waiter = capacityWaiters.poll();
+            if (waiter == null) return;
+            try {
+                waiter.run();
+            } catch (RuntimeException e) {
+                // A failure in one stream (e.g. a call that was closed in the meantime) must not stop the dispatcher
+            }
+        }
+    }
+
+    /**
+     * Follows the records that were offered with {@link #offer(Message, DeliveryListener)}. Both methods are called on
+     * the dispatcher thread.
+     */
+    interface DeliveryListener {
+        /**
+         * @param record   The record that was passed to the sink.
+         * @param accepted False if the sink threw an exception for the record.
+         */
+        void onDelivered(Message record, boolean accepted);
+
+        /**
+         * Called after the sink has been flushed following one or more deliveries to this listener.
+         *
+         * @param flushed False if the flush threw an exception.
+         */
+        void onFlushed(boolean flushed);
+    }
+
+    private static final class TrackedRecord {
+        private final Message record;
+        private final DeliveryListener listener;
+
+        private TrackedRecord(Message record, DeliveryListener listener) {
+            this.record = record;
+            this.listener = listener;
+        }
+    }
+}
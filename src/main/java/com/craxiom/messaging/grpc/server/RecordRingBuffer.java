@@ -0,0 +1,89 @@
+package com.craxiom.messaging.grpc.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free, multiple producer single consumer ring buffer.
+ * <p>
+ * Each slot has a sequence number that tells producers and the consumer whether the slot is free or holds an element
+ * (the design of Dmitry Vyukov's bounded queue). Producers claim a slot with a single compare and set on the tail
+ * counter, so the gRPC threads never block each other or the consumer.
+ */
+final class RecordRingBuffer<E> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    /**
+     * @param capacity The capacity, which is rounded up to the next power of two.
+     */
+    RecordRingBuffer(int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("The ring buffer capacity must be at least 2");
+        if (capacity > 1 << 30) throw new IllegalArgumentException("The ring buffer capacity is too large");
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element. Safe to call from any thread.
+     *
+     * @return False if the buffer is full.
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        elements[index] = element;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the consumer thread.
+     *
+     * @return The oldest element, or null if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final long position = head;
+        final int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+
+        final E element = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, position + elements.length);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * @return The number of elements in the buffer. The value is approximate while producers are adding elements.
+     */
+    int size() {
+        final long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, elements.length));
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,29 @@
+package com.craxiom.messaging.grpc.server;
+
+import com.google.protobuf.Message;
+
+/**
+ * Receives the survey records from a {@link SurveyServer}, for example to write them to a database, a file, or a
+ * message broker.
+ * <p>
+ * All the methods are called from the single dispatcher thread, so implementations do not need to be thread safe. The
+ * records from one gRPC stream are delivered in the order they were sent; records from different streams are
+ * interleaved.
+ */
+public interface RecordSink {
+    /**
+     * Called for each record. Records that arrived in a batch RPC (e.g. StreamLteSurveyBatch) are delivered as the
+     * individual records (e.g. LteRecord), with the values from the batch header restored.
+     *
+     * @param record The record, one of the Network Survey Messaging records such as LteRecord or WifiBeaconRecord.
+     * @throws Exception If the record could not be handled. The exception is counted and the next record is delivered.
+     */
+    void accept(Message record) throws Exception;
+
+    /**
+     * Called whenever the dispatcher has delivered all the buffered records, which makes it a good point to flush any
+     * output that the sink buffers.
+     */
+    default void flush() throws Exception {
+    }
+}
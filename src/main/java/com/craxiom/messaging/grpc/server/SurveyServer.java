@@ -0,0 +1,328 @@
+package com.craxiom.messaging.grpc.server;
+
+import com.craxiom.messaging.grpc.compression.CompressionPolicy;
+import com.craxiom.messaging.grpc.metrics.MetricsServerInterceptor;
+import com.craxiom.messaging.grpc.metrics.RpcMetrics;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference gRPC server for the WirelessSurvey service that hands every received record to a {@link RecordSink}.
+ * <p>
+ * The records are parsed on the gRPC executor and passed through a bounded ring buffer to a single dispatcher thread
+ * that calls the sink (see {@link WirelessSurveyService} and {@link RecordDispatcher}). The executor that gRPC uses to
+ * run the streams can be a fixed thread pool, virtual threads (Java 21 or newer), or the direct executor, which runs
+ * the streams on the transport threads and is the fastest option because the service never blocks.
+ * <p>
+ * This library does not depend on a gRPC transport, so the {@link ServerBuilder} is supplied by the caller:
+ * <pre>{@code
+ * final SurveyServer server = SurveyServer.newBuilder(NettyServerBuilder.forPort(2621), record -> store(record))
+ *         .setRingBufferCapacity(16_384)
+ *         .useDirectExecutor()
+ *         .build()
+ *         .start();
+ * ...
+ * server.close();
+ * }</pre>
+ */
+public final class SurveyServer implements AutoCloseable {
+    public static final int DEFAULT_RING_BUFFER_CAPACITY = 8192;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Server server;
+    private final RecordDispatcher dispatcher;
+    private final ExecutorService ownedExecutor;
+    private final long shutdownTimeoutNanos;
+
+    private SurveyServer(Builder builder) {
+        this.dispatcher = new RecordDispatcher(builder.sink, builder.ringBufferCapacity,
+                new NamedThreadFactory("survey-record-dispatcher"));
+        this.shutdownTimeoutNanos = builder.shutdownTimeoutNanos;
+
+        final ServerBuilder<?> serverBuilder = builder.serverBuilder;
+        if (builder.directExecutor) {
+            serverBuilder.directExecutor();
+            ownedExecutor = null;
+        } else if (builder.executor != null) {
+            serverBuilder.executor(builder.executor);
+            ownedExecutor = null;
+        } else {
+            ownedExecutor = builder.executorFactory == null ? null : builder.executorFactory.create();
+            if (ownedExecutor != null) serverBuilder.executor(ownedExecutor);
+        }
+
+        if (builder.compression != null) builder.compression.configure(serverBuilder);
+
+        final WirelessSurveyService service = new WirelessSurveyService(dispatcher, builder.requestWindow);
+        ServerServiceDefinition definition = service.bindService();
+        if (builder.aliasing) definition = AliasingMarshaller.aliasRequests(definition);
+        if (builder.metrics != null) definition = MetricsServerInterceptor.instrument(definition, builder.metrics);
+        this.server = serverBuilder.addService(definition).build();
+    }
+
+    /**
+     * @param serverBuilder The builder for the gRPC server, for example {@code NettyServerBuilder.forPort(2621)}. Other
+     *                      services can be added to it before it is passed in.
+     * @param sink          Receives all the records.
+     */
+    public static Builder newBuilder(ServerBuilder<?> serverBuilder, RecordSink sink) {
+        return new Builder(serverBuilder, sink);
+    }
+
+    /**
+     * Starts the dispatcher thread and the gRPC server.
+     *
+     * @return This server.
+     * @throws IOException If the server could not be started, for example because the port is in use.
+     */
+    public SurveyServer start() throws IOException {
+        dispatcher.start();
+        try {
+            server.start();
+        } catch (IOException | RuntimeException e) {
+            dispatcher.close();
+            shutdownOwnedExecutor();
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * @return The underlying gRPC server.
+     */
+    public Server getServer() {
+        return server;
+    }
+
+    /**
+     * @return The port the server is listening on, or -1 if it is not listening on a port (e.g. an in-process server).
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * @return The number of records waiting in the ring buffer to be delivered to the sink.
+     */
+    public int getBufferedCount() {
+        return dispatcher.getBufferedCount();
+    }
+
+    /**
+     * @return The number of records delivered to the sink.
+     */
+    public long getDeliveredCount() {
+        return dispatcher.getDeliveredCount();
+    }
+
+    /**
+     * @return The number of exceptions thrown by the sink.
+     */
+    public long getSinkErrorCount() {
+        return dispatcher.getSinkErrorCount();
+    }
+
+    /**
+     * Stops accepting new streams, waits up to the shutdown timeout for the open streams to complete before cancelling
+     * them, and then delivers the records that are still in the ring buffer before returning.
+     * <p>
+     * If the calling thread is interrupted, the open streams are cancelled right away, the records in the ring buffer
+     * may not all be delivered, and the interrupt flag is set again.
+     */
+    @Override
+    public void close() {
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(shutdownTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                server.shutdownNow();
+                server.awaitTermination();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        dispatcher.close();
+        shutdownOwnedExecutor();
+    }
+
+    private void shutdownOwnedExecutor() {
+        if (ownedExecutor != null) ownedExecutor.shutdown();
+    }
+
+    /**
+     * Creates the executor for the gRPC server when the server is built, so that a builder that is never built does not
+     * leak threads.
+     */
+    private interface ExecutorFactory {
+        ExecutorService create();
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final int number = count.getAndIncrement();
+            final Thread thread = new Thread(runnable, number == 0 ? prefix : prefix + "-" + number);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Configures a {@link SurveyServer}. Unless one of the executor options is selected, the gRPC server uses its
+     * default executor, an unbounded cached thread pool.
+     */
+    public static final class Builder {
+        private final ServerBuilder<?> serverBuilder;
+        private final RecordSink sink;
+        private int ringBufferCapacity = DEFAULT_RING_BUFFER_CAPACITY;
+        private int requestWindow = WirelessSurveyService.DEFAULT_REQUEST_WINDOW;
+        private long shutdownTimeoutNanos = DEFAULT_SHUTDOWN_TIMEOUT_NANOS;
+        private boolean directExecutor = false;
+        private Executor executor;
+        private ExecutorFactory executorFactory;
+        private RpcMetrics metrics;
+        private boolean aliasing = false;
+        private CompressionPolicy compression;
+
+        private Builder(ServerBuilder<?> serverBuilder, RecordSink sink) {
+            if (serverBuilder == null || sink == null) throw new NullPointerException("The server builder and sink are required");
+            this.serverBuilder = serverBuilder;
+            this.sink = sink;
+        }
+
+        /**
+         * @param capacity The maximum number of records waiting for the sink, rounded up to a power of two.
+         */
+        public Builder setRingBufferCapacity(int capacity) {
+            if (capacity < 1) throw new IllegalArgumentException("The ring buffer capacity must be at least 1");
+            this.ringBufferCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param requestWindow The number of messages each stream requests from its client before any have been
+         *                      dispatched. A larger window keeps the link busier at the cost of more buffered messages.
+         */
+        public Builder setRequestWindow(int requestWindow) {
+            if (requestWindow < 1) throw new IllegalArgumentException("The request window must be at least 1");
+            this.requestWindow = requestWindow;
+            return this;
+        }
+
+        /**
+         * @param timeout How long {@link SurveyServer#close()} waits for the open streams to complete.
+         */
+        public Builder setShutdownTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) throw new IllegalArgumentException("The shutdown timeout cannot be negative");
+            this.shutdownTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Runs the streams on a fixed pool of daemon threads that is shut down when the server is closed.
+         */
+        public Builder useFixedThreadPool(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("The thread pool needs at least 1 thread");
+            selectExecutor(false, null,
+                    () -> Executors.newFixedThreadPool(threads, new NamedThreadFactory("survey-server-executor")));
+            return this;
+        }
+
+        /**
+         * Runs each stream task on a new virtual thread. The executor is shut down when the server is closed.
+         *
+         * @throws UnsupportedOperationException If the JVM does not support virtual threads (Java 20 or older).
+         */
+        public Builder useVirtualThreads() {
+            final java.lang.reflect.Method factory;
+            try {
+                factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+            }
+            selectExecutor(false, null, () -> {
+                try {
+                    return (ExecutorService) factory.invoke(null);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IllegalStateException("Could not create the virtual thread executor", e);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Runs the streams directly on the transport threads. This avoids a thread hand off for every message and is
+         * safe because the service only parses the messages and adds the records to the ring buffer.
+         */
+        public Builder useDirectExecutor() {
+            selectExecutor(true, null, null);
+            return this;
+        }
+
+        /**
+         * Runs the streams on the given executor, which is not shut down when the server is closed.
+         */
+        public Builder setExecutor(Executor executor) {
+            if (executor == null) throw new NullPointerException("The executor is required");
+            selectExecutor(false, executor, null);
+            return this;
+        }
+
+        /**
+         * Records the message sizes, serialization times and call durations of the WirelessSurvey RPCs.
+         *
+         * @see MetricsServerInterceptor
+         */
+        public Builder setMetrics(RpcMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param aliasing True to parse the records with an {@link AliasingMarshaller}, so that the pcapRecord of the
+         *                 WifiOtaRecord, LteRrc, and LteNas records is not copied out of the received message.
+         */
+        public Builder setAliasing(boolean aliasing) {
+            this.aliasing = aliasing;
+            return this;
+        }
+
+        /**
+         * Registers the codecs of the compression policy, so that clients can send compressed records with any of
+         * them, and compresses the responses according to the policy.
+         *
+         * @see CompressionPolicy#configure(ServerBuilder)
+         */
+        public Builder setCompression(CompressionPolicy compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public SurveyServer build() {
+            return new SurveyServer(this);
+        }
+
+        private void selectExecutor(boolean directExecutor, Executor executor, ExecutorFactory executorFactory) {
+            this.directExecutor = directExecutor;
+            this.executor = executor;
+            this.executorFactory = executorFactory;
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package com.craxiom.messaging.grpc.server;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.grpc.*;
+import com.craxiom.messaging.grpc.batch.SurveyBatchType;
+import com.google.protobuf.Message;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An implementation of every RPC on the WirelessSurvey service that passes the received records to a
+ * {@link RecordDispatcher}.
+ * <p>
+ * The records are parsed on the gRPC executor as usual and are then only added to the dispatcher's ring buffer, so a
+ * slow {@link RecordSink} never holds up a gRPC thread. Instead, each stream uses manual flow control: it requests a
+ * small window of messages from the client and only requests the next one after all the records in a message have been
+ * accepted by the ring buffer. When the ring buffer is full the stream stops requesting messages, which in turn makes
+ * the client's stream report that it is not ready (see {@code SurveyStreamClient}).
+ * <p>
+ * The batch RPCs (e.g. StreamLteSurveyBatch) are split back into the individual records before they are dispatched, so
+ * the sink sees the same records no matter which RPC the client used.
+ * <p>
+ * The acknowledged RPCs (e.g. StreamLteSurveyAcked) send a {@link SurveyAck} back to the client each time some of
+ * the stream's records have been accepted by the sink and the sink has been flushed, see {@code ResumableSurveyClient}.
+ */
+public class WirelessSurveyService extends WirelessSurveyGrpc.WirelessSurveyImplBase {
+    /**
+     * The number of messages requested from the client before any of them have been dispatched.
+     */
+    public static final int DEFAULT_REQUEST_WINDOW = 16;
+
+    private final RecordDispatcher dispatcher;
+    private final int requestWindow;
+
+    public WirelessSurveyService(RecordDispatcher dispatcher) {
+        this(dispatcher, DEFAULT_REQUEST_WINDOW);
+    }
+
+    /**
+     * @param dispatcher    Receives the records from all the streams.
+     * @param requestWindow The number of messages each stream requests from the client up front.
+     */
+    public WirelessSurveyService(RecordDispatcher dispatcher, int requestWindow) {
+        if (dispatcher == null) throw new NullPointerException("The record dispatcher is required");
+        if (requestWindow < 1) throw new IllegalArgumentException("The request window must be at least 1");
+        this.dispatcher = dispatcher;
+        this.requestWindow = requestWindow;
+    }
+
+    @Override
+    public StreamObserver<GsmRecord> streamGsmSurvey(StreamObserver<GsmSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, GsmSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<CdmaRecord> streamCdmaSurvey(StreamObserver<CdmaSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, CdmaSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<UmtsRecord> streamUmtsSurvey(StreamObserver<UmtsSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, UmtsSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<LteRecord> streamLteSurvey(StreamObserver<LteSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, LteSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<NrRecord> streamNrSurvey(StreamObserver<NrSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, NrSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<PhoneState> streamPhoneState(StreamObserver<PhoneStateResponse> responseObserver) {
+        return recordStream(responseObserver, PhoneStateResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<WifiBeaconRecord> streamWifiBeaconSurvey(StreamObserver<WifiBeaconSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, WifiBeaconSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<WifiProbeRequestRecord> streamWifiProbeRequestSurvey(StreamObserver<WifiProbeRequestSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, WifiProbeRequestSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<WifiOtaRecord> streamWifiOtaSurvey(StreamObserver<WifiOtaSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, WifiOtaSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<BluetoothRecord> streamBluetoothSurvey(StreamObserver<BluetoothSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, BluetoothSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<GnssRecord> streamGnssSurvey(StreamObserver<GnssSurveyResponse> responseObserver) {
+        return recordStream(responseObserver, GnssSurveyResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<EnergyDetection> streamEnergyDetections(StreamObserver<EnergyDetectionResponse> responseObserver) {
+        return recordStream(responseObserver, EnergyDetectionResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<SignalDetection> streamSignalDetections(StreamObserver<SignalDetectionResponse> responseObserver) {
+        return recordStream(responseObserver, SignalDetectionResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<LteRrc> streamLteRrc(StreamObserver<LteRrcResponse> responseObserver) {
+        return recordStream(responseObserver, LteRrcResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<LteNas> streamLteNas(StreamObserver<LteNasResponse> responseObserver) {
+        return recordStream(responseObserver, LteNasResponse.getDefaultInstance());
+    }
+
+    @Override
+    public StreamObserver<GsmRecordBatch> streamGsmSurveyBatch(StreamObserver<GsmSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, GsmSurveyResponse.getDefaultInstance(), SurveyBatchType.GSM);
+    }
+
+    @Override
+    public StreamObserver<CdmaRecordBatch> streamCdmaSurveyBatch(StreamObserver<CdmaSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, CdmaSurveyResponse.getDefaultInstance(), SurveyBatchType.CDMA);
+    }
+
+    @Override
+    public StreamObserver<UmtsRecordBatch> streamUmtsSurveyBatch(StreamObserver<UmtsSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, UmtsSurveyResponse.getDefaultInstance(), SurveyBatchType.UMTS);
+    }
+
+    @Override
+    public StreamObserver<LteRecordBatch> streamLteSurveyBatch(StreamObserver<LteSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, LteSurveyResponse.getDefaultInstance(), SurveyBatchType.LTE);
+    }
+
+    @Override
+    public StreamObserver<NrRecordBatch> streamNrSurveyBatch(StreamObserver<NrSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, NrSurveyResponse.getDefaultInstance(), SurveyBatchType.NR);
+    }
+
+    @Override
+    public StreamObserver<PhoneStateBatch> streamPhoneStateBatch(StreamObserver<PhoneStateResponse> responseObserver) {
+        return batchStream(responseObserver, PhoneStateResponse.getDefaultInstance(), SurveyBatchType.PHONE_STATE);
+    }
+
+    @Override
+    public StreamObserver<WifiBeaconRecordBatch> streamWifiBeaconSurveyBatch(StreamObserver<WifiBeaconSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, WifiBeaconSurveyResponse.getDefaultInstance(), SurveyBatchType.WIFI_BEACON);
+    }
+
+    @Override
+    public StreamObserver<WifiProbeRequestRecordBatch> streamWifiProbeRequestSurveyBatch(StreamObserver<WifiProbeRequestSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, WifiProbeRequestSurveyResponse.getDefaultInstance(), SurveyBatchType.WIFI_PROBE_REQUEST);
+    }
+
+    @Override
+    public StreamObserver<WifiOtaRecordBatch> streamWifiOtaSurveyBatch(StreamObserver<WifiOtaSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, WifiOtaSurveyResponse.getDefaultInstance(), SurveyBatchType.WIFI_OTA);
+    }
+
+    @Override
+    public StreamObserver<BluetoothRecordBatch> streamBluetoothSurveyBatch(StreamObserver<BluetoothSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, BluetoothSurveyResponse.getDefaultInstance(), SurveyBatchType.BLUETOOTH);
+    }
+
+    @Override
+    public StreamObserver<GnssRecordBatch> streamGnssSurveyBatch(StreamObserver<GnssSurveyResponse> responseObserver) {
+        return batchStream(responseObserver, GnssSurveyResponse.getDefaultInstance(), SurveyBatchType.GNSS);
+    }
+
+    @Override
+    public StreamObserver<EnergyDetectionBatch> streamEnergyDetectionsBatch(StreamObserver<EnergyDetectionResponse> responseObserver) {
+        return batchStream(responseObserver, EnergyDetectionResponse.getDefaultInstance(), SurveyBatchType.ENERGY_DETECTION);
+    }
+
+    @Override
+    public StreamObserver<SignalDetectionBatch> streamSignalDetectionsBatch(StreamObserver<SignalDetectionResponse> responseObserver) {
+        return batchStream(responseObserver, SignalDetectionResponse.getDefaultInstance(), SurveyBatchType.SIGNAL_DETECTION);
+    }
+
+    @Override
+    public StreamObserver<LteRrcBatch> streamLteRrcBatch(StreamObserver<LteRrcResponse> responseObserver) {
+        return batchStream(responseObserver, LteRrcResponse.getDefaultInstance(), SurveyBatchType.LTE_RRC);
+    }
+
+    @Override
+    public StreamObserver<LteNasBatch> streamLteNasBatch(StreamObserver<LteNasResponse> responseObserver) {
+        return batchStream(responseObserver, LteNasResponse.getDefaultInstance(), SurveyBatchType.LTE_NAS);
+    }
+
+    @Override
+    public StreamObserver<GsmRecord> streamGsmSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<CdmaRecord> streamCdmaSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<UmtsRecord> streamUmtsSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<LteRecord> streamLteSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<NrRecord> streamNrSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<PhoneState> streamPhoneStateAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<WifiBeaconRecord> streamWifiBeaconSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<WifiProbeRequestRecord> streamWifiProbeRequestSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<WifiOtaRecord> streamWifiOtaSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<BluetoothRecord> streamBluetoothSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<GnssRecord> streamGnssSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<EnergyDetection> streamEnergyDetectionsAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<SignalDetection> streamSignalDetectionsAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<LteRrc> streamLteRrcAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<LteNas> streamLteNasAcked(StreamObserver<SurveyAck> responseObserver) {
+        return new AckedRecordStream<>(responseObserver);
+    }
+
+    private <T extends Message, R> StreamObserver<T> recordStream(StreamObserver<R> responseObserver, R response) {
+        return new RecordStream<T, R>(responseObserver, response, Collections::singletonList);
+    }
+
+    private <B extends Message, R> StreamObserver<B> batchStream(StreamObserver<R> responseObserver, R response,
+                                                                 SurveyBatchType<?, ?, B> batchType) {
+        return new RecordStream<B, R>(responseObserver, response, batchType::toRecords);
+    }
+
+    /**
+     * The server side of one client stream. Messages from the client are expanded into records and queued here until the
+     * dispatcher accepts them; a message is only requested from the client once an earlier one has been fully accepted.
+     * <p>
+     * {@link #onNext(Object)} is called on the gRPC executor and {@link #run()} on the dispatcher thread, so everything
+     * that touches the pending records or the response observer is synchronized.
+     *
+     * @param <T> The type of message received from the client.
+     * @param <R> The type of the response message.
+     */
+    private class RecordStream<T, R> implements StreamObserver<T>, Runnable {
+        protected final ServerCallStreamObserver<R> responseObserver;
+        private final R response;
+        private final Function<? super T, ? extends List<? extends Message>> expander;
+        private final ArrayDeque<List<? extends Message>> pending = new ArrayDeque<>();
+
+        private int pendingIndex = 0;
+        private boolean waitingForCapacity = false;
+        private boolean halfClosed = false;
+        private boolean finished = false;
+
+        private RecordStream(StreamObserver<R> responseObserver, R response,
+                             Function<? super T, ? extends List<? extends Message>> expander) {
+            this.responseObserver = (ServerCallStreamObserver<R>) responseObserver;
+            this.response = response;
+            this.expander = expander;
+
+            this.responseObserver.disableAutoRequest();
+            this.responseObserver.setOnCancelHandler(this::discard);
+            this.responseObserver.request(requestWindow);
+        }
+
+        @Override
+        public synchronized void onNext(T message) {
+            if (finished) return;
+            final List<? extends Message> records = expander.apply(message);
+            if (records.isEmpty()) {
+                responseObserver.request(1);
+                return;
+            }
+            pending.add(records);
+            if (!waitingForCapacity) drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            discard();
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            halfClosed = true;
+            if (!waitingForCapacity) drain();
+        }
+
+        /**
+         * Called by the dispatcher thread once there is room in the ring buffer.
+         */
+        @Override
+        public synchronized void run() {
+            waitingForCapacity = false;
+            drain();
+        }
+
+        /**
+         * Adds a record to the dispatcher's ring buffer.
+         *
+         * @return False if the ring buffer is full.
+         */
+        protected boolean offer(Message record) {
+            return dispatcher.offer(record);
+        }
+
+        /**
+         * Called once every record of the stream has been added to the ring buffer after the client half closed it.
+         */
+        protected void finish() {
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        }
+
+        /**
+         * Stops the stream and drops the records that have not been added to the ring buffer.
+         */
+        protected synchronized void discard() {
+            finished = true;
+            pending.clear();
+        }
+
+        private void drain() {
+            while (!finished) {
+                final List<? extends Message> records = pending.peek();
+                if (records == null) break;
+
+                while (pendingIndex < records.size()) {
+                    if (!offer(records.get(pendingIndex))) {
+                        waitingForCapacity = true;
+                        dispatcher.awaitCapacity(this);
+                        return;
+                    }
+                    pendingIndex++;
+                }
+
+                pending.poll();
+                pendingIndex = 0;
+                responseObserver.request(1);
+            }
+
+            if (halfClosed && !finished && pending.isEmpty()) {
+                finished = true;
+                finish();
+            }
+        }
+    }
+
+    /**
+     * The server side of one of the acknowledged streams (e.g. StreamLteSurveyAcked). Each record is tracked through
+     * the dispatcher, and a {@link SurveyAck} is sent whenever the sink has been flushed after some of the records, so
+     * the acks are batched when the server is busy. If the sink fails to store a record, the stream is ended with an
+     * UNAVAILABLE status so that the client resends that record and the ones after it on a new stream.
+     * <p>
+     * The ack methods are called on the dispatcher thread and synchronize on the stream like the rest of it.
+     *
+     * @param <T> The type of record received from the client.
+     */
+    private final class AckedRecordStream<T extends Message> extends RecordStream<T, SurveyAck>
+            implements RecordDispatcher.DeliveryListener {
+        private final Map<DeviceMission, Integer> deliveredRecordNumbers = new HashMap<>();
+        private final Map<DeviceMission, Integer> committedRecordNumbers = new HashMap<>();
+        private final Set<DeviceMission> unackedDevices = new LinkedHashSet<>();
+
+        private long offeredCount = 0;
+        private long deliveredCount = 0;
+        private long committedCount = 0;
+        private long ackedCount = 0;
+        private boolean finishing = false;
+        private boolean responseClosed = false;
+
+        private AckedRecordStream(StreamObserver<SurveyAck> responseObserver) {
+            super(responseObserver, null, Collections::singletonList);
+            this.responseObserver.setOnReadyHandler(this::sendAck);
+        }
+
+        @Override
+        protected boolean offer(Message record) {
+            if (!dispatcher.offer(record, this)) return false;
+            offeredCount++;
+            return true;
+        }
+
+        @Override
+        protected void finish() {
+            finishing = true;
+            completeIfCommitted();
+        }
+
+        @Override
+        protected synchronized void discard() {
+            super.discard();
+            responseClosed = true;
+        }
+
+        @Override
+        public synchronized void onDelivered(Message record, boolean accepted) {
+            if (responseClosed) return;
+            if (!accepted) {
+                fail("The record at index " + deliveredCount + " of the stream could not be stored");
+                return;
+            }
+
+            deliveredCount++;
+            final MessageType<?, ?> type = MessageTypeRegistry.forRecord(record);
+            final SurveyRecordHeader data = type == null ? null : type.getData(record);
+            if (data instanceof SurveyRecordNumberHeader) {
+                final SurveyRecordNumberHeader header = (SurveyRecordNumberHeader) data;
+                deliveredRecordNumbers.merge(new DeviceMission(header.getDeviceSerialNumber(), header.getMissionId()),
+                        header.getRecordNumber(), Math::max);
+            }
+        }
+
+        @Override
+        public synchronized void onFlushed(boolean flushed) {
+            if (responseClosed) return;
+            if (!flushed) {
+                fail("The records could not be flushed");
+                return;
+            }
+
+            committedCount = deliveredCount;
+            for (Map.Entry<DeviceMission, Integer> entry : deliveredRecordNumbers.entrySet()) {
+                final Integer previous = committedRecordNumbers.get(entry.getKey());
+                if (previous == null || entry.getValue() > previous) {
+                    committedRecordNumbers.put(entry.getKey(), entry.getValue());
+                    unackedDevices.add(entry.getKey());
+                }
+            }
+            deliveredRecordNumbers.clear();
+
+            if (finishing) {
+                completeIfCommitted();
+            } else {
+                sendAck();
+            }
+        }
+
+        private synchronized void sendAck() {
+            if (responseClosed || !responseObserver.isReady()) return;
+            sendAckNow();
+        }
+
+        private void sendAckNow() {
+            if (committedCount == ackedCount && unackedDevices.isEmpty()) return;
+
+            final SurveyAck.Builder ack = SurveyAck.newBuilder().setCommittedCount(committedCount);
+            for (DeviceMission device : unackedDevices) {
+                ack.addDevices(DeviceRecordAck.newBuilder()
+                        .setDeviceSerialNumber(device.deviceSerialNumber)
+                        .setMissionId(device.missionId)
+                        .setRecordNumber(committedRecordNumbers.get(device)));
+            }
+            unackedDevices.clear();
+            ackedCount = committedCount;
+            responseObserver.onNext(ack.build());
+        }
+
+        /**
+         * Sends the last ack and completes the stream once every record has been committed, even if the stream is not
+         * ready, because the client waits for the last ack.
+         */
+        private void completeIfCommitted() {
+            if (responseClosed || committedCount < offeredCount) return;
+            sendAckNow();
+            responseClosed = true;
+            responseObserver.onCompleted();
+        }
+
+        private void fail(String description) {
+            discard();
+            responseObserver.onError(Status.UNAVAILABLE.withDescription(description).asRuntimeException());
+        }
+    }
+
+    /**
+     * The key of the recordNumbers in the acks.
+     */
+    private static final class DeviceMission {
+        private final String deviceSerialNumber;
+        private final String missionId;
+
+        private DeviceMission(String deviceSerialNumber, String missionId) {
+            this.deviceSerialNumber = deviceSerialNumber;
+            this.missionId = missionId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof DeviceMission)) return false;
+            final DeviceMission that = (DeviceMission) other;
+            return deviceSerialNumber.equals(that.deviceSerialNumber) && missionId.equals(that.missionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * deviceSerialNumber.hashCode() + missionId.hashCode();
+        }
+    }
+}
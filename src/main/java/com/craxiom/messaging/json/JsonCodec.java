@@ -0,0 +1,56 @@
+package com.craxiom.messaging.json;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+/**
+ * A reflection-free JSON codec for one of the Network Survey Messaging protobuf messages.
+ * <p>
+ * Implementations are generated at build time from the proto definitions (see the generateJsonCodecs task in
+ * build.gradle), one per message, for example {@code LteRecordJsonCodec.INSTANCE}. The JSON written by a codec is
+ * identical to the output of {@code JsonFormat.printer().omittingInsignificantWhitespace()}, and the reader accepts the
+ * JSON produced by the protobuf {@code JsonFormat} printer.
+ *
+ * @param <T> The protobuf message type this codec converts.
+ */
+public interface JsonCodec<T extends Message> {
+    /**
+     * Writes the provided message as a JSON object to the writer.
+     *
+     * @param message The message to write.
+     * @param writer  The writer to append the JSON to.
+     */
+    void write(T message, JsonStreamWriter writer);
+
+    /**
+     * Reads a JSON object from the current position of the reader and converts it to a message.
+     *
+     * @param reader The reader positioned at the start of a JSON object.
+     * @return The message built from the JSON object.
+     * @throws InvalidProtocolBufferException If the JSON is malformed or does not match the message schema.
+     */
+    T read(JsonStreamReader reader) throws InvalidProtocolBufferException;
+
+    /**
+     * @return The JSON string representation of the provided message.
+     */
+    default String toJson(T message) {
+        final JsonStreamWriter writer = new JsonStreamWriter();
+        write(message, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Converts a complete JSON document to a message.
+     *
+     * @param json The JSON string containing a single JSON object.
+     * @return The message built from the JSON string.
+     * @throws InvalidProtocolBufferException If the JSON is malformed or does not match the message schema.
+     */
+    default T fromJson(String json) throws InvalidProtocolBufferException {
+        final JsonStreamReader reader = new JsonStreamReader(json);
+        final T message = read(reader);
+        reader.endDocument();
+        return message;
+    }
+}
@@ -0,0 +1,84 @@
+package com.craxiom.messaging.json;
+
+/**
+ * A small open addressing hash table that maps JSON field names to protobuf field numbers (or enum value names to
+ * enum numbers). The table is looked up directly against the characters of the JSON input so that a field name never
+ * has to be materialized as a String.
+ * <p>
+ * The hash function is the same as {@link String#hashCode()} so that the reader can compute it while scanning a name.
+ */
+public final class JsonFieldTable {
+    /**
+     * Returned by a lookup when the name is not in the table. Enum values can be negative so -1 cannot be used.
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    private final String[] names;
+    private final int[] hashes;
+    private final int[] fieldNumbers;
+    private final int mask;
+
+    /**
+     * @param names        The JSON names of the fields (or enum values). A field can appear more than once if it has
+     *                     an alternate name (e.g. the original proto field name in addition to its lowerCamelCase JSON
+     *                     name).
+     * @param fieldNumbers The protobuf field (or enum value) number for each of the names.
+     */
+    public JsonFieldTable(String[] names, int[] fieldNumbers) {
+        if (names.length != fieldNumbers.length) {
+            throw new IllegalArgumentException("Every field name must have a field number");
+        }
+
+        int capacity = 4;
+        while (capacity < names.length * 2) capacity <<= 1;
+
+        this.names = new String[capacity];
+        this.hashes = new int[capacity];
+        this.fieldNumbers = new int[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i];
+            final int hash = name.hashCode();
+            int slot = spread(hash) & mask;
+            while (this.names[slot] != null) {
+                if (this.names[slot].equals(name)) break;
+                slot = (slot + 1) & mask;
+            }
+            this.names[slot] = name;
+            this.hashes[slot] = hash;
+            this.fieldNumbers[slot] = fieldNumbers[i];
+        }
+    }
+
+    /**
+     * Looks up the field number for the name found in {@code source} between {@code start} (inclusive) and
+     * {@code end} (exclusive).
+     *
+     * @param hash The {@link String#hashCode()} compatible hash of the name.
+     * @return The field number, or {@link #NOT_FOUND} if the name is not in the table.
+     */
+    int find(CharSequence source, int start, int end, int hash) {
+        final int length = end - start;
+        int slot = spread(hash) & mask;
+        String candidate;
+        while ((candidate = names[slot]) != null) {
+            if (hashes[slot] == hash && candidate.length() == length && regionMatches(candidate, source, start)) {
+                return fieldNumbers[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private static boolean regionMatches(String candidate, CharSequence source, int start) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,545 @@
+package com.craxiom.messaging.json;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A minimal pull style JSON reader used by the generated {@link JsonCodec} implementations.
+ * <p>
+ * Values are accepted in the same forms as the protobuf {@code JsonFormat} parser: numbers can be quoted, 64-bit
+ * integers are normally quoted, floating point fields accept "NaN", "Infinity" and "-Infinity", enums can be given as a
+ * name or a number, and a null value leaves the field unset. One intentional difference is that a double value of -0.0
+ * is kept as -0.0 (the JsonFormat parser reads it as 0.0) so that every message survives a round trip. Field names
+ * are matched against a {@link JsonFieldTable} without creating a String for each name.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class JsonStreamReader {
+    private static final BigInteger MAX_UINT64 = new BigInteger("FFFFFFFFFFFFFFFF", 16);
+    private static final double EPSILON = 1e-6;
+
+    private final CharSequence json;
+    private final int offset;
+    private final int length;
+    private final boolean ignoringUnknownFields;
+    private int position;
+
+    /**
+     * Tracks whether the next member of each open object or array is the first one, indexed by nesting depth.
+     */
+    private boolean[] firstMember = new boolean[16];
+    private int depth = 0;
+
+    // The location of the most recently read field name, used for error messages
+    private int nameStart;
+    private int nameEnd;
+    private String escapedName;
+
+    public JsonStreamReader(String json) {
+        this(json, false);
+    }
+
+    /**
+     * @param json                  The JSON to read.
+     * @param ignoringUnknownFields True if fields that are not part of the message schema should be skipped, false if
+     *                              they should result in an {@link InvalidProtocolBufferException}.
+     */
+    public JsonStreamReader(String json, boolean ignoringUnknownFields) {
+        this(json, 0, json.length(), ignoringUnknownFields);
+    }
+
+    /**
+     * Reads the JSON in a range of a larger string or character buffer, such as one line of a newline delimited JSON
+     * file, without copying it. Only whitespace may follow the top level value within the range.
+     *
+     * @param json                  The characters that contain the JSON to read, which must not change while they
+     *                              are read.
+     * @param start                 The index of the first character of the JSON.
+     * @param end                   The index after the last character of the JSON.
+     * @param ignoringUnknownFields True if fields that are not part of the message schema should be skipped, false if
+     *                              they should result in an {@link InvalidProtocolBufferException}.
+     */
+    public JsonStreamReader(CharSequence json, int start, int end, boolean ignoringUnknownFields) {
+        if (start < 0 || end > json.length() || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range " + start + " to " + end + " of " + json.length());
+        }
+        this.json = json;
+        this.offset = start;
+        this.length = end;
+        this.position = start;
+        this.ignoringUnknownFields = ignoringUnknownFields;
+    }
+
+    /**
+     * Consumes the start of a JSON object.
+     */
+    public void beginObject() throws InvalidProtocolBufferException {
+        expect('{', "Expect message object");
+        push();
+    }
+
+    /**
+     * @return True if the current object has another field, in which case {@link #nextField(JsonFieldTable)} must be
+     * called next. False if the end of the object was reached and consumed.
+     */
+    public boolean hasNextField() throws InvalidProtocolBufferException {
+        return hasNext('}');
+    }
+
+    /**
+     * Reads the next field name and the colon that follows it.
+     *
+     * @param fields The fields of the message being read.
+     * @return The protobuf field number, or {@link JsonFieldTable#NOT_FOUND} if the field name is not part of the
+     * message.
+     */
+    public int nextField(JsonFieldTable fields) throws InvalidProtocolBufferException {
+        skipWhitespace();
+        expect('"', "Expect a field name");
+        final int start = position;
+        int hash = 0;
+        while (true) {
+            if (position >= length) throw error("Unterminated field name");
+            final char c = json.charAt(position);
+            if (c == '"') break;
+            if (c == '\\') {
+                position = start - 1;
+                escapedName = readQuotedString();
+                nameStart = -1;
+                skipWhitespace();
+                expect(':', "Expect ':' after a field name");
+                return fields.find(escapedName, 0, escapedName.length(), escapedName.hashCode());
+            }
+            hash = 31 * hash + c;
+            position++;
+        }
+        nameStart = start;
+        nameEnd = position;
+        position++;
+        skipWhitespace();
+        expect(':', "Expect ':' after a field name");
+        return fields.find(json, start, nameEnd, hash);
+    }
+
+    /**
+     * Handles a field that was not found in the message schema by either skipping its value or throwing an exception,
+     * depending on how this reader was configured.
+     *
+     * @param messageName The full name of the message being read.
+     */
+    public void unknownField(String messageName) throws InvalidProtocolBufferException {
+        if (!ignoringUnknownFields) {
+            throw new InvalidProtocolBufferException("Cannot find field: " + lastFieldName() + " in message " + messageName);
+        }
+        skipValue();
+    }
+
+    /**
+     * Throws the exception used when two members of the same oneof are present in a JSON object.
+     */
+    public InvalidProtocolBufferException oneofConflict(String fieldName) {
+        return new InvalidProtocolBufferException("Cannot set field " + fieldName
+                + " because another field belonging to the same oneof has already been set.");
+    }
+
+    /**
+     * Consumes the start of a JSON array.
+     */
+    public void beginArray() throws InvalidProtocolBufferException {
+        expect('[', "Expect an array");
+        push();
+    }
+
+    /**
+     * @return True if the current array has another element, false if the end of the array was reached and consumed.
+     */
+    public boolean hasNextElement() throws InvalidProtocolBufferException {
+        return hasNext(']');
+    }
+
+    /**
+     * Consumes a null literal if it is the next value.
+     *
+     * @return True if the next value was null (and was consumed), false otherwise.
+     */
+    public boolean nextNull() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        if (startsWith("null")) {
+            position += 4;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Verifies that only whitespace remains after the top level value.
+     */
+    public void endDocument() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        if (position != length) throw error("Unexpected content after the end of the JSON object");
+    }
+
+    public String nextString() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        if (peek() == '"') return readQuotedString();
+
+        // The protobuf JsonFormat parser accepts numbers and booleans for string fields
+        final int start = position;
+        skipScalar();
+        return substring(start, position);
+    }
+
+    public boolean nextBool() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        final boolean quoted = peek() == '"';
+        if (quoted) position++;
+        final boolean value;
+        if (startsWith("true")) {
+            position += 4;
+            value = true;
+        } else if (startsWith("false")) {
+            position += 5;
+            value = false;
+        } else {
+            throw error("Not a bool value");
+        }
+        if (quoted) expect('"', "Not a bool value");
+        return value;
+    }
+
+    public int nextInt32() throws InvalidProtocolBufferException {
+        final long value = nextIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE, "int32");
+        return (int) value;
+    }
+
+    public int nextUInt32() throws InvalidProtocolBufferException {
+        final long value = nextIntegral(0, 0xFFFFFFFFL, "uint32");
+        return (int) value;
+    }
+
+    public long nextInt64() throws InvalidProtocolBufferException {
+        return nextIntegral(Long.MIN_VALUE, Long.MAX_VALUE, "int64");
+    }
+
+    public long nextUInt64() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        final int errorPosition = position;
+        final String text = numberText();
+        try {
+            final BigInteger value = new BigDecimal(text).toBigIntegerExact();
+            if (value.signum() < 0 || value.compareTo(MAX_UINT64) > 0) {
+                throw new InvalidProtocolBufferException("Out of range uint64 value: " + text);
+            }
+            return value.longValue();
+        } catch (NumberFormatException | ArithmeticException e) {
+            position = errorPosition;
+            throw error("Not an uint64 value: " + text);
+        }
+    }
+
+    public float nextFloat() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        final String text = numberText();
+        switch (text) {
+            case "NaN":
+                return Float.NaN;
+            case "Infinity":
+                return Float.POSITIVE_INFINITY;
+            case "-Infinity":
+                return Float.NEGATIVE_INFINITY;
+            default:
+                final double value = parseDouble(text, "float");
+                if (value > Float.MAX_VALUE * (1.0 + EPSILON) || value < -Float.MAX_VALUE * (1.0 + EPSILON)) {
+                    throw new InvalidProtocolBufferException("Out of range float value: " + text);
+                }
+                return (float) value;
+        }
+    }
+
+    public double nextDouble() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        final String text = numberText();
+        switch (text) {
+            case "NaN":
+                return Double.NaN;
+            case "Infinity":
+                return Double.POSITIVE_INFINITY;
+            case "-Infinity":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                final double value = parseDouble(text, "double");
+                if (Double.isInfinite(value)) throw new InvalidProtocolBufferException("Out of range double value: " + text);
+                return value;
+        }
+    }
+
+    /**
+     * Reads a base64 encoded string (standard or URL safe alphabet) and returns the decoded bytes.
+     */
+    public ByteString nextBytes() throws InvalidProtocolBufferException {
+        final String text = nextString();
+        try {
+            return UnsafeByteOperations.unsafeWrap(Base64.getDecoder().decode(text));
+        } catch (IllegalArgumentException e) {
+            try {
+                return UnsafeByteOperations.unsafeWrap(Base64.getUrlDecoder().decode(text));
+            } catch (IllegalArgumentException urlException) {
+                throw new InvalidProtocolBufferException("Not a valid base64 value: " + text);
+            }
+        }
+    }
+
+    /**
+     * Reads an enum value that is either a quoted value name or a number.
+     *
+     * @param enumValues The enum value names and numbers.
+     * @param enumName   The full name of the enum type, used in the exception message.
+     * @return The enum number. Unknown numbers are returned as is since proto3 enums are open.
+     */
+    public int nextEnum(JsonFieldTable enumValues, String enumName) throws InvalidProtocolBufferException {
+        skipWhitespace();
+        if (peek() != '"') return nextInt32();
+
+        final int start = position + 1;
+        final String text = readQuotedString();
+        final int number = enumValues.find(text, 0, text.length(), text.hashCode());
+        if (number != JsonFieldTable.NOT_FOUND) return number;
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Invalid enum value: " + text + " for enum type: " + enumName);
+        }
+    }
+
+    /**
+     * Skips over the next JSON value, including any nested objects or arrays.
+     */
+    public void skipValue() throws InvalidProtocolBufferException {
+        skipWhitespace();
+        final char c = peek();
+        if (c == '{') {
+            beginObject();
+            while (hasNextField()) {
+                skipWhitespace();
+                readQuotedString();
+                skipWhitespace();
+                expect(':', "Expect ':' after a field name");
+                skipValue();
+            }
+        } else if (c == '[') {
+            beginArray();
+            while (hasNextElement()) {
+                skipValue();
+            }
+        } else if (c == '"') {
+            readQuotedString();
+        } else {
+            skipScalar();
+        }
+    }
+
+    private long nextIntegral(long min, long max, String typeName) throws InvalidProtocolBufferException {
+        skipWhitespace();
+        final int errorPosition = position;
+        final boolean quoted = peek() == '"';
+        if (!quoted) {
+            // Fast path for the common case of a plain JSON integer
+            final int start = position;
+            int i = position;
+            final boolean negative = i < length && json.charAt(i) == '-';
+            if (negative) i++;
+            long value = 0;
+            int digits = 0;
+            while (i < length && digits < 18) {
+                final char c = json.charAt(i);
+                if (c < '0' || c > '9') break;
+                value = value * 10 + (c - '0');
+                digits++;
+                i++;
+            }
+            if (digits > 0 && (i == length || isValueTerminator(json.charAt(i)))) {
+                if (negative) value = -value;
+                if (value < min || value > max) throw error("Out of range " + typeName + " value: " + substring(start, i));
+                position = i;
+                return value;
+            }
+        }
+
+        final String text = numberText();
+        try {
+            final long value = new BigDecimal(text).longValueExact();
+            if (value < min || value > max) {
+                position = errorPosition;
+                throw error("Out of range " + typeName + " value: " + text);
+            }
+            return value;
+        } catch (NumberFormatException | ArithmeticException e) {
+            position = errorPosition;
+            throw error("Not an " + typeName + " value: " + text);
+        }
+    }
+
+    private double parseDouble(String text, String typeName) throws InvalidProtocolBufferException {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Not a " + typeName + " value: " + text);
+        }
+    }
+
+    /**
+     * @return The text of the next number, which may be quoted.
+     */
+    private String numberText() throws InvalidProtocolBufferException {
+        if (peek() == '"') return readQuotedString();
+        final int start = position;
+        skipScalar();
+        if (start == position) throw error("Expect a number");
+        return substring(start, position);
+    }
+
+    private void skipScalar() throws InvalidProtocolBufferException {
+        final int start = position;
+        while (position < length && !isValueTerminator(json.charAt(position))) {
+            position++;
+        }
+        if (start == position) throw error("Expect a value");
+    }
+
+    private String readQuotedString() throws InvalidProtocolBufferException {
+        expect('"', "Expect a string");
+        final int start = position;
+        while (position < length) {
+            final char c = json.charAt(position);
+            if (c == '"') {
+                final String value = substring(start, position);
+                position++;
+                return value;
+            }
+            if (c == '\\') {
+                return readEscapedString(start);
+            }
+            position++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private String readEscapedString(int start) throws InvalidProtocolBufferException {
+        final StringBuilder builder = new StringBuilder(position - start + 16);
+        builder.append(json, start, position);
+        while (position < length) {
+            final char c = json.charAt(position++);
+            if (c == '"') return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (position >= length) break;
+            final char escaped = json.charAt(position++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append(escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > length) throw error("Invalid escape sequence");
+                    try {
+                        builder.append((char) Integer.parseInt(substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape sequence");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    throw error("Invalid escape sequence");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private boolean hasNext(char end) throws InvalidProtocolBufferException {
+        skipWhitespace();
+        if (peek() == end) {
+            position++;
+            depth--;
+            return false;
+        }
+        if (firstMember[depth - 1]) {
+            firstMember[depth - 1] = false;
+        } else {
+            expect(',', "Expect ',' or '" + end + "'");
+        }
+        return true;
+    }
+
+    private void push() {
+        if (depth == firstMember.length) firstMember = Arrays.copyOf(firstMember, depth * 2);
+        firstMember[depth++] = true;
+    }
+
+    private String lastFieldName() {
+        return nameStart == -1 ? escapedName : substring(nameStart, nameEnd);
+    }
+
+    private char peek() throws InvalidProtocolBufferException {
+        if (position >= length) throw error("Unexpected end of the JSON input");
+        return json.charAt(position);
+    }
+
+    private void expect(char expected, String message) throws InvalidProtocolBufferException {
+        skipWhitespace();
+        if (position >= length || json.charAt(position) != expected) throw error(message);
+        position++;
+    }
+
+    private void skipWhitespace() {
+        while (position < length) {
+            final char c = json.charAt(position);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            position++;
+        }
+    }
+
+    private boolean startsWith(String literal) {
+        if (length - position < literal.length()) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (json.charAt(position + i) != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String substring(int start, int end) {
+        return json.subSequence(start, end).toString();
+    }
+
+    private static boolean isValueTerminator(char c) {
+        return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private InvalidProtocolBufferException error(String message) {
+        return new InvalidProtocolBufferException(message + " (at character " + (position - offset) + ")");
+    }
+}
@@ -0,0 +1,251 @@
+package com.craxiom.messaging.json;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * A minimal streaming JSON writer used by the generated {@link JsonCodec} implementations.
+ * <p>
+ * The formatting matches {@code JsonFormat.printer().omittingInsignificantWhitespace()} exactly: no whitespace between
+ * tokens, strings escaped the same way as Gson's HTML safe escaping, 64-bit integers written as quoted strings, and
+ * floating point values written with {@link Float#toString(float)} / {@link Double#toString(double)}.
+ * <p>
+ * A writer can be reused for multiple messages by calling {@link #reset()} between them. Instances are not thread safe.
+ */
+public final class JsonStreamWriter {
+    private static final char LINE_SEPARATOR = (char) 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = (char) 0x2029;
+    private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * The replacement for each ASCII character that must be escaped, or null if the character can be written as is.
+     */
+    private static final String[] REPLACEMENT_CHARS = new String[128];
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENT_CHARS['"'] = "\\\"";
+        REPLACEMENT_CHARS['\\'] = "\\\\";
+        REPLACEMENT_CHARS['\t'] = "\\t";
+        REPLACEMENT_CHARS['\b'] = "\\b";
+        REPLACEMENT_CHARS['\n'] = "\\n";
+        REPLACEMENT_CHARS['\r'] = "\\r";
+        REPLACEMENT_CHARS['\f'] = "\\f";
+        // HTML safe escaping, which is what the protobuf JsonFormat printer uses for string values
+        REPLACEMENT_CHARS['<'] = "\\u003c";
+        REPLACEMENT_CHARS['>'] = "\\u003e";
+        REPLACEMENT_CHARS['&'] = "\\u0026";
+        REPLACEMENT_CHARS['='] = "\\u003d";
+        REPLACEMENT_CHARS['\''] = "\\u0027";
+    }
+
+    private final StringBuilder out;
+    private boolean needsSeparator = false;
+
+    public JsonStreamWriter() {
+        this(new StringBuilder(512));
+    }
+
+    /**
+     * @param out The builder to append the JSON to.
+     */
+    public JsonStreamWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    /**
+     * Clears the output so that this writer can be used for another message.
+     */
+    public void reset() {
+        out.setLength(0);
+        needsSeparator = false;
+    }
+
+    /**
+     * @return The builder the JSON is written to.
+     */
+    public StringBuilder getOutput() {
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    public void beginObject() {
+        separator();
+        out.append('{');
+        needsSeparator = false;
+    }
+
+    public void endObject() {
+        out.append('}');
+        needsSeparator = true;
+    }
+
+    public void beginArray() {
+        separator();
+        out.append('[');
+        needsSeparator = false;
+    }
+
+    public void endArray() {
+        out.append(']');
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes a field name that has already been quoted and suffixed with a colon (e.g. {@code "\"version\":"}). The
+     * generated codecs pre-compute these so that nothing has to be escaped at runtime.
+     */
+    public void name(String quotedNameAndColon) {
+        separator();
+        out.append(quotedNameAndColon);
+        needsSeparator = false;
+    }
+
+    public void value(int value) {
+        separator();
+        out.append(value);
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes the provided uint32 or fixed32 value, which is stored in a Java int.
+     */
+    public void unsignedValue(int value) {
+        separator();
+        out.append(value & 0xFFFFFFFFL);
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes an int64, sint64 or sfixed64 value. Per the proto3 JSON mapping 64-bit integers are quoted.
+     */
+    public void value(long value) {
+        separator();
+        out.append('"').append(value).append('"');
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes a uint64 or fixed64 value, which is stored in a Java long. Per the proto3 JSON mapping 64-bit integers are
+     * quoted.
+     */
+    public void unsignedValue(long value) {
+        separator();
+        out.append('"');
+        if (value >= 0) {
+            out.append(value);
+        } else {
+            out.append(Long.toUnsignedString(value));
+        }
+        out.append('"');
+        needsSeparator = true;
+    }
+
+    public void value(float value) {
+        separator();
+        if (Float.isNaN(value)) {
+            out.append("\"NaN\"");
+        } else if (Float.isInfinite(value)) {
+            out.append(value < 0 ? "\"-Infinity\"" : "\"Infinity\"");
+        } else {
+            out.append(value);
+        }
+        needsSeparator = true;
+    }
+
+    public void value(double value) {
+        separator();
+        if (Double.isNaN(value)) {
+            out.append("\"NaN\"");
+        } else if (Double.isInfinite(value)) {
+            out.append(value < 0 ? "\"-Infinity\"" : "\"Infinity\"");
+        } else {
+            out.append(value);
+        }
+        needsSeparator = true;
+    }
+
+    public void value(boolean value) {
+        separator();
+        out.append(value ? "true" : "false");
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes a quoted and escaped string value.
+     */
+    public void value(String value) {
+        separator();
+        out.append('"');
+        final int length = value.length();
+        int last = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            final String replacement;
+            if (c < 128) {
+                replacement = REPLACEMENT_CHARS[c];
+                if (replacement == null) continue;
+            } else if (c == LINE_SEPARATOR) {
+                replacement = "\\u2028";
+            } else if (c == PARAGRAPH_SEPARATOR) {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            if (last < i) out.append(value, last, i);
+            out.append(replacement);
+            last = i + 1;
+        }
+        if (last < length) out.append(value, last, length);
+        out.append('"');
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes a quoted string that is known not to need any escaping, such as an enum value name.
+     */
+    public void unescapedValue(String value) {
+        separator();
+        out.append('"').append(value).append('"');
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes the bytes as a quoted base64 string (standard alphabet with padding) without copying the bytes.
+     */
+    public void value(ByteString value) {
+        separator();
+        out.append('"');
+        final int length = value.size();
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            final int bits = (value.byteAt(i) & 0xFF) << 16 | (value.byteAt(i + 1) & 0xFF) << 8 | (value.byteAt(i + 2) & 0xFF);
+            out.append(BASE64_ALPHABET[bits >>> 18])
+                    .append(BASE64_ALPHABET[(bits >>> 12) & 0x3F])
+                    .append(BASE64_ALPHABET[(bits >>> 6) & 0x3F])
+                    .append(BASE64_ALPHABET[bits & 0x3F]);
+        }
+        final int remaining = length - i;
+        if (remaining == 1) {
+            final int bits = (value.byteAt(i) & 0xFF) << 16;
+            out.append(BASE64_ALPHABET[bits >>> 18]).append(BASE64_ALPHABET[(bits >>> 12) & 0x3F]).append("==");
+        } else if (remaining == 2) {
+            final int bits = (value.byteAt(i) & 0xFF) << 16 | (value.byteAt(i + 1) & 0xFF) << 8;
+            out.append(BASE64_ALPHABET[bits >>> 18])
+                    .append(BASE64_ALPHABET[(bits >>> 12) & 0x3F])
+                    .append(BASE64_ALPHABET[(bits >>> 6) & 0x3F])
+                    .append('=');
+        }
+        out.append('"');
+        needsSeparator = true;
+    }
+
+    private void separator() {
+        if (needsSeparator) out.append(',');
+    }
+}
@@ -0,0 +1,315 @@
+package com.craxiom.messaging.json;
+
+import com.craxiom.messaging.MessageType;
+import com.craxiom.messaging.MessageTypeRegistry;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Converts newline delimited JSON survey files, one survey record per line as described by the AsyncAPI schema, to
+ * the protobuf messages. Each line is parsed by the generated {@link JsonCodec} of the record type named by its
+ * messageType field, see {@link MessageTypeRegistry#peekJson(CharSequence, int, int)}.
+ * <p>
+ * The file is memory mapped in chunks that are split at line boundaries, and the chunks are parsed in parallel on a
+ * fork join pool. The records are still passed to the sink one at a time, on the calling thread, and in the order of
+ * the file, so the records of each device stay in order and the sink does not have to be thread safe.
+ * <pre>{@code
+ * final NdjsonIngest ingest = NdjsonIngest.newBuilder().setSkippingInvalidLines(true).build();
+ * try (SurveyLogWriter writer = SurveyLogWriter.create(Paths.get("survey.nsml"))) {
+ *     final NdjsonIngest.Result result = ingest.ingest(Paths.get("survey.ndjson"), record -> {
+ *         try {
+ *             writer.write(record);
+ *         } catch (IOException e) {
+ *             throw new UncheckedIOException(e);
+ *         }
+ *     });
+ * }
+ * }</pre>
+ * At most two chunks per thread of the pool are parsed ahead of the sink, which bounds the memory used for any size of
+ * file. Instances are immutable and can be shared.
+ */
+public final class NdjsonIngest {
+    /**
+     * The default size of the chunks, in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final boolean ignoringUnknownFields;
+    private final boolean skippingInvalidLines;
+
+    private NdjsonIngest(Builder builder) {
+        pool = builder.pool;
+        chunkSize = builder.chunkSize;
+        ignoringUnknownFields = builder.ignoringUnknownFields;
+        skippingInvalidLines = builder.skippingInvalidLines;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads every record in the file and passes it to the sink, in the order of the file. Blank lines are skipped.
+     *
+     * @param path The newline delimited JSON file, encoded as UTF-8.
+     * @param sink Receives the records on the calling thread. If it throws, the ingest stops and the exception is passed
+     *             on.
+     * @return The number of records and of skipped invalid lines.
+     * @throws IOException If the file could not be read, or if a line is not a valid survey record and invalid lines
+     *                     are not skipped.
+     */
+    public Result ingest(Path path, Consumer<? super Message> sink) throws IOException {
+        final Deque<ForkJoinTask<Chunk>> parsing = new ArrayDeque<>();
+        final int maxChunksAhead = 2 * pool.getParallelism();
+        long recordCount = 0;
+        long invalidLineCount = 0;
+        long lineCount = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            long next = startOfContent(channel, fileSize);
+            while (next < fileSize || !parsing.isEmpty()) {
+                while (next < fileSize && parsing.size() < maxChunksAhead) {
+                    final long start = next;
+                    final long end = nextLineStart(channel, fileSize, start + chunkSize);
+                    if (end - start > Integer.MAX_VALUE) throw new IOException("A line of " + path + " is over 2 GiB");
+                    parsing.add(pool.submit(() -> parse(channel, start, (int) (end - start))));
+                    next = end;
+                }
+
+                final Chunk chunk = await(parsing.poll());
+                if (chunk.errorLine != -1) {
+                    throw new IOException("Line " + (lineCount + chunk.errorLine + 1) + " of " + path
+                            + " is not a valid survey record: " + chunk.errorMessage);
+                }
+                for (Message record : chunk.records) {
+                    sink.accept(record);
+                }
+                recordCount += chunk.records.size();
+                invalidLineCount += chunk.invalidLineCount;
+                lineCount += chunk.lineCount;
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : parsing) {
+                task.cancel(false);
+            }
+        }
+        return new Result(recordCount, invalidLineCount);
+    }
+
+    /**
+     * Parses the lines of a chunk straight from the mapped file. Each line is decoded into one character buffer that is
+     * reused for every line of the chunk, so the chunk is never copied as a whole.
+     */
+    private Chunk parse(FileChannel channel, long start, int size) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        final ByteBuffer line = buffer.duplicate();
+        // Malformed input is replaced, as new String(bytes, UTF_8) would
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer text = CharBuffer.allocate(0);
+
+        final Chunk chunk = new Chunk();
+        int lineStart = 0;
+        while (lineStart < size) {
+            // A newline byte is never part of a multi-byte UTF-8 character, so the lines can be split before decoding
+            int lineEnd = lineStart;
+            while (lineEnd < size && buffer.get(lineEnd) != '\n') lineEnd++;
+            if (!isBlank(buffer, lineStart, lineEnd)) {
+                // UTF-8 never decodes to more characters than it has bytes
+                if (text.capacity() < lineEnd - lineStart) text = CharBuffer.allocate(lineEnd - lineStart);
+                line.limit(lineEnd);
+                line.position(lineStart);
+                text.clear();
+                decoder.reset();
+                decoder.decode(line, text, true);
+                decoder.flush(text);
+                text.flip();
+                try {
+                    chunk.records.add(parseLine(text, 0, text.length()));
+                } catch (InvalidProtocolBufferException e) {
+                    if (!skippingInvalidLines) {
+                        chunk.errorLine = chunk.lineCount;
+                        chunk.errorMessage = e.getMessage();
+                        return chunk;
+                    }
+                    chunk.invalidLineCount++;
+                }
+            }
+            chunk.lineCount++;
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private Message parseLine(CharSequence text, int start, int end) throws InvalidProtocolBufferException {
+        final MessageType<?, ?> type = MessageTypeRegistry.peekJson(text, start, end);
+        if (type == null) throw new InvalidProtocolBufferException("The line does not have a known messageType");
+
+        final JsonStreamReader reader = new JsonStreamReader(text, start, end, ignoringUnknownFields);
+        final Message record = type.getJsonCodec().read(reader);
+        reader.endDocument();
+        return record;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The position after the UTF-8 byte order mark at the start of the file, if it has one.
+     */
+    private static long startOfContent(FileChannel channel, long fileSize) throws IOException {
+        if (fileSize < 3) return 0;
+        final ByteBuffer start = ByteBuffer.allocate(3);
+        if (channel.read(start, 0) < 3) return 0;
+        return start.get(0) == (byte) 0xEF && start.get(1) == (byte) 0xBB && start.get(2) == (byte) 0xBF ? 3 : 0;
+    }
+
+    /**
+     * @return The start of the first line that starts after the position, or the file size if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long fileSize, long position) throws IOException {
+        if (position >= fileSize) return fileSize;
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long offset = position - 1;
+        while (offset < fileSize) {
+            buffer.clear();
+            final int read = channel.read(buffer, offset);
+            if (read == -1) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return offset + i + 1;
+            }
+            offset += read;
+        }
+        return fileSize;
+    }
+
+    private static Chunk await(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the chunk to be parsed", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof java.lang.Error) throw (java.lang.Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static final class Chunk {
+        private final List<Message> records = new ArrayList<>();
+        private int lineCount = 0;
+        private int invalidLineCount = 0;
+        private int errorLine = -1;
+        private String errorMessage;
+    }
+
+    /**
+     * The outcome of an ingest.
+     */
+    public static final class Result {
+        private final long recordCount;
+        private final long invalidLineCount;
+
+        private Result(long recordCount, long invalidLineCount) {
+            this.recordCount = recordCount;
+            this.invalidLineCount = invalidLineCount;
+        }
+
+        /**
+         * @return The number of records passed to the sink.
+         */
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * @return The number of lines that were skipped because they were not valid survey records.
+         */
+        public long getInvalidLineCount() {
+            return invalidLineCount;
+        }
+    }
+
+    /**
+     * Configures an {@link NdjsonIngest}.
+     */
+    public static final class Builder {
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private boolean ignoringUnknownFields = false;
+        private boolean skippingInvalidLines = false;
+
+        private Builder() {
+        }
+
+        /**
+         * @param pool The pool that parses the chunks, the common pool by default.
+         */
+        public Builder setPool(ForkJoinPool pool) {
+            if (pool == null) throw new NullPointerException("The pool is required");
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * @param chunkSize The approximate number of bytes in each chunk, {@link #DEFAULT_CHUNK_SIZE} by default. A
+         *                  chunk always ends at the end of a line, so it can be larger.
+         */
+        public Builder setChunkSize(int chunkSize) {
+            if (chunkSize < 1) throw new IllegalArgumentException("The chunk size must be at least 1 byte");
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param ignoringUnknownFields True to skip the fields that are not part of a record's schema, such as the
+         *                              fields added by a newer version of the schema. False by default, in which case
+         *                              they make the line invalid.
+         */
+        public Builder setIgnoringUnknownFields(boolean ignoringUnknownFields) {
+            this.ignoringUnknownFields = ignoringUnknownFields;
+            return this;
+        }
+
+        /**
+         * @param skippingInvalidLines True to skip and count the lines that are not valid survey records, false (the
+         *                             default) to stop the ingest with an exception at the first one.
+         */
+        public Builder setSkippingInvalidLines(boolean skippingInvalidLines) {
+            this.skippingInvalidLines = skippingInvalidLines;
+            return this;
+        }
+
+        public NdjsonIngest build() {
+            return new NdjsonIngest(this);
+        }
+    }
+}
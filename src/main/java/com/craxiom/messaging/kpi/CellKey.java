@@ -0,0 +1,176 @@
+package com.craxiom.messaging.kpi;
+
+import com.craxiom.messaging.*;
+
+/**
+ * Identifies the cell of a cellular record as two longs, so that a {@link CellKpiAggregator} can key its map without
+ * boxing or building strings. The identifiers of a technology are packed losslessly: each int32 identifier takes 32
+ * bits and the NR cell identity takes a whole long. An identifier that is not set in the record is -1.
+ *
+ * @param <T> The record data type, e.g. {@link LteRecordDataOrBuilder}.
+ */
+public abstract class CellKey<T> {
+    static final long UNSET = -1;
+
+    private static final CellKey<LteRecordDataOrBuilder> LTE = new IntCellKey<LteRecordDataOrBuilder>("LTE", "mcc", "mnc", "tac", "eci") {
+        @Override
+        public long high(LteRecordDataOrBuilder data) {
+            return pack(data.hasMcc() ? data.getMcc().getValue() : -1, data.hasMnc() ? data.getMnc().getValue() : -1);
+        }
+
+        @Override
+        public long low(LteRecordDataOrBuilder data) {
+            return pack(data.hasTac() ? data.getTac().getValue() : -1, data.hasEci() ? data.getEci().getValue() : -1);
+        }
+    };
+
+    private static final CellKey<NrRecordDataOrBuilder> NR = new CellKey<NrRecordDataOrBuilder>("NR", "nci", "narfcn", "pci") {
+        @Override
+        public long high(NrRecordDataOrBuilder data) {
+            return data.hasNci() ? data.getNci().getValue() : UNSET;
+        }
+
+        @Override
+        public long low(NrRecordDataOrBuilder data) {
+            return pack(data.hasNarfcn() ? data.getNarfcn().getValue() : -1, data.hasPci() ? data.getPci().getValue() : -1);
+        }
+
+        @Override
+        public long[] components(long high, long low) {
+            return new long[]{high, low >> 32, (int) low};
+        }
+    };
+
+    private static final CellKey<UmtsRecordDataOrBuilder> UMTS = new IntCellKey<UmtsRecordDataOrBuilder>("UMTS", "mcc", "mnc", "lac", "cid") {
+        @Override
+        public long high(UmtsRecordDataOrBuilder data) {
+            return pack(data.hasMcc() ? data.getMcc().getValue() : -1, data.hasMnc() ? data.getMnc().getValue() : -1);
+        }
+
+        @Override
+        public long low(UmtsRecordDataOrBuilder data) {
+            return pack(data.hasLac() ? data.getLac().getValue() : -1, data.hasCid() ? data.getCid().getValue() : -1);
+        }
+    };
+
+    private static final CellKey<GsmRecordDataOrBuilder> GSM = new IntCellKey<GsmRecordDataOrBuilder>("GSM", "mcc", "mnc", "lac", "ci") {
+        @Override
+        public long high(GsmRecordDataOrBuilder data) {
+            return pack(data.hasMcc() ? data.getMcc().getValue() : -1, data.hasMnc() ? data.getMnc().getValue() : -1);
+        }
+
+        @Override
+        public long low(GsmRecordDataOrBuilder data) {
+            return pack(data.hasLac() ? data.getLac().getValue() : -1, data.hasCi() ? data.getCi().getValue() : -1);
+        }
+    };
+
+    private final String name;
+    private final String[] componentNames;
+
+    /**
+     * @param name           The name of the technology, e.g. "LTE".
+     * @param componentNames The names of the identifiers that make up the key.
+     */
+    protected CellKey(String name, String... componentNames) {
+        this.name = name;
+        this.componentNames = componentNames;
+    }
+
+    /**
+     * The LTE cell key (mcc, mnc, tac, eci).
+     */
+    public static CellKey<LteRecordDataOrBuilder> lte() {
+        return LTE;
+    }
+
+    /**
+     * The NR cell key (nci, narfcn, pci).
+     */
+    public static CellKey<NrRecordDataOrBuilder> nr() {
+        return NR;
+    }
+
+    /**
+     * The UMTS cell key (mcc, mnc, lac, cid).
+     */
+    public static CellKey<UmtsRecordDataOrBuilder> umts() {
+        return UMTS;
+    }
+
+    /**
+     * The GSM cell key (mcc, mnc, lac, ci).
+     */
+    public static CellKey<GsmRecordDataOrBuilder> gsm() {
+        return GSM;
+    }
+
+    /**
+     * @return The first half of the key for the record.
+     */
+    public abstract long high(T data);
+
+    /**
+     * @return The second half of the key for the record.
+     */
+    public abstract long low(T data);
+
+    /**
+     * @return The identifiers that make up the key, in the order of {@link #getComponentNames()}.
+     */
+    public abstract long[] components(long high, long low);
+
+    /**
+     * @return The name of the technology, e.g. "LTE".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The names of the identifiers that make up the key, e.g. mcc, mnc, tac, and eci.
+     */
+    public String[] getComponentNames() {
+        return componentNames.clone();
+    }
+
+    /**
+     * @return The identifiers joined by dashes, e.g. "310-410-12345-67890123", with an empty string for an identifier
+     * that is not set.
+     */
+    public String format(long high, long low) {
+        final StringBuilder builder = new StringBuilder(32);
+        final long[] components = components(high, low);
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) builder.append('-');
+            if (components[i] != UNSET) builder.append(components[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return The two ints packed into a long, the first in the high 32 bits.
+     */
+    protected static long pack(int first, int second) {
+        return (long) first << 32 | second & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + String.join(", ", componentNames) + ")";
+    }
+
+    /**
+     * A key made of four int32 identifiers.
+     */
+    private abstract static class IntCellKey<T> extends CellKey<T> {
+        IntCellKey(String name, String... componentNames) {
+            super(name, componentNames);
+        }
+
+        @Override
+        public long[] components(long high, long low) {
+            return new long[]{high >> 32, (int) high, low >> 32, (int) low};
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.craxiom.messaging.kpi;
+
+/**
+ * An open addressing hash map keyed by two longs, so that looking up a cell neither boxes the key nor allocates an
+ * entry. The values must not be null. This class is not thread safe.
+ */
+final class CellKeyMap<V> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] highs;
+    private long[] lows;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    CellKeyMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long high, long low) {
+        int index = index(high, low);
+        while (values[index] != null) {
+            if (highs[index] == high && lows[index] == low) return (V) values[index];
+            index = index + 1 & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the value for a key that is not in the map yet.
+     */
+    void putNew(long high, long low, V value) {
+        if ((size + 1) * 2 > values.length) resize();
+        int index = index(high, low);
+        while (values[index] != null) {
+            index = index + 1 & mask;
+        }
+        highs[index] = high;
+        lows[index] = low;
+        values[index] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<V> consumer) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) consumer.accept(highs[i], lows[i], (V) values[i]);
+        }
+    }
+
+    private int index(long high, long low) {
+        long hash = high * 0x9E3779B97F4A7C15L + low;
+        hash ^= hash >>> 32;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return (int) (hash ^ hash >>> 29) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        final long[] oldHighs = highs;
+        final long[] oldLows = lows;
+        final Object[] oldValues = values;
+        allocate(oldValues.length * 2);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) putNew(oldHighs[i], oldLows[i], (V) oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    interface EntryConsumer<V> {
+        void accept(long high, long low, V value);
+    }
+}
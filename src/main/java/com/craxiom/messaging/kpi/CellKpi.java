@@ -0,0 +1,73 @@
+package com.craxiom.messaging.kpi;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of the KPIs of one cell from a {@link CellKpiAggregator}: the number of records and a histogram of each
+ * of the aggregator's metrics.
+ */
+public final class CellKpi {
+    private final CellKey<?> key;
+    private final long keyHigh;
+    private final long keyLow;
+    private final long recordCount;
+    private final Map<String, SignalHistogram> metrics;
+
+    CellKpi(CellKey<?> key, long keyHigh, long keyLow, long recordCount, Map<String, SignalHistogram> metrics) {
+        this.key = key;
+        this.keyHigh = keyHigh;
+        this.keyLow = keyLow;
+        this.recordCount = recordCount;
+        this.metrics = Collections.unmodifiableMap(metrics);
+    }
+
+    public CellKey<?> getKey() {
+        return key;
+    }
+
+    public long getKeyHigh() {
+        return keyHigh;
+    }
+
+    public long getKeyLow() {
+        return keyLow;
+    }
+
+    /**
+     * @return The cell identifiers, in the order of {@link CellKey#getComponentNames()}.
+     */
+    public long[] getKeyComponents() {
+        return key.components(keyHigh, keyLow);
+    }
+
+    /**
+     * @return The cell identifiers joined by dashes, e.g. "310-410-12345-67890123".
+     */
+    public String getKeyString() {
+        return key.format(keyHigh, keyLow);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return A copy of the histogram of the metric, or null if the aggregator does not have a metric with the name.
+     */
+    public SignalHistogram getMetric(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * @return The histograms by metric name, in the order the metrics were added to the aggregator.
+     */
+    public Map<String, SignalHistogram> getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "CellKpi[" + key.getName() + " " + getKeyString() + ", records=" + recordCount + ", metrics=" + metrics + "]";
+    }
+}
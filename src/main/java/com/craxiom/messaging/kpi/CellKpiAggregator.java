@@ -0,0 +1,247 @@
+package com.craxiom.messaging.kpi;
+
+import com.craxiom.messaging.GsmRecordDataOrBuilder;
+import com.craxiom.messaging.LteRecordDataOrBuilder;
+import com.craxiom.messaging.NrRecordDataOrBuilder;
+import com.craxiom.messaging.UmtsRecordDataOrBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the KPIs of cellular records per cell as they stream in: the number of records and a mergeable
+ * {@link SignalHistogram} of each metric (e.g. RSRP, RSRQ, and SNR), from which the minimum, maximum, mean, and
+ * percentiles are read.
+ * <p>
+ * The cells are kept in a hash map keyed by the two longs of a {@link CellKey}, so adding a record to an existing cell
+ * does not allocate. An aggregator is not thread safe; to aggregate on several threads give each thread its own
+ * partial aggregator from {@link #newPartial()}, and merge the partials into one once they are handed off, which
+ * needs no locks because a partial is only ever touched by one thread at a time:
+ * <pre>{@code
+ * final CellKpiAggregator<LteRecordDataOrBuilder> total = CellKpiAggregator.lte();
+ * final CellKpiAggregator<LteRecordDataOrBuilder> partial = total.newPartial(); // one per worker thread
+ * partial.add(lteRecord.getData());
+ * ...
+ * total.merge(partial); // after the worker is done with it
+ * final double p95 = total.getCells().get(0).getMetric("rsrp").getQuantile(0.95);
+ * }</pre>
+ * For rolling windows, start new partials for each window and merge the partials of the windows being reported.
+ *
+ * @param <T> The record data type, e.g. {@link LteRecordDataOrBuilder}.
+ */
+public final class CellKpiAggregator<T> {
+    /**
+     * The default histogram resolution, half a dB.
+     */
+    public static final double DEFAULT_RESOLUTION = 0.5;
+
+    private final CellKey<? super T> key;
+    private final List<CellMetric<? super T>> metrics;
+    private final double resolution;
+    private final CellKeyMap<CellState> cells = new CellKeyMap<>();
+
+    private CellKpiAggregator(CellKey<? super T> key, List<CellMetric<? super T>> metrics, double resolution) {
+        this.key = key;
+        this.metrics = metrics;
+        this.resolution = resolution;
+    }
+
+    public static <T> Builder<T> newBuilder(CellKey<? super T> key) {
+        return new Builder<>(key);
+    }
+
+    /**
+     * @return An aggregator of the LTE RSRP, RSRQ, and SNR per cell.
+     */
+    public static CellKpiAggregator<LteRecordDataOrBuilder> lte() {
+        return CellKpiAggregator.<LteRecordDataOrBuilder>newBuilder(CellKey.lte())
+                .addMetric(CellMetric.lteRsrp())
+                .addMetric(CellMetric.lteRsrq())
+                .addMetric(CellMetric.lteSnr())
+                .build();
+    }
+
+    /**
+     * @return An aggregator of the NR SS-RSRP, SS-RSRQ, and SS-SINR per cell.
+     */
+    public static CellKpiAggregator<NrRecordDataOrBuilder> nr() {
+        return CellKpiAggregator.<NrRecordDataOrBuilder>newBuilder(CellKey.nr())
+                .addMetric(CellMetric.nrSsRsrp())
+                .addMetric(CellMetric.nrSsRsrq())
+                .addMetric(CellMetric.nrSsSinr())
+                .build();
+    }
+
+    /**
+     * @return An aggregator of the UMTS RSCP, Ec/No, and signal strength per cell.
+     */
+    public static CellKpiAggregator<UmtsRecordDataOrBuilder> umts() {
+        return CellKpiAggregator.<UmtsRecordDataOrBuilder>newBuilder(CellKey.umts())
+                .addMetric(CellMetric.umtsRscp())
+                .addMetric(CellMetric.umtsEcno())
+                .addMetric(CellMetric.umtsSignalStrength())
+                .build();
+    }
+
+    /**
+     * @return An aggregator of the GSM signal strength per cell.
+     */
+    public static CellKpiAggregator<GsmRecordDataOrBuilder> gsm() {
+        return CellKpiAggregator.<GsmRecordDataOrBuilder>newBuilder(CellKey.gsm())
+                .addMetric(CellMetric.gsmSignalStrength())
+                .build();
+    }
+
+    /**
+     * @return A new, empty aggregator with the same key, metrics, and resolution, which can be merged into this one.
+     */
+    public CellKpiAggregator<T> newPartial() {
+        return new CellKpiAggregator<>(key, metrics, resolution);
+    }
+
+    /**
+     * Adds the record to the KPIs of its cell.
+     */
+    public void add(T record) {
+        final long high = key.high(record);
+        final long low = key.low(record);
+        CellState cell = cells.get(high, low);
+        if (cell == null) {
+            cell = new CellState(metrics.size(), resolution);
+            cells.putNew(high, low, cell);
+        }
+        cell.recordCount++;
+        for (int i = 0; i < cell.histograms.length; i++) {
+            final CellMetric<? super T> metric = metrics.get(i);
+            if (metric.hasValue(record)) cell.histograms[i].add(metric.getValue(record));
+        }
+    }
+
+    /**
+     * Adds the KPIs of another aggregator, typically a partial from {@link #newPartial()}, to this one. The other
+     * aggregator is not changed, and must not be changed by another thread during the merge.
+     *
+     * @throws IllegalArgumentException If the other aggregator has a different key, metrics, or resolution.
+     */
+    public void merge(CellKpiAggregator<? extends T> other) {
+        if (other.key != key || other.resolution != resolution || !sameMetricNames(other)) {
+            throw new IllegalArgumentException("Only aggregators with the same key, metrics, and resolution can be merged");
+        }
+        other.cells.forEach((high, low, otherCell) -> {
+            CellState cell = cells.get(high, low);
+            if (cell == null) {
+                cell = new CellState(metrics.size(), resolution);
+                cells.putNew(high, low, cell);
+            }
+            cell.recordCount += otherCell.recordCount;
+            for (int i = 0; i < cell.histograms.length; i++) {
+                cell.histograms[i].merge(otherCell.histograms[i]);
+            }
+        });
+    }
+
+    /**
+     * @return A snapshot of the KPIs of the cell, or null if there are no records for it.
+     */
+    public CellKpi getCell(long keyHigh, long keyLow) {
+        final CellState cell = cells.get(keyHigh, keyLow);
+        return cell == null ? null : snapshot(keyHigh, keyLow, cell);
+    }
+
+    /**
+     * @return A snapshot of the KPIs of every cell, in no particular order.
+     */
+    public List<CellKpi> getCells() {
+        final List<CellKpi> snapshots = new ArrayList<>(cells.size());
+        cells.forEach((high, low, cell) -> snapshots.add(snapshot(high, low, cell)));
+        return snapshots;
+    }
+
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    public CellKey<? super T> getKey() {
+        return key;
+    }
+
+    /**
+     * Removes all the cells.
+     */
+    public void clear() {
+        cells.clear();
+    }
+
+    private boolean sameMetricNames(CellKpiAggregator<?> other) {
+        if (other.metrics.size() != metrics.size()) return false;
+        for (int i = 0; i < metrics.size(); i++) {
+            if (!metrics.get(i).getName().equals(other.metrics.get(i).getName())) return false;
+        }
+        return true;
+    }
+
+    private CellKpi snapshot(long high, long low, CellState cell) {
+        final Map<String, SignalHistogram> histograms = new LinkedHashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            histograms.put(metrics.get(i).getName(), cell.histograms[i].copy());
+        }
+        return new CellKpi(key, high, low, cell.recordCount, histograms);
+    }
+
+    private static final class CellState {
+        private final SignalHistogram[] histograms;
+        private long recordCount;
+
+        CellState(int metricCount, double resolution) {
+            histograms = new SignalHistogram[metricCount];
+            for (int i = 0; i < metricCount; i++) {
+                histograms[i] = new SignalHistogram(resolution);
+            }
+        }
+    }
+
+    /**
+     * Configures a {@link CellKpiAggregator}. By default the histograms have a resolution of half a unit (e.g. dB).
+     */
+    public static final class Builder<T> {
+        private final CellKey<? super T> key;
+        private final List<CellMetric<? super T>> metrics = new ArrayList<>();
+        private double resolution = DEFAULT_RESOLUTION;
+
+        private Builder(CellKey<? super T> key) {
+            if (key == null) throw new NullPointerException("The cell key is required");
+            this.key = key;
+        }
+
+        /**
+         * Adds a metric that a histogram is kept of per cell, such as {@link CellMetric#lteRsrp()}.
+         */
+        public Builder<T> addMetric(CellMetric<? super T> metric) {
+            if (metric == null) throw new NullPointerException("The metric is required");
+            for (CellMetric<? super T> existing : metrics) {
+                if (existing.getName().equals(metric.getName())) {
+                    throw new IllegalArgumentException("The aggregator already has a metric named " + metric.getName());
+                }
+            }
+            metrics.add(metric);
+            return this;
+        }
+
+        /**
+         * @param resolution The width of the histogram bins, which bounds the error of the percentiles.
+         */
+        public Builder<T> setResolution(double resolution) {
+            if (!(resolution > 0) || Double.isInfinite(resolution)) {
+                throw new IllegalArgumentException("The histogram resolution must be positive");
+            }
+            this.resolution = resolution;
+            return this;
+        }
+
+        public CellKpiAggregator<T> build() {
+            return new CellKpiAggregator<>(key, new ArrayList<>(metrics), resolution);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.craxiom.messaging.kpi;
+
+import com.craxiom.messaging.*;
+
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A measurement of the cellular records that a {@link CellKpiAggregator} keeps a {@link SignalHistogram} of per cell.
+ *
+ * @param <T> The record data type, e.g. {@link LteRecordDataOrBuilder}.
+ */
+public final class CellMetric<T> {
+    private final String name;
+    private final Predicate<? super T> hasValue;
+    private final ToDoubleFunction<? super T> value;
+
+    private CellMetric(String name, Predicate<? super T> hasValue, ToDoubleFunction<? super T> value) {
+        this.name = name;
+        this.hasValue = hasValue;
+        this.value = value;
+    }
+
+    /**
+     * @param name     The name the histogram is reported under, which must be unique within an aggregator.
+     * @param hasValue Returns false for records that do not have the measurement, which are left out of the histogram.
+     * @param value    Reads the measurement.
+     */
+    public static <T> CellMetric<T> of(String name, Predicate<? super T> hasValue, ToDoubleFunction<? super T> value) {
+        return new CellMetric<>(name, hasValue, value);
+    }
+
+    public static CellMetric<LteRecordDataOrBuilder> lteRsrp() {
+        return of("rsrp", LteRecordDataOrBuilder::hasRsrp, data -> data.getRsrp().getValue());
+    }
+
+    public static CellMetric<LteRecordDataOrBuilder> lteRsrq() {
+        return of("rsrq", LteRecordDataOrBuilder::hasRsrq, data -> data.getRsrq().getValue());
+    }
+
+    public static CellMetric<LteRecordDataOrBuilder> lteSnr() {
+        return of("snr", LteRecordDataOrBuilder::hasSnr, data -> data.getSnr().getValue());
+    }
+
+    public static CellMetric<NrRecordDataOrBuilder> nrSsRsrp() {
+        return of("ssRsrp", NrRecordDataOrBuilder::hasSsRsrp, data -> data.getSsRsrp().getValue());
+    }
+
+    public static CellMetric<NrRecordDataOrBuilder> nrSsRsrq() {
+        return of("ssRsrq", NrRecordDataOrBuilder::hasSsRsrq, data -> data.getSsRsrq().getValue());
+    }
+
+    public static CellMetric<NrRecordDataOrBuilder> nrSsSinr() {
+        return of("ssSinr", NrRecordDataOrBuilder::hasSsSinr, data -> data.getSsSinr().getValue());
+    }
+
+    public static CellMetric<UmtsRecordDataOrBuilder> umtsRscp() {
+        return of("rscp", UmtsRecordDataOrBuilder::hasRscp, data -> data.getRscp().getValue());
+    }
+
+    public static CellMetric<UmtsRecordDataOrBuilder> umtsEcno() {
+        return of("ecno", UmtsRecordDataOrBuilder::hasEcno, data -> data.getEcno().getValue());
+    }
+
+    public static CellMetric<UmtsRecordDataOrBuilder> umtsSignalStrength() {
+        return of("signalStrength", UmtsRecordDataOrBuilder::hasSignalStrength, data -> data.getSignalStrength().getValue());
+    }
+
+    public static CellMetric<GsmRecordDataOrBuilder> gsmSignalStrength() {
+        return of("signalStrength", GsmRecordDataOrBuilder::hasSignalStrength, data -> data.getSignalStrength().getValue());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    boolean hasValue(T record) {
+        return hasValue.test(record);
+    }
+
+    double getValue(T record) {
+        return value.applyAsDouble(record);
+    }
+}
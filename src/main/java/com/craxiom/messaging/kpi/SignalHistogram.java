@@ -0,0 +1,167 @@
+package com.craxiom.messaging.kpi;
+
+/**
+ * A mergeable histogram of signal measurements (e.g. RSRP in dBm) with fixed width bins, in the style of an HDR
+ * histogram, for computing percentiles in a stream.
+ * <p>
+ * Each value is counted in the bin {@code round(value / resolution)}, so a percentile is accurate to half the
+ * resolution, while the count, minimum, maximum, and mean are exact. The bins are only allocated for the range of
+ * values seen so far, which is a few dozen bins for the measurements of one cell. Two histograms with the same
+ * resolution merge exactly, so per-thread histograms can be combined without losing accuracy.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class SignalHistogram {
+    private static final int INITIAL_BINS = 32;
+
+    private final double resolution;
+    private int[] counts;
+    private long firstBin;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param resolution The width of the bins, e.g. 0.5 for half a dB.
+     */
+    public SignalHistogram(double resolution) {
+        if (!(resolution > 0) || Double.isInfinite(resolution)) {
+            throw new IllegalArgumentException("The histogram resolution must be positive");
+        }
+        this.resolution = resolution;
+    }
+
+    /**
+     * Adds a value. NaN and infinite values are ignored.
+     *
+     * @throws IllegalArgumentException If the values seen would need more than a billion bins, which only happens if
+     *                                  a value is far out of the range of any real measurement.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return;
+        addToBin(Math.round(value / resolution), 1);
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds all the values of the other histogram to this one.
+     *
+     * @throws IllegalArgumentException If the histograms have different resolutions.
+     */
+    public void merge(SignalHistogram other) {
+        if (other.resolution != resolution) {
+            throw new IllegalArgumentException("Cannot merge histograms with resolutions " + resolution + " and " + other.resolution);
+        }
+        if (other.count == 0) return;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) addToBin(other.firstBin + i, other.counts[i]);
+        }
+        count += other.count;
+        sum += other.sum;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+    }
+
+    /**
+     * @param quantile The quantile, from 0 to 1, e.g. 0.95 for the 95th percentile.
+     * @return The value at the quantile, which is the center of its bin clamped to the minimum and maximum, or NaN if
+     * the histogram is empty.
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("The quantile must be from 0 to 1");
+        if (count == 0) return Double.NaN;
+
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                final double value = (firstBin + i) * resolution;
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The smallest value, or NaN if the histogram is empty.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return The largest value, or NaN if the histogram is empty.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return The mean value, or NaN if the histogram is empty.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return An independent copy of this histogram.
+     */
+    public SignalHistogram copy() {
+        final SignalHistogram copy = new SignalHistogram(resolution);
+        copy.counts = counts == null ? null : counts.clone();
+        copy.firstBin = firstBin;
+        copy.count = count;
+        copy.sum = sum;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    private void addToBin(long bin, int binCount) {
+        if (counts == null) {
+            counts = new int[INITIAL_BINS];
+            firstBin = bin - INITIAL_BINS / 2;
+        } else if (bin < firstBin || bin >= firstBin + counts.length) {
+            grow(bin);
+        }
+        counts[(int) (bin - firstBin)] += binCount;
+    }
+
+    /**
+     * Grows the bins to include the bin, at least doubling them so that a widening range is cheap.
+     */
+    private void grow(long bin) {
+        final long newFirstBin = Math.min(firstBin, bin);
+        final long lastBin = Math.max(firstBin + counts.length - 1, bin);
+        final long needed = lastBin - newFirstBin + 1;
+        if (needed > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("The histogram range is too wide for a resolution of " + resolution);
+        }
+        final int length = (int) Math.max(needed, counts.length * 2L);
+        // Grow towards the side the new bin is on
+        final long start = bin < firstBin ? lastBin - length + 1 : newFirstBin;
+        final int[] newCounts = new int[length];
+        System.arraycopy(counts, 0, newCounts, (int) (firstBin - start), counts.length);
+        counts = newCounts;
+        firstBin = start;
+    }
+
+    @Override
+    public String toString() {
+        return "SignalHistogram[count=" + count + ", min=" + getMin() + ", p50=" + getQuantile(0.5) + ", p95="
+                + getQuantile(0.95) + ", max=" + getMax() + ", bins=" + (counts == null ? 0 : counts.length) + "]";
+    }
+}
@@ -0,0 +1,24 @@
+package com.craxiom.messaging.log;
+
+/**
+ * The constants of the survey log file format.
+ * <p>
+ * A survey log starts with a 24 byte header: the magic bytes "NSML", a format version byte, three reserved zero bytes,
+ * and a 16 byte sync marker that is chosen at random for each file. The rest of the file is a sequence of entries. A
+ * record entry is the record type byte (see {@link SurveyRecordType}) followed by the record in the protobuf length
+ * delimited format (a varint size and then the serialized record), the same as {@code writeDelimitedTo}. A sync entry
+ * is a zero byte followed by the file's sync marker; one is written right after the header and then at the start of
+ * every block of roughly the sync interval. Because the marker is random, a reader that starts at an arbitrary offset
+ * can find the start of the next block by searching for it.
+ */
+final class SurveyLogFormat {
+    static final byte[] MAGIC = {'N', 'S', 'M', 'L'};
+    static final int VERSION = 1;
+    static final int SYNC_MARKER_SIZE = 16;
+    static final int HEADER_SIZE = MAGIC.length + 4 + SYNC_MARKER_SIZE;
+    static final int SYNC_TYPE = 0;
+    static final int SYNC_ENTRY_SIZE = 1 + SYNC_MARKER_SIZE;
+
+    private SurveyLogFormat() {
+    }
+}
@@ -0,0 +1,242 @@
+package com.craxiom.messaging.log;
+
+import com.craxiom.messaging.parse.AliasingParsers;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Reads the records from a survey log written by {@link SurveyLogWriter}.
+ * <p>
+ * The file is memory mapped one window at a time, so files larger than the 2 GiB limit of a single mapping can be
+ * read, and the records are parsed straight from the mapped memory without copying them to the heap first. Reading
+ * starts at the first record. {@link #seek(long)} moves to a position returned by the writer or by
+ * {@link #getPosition()}, and {@link #seekToBlock(long)} moves to the first block that starts at or after any offset,
+ * for example to split a large file between several readers or to skip past a corrupted record.
+ * <pre>{@code
+ * try (SurveyLogReader reader = SurveyLogReader.open(Paths.get("survey.nsml"))) {
+ *     Message record;
+ *     while ((record = reader.read()) != null) {
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ * This class is not thread safe. As with any memory mapped file, the mapping is only released once the mapped buffer
+ * has been garbage collected.
+ */
+public final class SurveyLogReader implements Closeable {
+    /**
+     * The size of the mapped window. It must be larger than the largest record.
+     */
+    static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final byte[] syncMarker = new byte[SurveyLogFormat.SYNC_MARKER_SIZE];
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = SurveyLogFormat.HEADER_SIZE;
+    private boolean aliasing = false;
+
+    /**
+     * Opens a survey log and reads its header.
+     *
+     * @throws IOException If the file could not be read or is not a survey log.
+     */
+    public static SurveyLogReader open(Path path) throws IOException {
+        return new SurveyLogReader(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    SurveyLogReader(Path path, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.windowSize = windowSize;
+        try {
+            this.fileSize = channel.size();
+            readHeader(path);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The next record, or null if the end of the file has been reached.
+     * @throws IOException If the file is corrupt or ends in the middle of a record. The position is left at the start
+     *                     of the bad entry, so {@link #seekToBlock(long)} with the position plus one skips to the next
+     *                     block.
+     */
+    public Message read() throws IOException {
+        return read(null);
+    }
+
+    /**
+     * Reads the next record of one of the given types. Records of other types are skipped without being parsed.
+     *
+     * @param types The record types to return, or null for all of them.
+     * @return The next matching record, or null if the end of the file has been reached.
+     * @throws IOException If the file is corrupt or ends in the middle of a record.
+     */
+    public Message read(Set<SurveyRecordType> types) throws IOException {
+        while (map(position, 1)) {
+            final int typeByte = window.get(index(position)) & 0xFF;
+            if (typeByte == SurveyLogFormat.SYNC_TYPE) {
+                if (!isSyncEntry(position)) throw new IOException("Invalid sync marker at position " + position);
+                position += SurveyLogFormat.SYNC_ENTRY_SIZE;
+                continue;
+            }
+
+            final SurveyRecordType type = SurveyRecordType.forTypeByte(typeByte);
+            if (type == null) throw new IOException("Unknown record type " + typeByte + " at position " + position);
+
+            // Map the whole entry so that the record can be parsed from a single buffer
+            map(position, (int) Math.min(1 + MAX_VARINT_SIZE, fileSize - position));
+            long offset = position + 1;
+            int size = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (offset >= fileSize) throw truncated();
+                if (shift == 7 * MAX_VARINT_SIZE) throw new IOException("Invalid record size at position " + position);
+                final byte b = window.get(index(offset++));
+                size |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            if (size < 0) throw new IOException("Invalid record size at position " + position);
+            if (size > fileSize - offset) throw truncated();
+
+            final int entrySize = (int) (offset - position) + size;
+            if (!map(position, entrySize)) throw truncated();
+            if (types != null && !types.contains(type)) {
+                position += entrySize;
+                continue;
+            }
+
+            final ByteBuffer buffer = window.duplicate();
+            buffer.limit(index(offset) + size).position(index(offset));
+            final Message record = aliasing ? AliasingParsers.parseFrom(type.getParser(), buffer)
+                    : type.getParser().parseFrom(buffer);
+            position += entrySize;
+            return record;
+        }
+        return null;
+    }
+
+    /**
+     * @param aliasing True to parse the records so that their bytes fields, such as the pcapRecord of the WifiOtaRecord,
+     *                 refer to the mapped file instead of being copied to the heap. The file must not be modified while
+     *                 the records are in use, and the records keep the mapped window from being released.
+     */
+    public void setAliasing(boolean aliasing) {
+        this.aliasing = aliasing;
+    }
+
+    /**
+     * @return The position of the next entry in the file.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return The size of the file when it was opened.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Moves to a position that was returned by {@link SurveyLogWriter#write(Message)} or {@link #getPosition()}.
+     */
+    public void seek(long position) {
+        if (position < SurveyLogFormat.HEADER_SIZE || position > fileSize) {
+            throw new IllegalArgumentException("Position " + position + " is outside of the records in the file");
+        }
+        this.position = position;
+    }
+
+    /**
+     * Moves to the first block that starts at or after the offset. The blocks are delimited by the sync markers, so this
+     * works for any offset in the file.
+     *
+     * @return True if a block was found, false if there is no block after the offset, in which case the position is
+     * moved to the end of the file.
+     */
+    public boolean seekToBlock(long offset) throws IOException {
+        long candidate = Math.max(offset, SurveyLogFormat.HEADER_SIZE);
+        while (candidate + SurveyLogFormat.SYNC_ENTRY_SIZE <= fileSize) {
+            map(candidate, SurveyLogFormat.SYNC_ENTRY_SIZE);
+            // Scan the rest of the mapped window before mapping the next one
+            final long windowEnd = Math.min(windowStart + window.limit(), fileSize) - SurveyLogFormat.SYNC_ENTRY_SIZE;
+            for (; candidate <= windowEnd; candidate++) {
+                if (window.get(index(candidate)) == SurveyLogFormat.SYNC_TYPE && isSyncEntry(candidate)) {
+                    position = candidate;
+                    return true;
+                }
+            }
+        }
+        position = fileSize;
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void readHeader(Path path) throws IOException {
+        if (!map(0, SurveyLogFormat.HEADER_SIZE)) throw new IOException(path + " is not a survey log");
+        final byte[] magic = new byte[SurveyLogFormat.MAGIC.length];
+        window.get(magic);
+        if (!Arrays.equals(SurveyLogFormat.MAGIC, magic)) throw new IOException(path + " is not a survey log");
+        final int version = window.get() & 0xFF;
+        if (version != SurveyLogFormat.VERSION) {
+            throw new IOException(path + " uses survey log format version " + version + ", which is not supported");
+        }
+        window.position(window.position() + 3);
+        window.get(syncMarker);
+    }
+
+    private boolean isSyncEntry(long entryPosition) throws IOException {
+        if (!map(entryPosition, SurveyLogFormat.SYNC_ENTRY_SIZE)) return false;
+        final int start = index(entryPosition) + 1;
+        for (int i = 0; i < syncMarker.length; i++) {
+            if (window.get(start + i) != syncMarker[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Makes sure that a range of the file is in the mapped window, mapping a new window that starts at the range if it is
+     * not.
+     *
+     * @return False if the range extends past the end of the file.
+     */
+    private boolean map(long start, int length) throws IOException {
+        if (start + length > fileSize) return false;
+        if (window != null && start >= windowStart && start + length <= windowStart + window.limit()) return true;
+
+        final long size = Math.min(Math.max(windowSize, length), fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        return true;
+    }
+
+    private int index(long filePosition) {
+        return (int) (filePosition - windowStart);
+    }
+
+    private EOFException truncated() {
+        return new EOFException("The survey log ends in the middle of the record at position " + position);
+    }
+}
@@ -0,0 +1,141 @@
+package com.craxiom.messaging.log;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Writes survey records to a binary survey log (see {@link SurveyLogReader} for reading them back). Compared to one
+ * JSON record per line, the binary format is several times smaller and much faster to load.
+ * <pre>{@code
+ * try (SurveyLogWriter writer = SurveyLogWriter.create(Paths.get("survey.nsml"))) {
+ *     writer.write(lteRecord);
+ *     writer.write(gnssRecord);
+ * }
+ * }</pre>
+ * Records are buffered in memory, so call {@link #flush()} to make sure they have been written to the file. This class
+ * is not thread safe.
+ */
+public final class SurveyLogWriter implements Closeable, Flushable {
+    /**
+     * The default number of bytes between sync markers.
+     */
+    public static final int DEFAULT_SYNC_INTERVAL = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+    private final CodedOutputStream codedOutput;
+    private final byte[] syncMarker = newSyncMarker();
+    private final int syncInterval;
+
+    private long lastSyncPosition;
+    private long recordCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a survey log, replacing the file if it already exists.
+     */
+    public static SurveyLogWriter create(Path path) throws IOException {
+        return create(path, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Creates a survey log, replacing the file if it already exists.
+     *
+     * @param syncInterval The approximate number of bytes between sync markers. Smaller blocks allow a reader to start
+     *                     closer to any given offset at the cost of 17 bytes per block.
+     */
+    public static SurveyLogWriter create(Path path, int syncInterval) throws IOException {
+        return new SurveyLogWriter(Files.newOutputStream(path), syncInterval);
+    }
+
+    /**
+     * Writes a survey log to a stream, which is closed when this writer is closed.
+     */
+    public SurveyLogWriter(OutputStream outputStream, int syncInterval) throws IOException {
+        if (syncInterval < 1) throw new IllegalArgumentException("The sync interval must be at least 1 byte");
+        this.outputStream = outputStream;
+        this.codedOutput = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+        this.syncInterval = syncInterval;
+
+        codedOutput.writeRawBytes(SurveyLogFormat.MAGIC);
+        codedOutput.writeRawByte(SurveyLogFormat.VERSION);
+        codedOutput.writeRawBytes(new byte[3]);
+        codedOutput.writeRawBytes(syncMarker);
+        writeSync();
+    }
+
+    /**
+     * Appends a record to the log.
+     *
+     * @param record One of the survey records (see {@link SurveyRecordType}).
+     * @return The position of the record in the file, which can be passed to {@link SurveyLogReader#seek(long)}.
+     * @throws IllegalArgumentException If the message is not one of the survey records.
+     */
+    public long write(Message record) throws IOException {
+        if (closed) throw new IOException("The survey log writer has been closed");
+        final SurveyRecordType type = SurveyRecordType.forRecord(record);
+
+        if (getPosition() - lastSyncPosition >= syncInterval) writeSync();
+
+        final long position = getPosition();
+        codedOutput.writeRawByte(type.getTypeByte());
+        codedOutput.writeUInt32NoTag(record.getSerializedSize());
+        record.writeTo(codedOutput);
+        recordCount++;
+        return position;
+    }
+
+    /**
+     * @return The number of bytes written so far, including the ones still buffered.
+     */
+    public long getPosition() {
+        return codedOutput.getTotalBytesWritten();
+    }
+
+    /**
+     * @return The number of records written.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        codedOutput.flush();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void writeSync() throws IOException {
+        lastSyncPosition = getPosition();
+        codedOutput.writeRawByte(SurveyLogFormat.SYNC_TYPE);
+        codedOutput.writeRawBytes(syncMarker);
+    }
+
+    private static byte[] newSyncMarker() {
+        final UUID uuid = UUID.randomUUID();
+        return ByteBuffer.allocate(SurveyLogFormat.SYNC_MARKER_SIZE)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,92 @@
+package com.craxiom.messaging.log;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The record types that can be stored in a survey log, along with the type byte that identifies each of them in the
+ * file. The type bytes are part of the file format, so they must never be changed or reused.
+ */
+public enum SurveyRecordType {
+    GSM_RECORD(1, GsmRecord.getDefaultInstance()),
+    CDMA_RECORD(2, CdmaRecord.getDefaultInstance()),
+    UMTS_RECORD(3, UmtsRecord.getDefaultInstance()),
+    LTE_RECORD(4, LteRecord.getDefaultInstance()),
+    NR_RECORD(5, NrRecord.getDefaultInstance()),
+    WIFI_BEACON_RECORD(6, WifiBeaconRecord.getDefaultInstance()),
+    WIFI_PROBE_REQUEST_RECORD(7, WifiProbeRequestRecord.getDefaultInstance()),
+    WIFI_DEAUTHENTICATION_RECORD(8, WifiDeauthenticationRecord.getDefaultInstance()),
+    WIFI_OTA_RECORD(9, WifiOtaRecord.getDefaultInstance()),
+    BLUETOOTH_RECORD(10, BluetoothRecord.getDefaultInstance()),
+    GNSS_RECORD(11, GnssRecord.getDefaultInstance()),
+    ENERGY_DETECTION(12, EnergyDetection.getDefaultInstance()),
+    SIGNAL_DETECTION(13, SignalDetection.getDefaultInstance()),
+    DEVICE_STATUS(14, DeviceStatus.getDefaultInstance()),
+    PHONE_STATE(15, PhoneState.getDefaultInstance()),
+    GSM_SIGNALING(16, GsmSignaling.getDefaultInstance()),
+    UMTS_NAS(17, UmtsNas.getDefaultInstance()),
+    WCDMA_RRC(18, WcdmaRrc.getDefaultInstance()),
+    LTE_RRC(19, LteRrc.getDefaultInstance()),
+    LTE_NAS(20, LteNas.getDefaultInstance());
+
+    private static final SurveyRecordType[] BY_TYPE_BYTE = new SurveyRecordType[256];
+    private static final Map<Class<?>, SurveyRecordType> BY_CLASS = new HashMap<>();
+
+    static {
+        for (SurveyRecordType type : values()) {
+            BY_TYPE_BYTE[type.typeByte] = type;
+            BY_CLASS.put(type.defaultInstance.getClass(), type);
+        }
+    }
+
+    private final int typeByte;
+    private final Message defaultInstance;
+
+    SurveyRecordType(int typeByte, Message defaultInstance) {
+        this.typeByte = typeByte;
+        this.defaultInstance = defaultInstance;
+    }
+
+    /**
+     * @return The byte that identifies this record type in a survey log, from 1 to 255.
+     */
+    public int getTypeByte() {
+        return typeByte;
+    }
+
+    /**
+     * @return The name of the record message, which is also the messageType value of the records (e.g. "LteRecord").
+     */
+    public String getMessageType() {
+        return defaultInstance.getDescriptorForType().getName();
+    }
+
+    public Message getDefaultInstance() {
+        return defaultInstance;
+    }
+
+    public Parser<? extends Message> getParser() {
+        return defaultInstance.getParserForType();
+    }
+
+    /**
+     * @return The record type for a type byte, or null if the type byte is not known.
+     */
+    public static SurveyRecordType forTypeByte(int typeByte) {
+        return typeByte < 0 || typeByte >= BY_TYPE_BYTE.length ? null : BY_TYPE_BYTE[typeByte];
+    }
+
+    /**
+     * @return The record type of the record.
+     * @throws IllegalArgumentException If the message is not one of the survey records.
+     */
+    public static SurveyRecordType forRecord(Message record) {
+        final SurveyRecordType type = BY_CLASS.get(record.getClass());
+        if (type == null) throw new IllegalArgumentException(record.getClass().getName() + " is not a survey record");
+        return type;
+    }
+}
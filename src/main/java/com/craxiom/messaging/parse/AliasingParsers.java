@@ -0,0 +1,50 @@
+package com.craxiom.messaging.parse;
+
+import com.google.protobuf.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses messages so that their bytes fields, such as the pcapRecord of the WifiOtaRecord, LteRrc, LteNas, UmtsNas,
+ * WcdmaRrc, and GsmSignaling messages, are views of the input instead of copies of it.
+ * <p>
+ * The regular parsers copy every bytes field into a new {@link ByteString}. These methods wrap the input with
+ * {@link UnsafeByteOperations} and parse it from a {@link CodedInputStream} with aliasing enabled, so a bytes field
+ * shares the memory of the input. The strings and other fields are still decoded as usual.
+ * <p>
+ * The input must not be modified for as long as the parsed message is in use, since the message would change with
+ * it. Aliasing also keeps the whole input reachable for as long as any of its bytes fields are, so it is best suited
+ * to inputs that belong to a single message, such as the buffer that a gRPC message was read into.
+ */
+public final class AliasingParsers {
+    private AliasingParsers() {
+    }
+
+    /**
+     * Parses a message from the remaining bytes of the buffer, without changing the buffer's position.
+     */
+    public static <T extends MessageLite> T parseFrom(Parser<T> parser, ByteBuffer buffer) throws InvalidProtocolBufferException {
+        return parseFrom(parser, UnsafeByteOperations.unsafeWrap(buffer));
+    }
+
+    public static <T extends MessageLite> T parseFrom(Parser<T> parser, byte[] bytes) throws InvalidProtocolBufferException {
+        return parseFrom(parser, bytes, 0, bytes.length);
+    }
+
+    public static <T extends MessageLite> T parseFrom(Parser<T> parser, byte[] bytes, int offset, int length)
+            throws InvalidProtocolBufferException {
+        return parseFrom(parser, UnsafeByteOperations.unsafeWrap(bytes, offset, length));
+    }
+
+    /**
+     * Parses a message from a byte string. The bytes fields of the message alias the byte string.
+     */
+    public static <T extends MessageLite> T parseFrom(Parser<T> parser, ByteString bytes) throws InvalidProtocolBufferException {
+        // A CodedInputStream only aliases input that it knows is immutable, which is the case for a byte string's input
+        final CodedInputStream input = bytes.newCodedInput();
+        input.enableAliasing(true);
+        final T message = parser.parseFrom(input);
+        input.checkLastTagWas(0);
+        return message;
+    }
+}
@@ -0,0 +1,206 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.*;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A protobuf {@link Parser} for the survey records that deduplicates the header strings repeated in every record of a
+ * stream: the version and messageType, and the deviceSerialNumber, deviceName, missionId, and deviceModel (where
+ * present) in the record data.
+ * <p>
+ * The regular parsers create new String instances for these fields in every record, so holding on to many records
+ * from the same device holds on to many copies of the same few strings. This parser passes them through a
+ * {@link StringInterner} instead so that all the records share one instance of each value. The strings are replaced
+ * on the builder that the record was parsed into, before the record is built, so there is no extra copy of the record.
+ * <p>
+ * A parser holds the interner for one stream and, like the interner, is not thread safe. Use one parser per stream,
+ * or share an interner between the parsers for the different record types in a stream:
+ * <pre>{@code
+ * final StringInterner interner = new StringInterner();
+ * final InterningParser<LteRecord> lteParser = InterningParser.newParser(LteRecord.class, interner);
+ * final InterningParser<NrRecord> nrParser = InterningParser.newParser(NrRecord.class, interner);
+ * LteRecord record;
+ * while ((record = lteParser.parseDelimitedFrom(inputStream)) != null) {
+ *     ...
+ * }
+ * }</pre>
+ * A parser can also be given a {@link WrapperCache}, in which case the Int32Value, UInt32Value, and BoolValue fields of
+ * the parsed records are replaced with the shared instances from the cache, so that the records do not each hold their
+ * own copy of common values such as a channel or pci.
+ *
+ * @param <T> The record type, e.g. LteRecord.
+ */
+public final class InterningParser<T extends Message> extends AbstractParser<T> {
+    private static final String[] RECORD_HEADER_FIELDS = {"version", "messageType"};
+    private static final String[] DATA_HEADER_FIELDS = {"deviceSerialNumber", "deviceName", "missionId", "deviceModel"};
+    private static final Map<Class<?>, RecordType> RECORD_TYPES = new HashMap<>();
+
+    static {
+        for (MessageType<?, ?> type : MessageTypeRegistry.getMessageTypes()) {
+            RECORD_TYPES.put(type.getDefaultInstance().getClass(), new RecordType(type.getDefaultInstance()));
+        }
+    }
+
+    private final RecordType recordType;
+    private final StringInterner interner;
+    private final WrapperCache wrapperCache;
+
+    private InterningParser(RecordType recordType, StringInterner interner, WrapperCache wrapperCache) {
+        this.recordType = recordType;
+        this.interner = interner;
+        this.wrapperCache = wrapperCache;
+    }
+
+    /**
+     * Creates a parser with its own {@link StringInterner}.
+     *
+     * @throws IllegalArgumentException If the class is not one of the survey records that has a data field.
+     */
+    public static <T extends Message> InterningParser<T> newParser(Class<T> recordClass) {
+        return newParser(recordClass, new StringInterner());
+    }
+
+    /**
+     * Creates a parser that shares the interner with other parsers for the same stream.
+     *
+     * @throws IllegalArgumentException If the class is not one of the survey records that has a data field.
+     */
+    public static <T extends Message> InterningParser<T> newParser(Class<T> recordClass, StringInterner interner) {
+        return create(recordClass, interner, null);
+    }
+
+    /**
+     * Creates a parser that shares the interner with other parsers for the same stream, and that also replaces the
+     * wrapper fields of the records with the instances from the wrapper cache.
+     *
+     * @throws IllegalArgumentException If the class is not one of the survey records that has a data field.
+     */
+    public static <T extends Message> InterningParser<T> newParser(Class<T> recordClass, StringInterner interner,
+                                                                   WrapperCache wrapperCache) {
+        if (wrapperCache == null) throw new NullPointerException("The wrapper cache is required");
+        return create(recordClass, interner, wrapperCache);
+    }
+
+    private static <T extends Message> InterningParser<T> create(Class<T> recordClass, StringInterner interner,
+                                                                 WrapperCache wrapperCache) {
+        if (interner == null) throw new NullPointerException("The interner is required");
+        final RecordType recordType = RECORD_TYPES.get(recordClass);
+        if (recordType == null) throw new IllegalArgumentException(recordClass.getName() + " is not a supported survey record");
+        return new InterningParser<>(recordType, interner, wrapperCache);
+    }
+
+    /**
+     * @return True if {@link #newParser(Class)} supports the class.
+     */
+    public static boolean isSupported(Class<? extends Message> recordClass) {
+        return RECORD_TYPES.containsKey(recordClass);
+    }
+
+    /**
+     * Deduplicates the header strings (and the wrappers, if the parser has a wrapper cache) of a record that was
+     * parsed some other way, for example by a gRPC marshaller. Unlike parsing with this parser, this has to copy the
+     * record.
+     * <p>
+     * The copy is made by parsing the serialized record rather than with {@code toBuilder()}, so that every value is
+     * kept as is (see {@link NegativeZeros}).
+     *
+     * @return A copy of the record that uses the interned strings.
+     */
+    public T intern(T record) {
+        try {
+            return parsePartialFrom(record.toByteString());
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Could not parse a serialized " + record.getDescriptorForType().getName(), e);
+        }
+    }
+
+    /**
+     * @return The interner used by this parser.
+     */
+    public StringInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * @return The wrapper cache used by this parser, or null if it does not replace the wrappers.
+     */
+    public WrapperCache getWrapperCache() {
+        return wrapperCache;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T parsePartialFrom(CodedInputStream input, ExtensionRegistryLite extensionRegistry)
+            throws InvalidProtocolBufferException {
+        final Message.Builder builder = recordType.builderFactory.get();
+        try {
+            builder.mergeFrom(input, extensionRegistry);
+        } catch (InvalidProtocolBufferException e) {
+            throw e.setUnfinishedMessage(builder.buildPartial());
+        } catch (UninitializedMessageException e) {
+            throw e.asInvalidProtocolBufferException().setUnfinishedMessage(builder.buildPartial());
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e).setUnfinishedMessage(builder.buildPartial());
+        }
+        internHeaderFields(builder);
+        if (wrapperCache != null) wrapperCache.canonicalize(builder);
+        return (T) builder.buildPartial();
+    }
+
+    /**
+     * Replaces the header strings on a record builder with their interned instances.
+     */
+    private void internHeaderFields(Message.Builder builder) {
+        internStrings(builder, recordType.recordFields);
+        if (builder.hasField(recordType.dataField)) {
+            internStrings(builder.getFieldBuilder(recordType.dataField), recordType.dataFields);
+        }
+    }
+
+    private void internStrings(Message.Builder builder, FieldDescriptor[] fields) {
+        for (FieldDescriptor field : fields) {
+            final String value = (String) builder.getField(field);
+            final String interned = interner.intern(value);
+            if (interned != value) builder.setField(field, interned);
+        }
+    }
+
+    /**
+     * The header fields of one record type, resolved once from its descriptor.
+     */
+    private static final class RecordType {
+        private final Supplier<Message.Builder> builderFactory;
+        private final FieldDescriptor[] recordFields;
+        private final FieldDescriptor dataField;
+        private final FieldDescriptor[] dataFields;
+
+        private RecordType(Message defaultInstance) {
+            final Descriptor descriptor = defaultInstance.getDescriptorForType();
+            this.builderFactory = defaultInstance::newBuilderForType;
+            this.recordFields = findFields(descriptor, RECORD_HEADER_FIELDS);
+            this.dataField = descriptor.findFieldByName("data");
+            this.dataFields = findFields(dataField.getMessageType(), DATA_HEADER_FIELDS);
+        }
+
+        /**
+         * @return The fields with the given names that the message type has.
+         */
+        private static FieldDescriptor[] findFields(Descriptor descriptor, String[] names) {
+            final List<FieldDescriptor> fields = new ArrayList<>();
+            for (String name : names) {
+                final FieldDescriptor field = descriptor.findFieldByName(name);
+                if (field != null) fields.add(field);
+            }
+            return fields.toArray(new FieldDescriptor[0]);
+        }
+    }
+}
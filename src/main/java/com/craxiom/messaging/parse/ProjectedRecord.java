@@ -0,0 +1,158 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.MessageType;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import java.util.Arrays;
+
+/**
+ * The fields of one record that were read by a {@link RecordProjection}, by the index of their path in the projection.
+ * <p>
+ * A field is present if it was on the wire. As with the generated messages, the getters of a field that is not present
+ * return its default value (zero, false, or empty). The numeric getters convert between the integer and floating point
+ * fields, so a float altitude can be read with {@link #getDouble(int)} and an int32 recordNumber with
+ * {@link #getLong(int)}.
+ * <p>
+ * Instances are meant to be reused for every record of a stream, and are not thread safe.
+ */
+public final class ProjectedRecord {
+    private static final byte NONE = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte OBJECT = 3;
+
+    private final RecordProjection projection;
+    private final byte[] kinds;
+    private final long[] numbers;
+    private final Object[] objects;
+    private MessageType<?, ?> messageType;
+
+    ProjectedRecord(RecordProjection projection, int size) {
+        this.projection = projection;
+        this.kinds = new byte[size];
+        this.numbers = new long[size];
+        this.objects = new Object[size];
+    }
+
+    public RecordProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return The type of the last projected record, or null if no record has been projected yet.
+     */
+    public MessageType<?, ?> getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return True if the field was present in the last projected record.
+     */
+    public boolean has(int index) {
+        return kinds[index] != NONE;
+    }
+
+    public long getLong(int index) {
+        return kinds[index] == DOUBLE ? (long) Double.longBitsToDouble(numbers[index]) : numbers[index];
+    }
+
+    public int getInt(int index) {
+        return (int) getLong(index);
+    }
+
+    public double getDouble(int index) {
+        return kinds[index] == DOUBLE ? Double.longBitsToDouble(numbers[index]) : numbers[index];
+    }
+
+    public boolean getBoolean(int index) {
+        return numbers[index] != 0;
+    }
+
+    /**
+     * @return The value of a string field, or an empty string if the field is not present or is not a string.
+     */
+    public String getString(int index) {
+        final Object value = objects[index];
+        return value instanceof String ? (String) value : "";
+    }
+
+    /**
+     * @return The value of a bytes field, or an empty byte string if the field is not present or is not a bytes field.
+     */
+    public ByteString getBytes(int index) {
+        final Object value = objects[index];
+        return value instanceof ByteString ? (ByteString) value : ByteString.EMPTY;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(String.valueOf(messageType)).append('{');
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(projection.getPaths().get(i)).append('=');
+            switch (kinds[i]) {
+                case LONG:
+                    builder.append(numbers[i]);
+                    break;
+                case DOUBLE:
+                    builder.append(Double.longBitsToDouble(numbers[i]));
+                    break;
+                case OBJECT:
+                    builder.append(objects[i] instanceof ByteString ? ((ByteString) objects[i]).size() + " bytes"
+                            : objects[i]);
+                    break;
+                default:
+                    builder.append("<absent>");
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    void reset(MessageType<?, ?> type) {
+        messageType = type;
+        Arrays.fill(kinds, NONE);
+        Arrays.fill(numbers, 0L);
+        Arrays.fill(objects, null);
+    }
+
+    void setLong(int index, long value) {
+        kinds[index] = LONG;
+        numbers[index] = value;
+    }
+
+    void setDouble(int index, double value) {
+        kinds[index] = DOUBLE;
+        numbers[index] = Double.doubleToRawLongBits(value);
+    }
+
+    void setBoolean(int index, boolean value) {
+        setLong(index, value ? 1 : 0);
+    }
+
+    void setObject(int index, Object value) {
+        kinds[index] = OBJECT;
+        objects[index] = value;
+    }
+
+    /**
+     * Marks a wrapper field as present with the default value of the wrapped type, which is what a wrapper message
+     * that does not contain its value field holds.
+     */
+    void setDefault(int index, FieldDescriptor.Type type) {
+        switch (type.getJavaType()) {
+            case FLOAT:
+            case DOUBLE:
+                setDouble(index, 0);
+                break;
+            case STRING:
+                setObject(index, "");
+                break;
+            case BYTE_STRING:
+                setObject(index, ByteString.EMPTY);
+                break;
+            default:
+                setLong(index, 0);
+        }
+    }
+}
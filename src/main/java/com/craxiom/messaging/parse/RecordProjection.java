@@ -0,0 +1,366 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.MessageType;
+import com.craxiom.messaging.MessageTypeRegistry;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reads a selected set of fields from serialized survey records without parsing the rest of the record. This is meant
+ * for code that only looks at a few fields of every record, such as a router that shards the records by the device
+ * serial number and the location. The selected fields are decoded straight from the wire with a
+ * {@link CodedInputStream}, and everything else, including the large pcapRecord payloads of the signaling records, is
+ * skipped over without being decoded or copied.
+ * <p>
+ * The fields are selected by their path from the record message, such as "messageType" or "data.latitude". A path
+ * can end at a scalar, string, bytes, or enum field, or at one of the well known wrapper messages (e.g. the mcc
+ * Int32Value of the cellular records), in which case the wrapped value is read. Repeated fields are not supported.
+ * <pre>{@code
+ * final RecordProjection projection = RecordProjection.of("data.deviceSerialNumber", "data.missionId",
+ *         "data.latitude", "data.longitude");
+ * final ProjectedRecord projected = projection.newRecord();
+ * if (projection.project(bytes, projected)) {
+ *     route(projected.getMessageType(), projected.getString(0), projected.getDouble(2), projected.getDouble(3));
+ * }
+ * }</pre>
+ * The paths are resolved against each record type separately, so one projection works for a mixed stream of record
+ * types. A path that a record type does not have (e.g. "data.missionId" for a {@code DeviceStatus}) is simply never
+ * present in the projected records of that type.
+ * <p>
+ * Instances are immutable and can be shared between threads. The {@link ProjectedRecord}s are not thread safe.
+ */
+public final class RecordProjection {
+    private final List<String> paths;
+    private final Map<MessageType<?, ?>, Node> plans = new IdentityHashMap<>();
+
+    private RecordProjection(List<String> paths) {
+        this.paths = paths;
+        final boolean[] resolved = new boolean[paths.size()];
+        for (MessageType<?, ?> type : MessageTypeRegistry.getMessageTypes()) {
+            final NodeBuilder root = new NodeBuilder();
+            for (int slot = 0; slot < paths.size(); slot++) {
+                resolved[slot] |= root.add(type.getDefaultInstance().getDescriptorForType(), paths.get(slot), slot);
+            }
+            plans.put(type, root.build());
+        }
+
+        for (int slot = 0; slot < paths.size(); slot++) {
+            if (!resolved[slot]) {
+                throw new IllegalArgumentException("The path " + paths.get(slot)
+                        + " is not a field of any record type");
+            }
+        }
+    }
+
+    /**
+     * @param paths The dot separated field paths to read, in the order of their indexes in the projected records.
+     * @throws IllegalArgumentException If a path is not a field of any of the record types, or if a path goes through
+     *                                  or ends at a repeated or map field, or ends at a message field that is not a
+     *                                  wrapper.
+     */
+    public static RecordProjection of(String... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    /**
+     * @see #of(String...)
+     */
+    public static RecordProjection of(List<String> paths) {
+        if (paths.isEmpty()) throw new IllegalArgumentException("At least one path is required");
+        final List<String> copy = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            if (path == null) throw new NullPointerException("The paths can not be null");
+            if (copy.contains(path)) throw new IllegalArgumentException("The path " + path + " is listed twice");
+            copy.add(path);
+        }
+        return new RecordProjection(Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * @return The field paths, in the order of their indexes.
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return The index of the path in the projected records, or -1 if it is not part of this projection.
+     */
+    public int indexOf(String path) {
+        return paths.indexOf(path);
+    }
+
+    /**
+     * @return A new, reusable holder for the fields of one record.
+     */
+    public ProjectedRecord newRecord() {
+        return new ProjectedRecord(this, paths.size());
+    }
+
+    /**
+     * Reads the selected fields of a serialized record of any type. The type is found from the record's messageType
+     * field, see {@link MessageTypeRegistry#peek(byte[], int, int)}.
+     *
+     * @return True if the fields were read into the projected record, false if the record does not have a known
+     * messageType. The projected record is left unchanged in that case.
+     * @throws InvalidProtocolBufferException If the record is malformed.
+     */
+    public boolean project(byte[] bytes, ProjectedRecord record) throws InvalidProtocolBufferException {
+        return project(bytes, 0, bytes.length, record);
+    }
+
+    /**
+     * @see #project(byte[], ProjectedRecord)
+     */
+    public boolean project(byte[] bytes, int offset, int length, ProjectedRecord record)
+            throws InvalidProtocolBufferException {
+        final MessageType<?, ?> type = MessageTypeRegistry.peek(bytes, offset, length);
+        if (type == null) return false;
+
+        project(type, bytes, offset, length, record);
+        return true;
+    }
+
+    /**
+     * Reads the selected fields of a serialized record whose type is already known, such as the records of a typed
+     * gRPC stream.
+     *
+     * @throws InvalidProtocolBufferException If the record is malformed.
+     */
+    public void project(MessageType<?, ?> type, byte[] bytes, int offset, int length, ProjectedRecord record)
+            throws InvalidProtocolBufferException {
+        project(type, CodedInputStream.newInstance(bytes, offset, length), record);
+    }
+
+    /**
+     * Reads the selected fields of a record whose type is already known from the input, up to the end of the input or
+     * its current limit.
+     *
+     * @throws InvalidProtocolBufferException If the record is malformed.
+     */
+    public void project(MessageType<?, ?> type, CodedInputStream input, ProjectedRecord record)
+            throws InvalidProtocolBufferException {
+        if (record.getProjection() != this) {
+            throw new IllegalArgumentException("The projected record was created by a different projection");
+        }
+
+        record.reset(type);
+        try {
+            read(input, plans.get(type), record);
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+    }
+
+    private static void read(CodedInputStream input, Node node, ProjectedRecord record) throws IOException {
+        while (true) {
+            final int tag = input.readTag();
+            if (tag == 0) return;
+
+            final Field field = node.find(WireFormat.getTagFieldNumber(tag));
+            if (field == null || WireFormat.getTagWireType(tag) != field.wireType) {
+                input.skipField(tag);
+                continue;
+            }
+
+            if (field.child != null) {
+                if (field.presenceSlot != -1) record.setDefault(field.presenceSlot, field.child.first().type);
+                final int oldLimit = input.pushLimit(input.readRawVarint32());
+                read(input, field.child, record);
+                input.checkLastTagWas(0);
+                input.popLimit(oldLimit);
+            } else {
+                readValue(input, field, record);
+            }
+        }
+    }
+
+    private static void readValue(CodedInputStream input, Field field, ProjectedRecord record) throws IOException {
+        final int slot = field.slot;
+        switch (field.type) {
+            case DOUBLE:
+                record.setDouble(slot, input.readDouble());
+                break;
+            case FLOAT:
+                record.setDouble(slot, input.readFloat());
+                break;
+            case INT64:
+                record.setLong(slot, input.readInt64());
+                break;
+            case UINT64:
+                record.setLong(slot, input.readUInt64());
+                break;
+            case INT32:
+                record.setLong(slot, input.readInt32());
+                break;
+            case FIXED64:
+                record.setLong(slot, input.readFixed64());
+                break;
+            case FIXED32:
+                record.setLong(slot, input.readFixed32());
+                break;
+            case BOOL:
+                record.setBoolean(slot, input.readBool());
+                break;
+            case STRING:
+                record.setObject(slot, input.readStringRequireUtf8());
+                break;
+            case BYTES:
+                record.setObject(slot, input.readBytes());
+                break;
+            case UINT32:
+                record.setLong(slot, input.readUInt32());
+                break;
+            case ENUM:
+                record.setLong(slot, input.readEnum());
+                break;
+            case SFIXED32:
+                record.setLong(slot, input.readSFixed32());
+                break;
+            case SFIXED64:
+                record.setLong(slot, input.readSFixed64());
+                break;
+            case SINT32:
+                record.setLong(slot, input.readSInt32());
+                break;
+            case SINT64:
+                record.setLong(slot, input.readSInt64());
+                break;
+            default:
+                throw new IllegalStateException("The " + field.type + " field " + field.number
+                        + " can not be projected");
+        }
+    }
+
+    private static boolean isWrapper(Descriptor descriptor) {
+        return descriptor.getFile().getPackage().equals("google.protobuf") && descriptor.getName().endsWith("Value")
+                && descriptor.getFields().size() == 1 && descriptor.getFields().get(0).getName().equals("value");
+    }
+
+    /**
+     * One requested field of a message.
+     */
+    private static final class Field {
+        private final int number;
+        private final FieldDescriptor.Type type;
+        private final int wireType;
+        private final int slot;
+        private final int presenceSlot;
+        private final Node child;
+
+        private Field(FieldDescriptor descriptor, int slot, int presenceSlot, Node child) {
+            this.number = descriptor.getNumber();
+            this.type = descriptor.getType();
+            this.wireType = descriptor.getLiteType().getWireType();
+            this.slot = slot;
+            this.presenceSlot = presenceSlot;
+            this.child = child;
+        }
+    }
+
+    /**
+     * The requested fields of one message, indexed by field number.
+     */
+    private static final class Node {
+        private final Field[] byNumber;
+        private final Field first;
+
+        private Node(Field[] byNumber, Field first) {
+            this.byNumber = byNumber;
+            this.first = first;
+        }
+
+        private Field find(int number) {
+            return number < byNumber.length ? byNumber[number] : null;
+        }
+
+        private Field first() {
+            return first;
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final SortedMap<Integer, Entry> entries = new TreeMap<>();
+
+        /**
+         * @return True if the path is a field of the message.
+         */
+        private boolean add(Descriptor descriptor, String path, int slot) {
+            return add(descriptor, path, path, slot);
+        }
+
+        private boolean add(Descriptor descriptor, String remaining, String path, int slot) {
+            final int dot = remaining.indexOf('.');
+            final String name = dot == -1 ? remaining : remaining.substring(0, dot);
+            final FieldDescriptor field = descriptor.findFieldByName(name);
+            if (field == null) return false;
+            if (field.isRepeated()) {
+                throw new IllegalArgumentException("The path " + path + " goes through the repeated field " + name);
+            }
+
+            final Entry entry = entries.computeIfAbsent(field.getNumber(), number -> new Entry(field));
+            if (dot != -1) {
+                if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                    throw new IllegalArgumentException("The path " + path + " goes through the non message field "
+                            + name);
+                }
+                if (entry.child == null) entry.child = new NodeBuilder();
+                final boolean resolved = entry.child.add(field.getMessageType(), remaining.substring(dot + 1), path,
+                        slot);
+                if (!resolved && entry.child.entries.isEmpty() && entry.presenceSlot == -1) {
+                    entries.remove(field.getNumber());
+                }
+                return resolved;
+            }
+
+            if (entry.slot != -1 || entry.presenceSlot != -1) {
+                throw new IllegalArgumentException("The path " + path + " reads the same field as another path");
+            }
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                if (!isWrapper(field.getMessageType())) {
+                    throw new IllegalArgumentException("The path " + path + " ends at the message field " + name
+                            + ", which is not a wrapper of a single value");
+                }
+                entry.presenceSlot = slot;
+                if (entry.child == null) entry.child = new NodeBuilder();
+                entry.child.add(field.getMessageType(), "value", path, slot);
+                return true;
+            }
+
+            entry.slot = slot;
+            return true;
+        }
+
+        private Node build() {
+            final int maxNumber = entries.isEmpty() ? 0 : entries.lastKey();
+            final Field[] byNumber = new Field[maxNumber + 1];
+            Field first = null;
+            for (Entry entry : entries.values()) {
+                final Field field = new Field(entry.descriptor, entry.slot, entry.presenceSlot,
+                        entry.child == null ? null : entry.child.build());
+                byNumber[field.number] = field;
+                if (first == null) first = field;
+            }
+            return new Node(byNumber, first);
+        }
+    }
+
+    private static final class Entry {
+        private final FieldDescriptor descriptor;
+        private int slot = -1;
+        private int presenceSlot = -1;
+        private NodeBuilder child;
+
+        private Entry(FieldDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.craxiom.messaging.parse;
+
+import java.util.Arrays;
+
+/**
+ * A small, bounded cache that returns one canonical instance for equal strings.
+ * <p>
+ * Unlike {@link String#intern()}, the cache belongs to the caller and is dropped along with it, so it is meant to be
+ * created for one stream of records (a gRPC stream, a log file replay, etc.) where the same few values such as the
+ * device serial number repeat in every record. The cache is direct mapped: each string can only live in the slot for
+ * its hash code, and a different string that maps to the same slot replaces it. That keeps every lookup to a single
+ * array access while still deduplicating the handful of distinct values a stream usually has.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class StringInterner {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final String[] table;
+    private final int mask;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public StringInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of slots in the cache, rounded up to a power of two.
+     */
+    public StringInterner(int capacity) {
+        if (capacity < 1 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^20, not " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return The cached instance that is equal to the value, or the value itself after it has been cached.
+     */
+    public String intern(String value) {
+        if (value.isEmpty()) return "";
+
+        final int hash = value.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & mask;
+        final String cached = table[index];
+        if (cached != null && cached.hashCode() == hash && cached.equals(value)) {
+            hitCount++;
+            return cached;
+        }
+
+        missCount++;
+        table[index] = value;
+        return value;
+    }
+
+    /**
+     * @return The number of times {@link #intern(String)} returned a cached instance.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of times {@link #intern(String)} cached a new instance.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Removes all the cached strings.
+     */
+    public void clear() {
+        Arrays.fill(table, null);
+    }
+}
@@ -0,0 +1,251 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.NegativeZeros;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import com.google.protobuf.UInt32Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared, immutable {@link Int32Value}, {@link UInt32Value}, and {@link BoolValue} instances for the values that repeat
+ * in almost every record, such as the channel, pci, ta, and servingCell fields.
+ * <p>
+ * The generated builders and parsers create a new wrapper message for every wrapper field of every record, so holding
+ * on to many records holds on to many identical {@code Int32Value{value: 6}} instances. The wrapper messages are
+ * immutable, so records can share one instance of each value instead. The cache holds an instance for every value in
+ * a fixed range, created up front, so a lookup is a single array access and the cache is safe to share between
+ * threads.
+ * <p>
+ * When building records, use the factory methods in place of the wrapper builders:
+ * <pre>{@code
+ * final WrapperCache wrappers = WrapperCache.getDefault();
+ * final LteRecordData data = LteRecordData.newBuilder()
+ *         .setPci(wrappers.int32(pci))
+ *         .setTa(wrappers.int32(ta))
+ *         .setServingCell(wrappers.bool(true))
+ *         ...
+ * }</pre>
+ * When parsing, pass the cache to {@link InterningParser#newParser(Class, StringInterner, WrapperCache)}, or use
+ * {@link #canonicalize(Message)} for records that were parsed some other way.
+ * <p>
+ * The enum fields (e.g. lteBandwidth, bandwidth, serviceSetType) need nothing like this, since an enum field is stored
+ * as a shared enum constant rather than a message.
+ */
+public final class WrapperCache {
+    /**
+     * The smallest value cached by {@link #getDefault()}, which covers small negative values such as an unset -1.
+     */
+    public static final int DEFAULT_MIN_VALUE = -128;
+
+    /**
+     * The largest value cached by {@link #getDefault()}, which covers the LTE and NR pci, the Wi-Fi channel, and most
+     * timing advance values.
+     */
+    public static final int DEFAULT_MAX_VALUE = 1023;
+
+    private static final WrapperCache DEFAULT = new WrapperCache(DEFAULT_MIN_VALUE, DEFAULT_MAX_VALUE);
+    private static final BoolValue TRUE = BoolValue.of(true);
+
+    private final int minValue;
+    private final int maxValue;
+    private final Int32Value[] int32Values;
+    private final UInt32Value[] uint32Values;
+    private final ConcurrentMap<Descriptor, MessageFields> messageFields = new ConcurrentHashMap<>();
+
+    /**
+     * @param minValue The smallest value to cache.
+     * @param maxValue The largest value to cache.
+     */
+    public WrapperCache(int minValue, int maxValue) {
+        if (minValue > maxValue) {
+            throw new IllegalArgumentException("The minimum value " + minValue + " is more than the maximum value "
+                    + maxValue);
+        }
+        if ((long) maxValue - minValue >= 1 << 20) {
+            throw new IllegalArgumentException("The range can have at most 2^20 values, not "
+                    + ((long) maxValue - minValue + 1));
+        }
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+
+        final int size = maxValue - minValue + 1;
+        int32Values = new Int32Value[size];
+        for (int i = 0; i < size; i++) {
+            int32Values[i] = Int32Value.of(minValue + i);
+        }
+
+        // The unsigned values are the non-negative part of the range
+        final int uint32Size = maxValue < 0 ? 0 : maxValue - Math.max(0, minValue) + 1;
+        uint32Values = new UInt32Value[uint32Size];
+        for (int i = 0; i < uint32Size; i++) {
+            uint32Values[i] = UInt32Value.of(Math.max(0, minValue) + i);
+        }
+    }
+
+    /**
+     * @return The cache for the values from {@link #DEFAULT_MIN_VALUE} to {@link #DEFAULT_MAX_VALUE}.
+     */
+    public static WrapperCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The smallest value that is cached.
+     */
+    public int getMinValue() {
+        return minValue;
+    }
+
+    /**
+     * @return The largest value that is cached.
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @return The cached instance for the value, or a new instance if the value is outside the cached range.
+     */
+    public Int32Value int32(int value) {
+        if (value < minValue || value > maxValue) return Int32Value.of(value);
+        return int32Values[value - minValue];
+    }
+
+    /**
+     * @return The cached instance for the value, or a new instance if the value is outside the cached range.
+     */
+    public UInt32Value uint32(int value) {
+        final int index = value - Math.max(0, minValue);
+        if (value < 0 || index >= uint32Values.length) return UInt32Value.of(value);
+        return uint32Values[index];
+    }
+
+    /**
+     * @return The instance for the value, which is always cached.
+     */
+    public BoolValue bool(boolean value) {
+        return value ? TRUE : BoolValue.getDefaultInstance();
+    }
+
+    /**
+     * Replaces the wrapper messages in a message that was built or parsed some other way with the cached instances.
+     * Unlike parsing with an {@link InterningParser} that uses this cache, this has to copy the message if any of its
+     * wrappers are replaced.
+     *
+     * @return The message itself if all of its wrappers are already the cached instances (or are not cached),
+     * otherwise a copy of the message that uses the cached instances.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Message> T canonicalize(T message) {
+        if (!needsCanonicalizing(message)) return message;
+
+        final MessageFields fields = getMessageFields(message.getDescriptorForType());
+        final Message.Builder builder = message.toBuilder();
+        NegativeZeros.restore(message, builder);
+        for (FieldDescriptor field : fields.wrapperFields) {
+            if (!message.hasField(field)) continue;
+            final Message wrapper = (Message) message.getField(field);
+            final Message cached = lookup(wrapper);
+            if (cached != wrapper) builder.setField(field, cached);
+        }
+        for (FieldDescriptor field : fields.nestedFields) {
+            if (!message.hasField(field)) continue;
+            final Message nested = (Message) message.getField(field);
+            final Message canonical = canonicalize(nested);
+            if (canonical != nested) builder.setField(field, canonical);
+        }
+        return (T) builder.build();
+    }
+
+    /**
+     * Replaces the wrapper messages that are set on the builder, and on the builders of its nested messages, with the
+     * cached instances.
+     */
+    void canonicalize(Message.Builder builder) {
+        final MessageFields fields = getMessageFields(builder.getDescriptorForType());
+        for (FieldDescriptor field : fields.wrapperFields) {
+            if (!builder.hasField(field)) continue;
+            final Message wrapper = (Message) builder.getField(field);
+            final Message cached = lookup(wrapper);
+            if (cached != wrapper) builder.setField(field, cached);
+        }
+        for (FieldDescriptor field : fields.nestedFields) {
+            if (builder.hasField(field)) canonicalize(builder.getFieldBuilder(field));
+        }
+    }
+
+    private boolean needsCanonicalizing(Message message) {
+        final MessageFields fields = getMessageFields(message.getDescriptorForType());
+        for (FieldDescriptor field : fields.wrapperFields) {
+            if (!message.hasField(field)) continue;
+            final Message wrapper = (Message) message.getField(field);
+            if (lookup(wrapper) != wrapper) return true;
+        }
+        for (FieldDescriptor field : fields.nestedFields) {
+            if (message.hasField(field) && needsCanonicalizing((Message) message.getField(field))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The cached instance that is equal to the wrapper, or the wrapper itself if there is none.
+     */
+    private Message lookup(Message wrapper) {
+        if (wrapper instanceof Int32Value) {
+            final int value = ((Int32Value) wrapper).getValue();
+            return value < minValue || value > maxValue || !wrapper.getUnknownFields().asMap().isEmpty()
+                    ? wrapper : int32Values[value - minValue];
+        }
+        if (wrapper instanceof UInt32Value) {
+            final int value = ((UInt32Value) wrapper).getValue();
+            final int index = value - Math.max(0, minValue);
+            return value < 0 || index >= uint32Values.length || !wrapper.getUnknownFields().asMap().isEmpty()
+                    ? wrapper : uint32Values[index];
+        }
+        if (wrapper instanceof BoolValue) {
+            return wrapper.getUnknownFields().asMap().isEmpty() ? bool(((BoolValue) wrapper).getValue()) : wrapper;
+        }
+        return wrapper;
+    }
+
+    private MessageFields getMessageFields(Descriptor descriptor) {
+        final MessageFields fields = messageFields.get(descriptor);
+        if (fields != null) return fields;
+        final MessageFields created = new MessageFields(descriptor);
+        final MessageFields existing = messageFields.putIfAbsent(descriptor, created);
+        return existing == null ? created : existing;
+    }
+
+    /**
+     * The singular message fields of a message type, split into the cached wrapper fields and the other messages that
+     * may contain wrapper fields.
+     */
+    private static final class MessageFields {
+        private final FieldDescriptor[] wrapperFields;
+        private final FieldDescriptor[] nestedFields;
+
+        private MessageFields(Descriptor descriptor) {
+            final List<FieldDescriptor> wrappers = new ArrayList<>();
+            final List<FieldDescriptor> nested = new ArrayList<>();
+            for (FieldDescriptor field : descriptor.getFields()) {
+                if (field.isRepeated() || field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) continue;
+                final Descriptor type = field.getMessageType();
+                if (type.equals(Int32Value.getDescriptor()) || type.equals(UInt32Value.getDescriptor())
+                        || type.equals(BoolValue.getDescriptor())) {
+                    wrappers.add(field);
+                } else if (!type.getFile().getPackage().equals("google.protobuf")) {
+                    nested.add(field);
+                }
+            }
+            wrapperFields = wrappers.toArray(new FieldDescriptor[0]);
+            nestedFields = nested.toArray(new FieldDescriptor[0]);
+        }
+    }
+}
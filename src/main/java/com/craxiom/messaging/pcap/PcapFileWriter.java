@@ -0,0 +1,161 @@
+package com.craxiom.messaging.pcap;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes the pcapRecord payloads of the survey records to a pcap file that can be opened with Wireshark or tshark.
+ * <p>
+ * Each pcapRecord already starts with its pcap record header, so the payloads are written as they are after the pcap
+ * file header. They are copied from the {@link ByteString} into a direct staging buffer, or written straight from the
+ * byte string's buffers if they are larger than the staging buffer, so no intermediate {@code byte[]} is created. When
+ * the records were parsed with aliasing (see {@link com.craxiom.messaging.parse.AliasingParsers}), the payloads go from
+ * the buffer the record was received in to the file without any other copy.
+ * <pre>{@code
+ * try (PcapFileWriter writer = PcapFileWriter.create(Paths.get("wifi.pcap"), PcapFileWriter.LINKTYPE_PPI)) {
+ *     for (WifiOtaRecord record : records) {
+ *         writer.write(record);
+ *     }
+ * }
+ * }</pre>
+ * All the records in a file must use the same link type. This class is not thread safe.
+ */
+public final class PcapFileWriter implements Closeable {
+    /**
+     * Raw IPv4 or IPv6 packets, e.g. GSMTAP in UDP.
+     */
+    public static final int LINKTYPE_RAW = 101;
+    /**
+     * Per-Packet Information header followed by the 802.11 frame.
+     */
+    public static final int LINKTYPE_PPI = 192;
+    public static final int DEFAULT_SNAPLEN = 65535;
+
+    static final int FILE_HEADER_SIZE = 24;
+    static final int RECORD_HEADER_SIZE = 16;
+    private static final int MAGIC = 0xa1b2c3d4;
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_BUFFER_SIZE);
+    private long position;
+    private long recordCount = 0;
+
+    /**
+     * Creates or replaces the file and writes the pcap file header.
+     *
+     * @param linkType The link type of the payloads, e.g. {@link #LINKTYPE_PPI} for the WifiOtaRecord payloads.
+     */
+    public static PcapFileWriter create(Path path, int linkType) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new PcapFileWriter(channel, linkType, DEFAULT_SNAPLEN);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the pcap file header at the current position of the channel.
+     */
+    public PcapFileWriter(FileChannel channel, int linkType, int snaplen) throws IOException {
+        this.channel = channel;
+        this.position = channel.position();
+        staging.order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putShort((short) 2)
+                .putShort((short) 4)
+                .putInt(0)
+                .putInt(0)
+                .putInt(snaplen)
+                .putInt(linkType);
+        flushStaging();
+    }
+
+    /**
+     * Writes the pcapRecord of a WifiOtaRecord, GsmSignaling, UmtsNas, WcdmaRrc, LteRrc, or LteNas record. Records
+     * without a pcapRecord are skipped.
+     *
+     * @return True if a pcap record was written.
+     * @throws IllegalArgumentException If the record type does not have a pcapRecord field.
+     */
+    public boolean write(Message record) throws IOException {
+        final ByteString pcapRecord = PcapRecords.getPcapRecord(record);
+        if (pcapRecord.isEmpty()) return false;
+        write(pcapRecord);
+        return true;
+    }
+
+    /**
+     * Writes one pcap record, which must start with its pcap record header.
+     */
+    public void write(ByteString pcapRecord) throws IOException {
+        final int size = pcapRecord.size();
+        if (size < RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("A pcap record is at least " + RECORD_HEADER_SIZE + " bytes, not " + size);
+        }
+
+        if (size > staging.remaining()) flushStaging();
+        if (size <= staging.remaining()) {
+            pcapRecord.copyTo(staging);
+        } else {
+            final List<ByteBuffer> buffers = pcapRecord.asReadOnlyByteBufferList();
+            final ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+            long remaining = size;
+            while (remaining > 0) {
+                remaining -= channel.write(array);
+            }
+            position += size;
+        }
+        recordCount++;
+    }
+
+    /**
+     * @return The size of the file written so far, including the records that have not been flushed yet.
+     */
+    public long getPosition() {
+        return position + staging.position();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     */
+    public void flush() throws IOException {
+        flushStaging();
+    }
+
+    /**
+     * Flushes the buffered records and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushStaging();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushStaging() throws IOException {
+        staging.flip();
+        while (staging.hasRemaining()) {
+            position += channel.write(staging);
+        }
+        staging.clear();
+    }
+}
@@ -0,0 +1,91 @@
+package com.craxiom.messaging.pcap;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+/**
+ * Reads the pcapRecord field, and the fields that describe it, of the survey records that carry a captured frame:
+ * WifiOtaRecord, GsmSignaling, UmtsNas, WcdmaRrc, LteRrc, and LteNas.
+ */
+public final class PcapRecords {
+    private PcapRecords() {
+    }
+
+    /**
+     * @return True if the record type has a pcapRecord field.
+     */
+    public static boolean hasPcapRecordField(Message record) {
+        return record instanceof WifiOtaRecord || record instanceof GsmSignaling || record instanceof UmtsNas
+                || record instanceof WcdmaRrc || record instanceof LteRrc || record instanceof LteNas;
+    }
+
+    /**
+     * @return The pcapRecord field of the record's data, which is empty if it is not set.
+     * @throws IllegalArgumentException If the record type does not have a pcapRecord field.
+     */
+    public static ByteString getPcapRecord(Message record) {
+        if (record instanceof WifiOtaRecord) return ((WifiOtaRecord) record).getData().getPcapRecord();
+        if (record instanceof GsmSignaling) return ((GsmSignaling) record).getData().getPcapRecord();
+        if (record instanceof UmtsNas) return ((UmtsNas) record).getData().getPcapRecord();
+        if (record instanceof WcdmaRrc) return ((WcdmaRrc) record).getData().getPcapRecord();
+        if (record instanceof LteRrc) return ((LteRrc) record).getData().getPcapRecord();
+        if (record instanceof LteNas) return ((LteNas) record).getData().getPcapRecord();
+        throw new IllegalArgumentException(record.getDescriptorForType().getName() + " does not have a pcapRecord field");
+    }
+
+    /**
+     * @return The link type of the frame in the record's pcapRecord: {@link PcapFileWriter#LINKTYPE_PPI} for the
+     * WifiOtaRecord, whose frames start with a PPI header, and {@link PcapFileWriter#LINKTYPE_RAW} for the cellular
+     * records, whose frames are GSMTAP in UDP over IP.
+     * @throws IllegalArgumentException If the record type does not have a pcapRecord field.
+     */
+    public static int getLinkType(Message record) {
+        if (record instanceof WifiOtaRecord) return PcapFileWriter.LINKTYPE_PPI;
+        if (hasPcapRecordField(record)) return PcapFileWriter.LINKTYPE_RAW;
+        throw new IllegalArgumentException(record.getDescriptorForType().getName() + " does not have a pcapRecord field");
+    }
+
+    /**
+     * @return The deviceTime of the record's data, which is empty if it is not set.
+     * @throws IllegalArgumentException If the record type does not have a pcapRecord field.
+     */
+    public static String getDeviceTime(Message record) {
+        if (record instanceof WifiOtaRecord) return ((WifiOtaRecord) record).getData().getDeviceTime();
+        if (record instanceof GsmSignaling) return ((GsmSignaling) record).getData().getDeviceTime();
+        if (record instanceof UmtsNas) return ((UmtsNas) record).getData().getDeviceTime();
+        if (record instanceof WcdmaRrc) return ((WcdmaRrc) record).getData().getDeviceTime();
+        if (record instanceof LteRrc) return ((LteRrc) record).getData().getDeviceTime();
+        if (record instanceof LteNas) return ((LteNas) record).getData().getDeviceTime();
+        throw new IllegalArgumentException(record.getDescriptorForType().getName() + " does not have a pcapRecord field");
+    }
+
+    /**
+     * @return The name of the record's channel type (e.g. "BCCH_DL_SCH" for an LteRrc record), or null for the
+     * WifiOtaRecord and UmtsNas records, which do not have a channel type.
+     */
+    public static String getChannelType(Message record) {
+        if (record instanceof GsmSignaling) {
+            final int value = ((GsmSignaling) record).getData().getChannelTypeValue();
+            return channelName(GsmSignalingChannelType.forNumber(value), value);
+        }
+        if (record instanceof WcdmaRrc) {
+            final int value = ((WcdmaRrc) record).getData().getChannelTypeValue();
+            return channelName(WcdmaRrcChannelType.forNumber(value), value);
+        }
+        if (record instanceof LteRrc) {
+            final int value = ((LteRrc) record).getData().getChannelTypeValue();
+            return channelName(LteRrcChannelType.forNumber(value), value);
+        }
+        if (record instanceof LteNas) {
+            final int value = ((LteNas) record).getData().getChannelTypeValue();
+            return channelName(LteNasChannelType.forNumber(value), value);
+        }
+        return null;
+    }
+
+    private static String channelName(Enum<?> channelType, int value) {
+        // A value that was added to the enum after this library was built is named by its number
+        return channelType == null ? Integer.toString(value) : channelType.name();
+    }
+}
@@ -0,0 +1,368 @@
+package com.craxiom.messaging.pcap;
+
+import com.craxiom.messaging.grpc.server.RecordSink;
+import com.craxiom.messaging.time.ExportFileNames;
+import com.craxiom.messaging.time.Rfc3339Codec;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the captured frames of the GsmSignaling, UmtsNas, WcdmaRrc, LteRrc, LteNas, and WifiOtaRecord records to
+ * PCAPNG files as the records arrive.
+ * <p>
+ * Each distinct record type and channel type (e.g. LteRrc BCCH_DL_SCH) gets its own interface in the file, named after
+ * them, so Wireshark can filter the frames by channel with {@code frame.interface_name}. Each interface has the link
+ * type of its record type (see {@link PcapRecords#getLinkType(Message)}), so the cellular and Wi-Fi frames can share
+ * a file. The packets are timestamped with the deviceTime of the record, or with the timestamp in the pcap record
+ * header if the deviceTime is missing.
+ * <p>
+ * The blocks are assembled in a direct buffer that is written to the file when it is full, so memory use is bounded
+ * by the buffer size whatever the rate of the records. A new file is started when the current one reaches the maximum
+ * size or has been open for the maximum duration. The files are named after the prefix, the time they were started,
+ * and a sequence number, e.g. {@code signaling_20241017T140000Z_0001.pcapng}.
+ * <p>
+ * The exporter is a {@link RecordSink}, so it can be given to a {@link com.craxiom.messaging.grpc.server.SurveyServer}
+ * to export a live capture:
+ * <pre>{@code
+ * final PcapngExporter exporter = PcapngExporter.newBuilder(Paths.get("captures"), "signaling")
+ *         .setMaxFileSize(100 * 1024 * 1024)
+ *         .setMaxFileDuration(1, TimeUnit.HOURS)
+ *         .build();
+ * final SurveyServer server = SurveyServer.newBuilder(NettyServerBuilder.forPort(2621), exporter).build().start();
+ * }</pre>
+ * Records of the other types are ignored. This class is not thread safe.
+ */
+public final class PcapngExporter implements RecordSink, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final long DEFAULT_MAX_FILE_SIZE = 512L * 1024 * 1024;
+
+    private static final int SECTION_HEADER_BLOCK = 0x0A0D0D0A;
+    private static final int INTERFACE_DESCRIPTION_BLOCK = 1;
+    private static final int ENHANCED_PACKET_BLOCK = 6;
+    private static final int BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+    private static final int SECTION_HEADER_BLOCK_SIZE = 28;
+    private static final int ENHANCED_PACKET_BLOCK_OVERHEAD = 32;
+    private static final short OPTION_END = 0;
+    private static final short OPTION_IF_NAME = 2;
+
+    private final Path directory;
+    private final String filePrefix;
+    private final long maxFileSize;
+    private final long maxFileDurationMillis;
+    private final Clock clock;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> interfaceIds = new HashMap<>();
+    private final List<Path> completedFiles = new ArrayList<>();
+    private final Rfc3339Codec timeCodec = new Rfc3339Codec();
+
+    private FileChannel channel;
+    private Path currentFile;
+    private long fileSize;
+    private long fileStartMillis;
+    private long packetsInFile;
+    private int fileSequence = 0;
+    private long packetCount = 0;
+
+    private PcapngExporter(Builder builder) {
+        this.directory = builder.directory;
+        this.filePrefix = builder.filePrefix;
+        this.maxFileSize = builder.maxFileSize;
+        this.maxFileDurationMillis = builder.maxFileDurationMillis;
+        this.clock = builder.clock;
+        this.buffer = ByteBuffer.allocateDirect(builder.bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param directory  The directory to write the files to.
+     * @param filePrefix The start of the file names.
+     */
+    public static Builder newBuilder(Path directory, String filePrefix) {
+        return new Builder(directory, filePrefix);
+    }
+
+    /**
+     * Writes the frame of a GsmSignaling, UmtsNas, WcdmaRrc, LteRrc, LteNas, or WifiOtaRecord record. Other records
+     * and records without a pcapRecord are ignored.
+     */
+    @Override
+    public void accept(Message record) throws IOException {
+        write(record);
+    }
+
+    /**
+     * Writes the frame of a GsmSignaling, UmtsNas, WcdmaRrc, LteRrc, LteNas, or WifiOtaRecord record.
+     *
+     * @return True if a packet was written, false if the record is not one of those types or has no pcapRecord.
+     * @throws IllegalArgumentException If the pcapRecord is too short to hold a pcap record header.
+     */
+    public boolean write(Message record) throws IOException {
+        if (!PcapRecords.hasPcapRecordField(record)) return false;
+        final ByteString pcapRecord = PcapRecords.getPcapRecord(record);
+        if (pcapRecord.isEmpty()) return false;
+        if (pcapRecord.size() < PcapFileWriter.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("A pcap record is at least " + PcapFileWriter.RECORD_HEADER_SIZE
+                    + " bytes, not " + pcapRecord.size());
+        }
+
+        final String channelType = PcapRecords.getChannelType(record);
+        final String interfaceName = channelType == null ? record.getDescriptorForType().getName()
+                : record.getDescriptorForType().getName() + " " + channelType;
+        final ByteString packet = pcapRecord.substring(PcapFileWriter.RECORD_HEADER_SIZE);
+        final int originalLength = Math.max(readIntLittleEndian(pcapRecord, 12), packet.size());
+        final long timestampMicros = timestampMicros(PcapRecords.getDeviceTime(record), pcapRecord);
+
+        final int blockSize = ENHANCED_PACKET_BLOCK_OVERHEAD + padded(packet.size());
+        if (channel == null || shouldRotate(blockSize)) startFile();
+
+        Integer interfaceId = interfaceIds.get(interfaceName);
+        if (interfaceId == null) {
+            interfaceId = interfaceIds.size();
+            writeInterfaceDescriptionBlock(interfaceName, PcapRecords.getLinkType(record));
+            interfaceIds.put(interfaceName, interfaceId);
+        }
+        writeEnhancedPacketBlock(interfaceId, timestampMicros, packet, originalLength, blockSize);
+        packetsInFile++;
+        packetCount++;
+        return true;
+    }
+
+    /**
+     * @return The file being written, or null if no packets have been written since the last file was completed.
+     */
+    public Path getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * @return The files that have been completed, in the order they were written.
+     */
+    public List<Path> getCompletedFiles() {
+        return Collections.unmodifiableList(completedFiles);
+    }
+
+    /**
+     * @return The number of packets written to all the files.
+     */
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * Writes the buffered blocks to the current file.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (channel != null) flushBuffer();
+    }
+
+    /**
+     * Completes the current file.
+     */
+    @Override
+    public void close() throws IOException {
+        finishFile();
+    }
+
+    private boolean shouldRotate(int blockSize) {
+        if (packetsInFile == 0) return false;
+        return fileSize + buffer.position() + blockSize > maxFileSize
+                || clock.millis() - fileStartMillis >= maxFileDurationMillis;
+    }
+
+    private void startFile() throws IOException {
+        finishFile();
+        fileStartMillis = clock.millis();
+        final String name = ExportFileNames.fileName(filePrefix, fileStartMillis, ++fileSequence, "pcapng");
+        currentFile = directory.resolve(name);
+        channel = FileChannel.open(currentFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        fileSize = 0;
+        packetsInFile = 0;
+        interfaceIds.clear();
+
+        buffer.putInt(SECTION_HEADER_BLOCK)
+                .putInt(SECTION_HEADER_BLOCK_SIZE)
+                .putInt(BYTE_ORDER_MAGIC)
+                .putShort((short) 1)
+                .putShort((short) 0)
+                .putLong(-1) // The section length is not known in advance
+                .putInt(SECTION_HEADER_BLOCK_SIZE);
+    }
+
+    private void finishFile() throws IOException {
+        if (channel == null) return;
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+            channel = null;
+            completedFiles.add(currentFile);
+            currentFile = null;
+        }
+    }
+
+    private void writeInterfaceDescriptionBlock(String interfaceName, int linkType) throws IOException {
+        final byte[] name = interfaceName.getBytes(StandardCharsets.UTF_8);
+        final int blockSize = 20 + 4 + padded(name.length) + 4;
+        reserve(blockSize);
+        buffer.putInt(INTERFACE_DESCRIPTION_BLOCK)
+                .putInt(blockSize)
+                .putShort((short) linkType)
+                .putShort((short) 0)
+                .putInt(0) // No snap length limit
+                .putShort(OPTION_IF_NAME)
+                .putShort((short) name.length)
+                .put(name);
+        pad(name.length);
+        buffer.putShort(OPTION_END)
+                .putShort((short) 0)
+                .putInt(blockSize);
+    }
+
+    private void writeEnhancedPacketBlock(int interfaceId, long timestampMicros, ByteString packet, int originalLength,
+                                          int blockSize) throws IOException {
+        reserve(Math.min(blockSize, buffer.capacity()));
+        buffer.putInt(ENHANCED_PACKET_BLOCK)
+                .putInt(blockSize)
+                .putInt(interfaceId)
+                .putInt((int) (timestampMicros >>> 32))
+                .putInt((int) timestampMicros)
+                .putInt(packet.size())
+                .putInt(originalLength);
+        if (padded(packet.size()) + 4 <= buffer.remaining()) {
+            packet.copyTo(buffer);
+        } else {
+            // Too large for the buffer, so the packet is written straight from the byte string's buffers
+            flushBuffer();
+            for (ByteBuffer part : packet.asReadOnlyByteBufferList()) {
+                while (part.hasRemaining()) {
+                    fileSize += channel.write(part);
+                }
+            }
+        }
+        pad(packet.size());
+        buffer.putInt(blockSize);
+    }
+
+    private void reserve(int size) throws IOException {
+        if (size > buffer.remaining()) flushBuffer();
+    }
+
+    private void pad(int length) {
+        for (int i = length; i < padded(length); i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return The deviceTime in microseconds since the epoch, or the timestamp in the pcap record header if the
+     * deviceTime is missing or invalid.
+     */
+    private long timestampMicros(String deviceTime, ByteString pcapRecord) {
+        if (!deviceTime.isEmpty()) {
+            try {
+                return Math.floorDiv(timeCodec.parseEpochNanos(deviceTime), 1000);
+            } catch (DateTimeParseException e) {
+                // Fall back to the pcap record header
+            }
+        }
+        return TimeUnit.SECONDS.toMicros(readIntLittleEndian(pcapRecord, 0) & 0xFFFFFFFFL)
+                + (readIntLittleEndian(pcapRecord, 4) & 0xFFFFFFFFL);
+    }
+
+    private static int readIntLittleEndian(ByteString bytes, int index) {
+        return (bytes.byteAt(index) & 0xFF)
+                | (bytes.byteAt(index + 1) & 0xFF) << 8
+                | (bytes.byteAt(index + 2) & 0xFF) << 16
+                | (bytes.byteAt(index + 3) & 0xFF) << 24;
+    }
+
+    private static int padded(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * Configures a {@link PcapngExporter}. By default a new file is started every 512 MiB, the files are not rotated by
+     * time.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private final String filePrefix;
+        private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+        private long maxFileDurationMillis = Long.MAX_VALUE;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(Path directory, String filePrefix) {
+            if (directory == null || filePrefix == null) throw new NullPointerException("The directory and file prefix are required");
+            this.directory = directory;
+            this.filePrefix = filePrefix;
+        }
+
+        /**
+         * @param maxFileSize The size at which a new file is started. A file always holds at least one packet, so a
+         *                    packet larger than this gets a file of its own.
+         */
+        public Builder setMaxFileSize(long maxFileSize) {
+            if (maxFileSize < 1) throw new IllegalArgumentException("The maximum file size must be at least 1 byte");
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * @param duration How long a file is written to before a new file is started.
+         */
+        public Builder setMaxFileDuration(long duration, TimeUnit unit) {
+            if (duration < 1) throw new IllegalArgumentException("The maximum file duration must be positive");
+            this.maxFileDurationMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * @param bufferSize The size of the buffer the blocks are assembled in before they are written to the file.
+         */
+        public Builder setBufferSize(int bufferSize) {
+            if (bufferSize < 1024) throw new IllegalArgumentException("The buffer size must be at least 1024 bytes");
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * @param clock The clock used to name the files and to rotate them by time.
+         */
+        public Builder setClock(Clock clock) {
+            if (clock == null) throw new NullPointerException("The clock is required");
+            this.clock = clock;
+            return this;
+        }
+
+        public PcapngExporter build() {
+            return new PcapngExporter(this);
+        }
+    }
+}
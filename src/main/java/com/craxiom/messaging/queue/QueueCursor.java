@@ -0,0 +1,97 @@
+package com.craxiom.messaging.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The committed read position of a {@link SurveyRecordQueue}, kept in a small file next to the segments.
+ * <p>
+ * The file has two 24 byte slots that are written in turn, so a write that is torn by a power loss only damages one of
+ * them and the other still holds the previous position. Each slot holds a sequence number, the position, and the
+ * CRC32 of both; the valid slot with the highest sequence number is the current one.
+ */
+final class QueueCursor implements Closeable {
+    static final String FILE_NAME = "cursor";
+    private static final int SLOT_SIZE = 24;
+
+    private final FileChannel channel;
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private long sequence = 0;
+    private long position = -1;
+
+    private QueueCursor(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static QueueCursor open(Path directory) throws IOException {
+        final FileChannel channel = FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final QueueCursor cursor = new QueueCursor(channel);
+            cursor.readSlot(0);
+            cursor.readSlot(SLOT_SIZE);
+            return cursor;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The last position that was written, or -1 if none was.
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Writes the position and forces it out to the storage device.
+     */
+    void write(long position) throws IOException {
+        final long next = sequence + 1;
+        slot.clear();
+        slot.putLong(next).putLong(position).putInt(checksum(next, position)).putInt(0).flip();
+        final long slotOffset = (next & 1) * SLOT_SIZE;
+        while (slot.hasRemaining()) {
+            channel.write(slot, slotOffset + slot.position());
+        }
+        channel.force(false);
+
+        this.sequence = next;
+        this.position = position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readSlot(long slotOffset) throws IOException {
+        slot.clear();
+        while (slot.hasRemaining()) {
+            if (channel.read(slot, slotOffset + slot.position()) < 0) return;
+        }
+
+        final long slotSequence = slot.getLong(0);
+        final long slotPosition = slot.getLong(8);
+        if (slotSequence > sequence && slot.getInt(16) == checksum(slotSequence, slotPosition)) {
+            sequence = slotSequence;
+            position = slotPosition;
+        }
+    }
+
+    private int checksum(long slotSequence, long slotPosition) {
+        final ByteBuffer values = ByteBuffer.allocate(16).putLong(slotSequence).putLong(slotPosition);
+        values.flip();
+        crc.reset();
+        crc.update(values);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,287 @@
+package com.craxiom.messaging.queue;
+
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped segment file of a {@link SurveyRecordQueue}. A segment is mapped at its full size when it is
+ * created and is filled with entries from the front, so the unwritten rest of the file is zero.
+ * <p>
+ * The file starts with an 8 byte header: the "NSMQ" magic, the format version, and 3 reserved bytes. It is followed by
+ * the entries, each of which is
+ * <ul>
+ * <li>the length of the type byte and the record bytes, a 4 byte big-endian integer, so never zero even for a record
+ * with every field at its default value</li>
+ * <li>the CRC32 of the length, the type byte, and the record bytes</li>
+ * <li>the {@link SurveyRecordType} byte</li>
+ * <li>the serialized record</li>
+ * </ul>
+ * A length of zero, or less than a full entry header left in the file, marks the end of the entries.
+ */
+final class QueueSegment implements Closeable {
+    static final byte[] MAGIC = "NSMQ".getBytes(StandardCharsets.US_ASCII);
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_HEADER_SIZE = 9;
+    private static final String SUFFIX = ".nsmq";
+
+    private final long index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    private int writeOffset;
+    private boolean dirty;
+
+    private QueueSegment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Path pathOf(Path directory, long index) {
+        return directory.resolve(String.format("%020d%s", index, SUFFIX));
+    }
+
+    /**
+     * @return The index of the segment file, or -1 if the file is not a segment.
+     */
+    static long indexOf(Path path) {
+        final String name = path.getFileName().toString();
+        if (name.length() != 20 + SUFFIX.length() || !name.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(0, 20));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates a new, empty segment file of the given size.
+     */
+    static QueueSegment create(Path directory, long index, int capacity) throws IOException {
+        final Path path = pathOf(directory, index);
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            // Mapping past the end of the file extends it, which leaves a sparse file on most file systems
+            final QueueSegment segment = new QueueSegment(index, path, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            segment.buffer.put(0, MAGIC[0]).put(1, MAGIC[1]).put(2, MAGIC[2]).put(3, MAGIC[3]).put(4, VERSION);
+            // The header reaches the device before any entry, so a segment without one holds no entries
+            segment.buffer.force();
+            channel.force(true);
+            segment.writeOffset = HEADER_SIZE;
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the last segment of the queue, which is appended to, and recovers it (see
+     * {@link #open(Path, long, boolean)}). If the file is shorter than the header or its header is all zeros, it was
+     * being created when a crash or power loss happened, so it is replaced with a new, empty segment.
+     *
+     * @param capacity The size of the new segment, if one is created.
+     */
+    static QueueSegment openLast(Path directory, long index, int capacity) throws IOException {
+        final Path path = pathOf(directory, index);
+        if (!hasHeader(path)) {
+            Files.delete(path);
+            return create(directory, index, capacity);
+        }
+        return open(directory, index, true);
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @param recover True for the last segment of the queue, which is appended to. Its entries are checked up to the
+     *                first one that is incomplete or fails its CRC, which is where a crash or power loss stopped
+     *                writing, and anything after that point is cleared.
+     */
+    static QueueSegment open(Path directory, long index, boolean recover) throws IOException {
+        final Path path = pathOf(directory, index);
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long size = channel.size();
+            if (size < HEADER_SIZE + ENTRY_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("The file " + path + " is not a survey record queue segment");
+            }
+
+            final QueueSegment segment = new QueueSegment(index, path, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            final byte[] header = new byte[MAGIC.length];
+            segment.buffer.duplicate().get(header);
+            if (!Arrays.equals(header, MAGIC)) {
+                throw new IOException("The file " + path + " is not a survey record queue segment");
+            }
+            if (segment.buffer.get(MAGIC.length) != VERSION) {
+                throw new IOException("Unsupported survey record queue version " + segment.buffer.get(MAGIC.length)
+                        + " in " + path);
+            }
+
+            if (recover) segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The offset after the last entry. Only maintained for the segment that is appended to.
+     */
+    int getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * Writes an entry after the last one.
+     *
+     * @param size The serialized size of the record.
+     * @return False if the entry does not fit in the rest of the segment.
+     */
+    boolean append(SurveyRecordType type, Message record, int size) throws IOException {
+        final int offset = writeOffset;
+        if (ENTRY_HEADER_SIZE + size > buffer.capacity() - offset) return false;
+
+        final ByteBuffer target = buffer.duplicate();
+        target.limit(offset + ENTRY_HEADER_SIZE + size).position(offset + ENTRY_HEADER_SIZE);
+        final CodedOutputStream output = CodedOutputStream.newInstance(target);
+        record.writeTo(output);
+        output.flush();
+        output.checkNoSpaceLeft();
+
+        // The length goes in last, so a reader never sees the entry before the rest of it has been written
+        buffer.put(offset + 8, (byte) type.getTypeByte());
+        buffer.putInt(offset + 4, checksum(offset, size + 1));
+        buffer.putInt(offset, size + 1);
+        writeOffset = offset + ENTRY_HEADER_SIZE + size;
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * @return The total size of the entry at the offset, 0 if the entries end at the offset, or -1 if the length of the
+     * entry is not valid.
+     */
+    int entrySize(int offset) {
+        if (offset > buffer.capacity() - ENTRY_HEADER_SIZE) return 0;
+        final int length = buffer.getInt(offset);
+        if (length == 0) return 0;
+        if (length < 0 || length > buffer.capacity() - offset - 8) return -1;
+        return 8 + length;
+    }
+
+    /**
+     * Reads the record of the entry at the offset.
+     *
+     * @param entrySize The size returned by {@link #entrySize(int)}.
+     * @throws IOException If the entry is corrupt.
+     */
+    Message read(int offset, int entrySize) throws IOException {
+        if (entrySize <= 0 || buffer.getInt(offset + 4) != checksum(offset, entrySize - 8)) {
+            throw new IOException("Corrupt record at offset " + offset + " of " + path);
+        }
+
+        final SurveyRecordType type = SurveyRecordType.forTypeByte(buffer.get(offset + 8));
+        if (type == null) {
+            throw new IOException("Unknown record type " + buffer.get(offset + 8) + " at offset " + offset + " of "
+                    + path);
+        }
+
+        final ByteBuffer data = buffer.duplicate();
+        data.limit(offset + entrySize).position(offset + ENTRY_HEADER_SIZE);
+        return type.getParser().parseFrom(data);
+    }
+
+    /**
+     * Writes the changes to the mapped file out to the storage device.
+     */
+    void force() {
+        if (!dirty) return;
+        buffer.force();
+        dirty = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void recover() {
+        int offset = HEADER_SIZE;
+        while (true) {
+            final int size = entrySize(offset);
+            if (size <= 0 || buffer.getInt(offset + 4) != checksum(offset, size - 8)) break;
+            offset += size;
+        }
+        writeOffset = offset;
+
+        // Pages can reach the device out of order when the power is lost, so a torn entry may be followed by entries
+        // that made it. They are cleared so they can not be mistaken for entries that are appended after them later.
+        for (int i = offset; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                for (int j = i; j < buffer.capacity(); j++) {
+                    buffer.put(j, (byte) 0);
+                }
+                dirty = true;
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return False if the file is shorter than the header or its header is all zeros.
+     */
+    private static boolean hasHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) == -1) return false;
+            }
+            for (int i = 0; i < HEADER_SIZE; i++) {
+                if (header.get(i) != 0) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param length The length field of the entry.
+     */
+    private int checksum(int offset, int length) {
+        crc.reset();
+        crc.update(length >>> 24);
+        crc.update(length >>> 16);
+        crc.update(length >>> 8);
+        crc.update(length);
+        final ByteBuffer data = buffer.duplicate();
+        data.limit(offset + 8 + length).position(offset + 8);
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
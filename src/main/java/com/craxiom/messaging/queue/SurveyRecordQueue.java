@@ -0,0 +1,449 @@
+package com.craxiom.messaging.queue;
+
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A disk backed first in, first out queue of survey records, for holding the records on the device while the uplink
+ * to the server is down. Unlike an in memory buffer, the queue can hold hours of records without touching the heap, and
+ * the records that have not been sent survive a restart of the app or the device.
+ * <p>
+ * The records are appended to memory-mapped segment files in a directory, which are created at a fixed size (64 MiB
+ * by default) and filled from the front, so writing a record is a copy into the page cache rather than a system call.
+ * Every entry carries a CRC32, and when the queue is opened the entries of the last segment are checked to find where
+ * a crash or power loss stopped writing. The changes are only forced out to the storage device by {@link #sync()},
+ * which is called automatically after a number of records or an amount of time (see
+ * {@link Builder#setSyncPolicy(int, long, TimeUnit)}), so the flash is written in large batches instead of once per
+ * record. Records appended after the last sync can be lost if the power is lost, but not if only the app crashes.
+ * <p>
+ * Records are taken off the queue in two steps. {@link #read()} returns the next record and moves the read position
+ * past it, and {@link #commit()} marks everything read so far as done, once the server has acknowledged it. The
+ * committed position is saved in a cursor file next to the segments, and a reopened queue starts reading from there,
+ * so records that were read but not committed are read again. A segment file is deleted once every record in it has
+ * been committed.
+ * <pre>{@code
+ * try (SurveyRecordQueue queue = SurveyRecordQueue.open(Paths.get("/sdcard/survey-queue"))) {
+ *     queue.append(lteRecord);
+ *     ...
+ *     Message record;
+ *     while ((record = queue.read()) != null) {
+ *         send(record);
+ *     }
+ *     // Once the server has acknowledged the records
+ *     queue.commit();
+ * }
+ * }</pre>
+ * Use a {@code com.craxiom.messaging.grpc.client.QueueForwarder} to send the records to the WirelessSurvey service
+ * and commit them as they are acknowledged.
+ * <p>
+ * This class is thread safe, but there should only be one reader. Only one queue can be open on a directory at a time.
+ * As with any memory mapped file, the mappings are only released once the buffers are garbage collected, so on
+ * Windows a consumed segment file may only be deleted by a later sync.
+ */
+public final class SurveyRecordQueue implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SYNC_RECORD_COUNT = 1000;
+    public static final long DEFAULT_SYNC_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final int MIN_SEGMENT_SIZE = 4096;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int syncRecordCount;
+    private final long syncIntervalNanos;
+    private final QueueCursor cursor;
+
+    private QueueSegment writeSegment;
+    private QueueSegment readSegment;
+    private long firstSegmentIndex;
+    private long readPosition;
+    private long committedPosition;
+    private long syncedPosition;
+    private int unsyncedCount = 0;
+    private long lastSyncNanos = System.nanoTime();
+    private long appendedCount = 0;
+    private boolean closed = false;
+
+    private SurveyRecordQueue(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.syncRecordCount = builder.syncRecordCount;
+        this.syncIntervalNanos = builder.syncIntervalNanos;
+
+        Files.createDirectories(directory);
+        cursor = QueueCursor.open(directory);
+        try {
+            final List<Long> indexes = listSegments(directory);
+            final long cursorPosition = cursor.getPosition();
+            if (indexes.isEmpty()) {
+                firstSegmentIndex = cursorPosition < 0 ? 0 : segmentOf(cursorPosition);
+                writeSegment = QueueSegment.create(directory, firstSegmentIndex, segmentSize);
+            } else {
+                firstSegmentIndex = indexes.get(0);
+                final long lastIndex = indexes.get(indexes.size() - 1);
+                if (lastIndex - firstSegmentIndex + 1 != indexes.size()) {
+                    throw new IOException("Segment files are missing between " + firstSegmentIndex + " and "
+                            + lastIndex + " in " + directory);
+                }
+                writeSegment = QueueSegment.openLast(directory, lastIndex, segmentSize);
+            }
+            readSegment = writeSegment;
+
+            long position = cursorPosition;
+            if (position < 0 || segmentOf(position) < firstSegmentIndex) {
+                position = position(firstSegmentIndex, QueueSegment.HEADER_SIZE);
+            } else if (position > writePosition()) {
+                // The entries past the cursor were lost, which can only happen if the segments were tampered with
+                position = writePosition();
+            }
+            readPosition = committedPosition = syncedPosition = position;
+            deleteSegmentsBefore(segmentOf(position));
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the queue in the directory with the default settings, creating it if it does not exist yet.
+     */
+    public static SurveyRecordQueue open(Path directory) throws IOException {
+        return newBuilder(directory).open();
+    }
+
+    /**
+     * @param directory The directory for the segment and cursor files, which is created if it does not exist.
+     */
+    public static Builder newBuilder(Path directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * Adds a record to the end of the queue.
+     *
+     * @param record One of the survey records (see {@link SurveyRecordType}).
+     * @throws IllegalArgumentException If the message is not one of the survey records, or is too large to fit in a
+     *                                  segment.
+     */
+    public synchronized void append(Message record) throws IOException {
+        checkOpen();
+        final SurveyRecordType type = SurveyRecordType.forRecord(record);
+        final int size = record.getSerializedSize();
+        if (size > segmentSize - QueueSegment.HEADER_SIZE - QueueSegment.ENTRY_HEADER_SIZE) {
+            throw new IllegalArgumentException("The " + size + " byte record does not fit in a " + segmentSize
+                    + " byte segment");
+        }
+
+        if (!writeSegment.append(type, record, size)) {
+            startNextSegment();
+            writeSegment.append(type, record, size);
+        }
+
+        appendedCount++;
+        unsyncedCount++;
+        notifyAll();
+        syncIfDue();
+    }
+
+    /**
+     * Reads the record at the read position and moves the read position past it. The record stays in the queue until
+     * it is committed.
+     *
+     * @return The record, or null if every record in the queue has been read.
+     * @throws IOException If the record is corrupt, see {@link #skipSegment()}.
+     */
+    public synchronized Message read() throws IOException {
+        checkOpen();
+        if (!advance()) return null;
+
+        final int offset = offsetOf(readPosition);
+        final int entrySize = readSegment.entrySize(offset);
+        final Message record = readSegment.read(offset, entrySize);
+        readPosition += entrySize;
+        return record;
+    }
+
+    /**
+     * Waits until there is a record to read.
+     *
+     * @return True if there is a record to read, false if the time ran out or the queue was closed.
+     */
+    public synchronized boolean awaitRecords(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long remaining = unit.toNanos(timeout);
+        while (isEmpty() && !closed && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return !closed && !isEmpty();
+    }
+
+    /**
+     * Marks every record that has been read as done.
+     */
+    public synchronized void commit() throws IOException {
+        commit(readPosition);
+    }
+
+    /**
+     * Marks the records up to a position as done. The committed records are never read again, and are removed from
+     * the disk once a whole segment has been committed and the position has been synced.
+     *
+     * @param position A read position returned by {@link #getReadPosition()}.
+     * @throws IllegalArgumentException If the position is before the committed position or after the read position.
+     */
+    public synchronized void commit(long position) throws IOException {
+        checkOpen();
+        if (position < committedPosition || position > readPosition) {
+            throw new IllegalArgumentException("The position " + positionString(position)
+                    + " is not between the committed position " + positionString(committedPosition)
+                    + " and the read position " + positionString(readPosition));
+        }
+
+        committedPosition = position;
+        syncIfDue();
+    }
+
+    /**
+     * Moves the read position back to the committed position, so the records that were read but not committed are
+     * read again. This is what a reader does after its connection to the server was lost.
+     */
+    public synchronized void rewind() {
+        readPosition = committedPosition;
+    }
+
+    /**
+     * Skips the rest of the segment at the read position, for when {@link #read()} fails because a record is corrupt.
+     * The records after the corrupt one in the same segment are lost.
+     */
+    public synchronized void skipSegment() throws IOException {
+        checkOpen();
+        final long index = segmentOf(readPosition);
+        readPosition = index == writeSegment.getIndex() ? writePosition()
+                : position(index + 1, QueueSegment.HEADER_SIZE);
+    }
+
+    /**
+     * Forces the appended records and the committed position out to the storage device, and deletes the segment files
+     * that have been fully committed.
+     */
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        writeSegment.force();
+        if (syncedPosition != committedPosition) {
+            cursor.write(committedPosition);
+            syncedPosition = committedPosition;
+            deleteSegmentsBefore(segmentOf(committedPosition));
+        }
+        unsyncedCount = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * @return True if every record in the queue has been read.
+     */
+    public synchronized boolean isEmpty() {
+        return readPosition >= writePosition();
+    }
+
+    /**
+     * @return The position after the last record read, which can be passed to {@link #commit(long)}. Positions
+     * increase as records are read, but are otherwise opaque.
+     */
+    public synchronized long getReadPosition() {
+        return readPosition;
+    }
+
+    /**
+     * @return The position after the last committed record.
+     */
+    public synchronized long getCommittedPosition() {
+        return committedPosition;
+    }
+
+    /**
+     * @return The number of records appended since the queue was opened.
+     */
+    public synchronized long getAppendedCount() {
+        return appendedCount;
+    }
+
+    /**
+     * @return The number of segment files on the disk.
+     */
+    public synchronized int getSegmentCount() {
+        return (int) (writeSegment.getIndex() - firstSegmentIndex + 1);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Syncs the queue and closes its files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            sync();
+        } finally {
+            closed = true;
+            notifyAll();
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Moves the read position past the end of any finished segments, opening the segment it ends up in.
+     *
+     * @return True if there is an entry at the read position.
+     */
+    private boolean advance() throws IOException {
+        while (true) {
+            final long index = segmentOf(readPosition);
+            if (index == writeSegment.getIndex()) {
+                setReadSegment(writeSegment);
+                return offsetOf(readPosition) < writeSegment.getWriteOffset();
+            }
+
+            if (readSegment.getIndex() != index) setReadSegment(QueueSegment.open(directory, index, false));
+            if (readSegment.entrySize(offsetOf(readPosition)) != 0) return true;
+            readPosition = position(index + 1, QueueSegment.HEADER_SIZE);
+        }
+    }
+
+    private void setReadSegment(QueueSegment segment) throws IOException {
+        if (segment == readSegment) return;
+        if (readSegment != writeSegment) readSegment.close();
+        readSegment = segment;
+    }
+
+    private void startNextSegment() throws IOException {
+        final QueueSegment previous = writeSegment;
+        previous.force();
+        writeSegment = QueueSegment.create(directory, previous.getIndex() + 1, segmentSize);
+        if (readSegment != previous) previous.close();
+    }
+
+    private void syncIfDue() throws IOException {
+        if (unsyncedCount >= syncRecordCount || System.nanoTime() - lastSyncNanos >= syncIntervalNanos) sync();
+    }
+
+    /**
+     * Deletes the segment files before the index. A file that can not be deleted yet is left for a later sync.
+     */
+    private void deleteSegmentsBefore(long index) {
+        while (firstSegmentIndex < index) {
+            try {
+                Files.deleteIfExists(QueueSegment.pathOf(directory, firstSegmentIndex));
+            } catch (IOException e) {
+                return;
+            }
+            firstSegmentIndex++;
+        }
+    }
+
+    private long writePosition() {
+        return position(writeSegment.getIndex(), writeSegment.getWriteOffset());
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) throw new IOException("The survey record queue in " + directory + " has been closed");
+    }
+
+    private void closeQuietly() {
+        for (Closeable closeable : new Closeable[]{readSegment != writeSegment ? readSegment : null, writeSegment,
+                cursor}) {
+            try {
+                if (closeable != null) closeable.close();
+            } catch (IOException ignored) {
+                // Nothing more can be done with a file that fails to close
+            }
+        }
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        final List<Long> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                final long index = QueueSegment.indexOf(path);
+                if (index >= 0) indexes.add(index);
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private static long position(long segmentIndex, int offset) {
+        return segmentIndex << 32 | offset;
+    }
+
+    private static long segmentOf(long position) {
+        return position >>> 32;
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private static String positionString(long position) {
+        return segmentOf(position) + ":" + offsetOf(position);
+    }
+
+    public static final class Builder {
+        private final Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private int syncRecordCount = DEFAULT_SYNC_RECORD_COUNT;
+        private long syncIntervalNanos = DEFAULT_SYNC_INTERVAL_NANOS;
+
+        private Builder(Path directory) {
+            if (directory == null) throw new NullPointerException("The directory can not be null");
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the size of new segment files, 64 MiB by default. A record must fit in one segment. Existing segments
+         * keep the size they were created with.
+         */
+        public Builder setSegmentSize(int segmentSize) {
+            if (segmentSize < MIN_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("The segment size must be at least " + MIN_SEGMENT_SIZE + " bytes");
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets how often the queue is synced to the storage device: once the given number of records have been
+         * appended, or once the interval has passed since the last sync, whichever comes first. The interval is
+         * checked when records are appended or committed, so call {@link SurveyRecordQueue#sync()} at the end of a burst of records
+         * that should not wait for the next one. Defaults to 1000 records or 1 second.
+         */
+        public Builder setSyncPolicy(int recordCount, long interval, TimeUnit unit) {
+            if (recordCount < 1) throw new IllegalArgumentException("The sync record count must be at least 1");
+            if (interval < 0) throw new IllegalArgumentException("The sync interval can not be negative");
+            this.syncRecordCount = recordCount;
+            this.syncIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Opens the queue, creating it if the directory does not hold one yet.
+         *
+         * @throws IOException If the files in the directory are not a valid queue.
+         */
+        public SurveyRecordQueue open() throws IOException {
+            return new SurveyRecordQueue(this);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.craxiom.messaging.time;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Names the files that the exporters rotate through after the UTC time each file was started and a sequence number,
+ * e.g. {@code survey_LteRecord_20241017T140000Z_0001.arrow}, so that the files of a survey sort in the order they were
+ * written.
+ */
+public final class ExportFileNames {
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private ExportFileNames() {
+    }
+
+    /**
+     * @param prefix      The start of the name, e.g. survey_LteRecord.
+     * @param startMillis The time the file was started, in milliseconds since the epoch.
+     * @param sequence    The number of the file among those written by the exporter, starting at 1.
+     * @param extension   The file extension without the dot, e.g. arrow.
+     */
+    public static String fileName(String prefix, long startMillis, int sequence, String extension) {
+        return String.format("%s_%s_%04d.%s", prefix, FILE_TIME_FORMAT.format(Instant.ofEpochMilli(startMillis)),
+                sequence, extension);
+    }
+}
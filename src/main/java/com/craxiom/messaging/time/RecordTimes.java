@@ -0,0 +1,65 @@
+package com.craxiom.messaging.time;
+
+import com.craxiom.messaging.SurveyRecordHeader;
+
+/**
+ * Converts the deviceTime of the survey records to epoch nanoseconds or milliseconds with a {@link Rfc3339Codec}, for
+ * sorting, windowing, or bucketing records without {@link java.time.OffsetDateTime#parse(CharSequence)}.
+ * <pre>{@code
+ * final long time = RecordTimes.epochMillis(lteRecord.getData());
+ * }</pre>
+ * Each thread gets its own codec, so the date and offset caches work best when the records from one device are
+ * handled on the same thread. The methods throw a {@link java.time.format.DateTimeParseException} if the deviceTime
+ * is missing or is not a valid RFC 3339 timestamp.
+ */
+public final class RecordTimes {
+    private static final ThreadLocal<Rfc3339Codec> CODECS = ThreadLocal.withInitial(Rfc3339Codec::new);
+
+    private RecordTimes() {
+    }
+
+    /**
+     * @return The codec for the calling thread.
+     */
+    public static Rfc3339Codec codec() {
+        return CODECS.get();
+    }
+
+    /**
+     * @param deviceTime An RFC 3339 timestamp, e.g. "1996-12-19T16:39:57-08:00".
+     * @return The timestamp in nanoseconds since the epoch.
+     */
+    public static long epochNanos(CharSequence deviceTime) {
+        return CODECS.get().parseEpochNanos(deviceTime);
+    }
+
+    /**
+     * @param deviceTime An RFC 3339 timestamp, e.g. "1996-12-19T16:39:57-08:00".
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public static long epochMillis(CharSequence deviceTime) {
+        return CODECS.get().parseEpochMillis(deviceTime);
+    }
+
+    /**
+     * @return The time formatted as a deviceTime, in the given UTC offset.
+     * @see Rfc3339Codec#format(long, int)
+     */
+    public static String toDeviceTime(long epochNanos, int offsetSeconds) {
+        return CODECS.get().format(epochNanos, offsetSeconds);
+    }
+
+    /**
+     * @return The deviceTime of the record data (or its builder) in nanoseconds since the epoch.
+     */
+    public static long epochNanos(SurveyRecordHeader data) {
+        return epochNanos(data.getDeviceTime());
+    }
+
+    /**
+     * @return The deviceTime of the record data (or its builder) in milliseconds since the epoch.
+     */
+    public static long epochMillis(SurveyRecordHeader data) {
+        return epochMillis(data.getDeviceTime());
+    }
+}
@@ -0,0 +1,320 @@
+package com.craxiom.messaging.time;
+
+import java.time.format.DateTimeParseException;
+
+/**
+ * Converts RFC 3339 timestamps, the format of the deviceTime field (e.g. "1996-12-19T16:39:57.123-08:00"), to and from
+ * nanoseconds since the epoch without allocating.
+ * <p>
+ * {@link java.time.OffsetDateTime#parse(CharSequence)} is general purpose: it builds a parsed field map, resolves it,
+ * and creates several objects for every timestamp. The records of a stream almost always share the same date and UTC
+ * offset, so this codec parses the fixed RFC 3339 layout directly and caches the date and offset of the last
+ * timestamp. A timestamp with the same date and offset as the previous one only has its time of day parsed.
+ * <p>
+ * The parser accepts what RFC 3339 allows: a "T", "t" or space between the date and time, any number of fraction
+ * digits (digits past nanoseconds are ignored), "Z" or "z" for UTC, and a leap second, which is treated as the first
+ * second of the next minute. The timestamps must fall between the years 1678 and 2261, the range of a long of
+ * nanoseconds.
+ * <p>
+ * An instance holds the caches and is not thread safe; {@link RecordTimes} keeps one per thread.
+ */
+public final class Rfc3339Codec {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final int DATE_LENGTH = 10;
+    private static final int MIN_LENGTH = 20; // yyyy-MM-ddTHH:mm:ssZ
+
+    private final char[] cachedDate = new char[DATE_LENGTH];
+    private long cachedEpochDay;
+    private boolean dateCached = false;
+
+    private final char[] cachedOffset = new char[6];
+    private int cachedOffsetSeconds;
+    private boolean offsetCached = false;
+    private int lastOffsetSeconds = 0;
+
+    private long formatEpochDay = Long.MIN_VALUE;
+    private final char[] formatDate = new char[DATE_LENGTH];
+    private int formatOffsetSeconds = Integer.MIN_VALUE;
+    private final char[] formatOffset = new char[6];
+    private int formatOffsetLength;
+
+    /**
+     * @return The timestamp in nanoseconds since the epoch.
+     * @throws DateTimeParseException If the timestamp is not a valid RFC 3339 timestamp.
+     */
+    public long parseEpochNanos(CharSequence timestamp) {
+        final int length = timestamp.length();
+        if (length < MIN_LENGTH) throw error("Timestamp is too short", timestamp, length);
+
+        final long epochDay = parseDate(timestamp);
+        final char separator = timestamp.charAt(DATE_LENGTH);
+        if (separator != 'T' && separator != 't' && separator != ' ') throw error("Expected 'T'", timestamp, DATE_LENGTH);
+
+        final int hour = digits2(timestamp, 11);
+        expect(timestamp, 13, ':');
+        final int minute = digits2(timestamp, 14);
+        expect(timestamp, 16, ':');
+        final int second = digits2(timestamp, 17);
+        if (hour > 23) throw error("Invalid hour", timestamp, 11);
+        if (minute > 59) throw error("Invalid minute", timestamp, 14);
+        if (second > 60) throw error("Invalid second", timestamp, 17);
+
+        int index = 19;
+        long nanos = 0;
+        if (timestamp.charAt(index) == '.') {
+            index++;
+            final int fractionStart = index;
+            long scale = 100_000_000L;
+            while (index < length) {
+                final int digit = timestamp.charAt(index) - '0';
+                if (digit < 0 || digit > 9) break;
+                nanos += digit * scale;
+                scale /= 10;
+                index++;
+            }
+            if (index == fractionStart) throw error("Expected a fraction digit", timestamp, index);
+        }
+
+        final int offsetSeconds = parseOffset(timestamp, index);
+        lastOffsetSeconds = offsetSeconds;
+        final long epochSecond = epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second - offsetSeconds;
+        if (epochSecond > Long.MAX_VALUE / NANOS_PER_SECOND - 1 || epochSecond < Long.MIN_VALUE / NANOS_PER_SECOND + 1) {
+            throw error("Timestamp is outside the range of epoch nanoseconds", timestamp, 0);
+        }
+        return epochSecond * NANOS_PER_SECOND + nanos;
+    }
+
+    /**
+     * @return The timestamp in milliseconds since the epoch, with any smaller fraction of a second truncated.
+     * @throws DateTimeParseException If the timestamp is not a valid RFC 3339 timestamp.
+     */
+    public long parseEpochMillis(CharSequence timestamp) {
+        return Math.floorDiv(parseEpochNanos(timestamp), 1_000_000L);
+    }
+
+    /**
+     * @return The UTC offset, in seconds, of the last timestamp that was parsed.
+     */
+    public int getLastOffsetSeconds() {
+        return lastOffsetSeconds;
+    }
+
+    /**
+     * @param epochNanos    The time in nanoseconds since the epoch.
+     * @param offsetSeconds The UTC offset to format the time in, which must be a whole number of minutes.
+     * @return The RFC 3339 timestamp, with as many fraction digits as needed for milli, micro, or nanosecond precision.
+     */
+    public String format(long epochNanos, int offsetSeconds) {
+        final StringBuilder builder = new StringBuilder(35);
+        formatTo(builder, epochNanos, offsetSeconds);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the RFC 3339 timestamp to the builder, which does not allocate if the builder has room for it.
+     *
+     * @see #format(long, int)
+     */
+    public void formatTo(StringBuilder builder, long epochNanos, int offsetSeconds) {
+        if (offsetSeconds % 60 != 0 || Math.abs(offsetSeconds) > 24 * 3600 - 60) {
+            throw new IllegalArgumentException("Invalid UTC offset of " + offsetSeconds + " seconds");
+        }
+
+        final long localSeconds = Math.floorDiv(epochNanos, NANOS_PER_SECOND) + offsetSeconds;
+        final int nanos = (int) Math.floorMod(epochNanos, NANOS_PER_SECOND);
+        final long epochDay = Math.floorDiv(localSeconds, SECONDS_PER_DAY);
+        final int secondOfDay = (int) Math.floorMod(localSeconds, SECONDS_PER_DAY);
+
+        if (epochDay != formatEpochDay) {
+            formatDate(epochDay);
+            formatEpochDay = epochDay;
+        }
+        builder.append(formatDate).append('T');
+        append2(builder, secondOfDay / 3600);
+        builder.append(':');
+        append2(builder, secondOfDay / 60 % 60);
+        builder.append(':');
+        append2(builder, secondOfDay % 60);
+
+        if (nanos != 0) {
+            builder.append('.');
+            int value = nanos;
+            int digits = 9;
+            if (value % 1_000_000 == 0) {
+                value /= 1_000_000;
+                digits = 3;
+            } else if (value % 1_000 == 0) {
+                value /= 1_000;
+                digits = 6;
+            }
+            for (int divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+                builder.append((char) ('0' + value / divisor % 10));
+            }
+        }
+
+        if (offsetSeconds != formatOffsetSeconds) {
+            formatOffset(offsetSeconds);
+            formatOffsetSeconds = offsetSeconds;
+        }
+        builder.append(formatOffset, 0, formatOffsetLength);
+    }
+
+    private long parseDate(CharSequence timestamp) {
+        if (dateCached) {
+            boolean same = true;
+            for (int i = 0; i < DATE_LENGTH; i++) {
+                if (timestamp.charAt(i) != cachedDate[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) return cachedEpochDay;
+        }
+
+        final int year = digits2(timestamp, 0) * 100 + digits2(timestamp, 2);
+        expect(timestamp, 4, '-');
+        final int month = digits2(timestamp, 5);
+        expect(timestamp, 7, '-');
+        final int day = digits2(timestamp, 8);
+        if (month < 1 || month > 12) throw error("Invalid month", timestamp, 5);
+        if (day < 1 || day > lengthOfMonth(year, month)) throw error("Invalid day of the month", timestamp, 8);
+
+        final long epochDay = epochDay(year, month, day);
+        for (int i = 0; i < DATE_LENGTH; i++) {
+            cachedDate[i] = timestamp.charAt(i);
+        }
+        cachedEpochDay = epochDay;
+        dateCached = true;
+        return epochDay;
+    }
+
+    private int parseOffset(CharSequence timestamp, int index) {
+        final int length = timestamp.length();
+        if (index >= length) throw error("Expected a UTC offset", timestamp, index);
+        final char sign = timestamp.charAt(index);
+        if (sign == 'Z' || sign == 'z') {
+            if (index + 1 != length) throw error("Unexpected text after the UTC offset", timestamp, index + 1);
+            return 0;
+        }
+        if (sign != '+' && sign != '-') throw error("Expected a UTC offset", timestamp, index);
+        if (index + 6 != length) throw error("Invalid UTC offset", timestamp, index);
+
+        if (offsetCached) {
+            boolean same = true;
+            for (int i = 0; i < 6; i++) {
+                if (timestamp.charAt(index + i) != cachedOffset[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) return cachedOffsetSeconds;
+        }
+
+        final int hours = digits2(timestamp, index + 1);
+        expect(timestamp, index + 3, ':');
+        final int minutes = digits2(timestamp, index + 4);
+        if (hours > 23 || minutes > 59) throw error("Invalid UTC offset", timestamp, index);
+        final int offsetSeconds = (sign == '-' ? -1 : 1) * (hours * 3600 + minutes * 60);
+
+        for (int i = 0; i < 6; i++) {
+            cachedOffset[i] = timestamp.charAt(index + i);
+        }
+        cachedOffsetSeconds = offsetSeconds;
+        offsetCached = true;
+        return offsetSeconds;
+    }
+
+    private void formatDate(long epochDay) {
+        // Converts the day to a civil date, see http://howardhinnant.github.io/date_algorithms.html
+        final long shifted = epochDay + 719_468;
+        final long era = Math.floorDiv(shifted, 146_097);
+        final long dayOfEra = shifted - era * 146_097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long monthIndex = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        final int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        final int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        formatDate[0] = (char) ('0' + year / 1000 % 10);
+        formatDate[1] = (char) ('0' + year / 100 % 10);
+        formatDate[2] = (char) ('0' + year / 10 % 10);
+        formatDate[3] = (char) ('0' + year % 10);
+        formatDate[4] = '-';
+        formatDate[5] = (char) ('0' + month / 10);
+        formatDate[6] = (char) ('0' + month % 10);
+        formatDate[7] = '-';
+        formatDate[8] = (char) ('0' + day / 10);
+        formatDate[9] = (char) ('0' + day % 10);
+    }
+
+    private void formatOffset(int offsetSeconds) {
+        if (offsetSeconds == 0) {
+            formatOffset[0] = 'Z';
+            formatOffsetLength = 1;
+            return;
+        }
+        final int minutes = Math.abs(offsetSeconds) / 60;
+        formatOffset[0] = offsetSeconds < 0 ? '-' : '+';
+        formatOffset[1] = (char) ('0' + minutes / 600);
+        formatOffset[2] = (char) ('0' + minutes / 60 % 10);
+        formatOffset[3] = ':';
+        formatOffset[4] = (char) ('0' + minutes % 60 / 10);
+        formatOffset[5] = (char) ('0' + minutes % 10);
+        formatOffsetLength = 6;
+    }
+
+    /**
+     * @return The number of days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+     */
+    private static long epochDay(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits2(CharSequence timestamp, int index) {
+        final int tens = timestamp.charAt(index) - '0';
+        final int ones = timestamp.charAt(index + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) throw error("Expected a digit", timestamp, index);
+        return tens * 10 + ones;
+    }
+
+    private static void expect(CharSequence timestamp, int index, char expected) {
+        if (timestamp.charAt(index) != expected) throw error("Expected '" + expected + "'", timestamp, index);
+    }
+
+    private static void append2(StringBuilder builder, int value) {
+        builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static int pow10(int exponent) {
+        int value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private static DateTimeParseException error(String message, CharSequence timestamp, int index) {
+        return new DateTimeParseException(message + " at index " + index + " of '" + timestamp + "'", timestamp, index);
+    }
+}
@@ -0,0 +1,212 @@
+package com.craxiom.messaging;
+
+import com.craxiom.messaging.json.*;
+import com.craxiom.messaging.phonestate.Domain;
+import com.craxiom.messaging.wifi.AkmSuite;
+import com.craxiom.messaging.wifi.CipherSuite;
+import com.google.protobuf.*;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the generated JSON codecs. The codecs must produce exactly the same JSON as the protobuf {@link JsonFormat}
+ * printer configured in {@link JsonConversionTest}, and must parse that JSON back to an equal message.
+ */
+public class JsonCodecTest {
+    private static final int RANDOM_RECORDS_PER_TYPE = 200;
+
+    private final JsonFormat.Printer jsonFormatter = JsonFormat.printer().omittingInsignificantWhitespace();
+    private final JsonFormat.Parser jsonParser = JsonFormat.parser();
+
+    /**
+     * Every record type along with its generated codec.
+     */
+    private static final List<CodecCase<?>> CODECS = Arrays.asList(
+            new CodecCase<>(GsmRecord.getDefaultInstance(), GsmRecordJsonCodec.INSTANCE),
+            new CodecCase<>(CdmaRecord.getDefaultInstance(), CdmaRecordJsonCodec.INSTANCE),
+            new CodecCase<>(UmtsRecord.getDefaultInstance(), UmtsRecordJsonCodec.INSTANCE),
+            new CodecCase<>(LteRecord.getDefaultInstance(), LteRecordJsonCodec.INSTANCE),
+            new CodecCase<>(NrRecord.getDefaultInstance(), NrRecordJsonCodec.INSTANCE),
+            new CodecCase<>(WifiBeaconRecord.getDefaultInstance(), WifiBeaconRecordJsonCodec.INSTANCE),
+            new CodecCase<>(WifiProbeRequestRecord.getDefaultInstance(), WifiProbeRequestRecordJsonCodec.INSTANCE),
+            new CodecCase<>(WifiDeauthenticationRecord.getDefaultInstance(), WifiDeauthenticationRecordJsonCodec.INSTANCE),
+            new CodecCase<>(WifiOtaRecord.getDefaultInstance(), WifiOtaRecordJsonCodec.INSTANCE),
+            new CodecCase<>(BluetoothRecord.getDefaultInstance(), BluetoothRecordJsonCodec.INSTANCE),
+            new CodecCase<>(GnssRecord.getDefaultInstance(), GnssRecordJsonCodec.INSTANCE),
+            new CodecCase<>(EnergyDetection.getDefaultInstance(), EnergyDetectionJsonCodec.INSTANCE),
+            new CodecCase<>(SignalDetection.getDefaultInstance(), SignalDetectionJsonCodec.INSTANCE),
+            new CodecCase<>(DeviceStatus.getDefaultInstance(), DeviceStatusJsonCodec.INSTANCE),
+            new CodecCase<>(PhoneState.getDefaultInstance(), PhoneStateJsonCodec.INSTANCE),
+            new CodecCase<>(GsmSignaling.getDefaultInstance(), GsmSignalingJsonCodec.INSTANCE),
+            new CodecCase<>(UmtsNas.getDefaultInstance(), UmtsNasJsonCodec.INSTANCE),
+            new CodecCase<>(WcdmaRrc.getDefaultInstance(), WcdmaRrcJsonCodec.INSTANCE),
+            new CodecCase<>(LteRrc.getDefaultInstance(), LteRrcJsonCodec.INSTANCE),
+            new CodecCase<>(LteNas.getDefaultInstance(), LteNasJsonCodec.INSTANCE));
+
+    @Test
+    public void testRandomRecordsMatchJsonFormat() throws InvalidProtocolBufferException {
+        final Random random = new Random(20241017L);
+        for (CodecCase<?> codecCase : CODECS) {
+            for (Message record : randomRecords(codecCase.defaultInstance, RANDOM_RECORDS_PER_TYPE, random)) {
+                assertMatchesJsonFormat(codecCase, record);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyRecordsMatchJsonFormat() throws InvalidProtocolBufferException {
+        for (CodecCase<?> codecCase : CODECS) {
+            assertMatchesJsonFormat(codecCase, codecCase.defaultInstance);
+        }
+    }
+
+    @Test
+    public void testStringEscaping() throws InvalidProtocolBufferException {
+        final String[] values = {"<script>alert('x')</script>", "a=b&c=d", "quote\" backslash\\ slash/",
+                "\t\b\n\r\f", "\u0000\u0001\u001f\u007f", "caf\u00E9 \u65E5\u672C \uD83D\uDCE1", "\u2028\u2029"};
+        for (String value : values) {
+            final LteRecord record = LteRecord.newBuilder()
+                    .setMessageType(value)
+                    .setData(LteRecordData.newBuilder().setDeviceName(value).setProvider(value))
+                    .build();
+            final String json = LteRecordJsonCodec.toJson(record);
+            assertEquals(jsonFormatter.print(record), json);
+            assertEquals(record, LteRecordJsonCodec.fromJson(json));
+        }
+    }
+
+    @Test
+    public void testFloatingPointEdgeCases() throws InvalidProtocolBufferException {
+        final float[] values = {Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, -0.0f, Float.MIN_VALUE,
+                Float.MAX_VALUE, 1.0E-5f, 1.0E7f, 123456.79f};
+        for (float value : values) {
+            final LteRecord record = LteRecord.newBuilder()
+                    .setData(LteRecordData.newBuilder()
+                            .setAltitude(value)
+                            .setLatitude(value)
+                            .setRsrp(FloatValue.of(value)))
+                    .build();
+            final String json = LteRecordJsonCodec.toJson(record);
+            assertEquals(jsonFormatter.print(record), json);
+            assertEquals(record, LteRecordJsonCodec.fromJson(json));
+        }
+    }
+
+    @Test
+    public void testUnsignedAndUnknownEnumValues() throws InvalidProtocolBufferException {
+        final EnergyDetection energyDetection = EnergyDetection.newBuilder()
+                .setData(EnergyDetectionData.newBuilder().setFrequencyHz(-1L).setRecordNumber(Integer.MIN_VALUE))
+                .build();
+        assertEquals(jsonFormatter.print(energyDetection), EnergyDetectionJsonCodec.toJson(energyDetection));
+        assertEquals(energyDetection, EnergyDetectionJsonCodec.fromJson(EnergyDetectionJsonCodec.toJson(energyDetection)));
+
+        final GnssRecord gnssRecord = GnssRecord.newBuilder()
+                .setData(GnssRecordData.newBuilder().setSpaceVehicleId(UInt32Value.of(-2)))
+                .build();
+        assertEquals(jsonFormatter.print(gnssRecord), GnssRecordJsonCodec.toJson(gnssRecord));
+        assertEquals(gnssRecord, GnssRecordJsonCodec.fromJson(GnssRecordJsonCodec.toJson(gnssRecord)));
+
+        final WifiBeaconRecord beaconRecord = WifiBeaconRecord.newBuilder()
+                .setData(WifiBeaconRecordData.newBuilder()
+                        .setEncryptionTypeValue(99)
+                        .addCipherSuites(CipherSuite.CCMP)
+                        .addCipherSuitesValue(1234)
+                        .addAkmSuites(AkmSuite.PSK))
+                .build();
+        final String json = WifiBeaconRecordJsonCodec.toJson(beaconRecord);
+        assertEquals(jsonFormatter.print(beaconRecord), json);
+        assertEquals(beaconRecord, WifiBeaconRecordJsonCodec.fromJson(json));
+    }
+
+    @Test
+    public void testReadAcceptsJsonFormatInputVariants() throws InvalidProtocolBufferException {
+        final String json = "{ \"version\" : \"0.7.0\",\n \"data\": {\"deviceSerialNumber\": \"1234\", \"recordNumber\": \"7\","
+                + " \"mcc\": \"310\", \"servingCell\": \"true\", \"rsrp\": \"-90.5\", \"lteBandwidth\": 3, \"eci\": null,"
+                + " \"provider\": \"\\u0041TT\\/\"}}";
+        final LteRecord.Builder expected = LteRecord.newBuilder();
+        jsonParser.merge(json, expected);
+        assertEquals(expected.build(), LteRecordJsonCodec.fromJson(json));
+        assertEquals(LteBandwidth.MHZ_5, LteRecordJsonCodec.fromJson(json).getData().getLteBandwidth());
+    }
+
+    @Test
+    public void testOneofAndRepeatedMessages() throws InvalidProtocolBufferException {
+        final PhoneState phoneState = PhoneState.newBuilder()
+                .setData(PhoneStateData.newBuilder()
+                        .addNetworkRegistrationInfo(NetworkRegistrationInfo.newBuilder()
+                                .setDomain(Domain.PS)
+                                .setCellIdentityLte(CellIdentityLte.newBuilder().setMcc(Int32Value.of(310))))
+                        .addNetworkRegistrationInfo(NetworkRegistrationInfo.newBuilder()
+                                .setDomain(Domain.CS)
+                                .setCellIdentityNr(CellIdentityNr.getDefaultInstance())))
+                .build();
+        final String json = PhoneStateJsonCodec.toJson(phoneState);
+        assertEquals(jsonFormatter.print(phoneState), json);
+        assertEquals(phoneState, PhoneStateJsonCodec.fromJson(json));
+
+        assertThrows(InvalidProtocolBufferException.class, () -> NetworkRegistrationInfoJsonCodec.fromJson(
+                "{\"cellIdentityLte\":{},\"cellIdentityNr\":{}}"));
+    }
+
+    @Test
+    public void testUnknownFields() throws InvalidProtocolBufferException {
+        final String json = "{\"version\":\"0.7.0\",\"extra\":{\"nested\":[1,\"two\",{\"three\":null}]},\"messageType\":\"GsmRecord\"}";
+        final InvalidProtocolBufferException exception = assertThrows(InvalidProtocolBufferException.class, () -> GsmRecordJsonCodec.fromJson(json));
+        assertTrue(exception.getMessage().contains("extra"));
+
+        final GsmRecord record = GsmRecordJsonCodec.INSTANCE.read(new JsonStreamReader(json, true));
+        assertEquals("0.7.0", record.getVersion());
+        assertEquals("GsmRecord", record.getMessageType());
+    }
+
+    @Test
+    public void testMalformedJson() {
+        final String[] invalid = {"", "{", "{\"version\":}", "{\"version\":\"0.7.0\",}", "{\"data\":{\"recordNumber\":1.5}}",
+                "{\"data\":{\"recordNumber\":3000000000}}", "{\"data\":{\"lteBandwidth\":\"NOT_A_BANDWIDTH\"}}",
+                "{\"version\":\"0.7.0\"} trailing"};
+        for (String json : invalid) {
+            assertThrows(InvalidProtocolBufferException.class, () -> LteRecordJsonCodec.fromJson(json), json);
+        }
+    }
+
+    @Test
+    public void testWriterReuse() {
+        final JsonStreamWriter writer = new JsonStreamWriter();
+        final GsmRecord first = GsmRecord.newBuilder().setVersion("1").build();
+        final GsmRecord second = GsmRecord.newBuilder().setVersion("2").build();
+
+        GsmRecordJsonCodec.write(first, writer);
+        assertEquals("{\"version\":\"1\"}", writer.toString());
+
+        writer.reset();
+        GsmRecordJsonCodec.write(second, writer);
+        assertEquals("{\"version\":\"2\"}", writer.toString());
+    }
+
+    private <T extends Message> void assertMatchesJsonFormat(CodecCase<T> codecCase, Message message) throws InvalidProtocolBufferException {
+        @SuppressWarnings("unchecked") final T typedMessage = (T) message;
+        final String expectedJson = jsonFormatter.print(typedMessage);
+        final String json = codecCase.codec.toJson(typedMessage);
+        assertEquals(expectedJson, json);
+
+        // JsonFormat parses a double -0.0 as 0.0, so the codec is compared against the original message instead
+        assertEquals(message, codecCase.codec.fromJson(json));
+    }
+
+    private static final class CodecCase<T extends Message> {
+        private final T defaultInstance;
+        private final JsonCodec<T> codec;
+
+        private CodecCase(T defaultInstance, JsonCodec<T> codec) {
+            this.defaultInstance = defaultInstance;
+            this.codec = codec;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.craxiom.messaging;
+
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link MessageTypeRegistry}.
+ */
+public class MessageTypeRegistryTest {
+    private final JsonFormat.Printer jsonFormatter = JsonFormat.printer().omittingInsignificantWhitespace();
+
+    @Test
+    public void testEveryRecordTypeIsRegistered() {
+        assertEquals(SurveyRecordType.values().length, MessageTypeRegistry.getMessageTypes().size());
+        for (SurveyRecordType recordType : SurveyRecordType.values()) {
+            final MessageType<?, ?> type = MessageTypeRegistry.forMessageType(recordType.getMessageType());
+            assertNotNull(type, recordType.getMessageType());
+            assertSame(recordType.getDefaultInstance(), type.getDefaultInstance());
+            assertSame(type, MessageTypeRegistry.forRecord(recordType.getDefaultInstance()));
+            assertTrue(MessageTypeRegistry.forChannel(type.getChannel()).contains(type));
+        }
+
+        assertEquals(Arrays.asList(MessageTypeRegistry.LTE_RECORD), MessageTypeRegistry.forChannel("lte_message"));
+        assertEquals(Arrays.asList(MessageTypeRegistry.WIFI_BEACON_RECORD),
+                MessageTypeRegistry.forChannel("80211_beacon_message"));
+        assertEquals(Arrays.asList(MessageTypeRegistry.DEVICE_STATUS, MessageTypeRegistry.PHONE_STATE),
+                MessageTypeRegistry.forChannel("device_status_message"));
+        assertEquals(5, MessageTypeRegistry.forChannel("cellular_ota_message").size());
+        assertTrue(MessageTypeRegistry.forChannel("unknown_message").isEmpty());
+        assertNull(MessageTypeRegistry.forMessageType("LteRecordData"));
+    }
+
+    @Test
+    public void testPeekAndParse() throws IOException {
+        final Random random = new Random(20L);
+        for (MessageType<?, ?> type : MessageTypeRegistry.getMessageTypes()) {
+            for (Message populated : randomRecords(type.getDefaultInstance(), 50, random)) {
+                final Message record = withMessageType(populated, type.getMessageType());
+                final byte[] bytes = record.toByteArray();
+                assertSame(type, MessageTypeRegistry.peek(bytes));
+                assertEquals(record, MessageTypeRegistry.parse(bytes));
+                assertSame(((Message) record.getField(record.getDescriptorForType().findFieldByName("data"))),
+                        type.getData(record));
+
+                final String json = jsonFormatter.print(record);
+                assertSame(type, MessageTypeRegistry.peekJson(json, 0, json.length()));
+                assertEquals(record, MessageTypeRegistry.parseJson(json));
+            }
+        }
+
+        final LteRecord lteRecord = LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder().setDeviceSerialNumber("356789012345678"))
+                .build();
+        final byte[] bytes = lteRecord.toByteArray();
+        final byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+        assertSame(MessageTypeRegistry.LTE_RECORD, MessageTypeRegistry.peek(padded, 5, bytes.length));
+        assertNull(MessageTypeRegistry.peek(Arrays.copyOf(bytes, 10)));
+        assertNull(MessageTypeRegistry.peek(lteRecord.toBuilder().setMessageType("NrRecord2").build().toByteArray()));
+        assertNull(MessageTypeRegistry.peek(lteRecord.toBuilder().clearMessageType().build().toByteArray()));
+        assertNull(MessageTypeRegistry.peek(new byte[]{(byte) 0x80, (byte) 0x80}));
+        assertThrows(InvalidProtocolBufferException.class, () -> MessageTypeRegistry.parse(new byte[]{1, 2, 3}));
+        assertThrows(ClassCastException.class, () -> MessageTypeRegistry.NR_RECORD.getData(lteRecord));
+
+        // The messageType is found even if it is written after the data
+        final ByteArrayOutputStream reordered = new ByteArrayOutputStream();
+        final CodedOutputStream output = CodedOutputStream.newInstance(reordered);
+        output.writeMessage(3, lteRecord.getData());
+        output.writeString(2, "LteRecord");
+        output.flush();
+        assertSame(MessageTypeRegistry.LTE_RECORD, MessageTypeRegistry.peek(reordered.toByteArray()));
+
+        final String json = "{ \"version\": \"1.6.0\", \"messageType\" : \"GnssRecord\", \"data\": {} }";
+        assertSame(MessageTypeRegistry.GNSS_RECORD, MessageTypeRegistry.peekJson("xx" + json + "yy", 2, json.length() + 2));
+        assertNull(MessageTypeRegistry.peekJson("{\"messageType\":\"Gnss", 0, 20));
+        assertNull(MessageTypeRegistry.peekJson("{\"data\":{}}", 0, 11));
+    }
+
+    private static Message withMessageType(Message record, String messageType) {
+        final Message.Builder builder = record.toBuilder();
+        builder.setField(builder.getDescriptorForType().findFieldByName("messageType"), messageType);
+        return builder.build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.craxiom.messaging;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.OneofDescriptor;
+import com.google.protobuf.Message;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates randomly populated messages of any type so that hand-written or generated code can be compared against the
+ * protobuf library over a wide range of inputs. Each field is left unset about a quarter of the time so that presence
+ * handling is exercised as well.
+ */
+public final class RandomMessages {
+    private static final int MAX_DEPTH = 4;
+    private static final String[] STRINGS = {"", "1234", "Craxiom Pixel", "1996-12-19T16:39:57-08:00", "AT&T <5G>",
+            "quote\" and \\ backslash", "tab\tnewline\n", "\u0001\u001f", "\u65E5\u672C\u8A9E", "\uD83D\uDCE1", "key='value'"};
+
+    private RandomMessages() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Message> T populate(Message.Builder builder, Random random) {
+        populate(builder, random, 0);
+        return (T) builder.build();
+    }
+
+    private static void populate(Message.Builder builder, Random random, int depth) {
+        for (FieldDescriptor field : builder.getDescriptorForType().getFields()) {
+            if (random.nextInt(4) == 0) continue;
+
+            final OneofDescriptor oneof = field.getRealContainingOneof();
+            if (oneof != null && builder.hasOneof(oneof)) continue;
+
+            if (field.isRepeated()) {
+                final int count = random.nextInt(4);
+                for (int i = 0; i < count; i++) {
+                    if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                        if (depth >= MAX_DEPTH) break;
+                        final Message.Builder child = builder.newBuilderForField(field);
+                        populate(child, random, depth + 1);
+                        builder.addRepeatedField(field, child.build());
+                    } else {
+                        builder.addRepeatedField(field, randomValue(field, random));
+                    }
+                }
+            } else if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                if (depth >= MAX_DEPTH) continue;
+                final Message.Builder child = builder.newBuilderForField(field);
+                populate(child, random, depth + 1);
+                builder.setField(field, child.build());
+            } else {
+                builder.setField(field, randomValue(field, random));
+            }
+        }
+    }
+
+    private static Object randomValue(FieldDescriptor field, Random random) {
+        switch (field.getJavaType()) {
+            case INT:
+                return randomInt(random);
+            case LONG:
+                return random.nextBoolean() ? (long) randomInt(random) : random.nextLong();
+            case FLOAT:
+                return randomFloat(random);
+            case DOUBLE:
+                return random.nextInt(8) == 0 ? (double) randomFloat(random) : (random.nextDouble() - 0.5) * 360;
+            case BOOLEAN:
+                return random.nextBoolean();
+            case STRING:
+                return STRINGS[random.nextInt(STRINGS.length)];
+            case BYTE_STRING:
+                final byte[] bytes = new byte[random.nextInt(40)];
+                random.nextBytes(bytes);
+                return ByteString.copyFrom(bytes);
+            case ENUM:
+                final List<EnumValueDescriptor> values = field.getEnumType().getValues();
+                if (random.nextInt(10) == 0) {
+                    // Proto3 enums are open, so values that are not in the schema must be preserved
+                    return field.getEnumType().findValueByNumberCreatingIfUnknown(1000 + random.nextInt(1000));
+                }
+                return values.get(random.nextInt(values.size()));
+            default:
+                throw new IllegalArgumentException("Unsupported field type " + field.getJavaType());
+        }
+    }
+
+    private static int randomInt(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return 0;
+            case 1:
+                return random.nextInt(1000) - 500;
+            case 2:
+                return random.nextInt(100000);
+            default:
+                return random.nextInt();
+        }
+    }
+
+    private static float randomFloat(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return 0f;
+            case 1:
+                return -0.0f;
+            case 2:
+                return Float.NaN;
+            case 3:
+                return random.nextBoolean() ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+            case 4:
+                return random.nextFloat() * 1.0E-6f;
+            case 5:
+                return random.nextFloat() * 1.0E12f;
+            default:
+                return (random.nextFloat() - 0.5f) * 200;
+        }
+    }
+}
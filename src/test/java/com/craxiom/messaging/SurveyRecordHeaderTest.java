@@ -0,0 +1,63 @@
+package com.craxiom.messaging;
+
+import com.craxiom.messaging.grpc.RecordBatchHeader;
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link SurveyRecordHeader} and {@link SurveyMissionHeader} interfaces that the record header protoc
+ * plugin in buildSrc adds to the generated record data messages.
+ */
+public class SurveyRecordHeaderTest {
+    @Test
+    public void testAllRecordDataImplementsHeader() {
+        final Random random = new Random(13);
+        for (SurveyRecordType type : SurveyRecordType.values()) {
+            final Message record = RandomMessages.populate(type.getDefaultInstance().newBuilderForType(), random);
+            final FieldDescriptor dataField = record.getDescriptorForType().findFieldByName("data");
+            final Message data = (Message) record.getField(dataField);
+
+            assertTrue(data instanceof SurveyRecordHeader, data.getClass().getName());
+            assertTrue(data.toBuilder() instanceof SurveyRecordHeader, data.getClass().getName());
+
+            final SurveyRecordHeader header = (SurveyRecordHeader) data;
+            assertEquals(fieldValue(data, "deviceSerialNumber"), header.getDeviceSerialNumber());
+            assertEquals(fieldValue(data, "deviceName"), header.getDeviceName());
+            assertEquals(fieldValue(data, "deviceTime"), header.getDeviceTime());
+            assertEquals(fieldValue(data, "latitude"), header.getLatitude());
+            assertEquals(fieldValue(data, "longitude"), header.getLongitude());
+            assertEquals(fieldValue(data, "altitude"), header.getAltitude());
+            assertEquals(fieldValue(data, "accuracy"), header.getAccuracy());
+            assertEquals(fieldValue(data, "heading"), header.getHeading());
+            assertEquals(fieldValue(data, "pitch"), header.getPitch());
+            assertEquals(fieldValue(data, "roll"), header.getRoll());
+            assertEquals(fieldValue(data, "fieldOfView"), header.getFieldOfView());
+            assertEquals(fieldValue(data, "receiverSensitivity"), header.getReceiverSensitivity());
+            assertEquals(fieldValue(data, "speed"), header.getSpeed());
+
+            final boolean hasMissionId = data.getDescriptorForType().findFieldByName("missionId") != null;
+            assertEquals(hasMissionId, data instanceof SurveyMissionHeader, data.getClass().getName());
+            if (hasMissionId) {
+                assertEquals(fieldValue(data, "missionId"), ((SurveyMissionHeader) data).getMissionId());
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyRecordDataImplementsHeader() {
+        assertFalse(SurveyRecordHeader.class.isAssignableFrom(LteRecord.class));
+        assertFalse(SurveyMissionHeader.class.isAssignableFrom(RecordBatchHeader.class));
+        assertFalse(SurveyMissionHeader.class.isAssignableFrom(DeviceStatusData.class));
+        assertTrue(SurveyMissionHeader.class.isAssignableFrom(LteRecordData.Builder.class));
+    }
+
+    private static Object fieldValue(Message message, String name) {
+        return message.getField(message.getDescriptorForType().findFieldByName(name));
+    }
+}
@@ -0,0 +1,68 @@
+package com.craxiom.messaging;
+
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The survey records shared by the tests of the streams, logs, and queues that carry records without looking at their
+ * contents.
+ */
+public final class TestRecords {
+    /**
+     * The default instance of each of the survey record messages.
+     */
+    public static final List<Message> RECORD_TYPES = Arrays.asList(GsmRecord.getDefaultInstance(),
+            CdmaRecord.getDefaultInstance(), UmtsRecord.getDefaultInstance(), LteRecord.getDefaultInstance(),
+            NrRecord.getDefaultInstance(), WifiBeaconRecord.getDefaultInstance(),
+            WifiProbeRequestRecord.getDefaultInstance(), WifiDeauthenticationRecord.getDefaultInstance(),
+            WifiOtaRecord.getDefaultInstance(), BluetoothRecord.getDefaultInstance(), GnssRecord.getDefaultInstance(),
+            EnergyDetection.getDefaultInstance(), SignalDetection.getDefaultInstance(),
+            DeviceStatus.getDefaultInstance(), PhoneState.getDefaultInstance(), GsmSignaling.getDefaultInstance(),
+            UmtsNas.getDefaultInstance(), WcdmaRrc.getDefaultInstance(), LteRrc.getDefaultInstance(),
+            LteNas.getDefaultInstance());
+
+    private TestRecords() {
+    }
+
+    /**
+     * @return A small LteRecord that is identified by its record number.
+     */
+    public static LteRecord lteRecord(int recordNumber) {
+        return LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("1234")
+                        .setMissionId("Survey1 20200724-154325")
+                        .setRecordNumber(recordNumber))
+                .build();
+    }
+
+    /**
+     * @return Randomly populated records of randomly chosen types, the same for the same seed.
+     */
+    public static List<Message> randomRecords(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<Message> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Message defaultInstance = RECORD_TYPES.get(random.nextInt(RECORD_TYPES.size()));
+            records.add(RandomMessages.populate(defaultInstance.newBuilderForType(), random));
+        }
+        return records;
+    }
+
+    /**
+     * @return Randomly populated messages of the same type as the default instance.
+     */
+    public static <T extends Message> List<T> randomRecords(T defaultInstance, int count, Random random) {
+        final List<T> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(RandomMessages.populate(defaultInstance.newBuilderForType(), random));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,508 @@
+package com.craxiom.messaging.arrow;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.wifi.CipherSuite;
+import com.craxiom.messaging.wifi.NodeType;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ArrowExporter} and the {@link ArrowFileWriter}. The files are checked with a small reader of the
+ * Arrow IPC file format that is independent of the writer.
+ */
+public class ArrowExporterTest {
+    private static final long START_MILLIS = 1_729_173_600_000L;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(23L);
+
+    @Test
+    public void testRecordsRoundTrip() throws IOException {
+        final Map<String, List<Message>> expected = new HashMap<>();
+        final ArrowExporter exporter = ArrowExporter.newBuilder(directory, "survey")
+                .setBatchRows(7)
+                .setClock(Clock.fixed(Instant.ofEpochMilli(START_MILLIS), ZoneOffset.UTC))
+                .build();
+        for (MessageType<?, ?> type : MessageTypeRegistry.getMessageTypes()) {
+            for (Message record : randomRecords(type.getDefaultInstance(), 40, random)) {
+                assertTrue(exporter.write(record));
+                expected.computeIfAbsent(type.getMessageType(), key -> new ArrayList<>()).add(type.getData(record));
+            }
+        }
+        assertFalse(exporter.write(Int32Value.of(1)));
+        exporter.close();
+
+        assertEquals(40L * MessageTypeRegistry.getMessageTypes().size(), exporter.getRowCount());
+        assertEquals(MessageTypeRegistry.getMessageTypes().size(), exporter.getCompletedFiles().size());
+        for (Path file : exporter.getCompletedFiles()) {
+            final String messageType = file.getFileName().toString().split("_")[1];
+            assertTrue(file.getFileName().toString().matches("survey_" + messageType + "_20241017T140000Z_\\d{4}\\.arrow"),
+                    file.toString());
+            final ArrowFile arrowFile = new ArrowFile(Files.readAllBytes(file));
+            assertEquals(6, arrowFile.batchCount, messageType);
+            assertRows(expected.get(messageType), arrowFile.rows);
+        }
+    }
+
+    @Test
+    public void testSchema() throws IOException {
+        final Path path = directory.resolve("wifi.arrow");
+        try (ArrowFileWriter writer = ArrowFileWriter.create(path, WifiBeaconRecordData.class)) {
+            writer.add(WifiBeaconRecordData.newBuilder()
+                    .setSsid("Craxiom")
+                    .setChannel(Int32Value.of(6))
+                    .addCipherSuites(CipherSuite.CCMP)
+                    .addCipherSuites(CipherSuite.TKIP)
+                    .setNodeType(NodeType.AP)
+                    .build());
+            writer.add(WifiBeaconRecordData.newBuilder().addAkmSuitesValue(4000).build());
+            writer.writeBatch();
+            writer.add(WifiBeaconRecordData.newBuilder()
+                    .addAkmSuitesValue(5000)
+                    .addAkmSuitesValue(4000)
+                    .setNodeTypeValue(99)
+                    .build());
+        }
+
+        final ArrowFile file = new ArrowFile(Files.readAllBytes(path));
+        final Map<String, Field> fields = new HashMap<>();
+        for (Field field : file.fields) {
+            fields.put(field.name, field);
+        }
+        assertEquals(WifiBeaconRecordData.getDescriptor().getFields().size(), file.fields.size());
+        assertEquals("Int32 nullable", fields.get("channel").describe());
+        assertEquals("Utf8", fields.get("ssid").describe());
+        assertEquals("Utf8 dictionary nullable", fields.get("nodeType").describe());
+        assertEquals("List<Utf8 dictionary nullable>", fields.get("cipherSuites").describe());
+        assertEquals("List<Utf8 dictionary nullable>", fields.get("akmSuites").describe());
+
+        assertEquals(6, file.rows.get(0).get("channel"));
+        assertNull(file.rows.get(1).get("channel"));
+        assertEquals("AP", file.rows.get(0).get("nodeType"));
+        assertEquals(Arrays.asList("CCMP", "TKIP"), file.rows.get(0).get("cipherSuites"));
+        // Enum values that are not in the schema are added to the dictionary by their number
+        assertEquals(Collections.singletonList("UNKNOWN_4000"), file.rows.get(1).get("akmSuites"));
+        // Including the ones first seen in a later batch
+        assertEquals(Arrays.asList("UNKNOWN_5000", "UNKNOWN_4000"), file.rows.get(2).get("akmSuites"));
+        assertEquals("UNKNOWN_99", file.rows.get(2).get("nodeType"));
+
+        final Path phoneState = directory.resolve("phone.arrow");
+        try (ArrowFileWriter writer = ArrowFileWriter.create(phoneState, PhoneStateData.class)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.add(WifiBeaconRecordData.getDefaultInstance()));
+        }
+        final Map<String, Field> phoneStateFields = new HashMap<>();
+        for (Field field : new ArrowFile(Files.readAllBytes(phoneState)).fields) {
+            phoneStateFields.put(field.name, field);
+        }
+        assertTrue(phoneStateFields.get("networkRegistrationInfo").describe().startsWith("List<Struct<"));
+    }
+
+    @Test
+    public void testFilesRollOver() throws IOException {
+        final ArrowExporter exporter = ArrowExporter.newBuilder(directory, "lte")
+                .setBatchRows(1000)
+                .setMaxBatchSize(4096)
+                .setMaxFileSize(32 * 1024)
+                .build();
+        final List<Message> expected = new ArrayList<>();
+        for (LteRecord record : randomRecords(LteRecord.getDefaultInstance(), 3000, random)) {
+            exporter.accept(record);
+            expected.add(record.getData());
+        }
+        exporter.close();
+
+        final List<Path> files = exporter.getCompletedFiles();
+        assertTrue(files.size() > 2, files.toString());
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (Path file : files) {
+            // A file is only split after a batch, and the footer repeats the schema
+            assertTrue(Files.size(file) < 48 * 1024, file + " " + Files.size(file));
+            final ArrowFile arrowFile = new ArrowFile(Files.readAllBytes(file));
+            assertTrue(arrowFile.batchCount > 1);
+            rows.addAll(arrowFile.rows);
+        }
+        assertRows(expected, rows);
+    }
+
+    private static void assertRows(List<Message> expected, List<Map<String, Object>> rows) {
+        assertEquals(expected.size(), rows.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(toRow(expected.get(i)), rows.get(i), "Row " + i);
+        }
+    }
+
+    /**
+     * @return The message as the reader returns a row of it, following the mapping of the fields to Arrow types.
+     */
+    private static Map<String, Object> toRow(Message message) {
+        final Map<String, Object> row = new LinkedHashMap<>();
+        for (FieldDescriptor field : message.getDescriptorForType().getFields()) {
+            if (field.isRepeated()) {
+                final List<Object> values = new ArrayList<>();
+                for (Object value : (List<?>) message.getField(field)) {
+                    values.add(toValue(field, value));
+                }
+                row.put(field.getName(), values);
+            } else if (field.hasPresence() && !message.hasField(field)) {
+                row.put(field.getName(), null);
+            } else {
+                row.put(field.getName(), toValue(field, message.getField(field)));
+            }
+        }
+        return row;
+    }
+
+    private static Object toValue(FieldDescriptor field, Object value) {
+        switch (field.getJavaType()) {
+            case MESSAGE:
+                final Message message = (Message) value;
+                if (message.getDescriptorForType().getFile().getPackage().equals("google.protobuf")) {
+                    return message.getField(message.getDescriptorForType().findFieldByName("value"));
+                }
+                return toRow(message);
+            case ENUM:
+                // Enum values that are not in the schema are named by their number
+                final EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+                final EnumValueDescriptor known = enumValue.getType().findValueByNumber(enumValue.getNumber());
+                return known == null ? "UNKNOWN_" + enumValue.getNumber() : known.getName();
+            default:
+                return value;
+        }
+    }
+
+    private static final class Field {
+        private String name;
+        private boolean nullable;
+        private int typeId;
+        private int bitWidth;
+        private boolean signed;
+        private int precision;
+        private long dictionaryId = -1;
+        private final List<Field> children = new ArrayList<>();
+
+        private String describe() {
+            final StringBuilder builder = new StringBuilder();
+            switch (typeId) {
+                case ArrowColumn.TYPE_INT:
+                    builder.append(signed ? "Int" : "UInt").append(bitWidth);
+                    break;
+                case ArrowColumn.TYPE_FLOATING_POINT:
+                    builder.append(precision == 1 ? "Float" : "Double");
+                    break;
+                case ArrowColumn.TYPE_BINARY:
+                    builder.append("Binary");
+                    break;
+                case ArrowColumn.TYPE_UTF8:
+                    builder.append("Utf8");
+                    break;
+                case ArrowColumn.TYPE_BOOL:
+                    builder.append("Bool");
+                    break;
+                case ArrowColumn.TYPE_LIST:
+                    builder.append("List<").append(children.get(0).describe()).append(">");
+                    break;
+                case ArrowColumn.TYPE_STRUCT:
+                    final StringJoiner joiner = new StringJoiner(", ", "Struct<", ">");
+                    for (Field child : children) {
+                        joiner.add(child.name + ": " + child.describe());
+                    }
+                    builder.append(joiner);
+                    break;
+                default:
+                    fail("Unexpected type " + typeId);
+            }
+            if (dictionaryId >= 0) builder.append(" dictionary");
+            if (nullable) builder.append(" nullable");
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Reads an Arrow IPC file: the schema, the dictionaries, and the rows of every record batch.
+     */
+    private static final class ArrowFile {
+        private final ByteBuffer buffer;
+        private final List<Field> fields = new ArrayList<>();
+        private final Map<Long, List<Object>> dictionaries = new HashMap<>();
+        private final List<Map<String, Object>> rows = new ArrayList<>();
+        private int batchCount = 0;
+
+        private ArrowFile(byte[] bytes) {
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals("ARROW1\0\0", new String(bytes, 0, 8, StandardCharsets.US_ASCII));
+            assertEquals("ARROW1", new String(bytes, bytes.length - 6, 6, StandardCharsets.US_ASCII));
+            final int footer = bytes.length - 10 - buffer.getInt(bytes.length - 10);
+            assertEquals(0, footer % 8);
+            // The end of stream marker comes before the footer
+            assertEquals(-1, buffer.getInt(footer - 8));
+            assertEquals(0, buffer.getInt(footer - 4));
+
+            final int root = footer + buffer.getInt(footer);
+            for (int field : vector(indirect(root, 1), 1)) {
+                fields.add(readField(field));
+            }
+            for (int block : structs(root, 2, 24)) {
+                readDictionaryBatch(block);
+            }
+            for (int block : structs(root, 3, 24)) {
+                readRecordBatch(block);
+                batchCount++;
+            }
+        }
+
+        private Field readField(int table) {
+            final Field field = new Field();
+            field.name = string(table, 0);
+            field.nullable = buffer.get(slot(table, 1)) != 0;
+            field.typeId = buffer.get(slot(table, 2));
+            final int type = indirect(table, 3);
+            if (field.typeId == ArrowColumn.TYPE_INT) {
+                field.bitWidth = buffer.getInt(slot(type, 0));
+                field.signed = buffer.get(slot(type, 1)) != 0;
+            } else if (field.typeId == ArrowColumn.TYPE_FLOATING_POINT) {
+                field.precision = buffer.getShort(slot(type, 0));
+            }
+            if (slot(table, 4) != 0) {
+                final int dictionary = indirect(table, 4);
+                field.dictionaryId = buffer.getLong(slot(dictionary, 0));
+                final int indexType = indirect(dictionary, 1);
+                assertEquals(32, buffer.getInt(slot(indexType, 0)));
+            }
+            for (int child : vector(table, 5)) {
+                field.children.add(readField(child));
+            }
+            return field;
+        }
+
+        private void readDictionaryBatch(int block) {
+            final int message = messageAt(block);
+            assertEquals(2, buffer.get(slot(message, 1)));
+            final int dictionaryBatch = indirect(message, 2);
+            final Reader reader = new Reader(indirect(dictionaryBatch, 1), bodyOf(block));
+            final Field values = new Field();
+            values.typeId = ArrowColumn.TYPE_UTF8;
+            final long id = buffer.getLong(slot(dictionaryBatch, 0));
+            final boolean delta = slot(dictionaryBatch, 2) != 0 && buffer.get(slot(dictionaryBatch, 2)) != 0;
+            // A delta batch adds its entries to the end of the dictionary that was read before
+            assertEquals(delta, dictionaries.containsKey(id));
+            dictionaries.computeIfAbsent(id, key -> new ArrayList<>()).addAll(reader.read(values));
+        }
+
+        private void readRecordBatch(int block) {
+            final int message = messageAt(block);
+            assertEquals(3, buffer.get(slot(message, 1)));
+            final int recordBatch = indirect(message, 2);
+            final int length = (int) buffer.getLong(slot(recordBatch, 0));
+            final Reader reader = new Reader(recordBatch, bodyOf(block));
+            final List<List<Object>> columns = new ArrayList<>();
+            for (Field field : fields) {
+                columns.add(reader.read(field));
+            }
+            for (int i = 0; i < length; i++) {
+                final Map<String, Object> row = new LinkedHashMap<>();
+                for (int j = 0; j < fields.size(); j++) {
+                    row.put(fields.get(j).name, columns.get(j).get(i));
+                }
+                rows.add(row);
+            }
+        }
+
+        /**
+         * @return The position of the Message table of the block, after checking the encapsulation.
+         */
+        private int messageAt(int block) {
+            final int offset = (int) buffer.getLong(block);
+            final int metadataLength = buffer.getInt(block + 8);
+            assertEquals(0, offset % 8);
+            assertEquals(0, metadataLength % 8);
+            assertEquals(-1, buffer.getInt(offset));
+            assertEquals(metadataLength - 8, buffer.getInt(offset + 4));
+            final int message = offset + 8 + buffer.getInt(offset + 8);
+            assertEquals(4, buffer.getShort(slot(message, 0)));
+            assertEquals(buffer.getLong(block + 16), buffer.getLong(slot(message, 3)));
+            return message;
+        }
+
+        private int bodyOf(int block) {
+            return (int) buffer.getLong(block) + buffer.getInt(block + 8);
+        }
+
+        /**
+         * Reads the arrays of a record batch in the depth first order of its nodes and buffers.
+         */
+        private final class Reader {
+            private final int body;
+            private final List<Integer> nodes;
+            private final List<Integer> buffers;
+            private int nextNode = 0;
+            private int nextBuffer = 0;
+
+            private Reader(int recordBatch, int body) {
+                this.body = body;
+                this.nodes = structs(recordBatch, 1, 16);
+                this.buffers = structs(recordBatch, 2, 16);
+            }
+
+            private List<Object> read(Field field) {
+                final int node = nodes.get(nextNode++);
+                final int length = (int) buffer.getLong(node);
+                final long nullCount = buffer.getLong(node + 8);
+                final int validity = nextBuffer();
+                if (nullCount == 0) assertEquals(0, buffer.getLong(buffers.get(nextBuffer - 1) + 8));
+
+                final List<Object> values = new ArrayList<>();
+                switch (field.dictionaryId >= 0 ? ArrowColumn.TYPE_INT : field.typeId) {
+                    case ArrowColumn.TYPE_INT: {
+                        final int data = nextBuffer();
+                        final int width = field.dictionaryId >= 0 ? 4 : field.bitWidth / 8;
+                        for (int i = 0; i < length; i++) {
+                            values.add(width == 4 ? (Object) buffer.getInt(data + 4 * i) : buffer.getLong(data + 8 * i));
+                        }
+                        if (field.dictionaryId >= 0) {
+                            final List<Object> dictionary = dictionaries.get(field.dictionaryId);
+                            values.replaceAll(index -> dictionary.get((Integer) index));
+                        }
+                        break;
+                    }
+                    case ArrowColumn.TYPE_FLOATING_POINT: {
+                        final int data = nextBuffer();
+                        for (int i = 0; i < length; i++) {
+                            values.add(field.precision == 1 ? (Object) buffer.getFloat(data + 4 * i)
+                                    : buffer.getDouble(data + 8 * i));
+                        }
+                        break;
+                    }
+                    case ArrowColumn.TYPE_BOOL: {
+                        final int data = nextBuffer();
+                        for (int i = 0; i < length; i++) {
+                            values.add(bit(data, i));
+                        }
+                        break;
+                    }
+                    case ArrowColumn.TYPE_BINARY:
+                    case ArrowColumn.TYPE_UTF8: {
+                        final int offsets = nextBuffer();
+                        final int data = nextBuffer();
+                        for (int i = 0; i < length; i++) {
+                            final int start = buffer.getInt(offsets + 4 * i);
+                            final byte[] bytes = new byte[buffer.getInt(offsets + 4 * i + 4) - start];
+                            final ByteBuffer value = buffer.duplicate();
+                            value.position(data + start);
+                            value.get(bytes);
+                            values.add(field.typeId == ArrowColumn.TYPE_UTF8 ? new String(bytes, StandardCharsets.UTF_8)
+                                    : ByteString.copyFrom(bytes));
+                        }
+                        break;
+                    }
+                    case ArrowColumn.TYPE_LIST: {
+                        final int offsets = nextBuffer();
+                        final List<Object> items = read(field.children.get(0));
+                        for (int i = 0; i < length; i++) {
+                            values.add(new ArrayList<>(items.subList(buffer.getInt(offsets + 4 * i),
+                                    buffer.getInt(offsets + 4 * i + 4))));
+                        }
+                        break;
+                    }
+                    default: {
+                        final List<List<Object>> children = new ArrayList<>();
+                        for (Field child : field.children) {
+                            children.add(read(child));
+                        }
+                        for (int i = 0; i < length; i++) {
+                            final Map<String, Object> struct = new LinkedHashMap<>();
+                            for (int j = 0; j < children.size(); j++) {
+                                struct.put(field.children.get(j).name, children.get(j).get(i));
+                            }
+                            values.add(struct);
+                        }
+                    }
+                }
+
+                if (nullCount > 0) {
+                    for (int i = 0; i < length; i++) {
+                        if (!bit(validity, i)) values.set(i, null);
+                    }
+                }
+                return values;
+            }
+
+            /**
+             * @return The position of the next buffer in the file, after checking that it is aligned.
+             */
+            private int nextBuffer() {
+                final long offset = buffer.getLong(buffers.get(nextBuffer++));
+                assertEquals(0, offset % 8);
+                return body + (int) offset;
+            }
+        }
+
+        private boolean bit(int bitmap, int index) {
+            return (buffer.get(bitmap + (index >>> 3)) & 1 << (index & 7)) != 0;
+        }
+
+        /**
+         * @return The position of a field of a table, or 0 if the field is not set.
+         */
+        private int slot(int table, int slot) {
+            final int vtable = table - buffer.getInt(table);
+            if (4 + 2 * slot >= buffer.getShort(vtable)) return 0;
+            final int offset = buffer.getShort(vtable + 4 + 2 * slot);
+            return offset == 0 ? 0 : table + offset;
+        }
+
+        private int indirect(int table, int slot) {
+            final int position = slot(table, slot);
+            return position + buffer.getInt(position);
+        }
+
+        private String string(int table, int slot) {
+            final int position = indirect(table, slot);
+            final byte[] bytes = new byte[buffer.getInt(position)];
+            final ByteBuffer value = buffer.duplicate();
+            value.position(position + 4);
+            value.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private List<Integer> vector(int table, int slot) {
+            final int position = indirect(table, slot);
+            final List<Integer> elements = new ArrayList<>();
+            for (int i = 0; i < buffer.getInt(position); i++) {
+                final int element = position + 4 + 4 * i;
+                elements.add(element + buffer.getInt(element));
+            }
+            return elements;
+        }
+
+        private List<Integer> structs(int table, int slot, int size) {
+            final int position = indirect(table, slot);
+            assertEquals(0, (position + 4) % 8);
+            final List<Integer> elements = new ArrayList<>();
+            for (int i = 0; i < buffer.getInt(position); i++) {
+                elements.add(position + 4 + size * i);
+            }
+            return elements;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.craxiom.messaging.columns;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the generated columnar stores and the column classes.
+ */
+public class RecordColumnsTest {
+    @Test
+    public void testRandomRecordsRoundTrip() {
+        final Random random = new Random(7L);
+        assertRoundTrip(new GsmRecordColumns(), GsmRecordData.getDefaultInstance(), random);
+        assertRoundTrip(new CdmaRecordColumns(), CdmaRecordData.getDefaultInstance(), random);
+        assertRoundTrip(new UmtsRecordColumns(), UmtsRecordData.getDefaultInstance(), random);
+        assertRoundTrip(new LteRecordColumns(), LteRecordData.getDefaultInstance(), random);
+        assertRoundTrip(new NrRecordColumns(), NrRecordData.getDefaultInstance(), random);
+    }
+
+    @Test
+    public void testColumnAccess() {
+        final LteRecordColumns columns = new LteRecordColumns();
+        for (int i = 0; i < 100; i++) {
+            final LteRecordData.Builder data = LteRecordData.newBuilder()
+                    .setDeviceSerialNumber(i % 2 == 0 ? "even" : "odd")
+                    .setRecordNumber(i)
+                    .setLteBandwidth(LteBandwidth.MHZ_20)
+                    .setPci(Int32Value.of(i % 504));
+            if (i % 3 == 0) data.setRsrp(FloatValue.of(-100f + i));
+            columns.add(data.build());
+        }
+
+        assertEquals(100, columns.size());
+        assertEquals(100, columns.getRecordNumber().size());
+        assertArrayEquals(new int[]{0, 1, 2}, Arrays.copyOf(columns.getRecordNumber().values(), 3));
+
+        final FloatColumn rsrp = columns.getRsrp();
+        assertTrue(rsrp.isNullable());
+        assertEquals(34, rsrp.countPresent());
+        assertTrue(rsrp.isPresent(3));
+        assertEquals(-97f, rsrp.get(3));
+        assertFalse(rsrp.isPresent(4));
+        assertFalse(columns.get(4).hasRsrp());
+        assertFalse(columns.getRecordNumber().isNullable());
+        assertNull(columns.getRecordNumber().presenceBits());
+
+        final StringColumn serialNumbers = columns.getDeviceSerialNumber();
+        assertEquals(Arrays.asList("even", "odd"), serialNumbers.getDictionary());
+        assertEquals(1, serialNumbers.findCode("odd"));
+        assertEquals(StringColumn.NULL_CODE, serialNumbers.findCode("other"));
+        assertEquals(1, serialNumbers.getCode(99));
+        assertEquals("odd", serialNumbers.get(99));
+
+        assertEquals(LteBandwidth.MHZ_20.getNumber(), columns.getLteBandwidth().get(50));
+        assertSame(rsrp, columns.getColumn("rsrp"));
+        assertEquals("deviceSerialNumber", columns.getColumnNames().get(0));
+        assertEquals(LteRecordData.getDescriptor().getFields().size(), columns.getColumnNames().size());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.get(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> rsrp.get(-1));
+    }
+
+    @Test
+    public void testStringColumnStopsDictionaryEncoding() {
+        final StringColumn column = new StringColumn(true);
+        column.add("first");
+        column.addNull();
+        for (int i = 0; i < StringColumn.MAX_DICTIONARY_SIZE + 10; i++) {
+            column.add("value " + i);
+        }
+        assertFalse(column.isDictionaryEncoded());
+        assertTrue(column.getDictionary().isEmpty());
+        assertThrows(IllegalStateException.class, column::codes);
+        assertEquals("first", column.get(0));
+        assertNull(column.get(1));
+        assertFalse(column.isPresent(1));
+        assertEquals("value 4100", column.get(4102));
+        assertEquals(StringColumn.MAX_DICTIONARY_SIZE + 12, column.size());
+    }
+
+    @Test
+    public void testBooleanColumn() {
+        final BooleanColumn column = new BooleanColumn(true);
+        for (int i = 0; i < 200; i++) {
+            if (i % 5 == 0) {
+                column.addNull();
+            } else {
+                column.add(i % 2 == 0);
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 5 != 0, column.isPresent(i));
+            assertEquals(i % 5 != 0 && i % 2 == 0, column.get(i));
+        }
+        assertEquals(160, column.countPresent());
+    }
+
+    @Test
+    public void testTrimToSizeAndMemory() {
+        final NrRecordColumns columns = new NrRecordColumns();
+        final List<NrRecordData> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add(NrRecordData.newBuilder()
+                    .setDeviceSerialNumber("355123456789012")
+                    .setMissionId("mission")
+                    .setRecordNumber(i)
+                    .setLatitude(35.0 + i * 1.0E-5)
+                    .setLongitude(-78.0)
+                    .setMcc(Int32Value.of(310))
+                    .setMnc(Int32Value.of(260))
+                    .setNarfcn(Int32Value.of(520110))
+                    .setPci(Int32Value.of(i % 1008))
+                    .setSsRsrp(FloatValue.of(-90f))
+                    .build());
+        }
+        columns.addAll(records);
+        final long untrimmed = columns.sizeInBytes();
+        columns.trimToSize();
+        assertTrue(columns.sizeInBytes() <= untrimmed);
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i), columns.get(i));
+        }
+
+        // Each record holds several wrapper objects, so the columns should be several times smaller
+        long serializedBytes = 0;
+        for (NrRecordData record : records) {
+            serializedBytes += record.getSerializedSize();
+        }
+        assertTrue(columns.sizeInBytes() < serializedBytes * 2, columns.sizeInBytes() + " bytes");
+    }
+
+    private static <D extends Message> void assertRoundTrip(RecordColumns<D> columns, D defaultInstance, Random random) {
+        final List<D> records = randomRecords(defaultInstance, 300, random);
+        for (D record : records) {
+            columns.add(record);
+        }
+        assertEquals(records.size(), columns.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i), columns.get(i), defaultInstance.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.craxiom.messaging.delta;
+
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.NrRecord;
+import com.craxiom.messaging.NrRecordData;
+import com.craxiom.messaging.RandomMessages;
+import com.craxiom.messaging.log.SurveyRecordType;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link RecordDeltaEncoder}, {@link RecordDeltaDecoder}, and the delta stream.
+ */
+public class DeltaEncodingTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEveryRecordTypeRoundTripsExactly() throws IOException {
+        final Random random = new Random(17L);
+        for (SurveyRecordType type : SurveyRecordType.values()) {
+            final RecordDeltaEncoder encoder = new RecordDeltaEncoder(type.getDefaultInstance().getDescriptorForType());
+            final RecordDeltaDecoder<Message> decoder = new RecordDeltaDecoder<>(type.getDefaultInstance());
+            Message record = RandomMessages.populate(type.getDefaultInstance().newBuilderForType(), random);
+            for (int i = 0; i < 200; i++) {
+                record = i % 50 == 0 ? RandomMessages.populate(record.newBuilderForType(), random) : mutate(record, random);
+                final Message decoded = decoder.decode(encoder.encode(record));
+                assertEquals(record, decoded, type.getMessageType());
+                assertArrayEquals(record.toByteArray(), decoded.toByteArray(), type.getMessageType());
+            }
+        }
+    }
+
+    @Test
+    public void testDeviceStreamIsMuchSmaller() throws IOException {
+        final RecordDeltaEncoder encoder = new RecordDeltaEncoder(LteRecord.getDescriptor());
+        final RecordDeltaDecoder<LteRecord> decoder = new RecordDeltaDecoder<>(LteRecord.getDefaultInstance());
+        long protobufSize = 0;
+        long deltaSize = 0;
+        for (int i = 0; i < 500; i++) {
+            final LteRecord record = lteRecord(i);
+            final byte[] frame = encoder.encode(record);
+            assertEquals(record, decoder.decode(frame));
+            protobufSize += record.getSerializedSize();
+            deltaSize += frame.length;
+        }
+        assertTrue(deltaSize < protobufSize * 0.3, "Expected at least 70% smaller, " + deltaSize + " of " + protobufSize);
+    }
+
+    @Test
+    public void testInvalidFrames() throws IOException {
+        final RecordDeltaEncoder encoder = new RecordDeltaEncoder(LteRecord.getDescriptor());
+        final byte[] keyframe = encoder.encode(lteRecord(0));
+        final byte[] delta = encoder.encode(lteRecord(1));
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(NrRecord.getDefaultInstance()));
+
+        final RecordDeltaDecoder<LteRecord> decoder = new RecordDeltaDecoder<>(LteRecord.getDefaultInstance());
+        assertThrows(InvalidProtocolBufferException.class, () -> decoder.decode(delta));
+        assertThrows(InvalidProtocolBufferException.class, () -> decoder.decode(Arrays.copyOf(keyframe, keyframe.length - 1)));
+        assertEquals(lteRecord(0), decoder.decode(keyframe));
+        assertEquals(lteRecord(1), decoder.decode(delta));
+
+        encoder.reset();
+        decoder.reset();
+        assertEquals(lteRecord(2), decoder.decode(encoder.encode(lteRecord(2))));
+    }
+
+    @Test
+    public void testStreamWithInterleavedDevices() throws IOException {
+        final Path file = directory.resolve("survey.nsmd");
+        final Random random = new Random(18L);
+        final List<Message> records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            final int device = random.nextInt(3);
+            records.add(i % 4 == 0 ? nrRecord(device, i) : lteRecord(i).toBuilder()
+                    .setData(lteRecord(i).getData().toBuilder().setDeviceSerialNumber("35678901234567" + device))
+                    .build());
+        }
+        records.add(RandomMessages.populate(SurveyRecordType.GNSS_RECORD.getDefaultInstance().newBuilderForType(), random));
+
+        try (DeltaStreamWriter writer = DeltaStreamWriter.create(file)) {
+            for (Message record : records) {
+                writer.write(record);
+            }
+            assertEquals(records.size(), writer.getRecordCount());
+        }
+
+        try (DeltaStreamReader reader = DeltaStreamReader.open(file)) {
+            for (Message record : records) {
+                assertEquals(record, reader.read());
+            }
+            assertNull(reader.read());
+        }
+
+        final byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        try (DeltaStreamReader reader = DeltaStreamReader.open(file)) {
+            assertThrows(IOException.class, () -> {
+                while (reader.read() != null) {
+                    // Read until the truncated record
+                }
+            });
+        }
+
+        Files.write(file, "not a delta stream".getBytes());
+        assertThrows(IOException.class, () -> DeltaStreamReader.open(file));
+    }
+
+    /**
+     * @return A copy of the record in which about a fifth of the fields of the data message have been changed, set, or
+     * cleared.
+     */
+    private static Message mutate(Message record, Random random) {
+        final FieldDescriptor dataField = record.getDescriptorForType().findFieldByName("data");
+        final Message other = RandomMessages.populate(record.newBuilderForType(), random);
+        final Message.Builder data = ((Message) record.getField(dataField)).toBuilder();
+        final Message otherData = (Message) other.getField(dataField);
+        for (FieldDescriptor field : data.getDescriptorForType().getFields()) {
+            if (random.nextInt(5) != 0) continue;
+            if (field.isRepeated() ? otherData.getRepeatedFieldCount(field) == 0 : !otherData.hasField(field)) {
+                data.clearField(field);
+            } else {
+                data.setField(field, otherData.getField(field));
+            }
+        }
+        return record.toBuilder().setField(dataField, data.build()).build();
+    }
+
+    /**
+     * @return An LTE record as a phone would report it about once a second while driving.
+     */
+    private static LteRecord lteRecord(int recordNumber) {
+        final LteRecordData.Builder data = LteRecordData.newBuilder()
+                .setDeviceSerialNumber("356789012345678")
+                .setDeviceName("Pixel 8")
+                .setDeviceTime(String.format("2024-10-17T12:%02d:%02d.%03d-04:00", recordNumber / 60 % 60,
+                        recordNumber % 60, recordNumber * 7 % 1000))
+                .setLatitude(38.8977 + recordNumber * 0.0001)
+                .setLongitude(-77.0365 - recordNumber * 0.0001)
+                .setAltitude(40f)
+                .setMissionId("NS 356789012345678 20241017-120000")
+                .setRecordNumber(recordNumber)
+                .setGroupNumber(recordNumber / 10)
+                .setAccuracy(5)
+                .setMcc(Int32Value.of(310))
+                .setMnc(Int32Value.of(410))
+                .setTac(Int32Value.of(12345))
+                .setEci(Int32Value.of(123456789 + recordNumber / 100))
+                .setEarfcn(Int32Value.of(5110))
+                .setPci(Int32Value.of(247))
+                .setRsrp(FloatValue.of(-95 - recordNumber % 5))
+                .setRsrq(FloatValue.of(-10))
+                .setTa(Int32Value.of(4))
+                .setProvider("AT&T");
+        return LteRecord.newBuilder().setMessageType("LteRecord").setVersion("1.6.0").setData(data).build();
+    }
+
+    private static NrRecord nrRecord(int device, int recordNumber) {
+        return NrRecord.newBuilder()
+                .setMessageType("NrRecord")
+                .setVersion("1.6.0")
+                .setData(NrRecordData.newBuilder()
+                        .setDeviceSerialNumber("35678901234567" + device)
+                        .setDeviceTime("2024-10-17T12:00:00." + recordNumber + "-04:00")
+                        .setRecordNumber(recordNumber)
+                        .setNci(Int64Value.of(700 + device))
+                        .setSsRsrp(FloatValue.of(-80 - recordNumber % 7)))
+                .build();
+    }
+}
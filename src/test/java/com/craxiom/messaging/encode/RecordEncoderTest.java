@@ -0,0 +1,178 @@
+package com.craxiom.messaging.encode;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the generated {@link RecordEncoder}s, which must write the same bytes as the generated messages.
+ */
+public class RecordEncoderTest {
+    private final Random random = new Random(29L);
+
+    @Test
+    public void testLteRecord() throws IOException, InterruptedException {
+        final LteRecord record = LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("1234")
+                        .setDeviceName("Craxiom Pixel")
+                        .setDeviceTime("1996-12-19T16:39:57-08:00")
+                        .setLatitude(51.470334)
+                        .setLongitude(-0.486594)
+                        .setAltitude(-0.0f)
+                        .setRecordNumber(1)
+                        .setMcc(Int32Value.newBuilder().setValue(310).build())
+                        .setMnc(Int32Value.newBuilder().setValue(0).build())
+                        .setEci(Int32Value.newBuilder().setValue(-1).build())
+                        .setRsrp(FloatValue.newBuilder().setValue(-95.5f).build())
+                        .setServingCell(BoolValue.newBuilder().setValue(false).build())
+                        .setLteBandwidth(LteBandwidth.MHZ_20)
+                        .setProvider("T-Mobile"))
+                .build();
+
+        final LteRecordEncoder encoder = LteRecordEncoder.forCurrentThread()
+                .setVersion("1.6.0")
+                .setDeviceSerialNumber("1234")
+                .setDeviceName("Craxiom Pixel")
+                .setDeviceTime("1996-12-19T16:39:57-08:00")
+                .setLatitude(51.470334)
+                .setLongitude(-0.486594)
+                .setAltitude(-0.0f)
+                .setRecordNumber(1)
+                .setMcc(310)
+                .setMnc(0)
+                .setEci(-1)
+                .setRsrp(-95.5f)
+                .setServingCell(false)
+                .setLteBandwidth(LteBandwidth.MHZ_20)
+                .setProvider("T-Mobile");
+        assertEquals("LteRecord", encoder.getMessageType());
+        assertEquals(record.getSerializedSize(), encoder.getSerializedSize());
+        assertEquals(record.getData().getSerializedSize(), encoder.getDataSize());
+        assertArrayEquals(record.toByteArray(), encoder.toByteArray());
+
+        final ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+        final CodedOutputStream output = CodedOutputStream.newInstance(dataBytes);
+        encoder.writeDataTo(output);
+        output.flush();
+        assertArrayEquals(record.getData().toByteArray(), dataBytes.toByteArray());
+
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.put((byte) 7);
+        assertEquals(record.getSerializedSize(), encoder.writeTo(buffer));
+        assertEquals(1 + record.getSerializedSize(), buffer.position());
+        assertEquals(record, LteRecord.parseFrom(Arrays.copyOfRange(buffer.array(), 1, buffer.position())));
+
+        final ByteBuffer small = ByteBuffer.allocate(record.getSerializedSize() - 1);
+        assertThrows(BufferOverflowException.class, () -> encoder.writeTo(small));
+        assertEquals(0, small.position());
+
+        // The thread's encoder is reused, cleared of everything but the version
+        final LteRecordEncoder next = LteRecordEncoder.forCurrentThread();
+        assertSame(encoder, next);
+        assertEquals(LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.getDefaultInstance())
+                .build(), LteRecord.parseFrom(next.toByteArray()));
+
+        final LteRecordEncoder[] other = new LteRecordEncoder[1];
+        final Thread thread = new Thread(() -> other[0] = LteRecordEncoder.forCurrentThread());
+        thread.start();
+        thread.join();
+        assertNotSame(encoder, other[0]);
+    }
+
+    @Test
+    public void testRandomRecordsMatchTheGeneratedMessages() throws Exception {
+        int typeCount = 0;
+        for (MessageType<?, ?> type : MessageTypeRegistry.getMessageTypes()) {
+            final Class<?> encoderClass;
+            try {
+                encoderClass = Class.forName(getClass().getPackage().getName() + "."
+                        + type.getDefaultInstance().getDescriptorForType().getName() + "Encoder");
+            } catch (ClassNotFoundException e) {
+                // The records with nested messages in their data have no encoder
+                continue;
+            }
+            typeCount++;
+
+            final RecordEncoder encoder = (RecordEncoder) encoderClass.getConstructor().newInstance();
+            final List<? extends Message> randomData = randomRecords(type.getData(type.getDefaultInstance()), 200, random);
+            for (int i = 0; i < randomData.size(); i++) {
+                final Message data = randomData.get(i);
+                final Message.Builder record = type.getDefaultInstance().newBuilderForType();
+                record.setField(record.getDescriptorForType().findFieldByName("messageType"), type.getMessageType());
+                record.setField(record.getDescriptorForType().findFieldByName("data"), data);
+                if (i % 2 == 0) record.setField(record.getDescriptorForType().findFieldByName("version"), "1.6.0");
+
+                encoder.clear();
+                encoderClass.getMethod("setVersion", String.class).invoke(encoder, i % 2 == 0 ? "1.6.0" : null);
+                for (FieldDescriptor field : data.getDescriptorForType().getFields()) {
+                    setField(encoder, data, field);
+                }
+                assertArrayEquals(record.build().toByteArray(), encoder.toByteArray(), type + " " + data);
+            }
+        }
+        assertEquals(18, typeCount);
+    }
+
+    /**
+     * Sets a field of the encoder to the value of the field in the message, through the generated setters.
+     */
+    private static void setField(RecordEncoder encoder, Message data, FieldDescriptor field) throws Exception {
+        final String accessor = Character.toUpperCase(field.getJsonName().charAt(0)) + field.getJsonName().substring(1);
+        if (field.isRepeated()) {
+            final Method add = encoder.getClass().getMethod("add" + accessor + "Value", int.class);
+            for (Object value : (List<?>) data.getField(field)) {
+                add.invoke(encoder, ((EnumValueDescriptor) value).getNumber());
+            }
+        } else if (field.hasPresence() && !data.hasField(field)) {
+            // Left unset
+        } else if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+            encoder.getClass().getMethod("set" + accessor + "Value", int.class)
+                    .invoke(encoder, ((EnumValueDescriptor) data.getField(field)).getNumber());
+        } else if (field.getJavaType() == FieldDescriptor.JavaType.BYTE_STRING) {
+            // Set from the middle of a larger array, which is not copied
+            final byte[] bytes = ((ByteString) data.getField(field)).toByteArray();
+            final byte[] padded = new byte[bytes.length + 10];
+            System.arraycopy(bytes, 0, padded, 3, bytes.length);
+            encoder.getClass().getMethod("set" + accessor, byte[].class, int.class, int.class)
+                    .invoke(encoder, padded, 3, bytes.length);
+        } else {
+            Object value = data.getField(field);
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                final Message wrapper = (Message) value;
+                value = wrapper.getField(wrapper.getDescriptorForType().findFieldByName("value"));
+            }
+            for (Method method : encoder.getClass().getMethods()) {
+                if (method.getName().equals("set" + accessor) && method.getParameterCount() == 1) {
+                    method.invoke(encoder, value);
+                    return;
+                }
+            }
+            fail("No setter for " + field.getFullName());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.craxiom.messaging.geo;
+
+import com.craxiom.messaging.LteRecordData;
+import com.google.protobuf.FloatValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Geohash} and {@link SpatialTileIndex}.
+ */
+public class SpatialTileIndexTest {
+    @Test
+    public void testGeohash() {
+        final long geohash = Geohash.encode(57.64911, 10.40744, 11);
+        assertEquals("u4pruydqqvj", Geohash.toString(geohash, 11));
+        assertEquals(geohash, Geohash.parse("u4pruydqqvj"));
+        assertTrue(Geohash.bounds(geohash, 11).contains(57.64911, 10.40744));
+
+        // A lower precision cell is a prefix of the higher precision cell
+        assertEquals("u4pru", Geohash.toString(Geohash.encode(57.64911, 10.40744, 5), 5));
+        assertEquals(geohash >>> 30, Geohash.encode(57.64911, 10.40744, 5));
+
+        final Random random = new Random(14);
+        for (int i = 0; i < 10_000; i++) {
+            final double latitude = random.nextDouble() * 180 - 90;
+            final double longitude = random.nextDouble() * 360 - 180;
+            final int precision = 1 + random.nextInt(Geohash.MAX_PRECISION);
+            final long hash = Geohash.encode(latitude, longitude, precision);
+            assertTrue(Geohash.bounds(hash, precision).contains(latitude, longitude));
+            assertEquals(hash, Geohash.parse(Geohash.toString(hash, precision)));
+        }
+
+        assertEquals("zzzzzz", Geohash.toString(Geohash.encode(90, 180, 6), 6));
+        assertThrows(IllegalArgumentException.class, () -> Geohash.encode(Double.NaN, 0, 6));
+        assertThrows(IllegalArgumentException.class, () -> Geohash.parse("u4pa"));
+    }
+
+    @Test
+    public void testQueryAndAggregation() {
+        final SpatialTileIndex<LteRecordData> index = SpatialTileIndex.<LteRecordData>newBuilder()
+                .setPrecision(6)
+                .setMaxRecordsPerTile(2)
+                .addMetric(TileMetric.lteRsrp())
+                .build();
+
+        assertTrue(index.add(lteData(38.8977, -77.0365, -90f)));
+        assertTrue(index.add(lteData(38.8978, -77.0366, -100f)));
+        assertTrue(index.add(lteData(38.8979, -77.0364, null)));
+        assertTrue(index.add(lteData(40.7484, -73.9857, -80f)));
+        assertFalse(index.add(lteData(91, 0, -80f)));
+        // A record without a location fix has the unset 0, 0
+        assertFalse(index.add(lteData(0, 0, -80f)));
+        assertNull(index.getTile(0, 0));
+
+        assertEquals(2, index.getTileCount());
+        assertEquals(4, index.getRecordCount());
+
+        final TileSummary tile = index.getTile(38.8977, -77.0365);
+        assertEquals("dqcjqc", tile.getGeohashString());
+        assertEquals(3, tile.getRecordCount());
+        assertEquals(2, tile.getRetainedRecordCount());
+        final MetricSummary rsrp = tile.getMetric("rsrp");
+        assertEquals(2, rsrp.getCount());
+        assertEquals(-95, rsrp.getMean(), 0.0001);
+        assertEquals(-100, rsrp.getMin(), 0.0001);
+        assertEquals(-90, rsrp.getMax(), 0.0001);
+
+        final GeoBox washington = new GeoBox(38.8, -77.1, 39.0, -76.9);
+        assertEquals(1, index.getTiles(washington).size());
+        final List<LteRecordData> found = new ArrayList<>();
+        assertEquals(2, index.query(washington, found::add));
+        assertEquals(38.8978, found.get(0).getLatitude(), 0.00001);
+        assertEquals(38.8979, found.get(1).getLatitude(), 0.00001);
+
+        // A small box inside the tile only returns the records inside it
+        assertEquals(1, index.query(new GeoBox(38.89775, -77.0367, 38.89785, -77.0365), record -> {
+        }));
+
+        // A large box is answered by scanning the tiles instead of covering it with cells
+        assertEquals(2, index.getTiles(new GeoBox(-90, -180, 90, 180)).size());
+        assertTrue(index.getTiles(new GeoBox(0, 0, 10, 10)).isEmpty());
+
+        index.clear();
+        assertEquals(0, index.getTileCount());
+        assertNull(index.getTile(38.8977, -77.0365));
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        final SpatialTileIndex<LteRecordData> index = SpatialTileIndex.<LteRecordData>newBuilder()
+                .setPrecision(5)
+                .setShardCount(8)
+                .setMaxRecordsPerTile(0)
+                .addMetric(TileMetric.lteRsrp())
+                .build();
+        final int threads = 4;
+        final int recordsPerThread = 20_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        index.add(lteData(38 + random.nextDouble(), -77 + random.nextDouble(), -100f));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * recordsPerThread, index.getRecordCount());
+        long rsrpCount = 0;
+        for (TileSummary tile : index.getTiles(new GeoBox(38, -77, 39, -76))) {
+            rsrpCount += tile.getMetric("rsrp").getCount();
+            assertEquals(0, tile.getRetainedRecordCount());
+        }
+        assertEquals(threads * recordsPerThread, rsrpCount);
+    }
+
+    private static LteRecordData lteData(double latitude, double longitude, Float rsrp) {
+        final LteRecordData.Builder builder = LteRecordData.newBuilder()
+                .setDeviceSerialNumber("1234")
+                .setLatitude(latitude)
+                .setLongitude(longitude);
+        if (rsrp != null) builder.setRsrp(FloatValue.of(rsrp));
+        return builder.build();
+    }
+}
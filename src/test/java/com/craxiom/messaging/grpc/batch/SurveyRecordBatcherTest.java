@@ -0,0 +1,203 @@
+package com.craxiom.messaging.grpc.batch;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.grpc.LteRecordBatch;
+import com.craxiom.messaging.grpc.RecordBatchHeader;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for converting the survey records to and from the batch messages used by the batch gRPC streams.
+ */
+public class SurveyRecordBatcherTest {
+    private final List<LteRecordBatch> batches = new ArrayList<>();
+    private long nanoTime = 0;
+
+    @Test
+    public void testBatchRoundTripForEveryType() {
+        final List<SurveyBatchType<?, ?, ?>> types = Arrays.asList(SurveyBatchType.GSM, SurveyBatchType.CDMA,
+                SurveyBatchType.UMTS, SurveyBatchType.LTE, SurveyBatchType.NR, SurveyBatchType.PHONE_STATE,
+                SurveyBatchType.WIFI_BEACON, SurveyBatchType.WIFI_PROBE_REQUEST, SurveyBatchType.WIFI_OTA,
+                SurveyBatchType.BLUETOOTH, SurveyBatchType.GNSS, SurveyBatchType.ENERGY_DETECTION,
+                SurveyBatchType.SIGNAL_DETECTION, SurveyBatchType.LTE_RRC, SurveyBatchType.LTE_NAS);
+        final List<Message> defaultRecords = Arrays.asList(GsmRecord.getDefaultInstance(), CdmaRecord.getDefaultInstance(),
+                UmtsRecord.getDefaultInstance(), LteRecord.getDefaultInstance(), NrRecord.getDefaultInstance(),
+                PhoneState.getDefaultInstance(), WifiBeaconRecord.getDefaultInstance(),
+                WifiProbeRequestRecord.getDefaultInstance(), WifiOtaRecord.getDefaultInstance(),
+                BluetoothRecord.getDefaultInstance(), GnssRecord.getDefaultInstance(), EnergyDetection.getDefaultInstance(),
+                SignalDetection.getDefaultInstance(), LteRrc.getDefaultInstance(), LteNas.getDefaultInstance());
+
+        final Random random = new Random(3);
+        for (int i = 0; i < types.size(); i++) {
+            for (Message record : randomRecords(defaultRecords.get(i), 50, random)) {
+                assertRoundTrip(types.get(i), record);
+            }
+        }
+    }
+
+    @Test
+    public void testSharedValuesAreOnlyInTheHeader() {
+        final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher = newBatcher().setMaxRecords(3).build();
+        for (int i = 0; i < 3; i++) {
+            batcher.add(lteRecord("Mission 1", i));
+        }
+
+        assertEquals(1, batches.size());
+        final LteRecordBatch batch = batches.get(0);
+        assertEquals(RecordBatchHeader.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setDeviceSerialNumber("1234")
+                .setDeviceName("Craxiom Pixel")
+                .setMissionId("Mission 1")
+                .build(), batch.getHeader());
+        for (LteRecordData data : batch.getDataList()) {
+            assertEquals("", data.getDeviceSerialNumber());
+            assertEquals("", data.getDeviceName());
+            assertEquals("", data.getMissionId());
+        }
+        assertEquals(Arrays.asList(lteRecord("Mission 1", 0), lteRecord("Mission 1", 1), lteRecord("Mission 1", 2)),
+                SurveyBatchType.LTE.toRecords(batch));
+    }
+
+    @Test
+    public void testRecordsWithoutDataAndNegativeZeros() {
+        final LteRecord noData = LteRecord.newBuilder().setVersion("1.6.0").setMessageType("LteRecord").build();
+        final LteRecord negativeZeros = lteRecord("Mission 1", 1).toBuilder()
+                .setData(lteRecord("Mission 1", 1).getData().toBuilder().setLatitude(-0.0).setLongitude(-0.0)
+                        .setRsrp(FloatValue.of(-0.0f)))
+                .build();
+        assertEquals(Long.MIN_VALUE, Double.doubleToRawLongBits(negativeZeros.getData().getLatitude()));
+
+        final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher = newBatcher().build();
+        batcher.add(negativeZeros);
+        batcher.add(noData);
+        batcher.add(noData);
+        batcher.add(negativeZeros);
+        batcher.close();
+
+        // The records without data are batched apart from the others
+        assertEquals(3, batches.size());
+        assertFalse(batches.get(0).getHeader().getNoData());
+        assertTrue(batches.get(1).getHeader().getNoData());
+        final List<LteRecord> records = new ArrayList<>();
+        for (LteRecordBatch batch : batches) {
+            records.addAll(SurveyBatchType.LTE.toRecords(batch));
+        }
+        assertEquals(Arrays.asList(negativeZeros, noData, noData, negativeZeros), records);
+        assertFalse(records.get(1).hasData());
+        assertEquals(Long.MIN_VALUE, Double.doubleToRawLongBits(records.get(0).getData().getLatitude()));
+        assertEquals(Long.MIN_VALUE, Double.doubleToRawLongBits(records.get(3).getData().getLongitude()));
+        // The wrapper messages are shared with the entry, so they keep their -0.0 without being restored
+        assertEquals(Integer.MIN_VALUE, Float.floatToRawIntBits(records.get(0).getData().getRsrp().getValue()));
+        assertEquals(Long.MIN_VALUE,
+                Double.doubleToRawLongBits(SurveyBatchType.LTE.batchEntry(negativeZeros).getLatitude()));
+    }
+
+    @Test
+    public void testHeaderChangeStartsNewBatch() {
+        final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher = newBatcher().build();
+        batcher.add(lteRecord("Mission 1", 1));
+        batcher.add(lteRecord("Mission 1", 2));
+        batcher.add(lteRecord("Mission 2", 3));
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).getDataCount());
+
+        batcher.close();
+        assertEquals(2, batches.size());
+        assertEquals("Mission 2", batches.get(1).getHeader().getMissionId());
+        assertEquals(3, batches.get(1).getData(0).getRecordNumber());
+    }
+
+    @Test
+    public void testMaxBytes() {
+        final int recordSize = SurveyBatchType.LTE.batchEntry(lteRecord("Mission 1", 1)).getSerializedSize();
+        final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher = newBatcher().setMaxBytes(recordSize * 5).build();
+        for (int i = 0; i < 20; i++) {
+            batcher.add(lteRecord("Mission 1", i));
+        }
+        batcher.close();
+
+        int total = 0;
+        for (LteRecordBatch batch : batches) {
+            assertTrue(batch.getSerializedSize() <= recordSize * 5, "Batch too large: " + batch.getSerializedSize());
+            total += batch.getDataCount();
+        }
+        assertEquals(20, total);
+        assertTrue(batches.size() > 4);
+    }
+
+    @Test
+    public void testMaxDelay() {
+        final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher = newBatcher()
+                .setMaxDelay(100, TimeUnit.MILLISECONDS)
+                .setNanoClock(() -> nanoTime)
+                .build();
+
+        batcher.add(lteRecord("Mission 1", 1));
+        nanoTime += TimeUnit.MILLISECONDS.toNanos(50);
+        batcher.add(lteRecord("Mission 1", 2));
+        assertFalse(batcher.flushIfDue());
+        assertEquals(2, batcher.getPendingCount());
+
+        nanoTime += TimeUnit.MILLISECONDS.toNanos(50);
+        assertTrue(batcher.flushIfDue());
+        assertEquals(0, batcher.getPendingCount());
+        assertEquals(1, batches.size());
+
+        batcher.add(lteRecord("Mission 1", 3));
+        nanoTime += TimeUnit.MILLISECONDS.toNanos(150);
+        batcher.add(lteRecord("Mission 1", 4));
+        assertEquals(2, batches.size());
+        assertEquals(2, batches.get(1).getDataCount());
+    }
+
+    @Test
+    public void testAddAfterClose() {
+        final SurveyRecordBatcher<LteRecord, LteRecordData, LteRecordBatch> batcher = newBatcher().build();
+        batcher.close();
+        assertThrows(IllegalStateException.class, () -> batcher.add(lteRecord("Mission 1", 1)));
+    }
+
+    private SurveyRecordBatcher.Builder<LteRecord, LteRecordData, LteRecordBatch> newBatcher() {
+        return SurveyRecordBatcher.newBuilder(SurveyBatchType.LTE, batches::add);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R extends Message, D extends Message, B extends Message> void assertRoundTrip(SurveyBatchType<R, D, B> type, Message record) {
+        final List<B> batches = new ArrayList<>();
+        final SurveyRecordBatcher<R, D, B> batcher = SurveyRecordBatcher.newBuilder(type, batches::add).build();
+        batcher.add((R) record);
+        batcher.add((R) record);
+        batcher.close();
+
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(record, record), type.toRecords(batches.get(0)));
+    }
+
+    private static LteRecord lteRecord(String missionId, int recordNumber) {
+        return LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("1234")
+                        .setDeviceName("Craxiom Pixel")
+                        .setDeviceTime("1996-12-19T16:39:57-08:00")
+                        .setMissionId(missionId)
+                        .setRecordNumber(recordNumber)
+                        .setMcc(Int32Value.of(310))
+                        .setProvider("ATT"))
+                .build();
+    }
+}
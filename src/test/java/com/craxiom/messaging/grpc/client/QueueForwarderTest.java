@@ -0,0 +1,158 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.grpc.SurveyAck;
+import com.craxiom.messaging.grpc.WirelessSurveyGrpc;
+import com.craxiom.messaging.grpc.server.SurveyServer;
+import com.craxiom.messaging.queue.SurveyRecordQueue;
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.craxiom.messaging.TestRecords.lteRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link QueueForwarder}.
+ */
+public class QueueForwarderTest {
+    private final List<Message> received = new CopyOnWriteArrayList<>();
+    private final String name = InProcessServerBuilder.generateName();
+    private final ManagedChannel channel = InProcessChannelBuilder.forName(name).build();
+    private final WirelessSurveyGrpc.WirelessSurveyStub stub = WirelessSurveyGrpc.newStub(channel);
+
+    @TempDir
+    Path directory;
+
+    private SurveyServer server;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow();
+        if (server != null) server.close();
+    }
+
+    @Test
+    public void testQueuedRecordsAreSentOnceTheServerIsUp() throws Exception {
+        try (SurveyRecordQueue queue = openQueue()) {
+            final long start = queue.getCommittedPosition();
+            final QueueForwarder forwarder = QueueForwarder.newBuilder(queue)
+                    .route(LteRecord.class, client(stub::streamLteSurveyAcked))
+                    .route(GnssRecord.class, client(stub::streamGnssSurveyAcked))
+                    .start();
+
+            for (int i = 0; i < 1500; i++) {
+                queue.append(lteRecord(i));
+                if (i % 10 == 0) queue.append(GnssRecord.newBuilder().setMessageType("GnssRecord").build());
+                if (i % 100 == 0) queue.append(DeviceStatus.newBuilder().setMessageType("DeviceStatus").build());
+            }
+            // Without a server the clients fill up and the rest of the records wait in the queue
+            Thread.sleep(50);
+            assertFalse(queue.isEmpty());
+            assertTrue(forwarder.getForwardedCount() <= 400, "" + forwarder.getForwardedCount());
+            assertEquals(start, queue.getCommittedPosition());
+
+            server = SurveyServer.newBuilder(InProcessServerBuilder.forName(name), received::add)
+                    .useDirectExecutor()
+                    .build()
+                    .start();
+            awaitForwarded(forwarder, queue);
+            forwarder.close();
+            forwarder.getCompletion().get(30, TimeUnit.SECONDS);
+
+            assertEquals(1650, forwarder.getForwardedCount());
+            assertEquals(15, forwarder.getSkippedCount());
+            assertEquals(queue.getReadPosition(), queue.getCommittedPosition());
+            int recordNumber = 0;
+            int gnssCount = 0;
+            for (Message record : received) {
+                if (record instanceof LteRecord) {
+                    assertEquals(recordNumber++, ((LteRecord) record).getData().getRecordNumber());
+                } else {
+                    gnssCount++;
+                }
+            }
+            assertEquals(1500, recordNumber);
+            assertEquals(150, gnssCount);
+        }
+
+        try (SurveyRecordQueue queue = openQueue()) {
+            assertNull(queue.read());
+        }
+    }
+
+    @Test
+    public void testRecordsStayQueuedWhenTheClientFails() throws Exception {
+        final Server plainServer = InProcessServerBuilder.forName(name)
+                .addService(new WirelessSurveyGrpc.WirelessSurveyImplBase() {
+                })
+                .build()
+                .start();
+        try (SurveyRecordQueue queue = openQueue()) {
+            for (int i = 0; i < 10; i++) {
+                queue.append(lteRecord(i));
+            }
+            final QueueForwarder forwarder = QueueForwarder.newBuilder(queue)
+                    .route(LteRecord.class, client(stub::streamLteSurveyAcked))
+                    .start();
+
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> forwarder.getCompletion().get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.UNIMPLEMENTED, Status.fromThrowable(exception.getCause()).getCode());
+        } finally {
+            plainServer.shutdownNow();
+        }
+
+        try (SurveyRecordQueue queue = openQueue()) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(lteRecord(i), queue.read());
+            }
+            assertNull(queue.read());
+
+            // A client that drops records could lose records before they are committed
+            final ResumableSurveyClient<LteRecord> dropping = ResumableSurveyClient.newBuilder(
+                    stub::streamLteSurveyAcked).setOverflowPolicy(OverflowPolicy.DROP_OLDEST).start();
+            assertThrows(IllegalArgumentException.class,
+                    () -> QueueForwarder.newBuilder(queue).route(LteRecord.class, dropping));
+            dropping.cancel("Not used");
+        }
+    }
+
+    private SurveyRecordQueue openQueue() throws IOException {
+        return SurveyRecordQueue.newBuilder(directory).setSegmentSize(16 * 1024).open();
+    }
+
+    private static <T extends Message> ResumableSurveyClient<T> client(
+            Function<StreamObserver<SurveyAck>, StreamObserver<T>> call) {
+        return ResumableSurveyClient.newBuilder(call)
+                .setWindowSize(100)
+                .setQueueCapacity(100)
+                .setReconnectBackoff(10, 50, TimeUnit.MILLISECONDS)
+                // The short backoff would use up the default attempts while the server is down
+                .setMaxReconnectAttempts(Integer.MAX_VALUE)
+                .start();
+    }
+
+    private static void awaitForwarded(QueueForwarder forwarder, SurveyRecordQueue queue)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!(queue.isEmpty() && forwarder.getForwardedCount() == 1650) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.grpc.SurveyAck;
+import com.craxiom.messaging.grpc.WirelessSurveyGrpc;
+import com.craxiom.messaging.grpc.server.RecordSink;
+import com.craxiom.messaging.grpc.server.SurveyServer;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.craxiom.messaging.TestRecords.lteRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ResumableSurveyClient} against the acknowledged streams of a {@link SurveyServer}.
+ */
+public class ResumableSurveyClientTest {
+    private final Set<Integer> received = new ConcurrentSkipListSet<>();
+    private final String name = InProcessServerBuilder.generateName();
+    private final ManagedChannel channel = InProcessChannelBuilder.forName(name).build();
+    private final WirelessSurveyGrpc.WirelessSurveyStub stub = WirelessSurveyGrpc.newStub(channel);
+
+    private SurveyServer server;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow();
+        if (server != null) server.close();
+    }
+
+    @Test
+    public void testOnlyUnacknowledgedRecordsAreResent() throws Exception {
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        startServer(record -> {
+            final int recordNumber = ((LteRecord) record).getData().getRecordNumber();
+            if (recordNumber == 500 && failed.compareAndSet(false, true)) throw new IOException("The disk is full");
+            received.add(recordNumber);
+        });
+
+        final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+                .setWindowSize(50)
+                .setReconnectBackoff(10, 100, TimeUnit.MILLISECONDS)
+                .start();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(client.send(lteRecord(i)));
+        }
+        client.close();
+        client.getCompletion().get(30, TimeUnit.SECONDS);
+
+        assertEquals(rangeOf(1000), received);
+        assertEquals(1, client.getReconnectCount());
+        assertTrue(client.getResentCount() > 0 && client.getResentCount() <= 50, "" + client.getResentCount());
+        assertEquals(1000 + client.getResentCount(), client.getSentCount());
+        assertEquals(1000, client.getAckedCount());
+        assertEquals(0, client.getWindowDepth());
+    }
+
+    @Test
+    public void testResumeAfterTheServerRestarts(@TempDir Path spillDirectory) throws Exception {
+        startServer(record -> received.add(((LteRecord) record).getData().getRecordNumber()));
+
+        final ConcurrentSkipListSet<Integer> deviceRecordNumbers = new ConcurrentSkipListSet<>();
+        final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+                .setWindowSize(20)
+                .setQueueCapacity(10)
+                .setSpillToDisk(spillDirectory, LteRecord.parser(), 1024 * 1024)
+                .setReconnectBackoff(10, 50, TimeUnit.MILLISECONDS)
+                // The short backoff would use up the default attempts while the server is down
+                .setMaxReconnectAttempts(Integer.MAX_VALUE)
+                .setAckListener(ack -> ack.getDevicesList().forEach(device -> deviceRecordNumbers.add(
+                        device.getRecordNumber())))
+                .start();
+        for (int i = 0; i < 200; i++) {
+            client.send(lteRecord(i));
+        }
+        awaitAcked(client, 200);
+
+        server.close();
+        for (int i = 200; i < 400; i++) {
+            client.send(lteRecord(i));
+        }
+        assertTrue(client.getSpilledCount() > 0);
+        startServer(record -> received.add(((LteRecord) record).getData().getRecordNumber()));
+        client.close();
+        client.getCompletion().get(30, TimeUnit.SECONDS);
+
+        assertEquals(rangeOf(400), received);
+        assertTrue(client.getReconnectCount() >= 1);
+        assertEquals(400, client.getAckedCount());
+        assertEquals(0, client.getDroppedCount());
+        assertEquals(399, (int) deviceRecordNumbers.last());
+    }
+
+    @Test
+    public void testStatusThatIsNotRetried() throws Exception {
+        final Server plainServer = InProcessServerBuilder.forName(name)
+                .addService(new WirelessSurveyGrpc.WirelessSurveyImplBase() {
+                })
+                .build()
+                .start();
+        try {
+            final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+                    .setReconnectBackoff(0, 0, TimeUnit.MILLISECONDS)
+                    .start();
+            client.send(lteRecord(1));
+
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> client.getCompletion().get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.UNIMPLEMENTED, Status.fromThrowable(exception.getCause()).getCode());
+            assertEquals(0, client.getReconnectCount());
+            assertFalse(client.send(lteRecord(2)));
+            assertEquals(2, client.getDroppedCount());
+        } finally {
+            plainServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInternalErrorIsNotRetried() throws Exception {
+        final Server plainServer = InProcessServerBuilder.forName(name)
+                .addService(new WirelessSurveyGrpc.WirelessSurveyImplBase() {
+                    @Override
+                    public StreamObserver<LteRecord> streamLteSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+                        responseObserver.onError(Status.INTERNAL.withDescription("A bug").asRuntimeException());
+                        return new NoOpObserver<>();
+                    }
+                })
+                .build()
+                .start();
+        try {
+            final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+                    .setReconnectBackoff(0, 0, TimeUnit.MILLISECONDS)
+                    .start();
+            client.send(lteRecord(1));
+
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> client.getCompletion().get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.INTERNAL, Status.fromThrowable(exception.getCause()).getCode());
+            assertEquals(0, client.getReconnectCount());
+        } finally {
+            plainServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStreamsCompletedWithoutAcksRunOutOfAttempts() throws Exception {
+        final Server plainServer = InProcessServerBuilder.forName(name)
+                .addService(new WirelessSurveyGrpc.WirelessSurveyImplBase() {
+                    @Override
+                    public StreamObserver<LteRecord> streamLteSurveyAcked(StreamObserver<SurveyAck> responseObserver) {
+                        responseObserver.onCompleted();
+                        return new NoOpObserver<>();
+                    }
+                })
+                .build()
+                .start();
+        try {
+            final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+                    .setReconnectBackoff(1, 1, TimeUnit.MILLISECONDS)
+                    .setMaxReconnectAttempts(3)
+                    .start();
+            client.send(lteRecord(1));
+            client.close();
+
+            final ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> client.getCompletion().get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(exception.getCause()).getCode());
+            assertEquals(3, client.getReconnectCount());
+            assertEquals(1, client.getDroppedCount());
+        } finally {
+            plainServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReconnectAttemptsRunOut() {
+        final ResumableSurveyClient<LteRecord> client = ResumableSurveyClient.newBuilder(stub::streamLteSurveyAcked)
+                .setReconnectBackoff(1, 1, TimeUnit.MILLISECONDS)
+                .setMaxReconnectAttempts(3)
+                .start();
+        client.send(lteRecord(1));
+
+        final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> client.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(exception.getCause()).getCode());
+        assertEquals(3, client.getReconnectCount());
+    }
+
+    private void startServer(RecordSink sink) throws IOException {
+        server = SurveyServer.newBuilder(InProcessServerBuilder.forName(name), sink)
+                .useDirectExecutor()
+                .setShutdownTimeout(100, TimeUnit.MILLISECONDS)
+                .build()
+                .start();
+    }
+
+    private static void awaitAcked(ResumableSurveyClient<?> client, long count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (client.getAckedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, client.getAckedCount());
+    }
+
+    private static final class NoOpObserver<V> implements StreamObserver<V> {
+        @Override
+        public void onNext(V value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    private static Set<Integer> rangeOf(int count) {
+        final Set<Integer> numbers = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,253 @@
+package com.craxiom.messaging.grpc.client;
+
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.grpc.LteSurveyResponse;
+import com.craxiom.messaging.grpc.WirelessSurveyGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.craxiom.messaging.TestRecords.lteRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the flow control and overflow policies of the {@link SurveyStreamClient}. The server in these tests only
+ * requests messages when the test tells it to, which makes the client stream not ready in the meantime.
+ */
+public class SurveyStreamClientTest {
+    private final List<Integer> received = new CopyOnWriteArrayList<>();
+    private final CountDownLatch streamStarted = new CountDownLatch(1);
+    private volatile ServerCallStreamObserver<LteSurveyResponse> serverStream;
+
+    private Server server;
+    private ManagedChannel channel;
+    private WirelessSurveyGrpc.WirelessSurveyStub stub;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new WirelessSurveyGrpc.WirelessSurveyImplBase() {
+                    @Override
+                    public StreamObserver<LteRecord> streamLteSurvey(StreamObserver<LteSurveyResponse> responseObserver) {
+                        serverStream = (ServerCallStreamObserver<LteSurveyResponse>) responseObserver;
+                        serverStream.disableAutoRequest();
+                        streamStarted.countDown();
+                        return new StreamObserver<LteRecord>() {
+                            @Override
+                            public void onNext(LteRecord record) {
+                                received.add(record.getData().getRecordNumber());
+                            }
+
+                            @Override
+                            public void onError(Throwable throwable) {
+                            }
+
+                            @Override
+                            public void onCompleted() {
+                                responseObserver.onNext(LteSurveyResponse.getDefaultInstance());
+                                responseObserver.onCompleted();
+                            }
+                        };
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        stub = WirelessSurveyGrpc.newStub(channel);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testRecordsAreNotSentUntilTheStreamIsReady() throws Exception {
+        final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+                .setQueueCapacity(100)
+                .start();
+        awaitServer();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(client.send(lteRecord(i)));
+        }
+        assertEquals(10, client.getQueueDepth());
+        assertTrue(received.isEmpty());
+
+        serverStream.request(4);
+        assertEquals(listOf(0, 4), received);
+        assertEquals(6, client.getQueueDepth());
+        assertEquals(4, client.getSentCount());
+
+        serverStream.request(Integer.MAX_VALUE);
+        client.close();
+        assertEquals(LteSurveyResponse.getDefaultInstance(), client.getResponse().get(5, TimeUnit.SECONDS));
+        assertEquals(listOf(0, 10), received);
+        assertEquals(0, client.getDroppedCount());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+                .setQueueCapacity(5)
+                .setOverflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .start();
+        awaitServer();
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(client.send(lteRecord(i)));
+        }
+        assertEquals(5, client.getQueueDepth());
+        assertEquals(15, client.getDroppedCount());
+
+        serverStream.request(Integer.MAX_VALUE);
+        client.close();
+        client.getResponse().get(5, TimeUnit.SECONDS);
+        assertEquals(listOf(15, 5), received);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+                .setQueueCapacity(3)
+                .setOverflowPolicy(OverflowPolicy.BLOCK)
+                .start();
+        awaitServer();
+
+        final Thread sender = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                client.send(lteRecord(i));
+            }
+            client.close();
+        });
+        sender.start();
+
+        // The sender fills the queue and then waits for the server to request more
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.getQueueDepth() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(3, client.getQueueDepth());
+        assertTrue(sender.isAlive());
+
+        for (int i = 0; i < 10; i++) {
+            serverStream.request(1);
+            Thread.sleep(1);
+        }
+        sender.join(5000);
+        assertFalse(sender.isAlive());
+        client.getResponse().get(5, TimeUnit.SECONDS);
+
+        assertEquals(listOf(0, 10), received);
+        assertEquals(0, client.getDroppedCount());
+    }
+
+    @Test
+    public void testSpillToDisk(@TempDir Path spillDirectory) throws Exception {
+        final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+                .setQueueCapacity(2)
+                .setSpillToDisk(spillDirectory, LteRecord.parser(), 1024 * 1024)
+                .start();
+        awaitServer();
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(client.send(lteRecord(i)));
+        }
+        assertEquals(2, client.getQueueDepth());
+        assertEquals(48, client.getSpillDepth());
+        assertEquals(48, client.getSpilledCount());
+
+        serverStream.request(30);
+        assertEquals(listOf(0, 30), received);
+
+        // Records sent while others are waiting on disk must go after them
+        for (int i = 50; i < 60; i++) {
+            assertTrue(client.send(lteRecord(i)));
+        }
+
+        serverStream.request(Integer.MAX_VALUE);
+        client.close();
+        client.getResponse().get(5, TimeUnit.SECONDS);
+        assertEquals(listOf(0, 60), received);
+        assertEquals(0, client.getDroppedCount());
+        final File[] remainingFiles = spillDirectory.toFile().listFiles();
+        assertNotNull(remainingFiles);
+        assertEquals(0, remainingFiles.length);
+    }
+
+    @Test
+    public void testSpillFileLimit(@TempDir Path spillDirectory) throws Exception {
+        final int recordSize = lteRecord(1).getSerializedSize() + 1;
+        final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+                .setQueueCapacity(1)
+                .setSpillToDisk(spillDirectory, LteRecord.parser(), recordSize * 3L)
+                .start();
+        awaitServer();
+
+        int accepted = 0;
+        for (int i = 1; i <= 10; i++) {
+            if (client.send(lteRecord(i))) accepted++;
+        }
+        assertEquals(4, accepted);
+        assertEquals(6, client.getDroppedCount());
+
+        // The waiting records are counted as dropped by the time cancel returns, and only once
+        client.cancel("done");
+        assertEquals(10 - client.getSentCount(), client.getDroppedCount());
+        assertEquals(0, client.getQueueDepth());
+        assertEquals(0, client.getSpillDepth());
+        assertThrows(ExecutionException.class, () -> client.getResponse().get(5, TimeUnit.SECONDS));
+        assertEquals(10 - client.getSentCount(), client.getDroppedCount());
+    }
+
+    @Test
+    public void testServerError() throws Exception {
+        final SurveyStreamClient<LteRecord, LteSurveyResponse> client = SurveyStreamClient.newBuilder(stub::streamLteSurvey)
+                .setQueueCapacity(10)
+                .start();
+        awaitServer();
+        client.send(lteRecord(1));
+
+        serverStream.onError(Status.UNAVAILABLE.asRuntimeException());
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> client.getResponse().get(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(exception.getCause()).getCode());
+        assertFalse(client.send(lteRecord(2)));
+        assertEquals(2, client.getDroppedCount());
+        assertEquals(0, client.getQueueDepth());
+    }
+
+    private void awaitServer() throws InterruptedException, TimeoutException {
+        if (!streamStarted.await(5, TimeUnit.SECONDS)) throw new TimeoutException("The server stream did not start");
+    }
+
+    private static List<Integer> listOf(int start, int count) {
+        final List<Integer> numbers = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,222 @@
+package com.craxiom.messaging.grpc.compression;
+
+import com.craxiom.messaging.DeviceStatus;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.grpc.DeviceStatusGrpc;
+import com.craxiom.messaging.grpc.LteSurveyResponse;
+import com.craxiom.messaging.grpc.WirelessSurveyGrpc;
+import com.craxiom.messaging.grpc.server.SurveyServer;
+import com.google.protobuf.Message;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compression codecs, policy, and interceptors.
+ */
+public class CompressionTest {
+    @Test
+    public void testCodecsRoundTrip() throws Exception {
+        final byte[] record = lteRecord(20).toByteArray();
+        for (int level = 1; level <= 9; level += 4) {
+            final byte[] gzipped = compress(CompressionCodecs.gzip(level), record);
+            assertArrayEquals(record, decompress(new Codec.Gzip(), gzipped));
+            assertArrayEquals(record, decompress(CompressionCodecs.gzip(level), gzipped));
+
+            final byte[] deflated = compress(CompressionCodecs.deflate(level), record);
+            assertArrayEquals(record, decompress(CompressionCodecs.deflate(level), deflated));
+            assertTrue(deflated.length < gzipped.length);
+            assertTrue(deflated.length < record.length / 2, "The repeated header strings should compress well");
+        }
+        assertThrows(IllegalArgumentException.class, () -> CompressionCodecs.gzip(0));
+    }
+
+    @Test
+    public void testPolicy() {
+        final String lteMethod = WirelessSurveyGrpc.getStreamLteSurveyMethod().getFullMethodName();
+        final String statusMethod = DeviceStatusGrpc.getStatusUpdateMethod().getFullMethodName();
+        final CompressionPolicy policy = CompressionPolicy.surveyDefaults();
+        assertEquals("gzip", policy.getEncoding(lteMethod));
+        assertNull(policy.getEncoding(statusMethod));
+        assertFalse(policy.shouldCompress(lteMethod, CompressionPolicy.DEFAULT_MIN_MESSAGE_SIZE - 1));
+        assertTrue(policy.shouldCompress(lteMethod, CompressionPolicy.DEFAULT_MIN_MESSAGE_SIZE));
+        assertFalse(policy.shouldCompress(statusMethod, 100_000));
+
+        assertNull(CompressionPolicy.newBuilder().build().getEncoding(lteMethod));
+        assertThrows(IllegalArgumentException.class, () -> CompressionPolicy.newBuilder().setDefault("zstd", 0).build());
+        final CompressionPolicy deflate = CompressionPolicy.newBuilder()
+                .addCodec(CompressionCodecs.deflate(3))
+                .setMethod(WirelessSurveyGrpc.getStreamLteSurveyMethod(), "deflate", 0)
+                .build();
+        assertEquals("deflate", deflate.getEncoding(lteMethod));
+        assertNotNull(deflate.getDecompressorRegistry().lookupDecompressor("deflate"));
+    }
+
+    @Test
+    public void testClientInterceptorSkipsSmallMessages() {
+        final List<String> compressors = new ArrayList<>();
+        final List<Boolean> messageCompression = new ArrayList<>();
+        final Channel recordingChannel = new Channel() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions options) {
+                compressors.add(options.getCompressor());
+                return new NoopClientCall<ReqT, RespT>() {
+                    private boolean compress = true;
+
+                    @Override
+                    public void setMessageCompression(boolean enabled) {
+                        compress = enabled;
+                    }
+
+                    @Override
+                    public void sendMessage(ReqT message) {
+                        messageCompression.add(compress);
+                    }
+                };
+            }
+
+            @Override
+            public String authority() {
+                return "test";
+            }
+        };
+        final Channel channel = ClientInterceptors.intercept(recordingChannel,
+                new CompressionClientInterceptor(CompressionPolicy.surveyDefaults()));
+
+        final ClientCall<LteRecord, LteSurveyResponse> lteCall =
+                channel.newCall(WirelessSurveyGrpc.getStreamLteSurveyMethod(), CallOptions.DEFAULT);
+        lteCall.sendMessage(lteRecord(1));
+        lteCall.sendMessage(lteRecord(10));
+        final ClientCall<DeviceStatus, ?> statusCall = channel.newCall(DeviceStatusGrpc.getStatusUpdateMethod(), CallOptions.DEFAULT);
+        statusCall.sendMessage(DeviceStatus.getDefaultInstance());
+
+        assertTrue(lteRecord(1).getSerializedSize() < CompressionPolicy.DEFAULT_MIN_MESSAGE_SIZE);
+        assertTrue(lteRecord(10).getSerializedSize() >= CompressionPolicy.DEFAULT_MIN_MESSAGE_SIZE);
+        assertEquals(Arrays.asList("gzip", null), compressors);
+        assertEquals(Arrays.asList(false, true, true), messageCompression);
+    }
+
+    @Test
+    public void testSurveyServerWithCompression() throws Exception {
+        final List<Message> received = new CopyOnWriteArrayList<>();
+        final String name = InProcessServerBuilder.generateName();
+        final CompressionPolicy policy = CompressionPolicy.newBuilder()
+                .addCodec(CompressionCodecs.deflate(CompressionCodecs.FAST_LEVEL))
+                .setDefault("deflate", 0)
+                .build();
+        try (SurveyServer server = SurveyServer.newBuilder(InProcessServerBuilder.forName(name), received::add)
+                .useDirectExecutor()
+                .setCompression(policy)
+                .build()
+                .start()) {
+            final ManagedChannel channel = policy.configure(InProcessChannelBuilder.forName(name)).build();
+            try {
+                final CompletableFuture<LteSurveyResponse> response = new CompletableFuture<>();
+                final StreamObserver<LteRecord> requests = WirelessSurveyGrpc.newStub(channel).streamLteSurvey(new StreamObserver<LteSurveyResponse>() {
+                    @Override
+                    public void onNext(LteSurveyResponse value) {
+                        response.complete(value);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        response.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+                requests.onNext(lteRecord(1));
+                requests.onNext(lteRecord(10));
+                requests.onCompleted();
+                response.get(5, TimeUnit.SECONDS);
+            } finally {
+                channel.shutdownNow();
+            }
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getDeliveredCount() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(lteRecord(10), received.get(1));
+        }
+    }
+
+    /**
+     * @return An LTE record whose device name is repeated the given number of times, to vary the size.
+     */
+    private static LteRecord lteRecord(int repeats) {
+        final StringBuilder deviceName = new StringBuilder();
+        for (int i = 0; i < repeats; i++) {
+            deviceName.append("Network Survey Pixel ");
+        }
+        return LteRecord.newBuilder()
+                .setMessageType("LteRecord")
+                .setVersion("1.6.0")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("356789012345678")
+                        .setDeviceName(deviceName.toString())
+                        .setDeviceTime("2024-10-17T12:00:00.000-04:00")
+                        .setMissionId("NS 356789012345678 20241017-120000"))
+                .build();
+    }
+
+    private static byte[] compress(Codec codec, byte[] bytes) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputStream compressing = codec.compress(output)) {
+            compressing.write(bytes);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] decompress(Codec codec, byte[] bytes) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream decompressing = codec.decompress(new ByteArrayInputStream(bytes))) {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = decompressing.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static class NoopClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public void halfClose() {
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+        }
+    }
+}
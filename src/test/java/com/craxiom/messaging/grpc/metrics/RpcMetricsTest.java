@@ -0,0 +1,295 @@
+package com.craxiom.messaging.grpc.metrics;
+
+import com.craxiom.messaging.DeviceStatus;
+import com.craxiom.messaging.DeviceStatusData;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.grpc.*;
+import com.craxiom.messaging.grpc.server.SurveyServer;
+import com.google.protobuf.Int32Value;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link MetricsClientInterceptor} and {@link MetricsServerInterceptor} using an in-process gRPC server.
+ */
+public class RpcMetricsTest {
+    private final RpcMetricsCollector clientMetrics = new RpcMetricsCollector();
+    private final RpcMetricsCollector serverMetrics = new RpcMetricsCollector();
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (channel != null) channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        if (server != null) server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testUnaryCall() throws Exception {
+        final Channel channel = start(new ConnectionHandshakeGrpc.ConnectionHandshakeImplBase() {
+            @Override
+            public void startConnection(ConnectionRequest request, StreamObserver<ConnectionReply> responseObserver) {
+                responseObserver.onNext(ConnectionReply.newBuilder().setConnectionAccept(true).build());
+                responseObserver.onCompleted();
+            }
+        });
+
+        final ConnectionReply reply = ConnectionHandshakeGrpc.newBlockingStub(channel)
+                .startConnection(ConnectionRequest.getDefaultInstance());
+        assertTrue(reply.getConnectionAccept());
+
+        final String method = ConnectionHandshakeGrpc.getStartConnectionMethod().getFullMethodName();
+        final RpcMethodStats client = clientMetrics.getStats(RpcMetrics.Side.CLIENT, method);
+        assertEquals(1, client.getMessagesSent());
+        assertEquals(0, client.getBytesSent());
+        assertEquals(1, client.getMessagesReceived());
+        assertEquals(reply.getSerializedSize(), client.getBytesReceived());
+        assertEquals(1, client.getCalls());
+        assertEquals(0, client.getFailedCalls());
+        assertTrue(client.getCallNanos() > 0);
+
+        final RpcMethodStats server = awaitServerCalls(RpcMetrics.Side.SERVER, method, 1);
+        assertEquals(1, server.getMessagesReceived());
+        assertEquals(1, server.getMessagesSent());
+        assertEquals(reply.getSerializedSize(), server.getBytesSent());
+        assertNull(serverMetrics.getStats(RpcMetrics.Side.CLIENT, method));
+    }
+
+    @Test
+    public void testClientStreamingCall() throws Exception {
+        final Channel channel = start(new DeviceStatusGrpc.DeviceStatusImplBase() {
+            @Override
+            public StreamObserver<DeviceStatus> statusUpdate(StreamObserver<StatusUpdateReply> responseObserver) {
+                return new CompletingObserver<>(responseObserver, StatusUpdateReply.getDefaultInstance());
+            }
+        });
+
+        final List<DeviceStatus> statuses = new ArrayList<>();
+        long bytes = 0;
+        for (int i = 0; i < 25; i++) {
+            final DeviceStatus status = DeviceStatus.newBuilder()
+                    .setMessageType("DeviceStatus")
+                    .setData(DeviceStatusData.newBuilder().setDeviceSerialNumber("1234").setDeviceModel("Pixel 8"))
+                    .build();
+            statuses.add(status);
+            bytes += status.getSerializedSize();
+        }
+        stream(DeviceStatusGrpc.newStub(channel)::statusUpdate, statuses);
+
+        final String method = DeviceStatusGrpc.getStatusUpdateMethod().getFullMethodName();
+        final RpcMethodStats client = clientMetrics.getStats(RpcMetrics.Side.CLIENT, method);
+        assertEquals(25, client.getMessagesSent());
+        assertEquals(bytes, client.getBytesSent());
+        assertTrue(client.getSerializationNanos() > 0);
+        assertEquals(1, client.getMessagesReceived());
+
+        final RpcMethodStats server = awaitServerCalls(RpcMetrics.Side.SERVER, method, 1);
+        assertEquals(25, server.getMessagesReceived());
+        assertEquals(bytes, server.getBytesReceived());
+        assertTrue(server.getParseNanos() > 0);
+        assertEquals((double) (bytes + client.getBytesReceived()) / 26, client.getMeanMessageBytes(), 1e-9);
+        assertTrue(client.getMessagesPerSecond() > 0);
+    }
+
+    @Test
+    public void testFailedCall() throws Exception {
+        final Channel channel = start(new ConnectionHandshakeGrpc.ConnectionHandshakeImplBase() {
+            @Override
+            public void startConnection(ConnectionRequest request, StreamObserver<ConnectionReply> responseObserver) {
+                responseObserver.onError(Status.PERMISSION_DENIED.asRuntimeException());
+            }
+        });
+
+        final StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> ConnectionHandshakeGrpc.newBlockingStub(channel).startConnection(ConnectionRequest.getDefaultInstance()));
+        assertEquals(Status.Code.PERMISSION_DENIED, e.getStatus().getCode());
+
+        final String method = ConnectionHandshakeGrpc.getStartConnectionMethod().getFullMethodName();
+        assertEquals(1, clientMetrics.getStats(RpcMetrics.Side.CLIENT, method).getFailedCalls());
+        assertEquals(1, awaitServerCalls(RpcMetrics.Side.SERVER, method, 1).getFailedCalls());
+    }
+
+    @Test
+    public void testSurveyServerMetrics() throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        final SurveyServer surveyServer = SurveyServer.newBuilder(InProcessServerBuilder.forName(name), record -> {
+                })
+                .setMetrics(serverMetrics)
+                .build()
+                .start();
+        try {
+            channel = InProcessChannelBuilder.forName(name).build();
+            final Channel intercepted = ClientInterceptors.intercept(channel, new MetricsClientInterceptor(clientMetrics));
+            final List<LteRecord> records = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                records.add(LteRecord.newBuilder()
+                        .setData(LteRecordData.newBuilder().setRecordNumber(i).setEarfcn(Int32Value.of(5230)))
+                        .build());
+            }
+            stream(WirelessSurveyGrpc.newStub(intercepted)::streamLteSurvey, records);
+
+            final String method = WirelessSurveyGrpc.getStreamLteSurveyMethod().getFullMethodName();
+            assertEquals(10, awaitServerCalls(RpcMetrics.Side.SERVER, method, 1).getMessagesReceived());
+            assertEquals(10, clientMetrics.getStats(RpcMetrics.Side.CLIENT, method).getMessagesSent());
+        } finally {
+            surveyServer.close();
+        }
+    }
+
+    @Test
+    public void testStatsAreOrderedByBytes() {
+        final RpcMetricsCollector metrics = new RpcMetricsCollector();
+        metrics.recordMessage(RpcMetrics.Side.SERVER, WirelessSurveyGrpc.getStreamGnssSurveyMethod(),
+                RpcMetrics.Direction.RECEIVED, 100, 10);
+        metrics.recordMessage(RpcMetrics.Side.SERVER, WirelessSurveyGrpc.getStreamLteSurveyMethod(),
+                RpcMetrics.Direction.RECEIVED, 300, 10);
+        metrics.recordMessage(RpcMetrics.Side.CLIENT, WirelessSurveyGrpc.getStreamNrSurveyMethod(),
+                RpcMetrics.Direction.SENT, 200, 10);
+
+        final List<RpcMethodStats> stats = metrics.getStats();
+        assertEquals(3, stats.size());
+        assertEquals(WirelessSurveyGrpc.getStreamLteSurveyMethod().getFullMethodName(), stats.get(0).getFullMethodName());
+        assertEquals(RpcMetrics.Side.CLIENT, stats.get(1).getSide());
+        assertEquals(100, stats.get(2).getBytesReceived());
+
+        metrics.reset();
+        assertTrue(metrics.getStats().isEmpty());
+    }
+
+    @Test
+    public void testMeterRegistryMetrics() {
+        final Map<String, List<Long>> meters = new TreeMap<>();
+        final MeterRegistryRpcMetrics metrics = new MeterRegistryRpcMetrics(new MeterRegistryRpcMetrics.MeterFactory() {
+            @Override
+            public LongConsumer counter(String name, String... tags) {
+                return meter(name, tags);
+            }
+
+            @Override
+            public LongConsumer summary(String name, String baseUnit, String... tags) {
+                assertEquals("bytes", baseUnit);
+                return meter(name, tags);
+            }
+
+            @Override
+            public LongConsumer timer(String name, String... tags) {
+                return meter(name, tags);
+            }
+
+            private LongConsumer meter(String name, String... tags) {
+                final String id = name + Arrays.toString(tags);
+                assertFalse(meters.containsKey(id), id);
+                final List<Long> values = new ArrayList<>();
+                meters.put(id, values);
+                return values::add;
+            }
+        });
+
+        final MethodDescriptor<?, ?> method = DeviceStatusGrpc.getStatusUpdateMethod();
+        metrics.recordMessage(RpcMetrics.Side.SERVER, method, RpcMetrics.Direction.RECEIVED, 42, 1000);
+        metrics.recordMessage(RpcMetrics.Side.SERVER, method, RpcMetrics.Direction.RECEIVED, 40, 900);
+        metrics.recordCall(RpcMetrics.Side.SERVER, method, Status.Code.OK, 5000);
+        metrics.recordCall(RpcMetrics.Side.SERVER, method, Status.Code.OK, 6000);
+        metrics.recordMessage(RpcMetrics.Side.CLIENT, method, RpcMetrics.Direction.SENT, 42, 800);
+
+        final String tags = "service, com.craxiom.messaging.grpc.DeviceStatus, method, StatusUpdate, methodType, CLIENT_STREAMING";
+        assertEquals(Arrays.asList(42L, 40L), meters.get("grpc.server.message.size[" + tags + ", direction, received]"));
+        assertEquals(Arrays.asList(1000L, 900L), meters.get("grpc.server.serialization.duration[" + tags + ", direction, received]"));
+        assertEquals(Arrays.asList(1L, 1L), meters.get("grpc.server.requests.received[" + tags + "]"));
+        assertEquals(Collections.emptyList(), meters.get("grpc.server.responses.sent[" + tags + "]"));
+        assertEquals(Arrays.asList(5000L, 6000L), meters.get("grpc.server.processing.duration[" + tags + ", statusCode, OK]"));
+        assertEquals(Collections.singletonList(1L), meters.get("grpc.client.requests.sent[" + tags + "]"));
+        assertEquals(Collections.emptyList(), meters.get("grpc.client.responses.received[" + tags + "]"));
+    }
+
+    private Channel start(BindableService service) throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(MetricsServerInterceptor.instrument(service, serverMetrics))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        return ClientInterceptors.intercept(channel, new MetricsClientInterceptor(clientMetrics));
+    }
+
+    /**
+     * The server records the call when it closes it, which can be after the client has seen the response.
+     */
+    private RpcMethodStats awaitServerCalls(RpcMetrics.Side side, String method, int calls) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        RpcMethodStats stats = serverMetrics.getStats(side, method);
+        while ((stats == null || stats.getCalls() < calls) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+            stats = serverMetrics.getStats(side, method);
+        }
+        assertNotNull(stats);
+        assertEquals(calls, stats.getCalls());
+        return stats;
+    }
+
+    private static <T, R> void stream(Function<StreamObserver<R>, StreamObserver<T>> call, List<T> messages)
+            throws Exception {
+        final CompletableFuture<R> response = new CompletableFuture<>();
+        final StreamObserver<T> requestStream = call.apply(new StreamObserver<R>() {
+            @Override
+            public void onNext(R value) {
+                response.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                response.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        for (T message : messages) {
+            requestStream.onNext(message);
+        }
+        requestStream.onCompleted();
+        response.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends a single response once the client has finished sending its stream.
+     */
+    private static final class CompletingObserver<T, R> implements StreamObserver<T> {
+        private final StreamObserver<R> responseObserver;
+        private final R response;
+
+        private CompletingObserver(StreamObserver<R> responseObserver, R response) {
+            this.responseObserver = responseObserver;
+            this.response = response;
+        }
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onCompleted() {
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.craxiom.messaging.grpc.server;
+
+import com.craxiom.messaging.*;
+import com.craxiom.messaging.grpc.*;
+import com.craxiom.messaging.grpc.batch.SurveyBatchType;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link SurveyServer} using an in-process gRPC server.
+ */
+public class SurveyServerTest {
+    private final List<Message> received = new CopyOnWriteArrayList<>();
+
+    private SurveyServer server;
+    private ManagedChannel channel;
+    private WirelessSurveyGrpc.WirelessSurveyStub stub;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (channel != null) channel.shutdownNow();
+        if (server != null) server.close();
+    }
+
+    @Test
+    public void testEveryRpcDeliversRecords() throws Exception {
+        start(SurveyServer.Builder::useDirectExecutor, received::add, SurveyServer.DEFAULT_RING_BUFFER_CAPACITY);
+
+        stream(stub::streamGsmSurvey, GsmRecord.newBuilder().setMessageType("GsmRecord").build());
+        stream(stub::streamCdmaSurvey, CdmaRecord.newBuilder().setMessageType("CdmaRecord").build());
+        stream(stub::streamUmtsSurvey, UmtsRecord.newBuilder().setMessageType("UmtsRecord").build());
+        stream(stub::streamLteSurvey, LteRecord.newBuilder().setMessageType("LteRecord").build());
+        stream(stub::streamNrSurvey, NrRecord.newBuilder().setMessageType("NrRecord").build());
+        stream(stub::streamPhoneState, PhoneState.newBuilder().setMessageType("PhoneState").build());
+        stream(stub::streamWifiBeaconSurvey, WifiBeaconRecord.newBuilder().setMessageType("WifiBeaconRecord").build());
+        stream(stub::streamWifiProbeRequestSurvey, WifiProbeRequestRecord.newBuilder().setMessageType("WifiProbeRequestRecord").build());
+        stream(stub::streamWifiOtaSurvey, WifiOtaRecord.newBuilder().setMessageType("WifiOtaRecord").build());
+        stream(stub::streamBluetoothSurvey, BluetoothRecord.newBuilder().setMessageType("BluetoothRecord").build());
+        stream(stub::streamGnssSurvey, GnssRecord.newBuilder().setMessageType("GnssRecord").build());
+        stream(stub::streamEnergyDetections, EnergyDetection.newBuilder().setMessageType("EnergyDetection").build());
+        stream(stub::streamSignalDetections, SignalDetection.newBuilder().setMessageType("SignalDetection").build());
+        stream(stub::streamLteRrc, LteRrc.newBuilder().setMessageType("LteRrc").build());
+        stream(stub::streamLteNas, LteNas.newBuilder().setMessageType("LteNas").build());
+
+        awaitDelivered(15);
+        final List<String> messageTypes = new ArrayList<>();
+        for (Message record : received) {
+            messageTypes.add((String) record.getField(record.getDescriptorForType().findFieldByName("messageType")));
+        }
+        assertEquals(Arrays.asList("GsmRecord", "CdmaRecord", "UmtsRecord", "LteRecord", "NrRecord", "PhoneState",
+                "WifiBeaconRecord", "WifiProbeRequestRecord", "WifiOtaRecord", "BluetoothRecord", "GnssRecord",
+                "EnergyDetection", "SignalDetection", "LteRrc", "LteNas"), messageTypes);
+    }
+
+    @Test
+    public void testBatchesAreSplitIntoRecords() throws Exception {
+        start(SurveyServer.Builder::useDirectExecutor, received::add, SurveyServer.DEFAULT_RING_BUFFER_CAPACITY);
+
+        final List<LteRecord> records = lteRecords("1234", 0, 25);
+        final RecordBatchHeader header = SurveyBatchType.LTE.header(records.get(0));
+        final List<LteRecordData> entries = new ArrayList<>();
+        for (LteRecord record : records) {
+            entries.add(SurveyBatchType.LTE.batchEntry(record));
+        }
+
+        stream(stub::streamLteSurveyBatch, SurveyBatchType.LTE.newBatch(header, entries.subList(0, 10)),
+                SurveyBatchType.LTE.newBatch(header, entries.subList(10, 25)));
+        stream(stub::streamEnergyDetectionsBatch, EnergyDetectionBatch.getDefaultInstance());
+
+        awaitDelivered(25);
+        assertEquals(records, received);
+    }
+
+    @Test
+    public void testSlowSinkWithSmallRingBuffer() throws Exception {
+        start(builder -> builder.useFixedThreadPool(4).setRequestWindow(2), record -> {
+            received.add(record);
+            if (received.size() % 50 == 0) Thread.sleep(5);
+        }, 4);
+
+        final int streams = 4;
+        final int recordsPerStream = 300;
+        final ExecutorService clients = Executors.newFixedThreadPool(streams);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < streams; i++) {
+                final List<LteRecord> records = lteRecords("device-" + i, 0, recordsPerStream);
+                futures.add(clients.submit(() -> {
+                    stream(stub::streamLteSurvey, records.toArray(new LteRecord[0]));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        awaitDelivered(streams * recordsPerStream);
+        assertEquals(streams * recordsPerStream, received.size());
+
+        // Records from different streams are interleaved, but each stream must be delivered in order
+        final Map<String, Integer> nextRecordNumber = new HashMap<>();
+        for (Message message : received) {
+            final LteRecordData data = ((LteRecord) message).getData();
+            final int expected = nextRecordNumber.getOrDefault(data.getDeviceSerialNumber(), 0);
+            assertEquals(expected, data.getRecordNumber(), data.getDeviceSerialNumber());
+            nextRecordNumber.put(data.getDeviceSerialNumber(), expected + 1);
+        }
+        assertEquals(streams, nextRecordNumber.size());
+    }
+
+    @Test
+    public void testSinkErrorsAreCounted() throws Exception {
+        start(SurveyServer.Builder::useDirectExecutor, record -> {
+            if (((LteRecord) record).getData().getRecordNumber() % 2 == 0) throw new IOException("Disk full");
+            received.add(record);
+        }, 16);
+
+        stream(stub::streamLteSurvey, lteRecords("1234", 0, 10).toArray(new LteRecord[0]));
+
+        awaitDelivered(10);
+        assertEquals(5, server.getSinkErrorCount());
+        assertEquals(5, received.size());
+    }
+
+    @Test
+    public void testFixedThreadPoolExecutor() throws Exception {
+        assertExecutorDeliversRecords(builder -> builder.useFixedThreadPool(2));
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        final SurveyServer.Builder builder = SurveyServer.newBuilder(InProcessServerBuilder.forName("unused"), received::add);
+        try {
+            builder.useVirtualThreads();
+        } catch (UnsupportedOperationException e) {
+            // Virtual threads are only available on Java 21 or newer
+            return;
+        }
+        assertExecutorDeliversRecords(SurveyServer.Builder::useVirtualThreads);
+    }
+
+    @Test
+    public void testCallerSuppliedExecutor() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            assertExecutorDeliversRecords(builder -> builder.setExecutor(executor));
+            server.close();
+            server = null;
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseWhenInterrupted() throws Exception {
+        start(SurveyServer.Builder::useDirectExecutor, received::add, 64);
+        stream(stub::streamLteSurvey, lteRecords("1234", 0, 5).toArray(new LteRecord[0]));
+
+        // Closes without a checked exception, and keeps the interrupt for the caller
+        Thread.currentThread().interrupt();
+        try (SurveyServer closing = server) {
+            server = null;
+            assertFalse(closing.getServer().isShutdown());
+        }
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    public void testCloseDeliversBufferedRecords() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        start(SurveyServer.Builder::useDirectExecutor, record -> {
+            release.await();
+            received.add(record);
+        }, 64);
+
+        stream(stub::streamLteSurvey, lteRecords("1234", 0, 20).toArray(new LteRecord[0]));
+        assertTrue(received.isEmpty());
+
+        release.countDown();
+        server.close();
+        server = null;
+        assertEquals(20, received.size());
+    }
+
+    @Test
+    public void testAliasingParser() throws Exception {
+        start(builder -> builder.useDirectExecutor().setAliasing(true), received::add, 16);
+
+        final WifiOtaRecord record = WifiOtaRecord.newBuilder()
+                .setMessageType("WifiOtaRecord")
+                .setData(WifiOtaRecordData.newBuilder().setPcapRecord(ByteString.copyFromUtf8("pcap record bytes")))
+                .build();
+        stream(stub::streamWifiOtaSurvey, record, record);
+
+        awaitDelivered(2);
+        assertEquals(Arrays.asList(record, record), received);
+    }
+
+    @Test
+    public void testAliasingMarshaller() {
+        final AliasingMarshaller<LteRrc> marshaller = AliasingMarshaller.marshaller(LteRrc.getDefaultInstance());
+        final LteRrc record = LteRrc.newBuilder()
+                .setData(LteRrcData.newBuilder().setDeviceSerialNumber("1234").setPcapRecord(ByteString.copyFromUtf8("pcap")))
+                .build();
+
+        // A stream of unknown length, and the stream returned by the marshaller itself
+        final InputStream unknownLength = new ByteArrayInputStream(record.toByteArray()) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+        assertEquals(record, marshaller.parse(unknownLength));
+        assertEquals(record, marshaller.parse(marshaller.stream(record)));
+        assertSame(LteRrc.getDefaultInstance(), marshaller.getMessagePrototype());
+        assertEquals(LteRrc.class, marshaller.getMessageClass());
+        assertThrows(io.grpc.StatusRuntimeException.class,
+                () -> marshaller.parse(new ByteArrayInputStream(new byte[]{(byte) 0x8a, 0x01})));
+    }
+
+    private void assertExecutorDeliversRecords(Function<SurveyServer.Builder, SurveyServer.Builder> executorOption) throws Exception {
+        start(executorOption, received::add, 8);
+        final List<LteRecord> records = lteRecords("1234", 0, 100);
+        stream(stub::streamLteSurvey, records.toArray(new LteRecord[0]));
+        awaitDelivered(records.size());
+        assertEquals(records, received);
+    }
+
+    @Test
+    public void testAckedStreamAcknowledgesCommittedRecords() throws Exception {
+        final AtomicInteger flushCount = new AtomicInteger();
+        start(SurveyServer.Builder::useDirectExecutor, new RecordSink() {
+            @Override
+            public void accept(Message record) {
+                received.add(record);
+            }
+
+            @Override
+            public void flush() {
+                flushCount.incrementAndGet();
+            }
+        }, SurveyServer.DEFAULT_RING_BUFFER_CAPACITY);
+
+        final List<LteRecord> records = new ArrayList<>(lteRecords("1234", 0, 60));
+        records.addAll(lteRecords("5678", 100, 40));
+        final List<SurveyAck> acks = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> completed = new CompletableFuture<>();
+        final StreamObserver<LteRecord> requestStream = stub.streamLteSurveyAcked(new StreamObserver<SurveyAck>() {
+            @Override
+            public void onNext(SurveyAck ack) {
+                acks.add(ack);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onCompleted() {
+                completed.complete(null);
+            }
+        });
+        for (LteRecord record : records) {
+            requestStream.onNext(record);
+        }
+        requestStream.onCompleted();
+        completed.get(30, TimeUnit.SECONDS);
+
+        assertEquals(records, received);
+        assertFalse(acks.isEmpty());
+        assertTrue(flushCount.get() >= acks.size());
+        final Map<String, Integer> recordNumbers = new HashMap<>();
+        long previousCount = 0;
+        for (SurveyAck ack : acks) {
+            assertTrue(ack.getCommittedCount() > previousCount || ack.getDevicesCount() > 0);
+            previousCount = ack.getCommittedCount();
+            for (DeviceRecordAck device : ack.getDevicesList()) {
+                recordNumbers.put(device.getDeviceSerialNumber(), device.getRecordNumber());
+            }
+        }
+        assertEquals(records.size(), previousCount);
+        assertEquals(59, recordNumbers.get("1234"));
+        assertEquals(139, recordNumbers.get("5678"));
+    }
+
+    @Test
+    public void testAckedStreamFailsWhenTheSinkFails() throws Exception {
+        start(SurveyServer.Builder::useDirectExecutor, record -> {
+            if (((LteRecord) record).getData().getRecordNumber() == 3) throw new IOException("The disk is full");
+        }, SurveyServer.DEFAULT_RING_BUFFER_CAPACITY);
+
+        final ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> stream(stub::streamLteSurveyAcked, lteRecords("1234", 0, 5).toArray(new LteRecord[0])));
+        assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(exception.getCause()).getCode());
+    }
+
+    private void start(Function<SurveyServer.Builder, SurveyServer.Builder> options, RecordSink sink, int capacity) throws IOException {
+        final String name = InProcessServerBuilder.generateName();
+        server = options.apply(SurveyServer.newBuilder(InProcessServerBuilder.forName(name), sink)
+                        .setRingBufferCapacity(capacity))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        stub = WirelessSurveyGrpc.newStub(channel);
+    }
+
+    /**
+     * Sends the messages on a new stream and waits for the server's response.
+     */
+    @SafeVarargs
+    private static <T, R> R stream(Function<StreamObserver<R>, StreamObserver<T>> call, T... messages) throws Exception {
+        final CompletableFuture<R> response = new CompletableFuture<>();
+        final StreamObserver<T> requestStream = call.apply(new StreamObserver<R>() {
+            private R value;
+
+            @Override
+            public void onNext(R value) {
+                this.value = value;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                response.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onCompleted() {
+                response.complete(value);
+            }
+        });
+        for (T message : messages) {
+            requestStream.onNext(message);
+        }
+        requestStream.onCompleted();
+        return response.get(30, TimeUnit.SECONDS);
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getDeliveredCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, server.getDeliveredCount());
+    }
+
+    private static List<LteRecord> lteRecords(String deviceSerialNumber, int firstRecordNumber, int count) {
+        final List<LteRecord> records = new ArrayList<>();
+        for (int i = firstRecordNumber; i < firstRecordNumber + count; i++) {
+            records.add(LteRecord.newBuilder()
+                    .setVersion("0.7.0")
+                    .setMessageType("LteRecord")
+                    .setData(LteRecordData.newBuilder()
+                            .setDeviceSerialNumber(deviceSerialNumber)
+                            .setDeviceName("Pixel")
+                            .setRecordNumber(i)
+                            .setEarfcn(Int32Value.of(i % 5000)))
+                    .build());
+        }
+        return records;
+    }
+}
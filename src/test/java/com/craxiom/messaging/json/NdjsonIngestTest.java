@@ -0,0 +1,137 @@
+package com.craxiom.messaging.json;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link NdjsonIngest}.
+ */
+public class NdjsonIngestTest {
+    private static final Message[] RECORD_TYPES = {GsmRecord.getDefaultInstance(), CdmaRecord.getDefaultInstance(),
+            UmtsRecord.getDefaultInstance(), LteRecord.getDefaultInstance(), NrRecord.getDefaultInstance(),
+            WifiBeaconRecord.getDefaultInstance(), WifiProbeRequestRecord.getDefaultInstance(),
+            WifiDeauthenticationRecord.getDefaultInstance(), WifiOtaRecord.getDefaultInstance(),
+            BluetoothRecord.getDefaultInstance(), GnssRecord.getDefaultInstance(), EnergyDetection.getDefaultInstance(),
+            SignalDetection.getDefaultInstance(), DeviceStatus.getDefaultInstance(), PhoneState.getDefaultInstance(),
+            GsmSignaling.getDefaultInstance(), UmtsNas.getDefaultInstance(), WcdmaRrc.getDefaultInstance(),
+            LteRrc.getDefaultInstance(), LteNas.getDefaultInstance()};
+
+    private final JsonFormat.Printer jsonFormatter = JsonFormat.printer().omittingInsignificantWhitespace();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsArriveInFileOrder() throws IOException {
+        final Random random = new Random(19L);
+        final List<Message> records = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            final Message.Builder builder = RECORD_TYPES[random.nextInt(RECORD_TYPES.length)].newBuilderForType();
+            final Message record = RandomMessages.populate(builder, random);
+            // The messageType must name the record so that the line can be dispatched
+            final Message.Builder named = record.toBuilder();
+            named.setField(named.getDescriptorForType().findFieldByName("messageType"),
+                    record.getDescriptorForType().getName());
+            records.add(named.build());
+        }
+
+        final Path file = directory.resolve("survey.ndjson");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write('\uFEFF');
+            for (int i = 0; i < records.size(); i++) {
+                writer.write(jsonFormatter.print(records.get(i)));
+                writer.write(i % 3 == 0 ? "\r\n" : "\n");
+                if (i % 500 == 0) writer.write("\n  \n");
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[]{1, 4096, NdjsonIngest.DEFAULT_CHUNK_SIZE}) {
+                final List<Message> ingested = new ArrayList<>();
+                final NdjsonIngest.Result result = NdjsonIngest.newBuilder()
+                        .setPool(pool)
+                        .setChunkSize(chunkSize)
+                        .build()
+                        .ingest(file, ingested::add);
+                assertEquals(records, ingested);
+                assertEquals(records.size(), result.getRecordCount());
+                assertEquals(0, result.getInvalidLineCount());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws IOException {
+        final List<Message> records = new ArrayList<>();
+        for (String deviceName : new String[]{"Ger\u00e4t", "\u65e5\u672c", "Pixel \uD83D\uDCF6", ""}) {
+            records.add(LteRecord.newBuilder()
+                    .setMessageType("LteRecord")
+                    .setData(LteRecordData.newBuilder().setDeviceName(deviceName))
+                    .build());
+        }
+        final StringBuilder lines = new StringBuilder();
+        for (Message record : records) {
+            lines.append(jsonFormatter.print(record)).append('\n');
+        }
+        final Path file = directory.resolve("names.ndjson");
+        Files.write(file, lines.toString().getBytes(StandardCharsets.UTF_8));
+
+        final List<Message> ingested = new ArrayList<>();
+        NdjsonIngest.newBuilder().setChunkSize(8).build().ingest(file, ingested::add);
+        assertEquals(records, ingested);
+    }
+
+    @Test
+    public void testInvalidLines() throws IOException {
+        final LteRecord lteRecord = LteRecord.newBuilder()
+                .setMessageType("LteRecord")
+                .setVersion("1.6.0")
+                .setData(LteRecordData.newBuilder().setDeviceSerialNumber("356789012345678").setRecordNumber(1))
+                .build();
+        final String line = jsonFormatter.print(lteRecord);
+        final Path file = directory.resolve("survey.ndjson");
+        Files.write(file, String.join("\n", line, line.replace("LteRecord", "LteRecordV2"), "{\"version\":\"1.6.0\"}",
+                line.replace("\"recordNumber\":1", "\"recordNumber\":1,\"carrier\":\"AT&T\""), line + "}", line)
+                .getBytes(StandardCharsets.UTF_8));
+
+        final IOException exception = assertThrows(IOException.class,
+                () -> NdjsonIngest.newBuilder().setChunkSize(16).build().ingest(file, record -> {
+                }));
+        assertTrue(exception.getMessage().startsWith("Line 2 of "), exception.getMessage());
+
+        final List<Message> ingested = new ArrayList<>();
+        final NdjsonIngest.Result skipping = NdjsonIngest.newBuilder()
+                .setSkippingInvalidLines(true)
+                .build()
+                .ingest(file, ingested::add);
+        assertEquals(2, skipping.getRecordCount());
+        assertEquals(4, skipping.getInvalidLineCount());
+
+        ingested.clear();
+        final NdjsonIngest.Result ignoringUnknownFields = NdjsonIngest.newBuilder()
+                .setSkippingInvalidLines(true)
+                .setIgnoringUnknownFields(true)
+                .build()
+                .ingest(file, ingested::add);
+        assertEquals(3, ignoringUnknownFields.getRecordCount());
+        assertEquals(lteRecord, ingested.get(1));
+    }
+}
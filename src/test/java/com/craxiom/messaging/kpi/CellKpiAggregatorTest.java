@@ -0,0 +1,170 @@
+package com.craxiom.messaging.kpi;
+
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.LteRecordDataOrBuilder;
+import com.craxiom.messaging.NrRecordData;
+import com.craxiom.messaging.NrRecordDataOrBuilder;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Int64Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link SignalHistogram} and {@link CellKpiAggregator}.
+ */
+public class CellKpiAggregatorTest {
+    @Test
+    public void testHistogramQuantiles() {
+        final Random random = new Random(15);
+        final SignalHistogram histogram = new SignalHistogram(0.5);
+        final double[] values = new double[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -100 + random.nextGaussian() * 10;
+            histogram.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(Arrays.stream(values).average().getAsDouble(), histogram.getMean(), 0.0001);
+        for (double quantile : new double[]{0.01, 0.25, 0.5, 0.9, 0.95, 0.99}) {
+            final double exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            assertEquals(exact, histogram.getQuantile(quantile), 0.25, "quantile " + quantile);
+        }
+        assertEquals(values[0], histogram.getQuantile(0));
+        assertEquals(values[values.length - 1], histogram.getQuantile(1));
+
+        final SignalHistogram empty = new SignalHistogram(1);
+        assertTrue(Double.isNaN(empty.getQuantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> empty.merge(histogram));
+    }
+
+    @Test
+    public void testHistogramMergeIsExact() {
+        final Random random = new Random(16);
+        final SignalHistogram whole = new SignalHistogram(0.5);
+        final SignalHistogram first = new SignalHistogram(0.5);
+        final SignalHistogram second = new SignalHistogram(0.5);
+        for (int i = 0; i < 5000; i++) {
+            // The halves cover different ranges so that the merge has to grow the bins on both sides
+            final double low = -120 + random.nextDouble() * 20;
+            final double high = -70 + random.nextDouble() * 20;
+            whole.add(low);
+            whole.add(high);
+            first.add(low);
+            second.add(high);
+        }
+        final SignalHistogram merged = second.copy();
+        merged.merge(first);
+        assertEquals(whole.getCount(), merged.getCount());
+        assertEquals(whole.getMin(), merged.getMin());
+        assertEquals(whole.getMax(), merged.getMax());
+        for (int i = 0; i <= 100; i++) {
+            assertEquals(whole.getQuantile(i / 100.0), merged.getQuantile(i / 100.0));
+        }
+    }
+
+    @Test
+    public void testLteCells() {
+        final CellKpiAggregator<LteRecordDataOrBuilder> aggregator = CellKpiAggregator.lte();
+        aggregator.add(lte(310, 410, 12345, 67890123, -90f, -10f));
+        aggregator.add(lte(310, 410, 12345, 67890123, -100f, -12f));
+        aggregator.add(lte(310, 410, 12345, 67890124, -80f, null));
+        aggregator.add(LteRecordData.newBuilder().setRsrp(FloatValue.of(-95f)).build());
+
+        assertEquals(3, aggregator.getCellCount());
+        final CellKpi cell = aggregator.getCell(CellKey.pack(310, 410), CellKey.pack(12345, 67890123));
+        assertEquals("310-410-12345-67890123", cell.getKeyString());
+        assertArrayEquals(new long[]{310, 410, 12345, 67890123}, cell.getKeyComponents());
+        assertEquals(2, cell.getRecordCount());
+        assertEquals(-95, cell.getMetric("rsrp").getMean(), 0.0001);
+        assertEquals(-100, cell.getMetric("rsrp").getMin(), 0.0001);
+        assertEquals(2, cell.getMetric("rsrq").getCount());
+        assertEquals(0, cell.getMetric("snr").getCount());
+
+        final CellKpi unknown = aggregator.getCell(-1, -1);
+        assertEquals("---", unknown.getKeyString());
+        assertEquals(1, unknown.getRecordCount());
+    }
+
+    @Test
+    public void testNrKey() {
+        final CellKpiAggregator<NrRecordDataOrBuilder> aggregator = CellKpiAggregator.nr();
+        final long nci = 68719476735L; // The largest 36 bit NCI
+        aggregator.add(NrRecordData.newBuilder()
+                .setNci(Int64Value.of(nci))
+                .setNarfcn(Int32Value.of(3279165))
+                .setPci(Int32Value.of(1007))
+                .setSsRsrp(FloatValue.of(-85f))
+                .build());
+        final CellKpi cell = aggregator.getCells().get(0);
+        assertArrayEquals(new long[]{nci, 3279165, 1007}, cell.getKeyComponents());
+        assertEquals(-85, cell.getMetric("ssRsrp").getMax(), 0.0001);
+    }
+
+    @Test
+    public void testPerThreadPartialsMerge() throws Exception {
+        final CellKpiAggregator<LteRecordDataOrBuilder> total = CellKpiAggregator.lte();
+        final CellKpiAggregator<LteRecordDataOrBuilder> expected = total.newPartial();
+        final List<LteRecordData> records = new ArrayList<>();
+        final Random random = new Random(17);
+        for (int i = 0; i < 40_000; i++) {
+            final LteRecordData record = lte(310, 410, random.nextInt(10), random.nextInt(500),
+                    -140 + random.nextFloat() * 100, -20 + random.nextFloat() * 17);
+            records.add(record);
+            expected.add(record);
+        }
+
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<CellKpiAggregator<LteRecordDataOrBuilder>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final List<LteRecordData> slice = records.subList(t * records.size() / threads, (t + 1) * records.size() / threads);
+                futures.add(executor.submit(() -> {
+                    final CellKpiAggregator<LteRecordDataOrBuilder> partial = total.newPartial();
+                    slice.forEach(partial::add);
+                    return partial;
+                }));
+            }
+            for (Future<CellKpiAggregator<LteRecordDataOrBuilder>> future : futures) {
+                total.merge(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(expected.getCellCount(), total.getCellCount());
+        for (CellKpi expectedCell : expected.getCells()) {
+            final CellKpi cell = total.getCell(expectedCell.getKeyHigh(), expectedCell.getKeyLow());
+            assertEquals(expectedCell.getRecordCount(), cell.getRecordCount());
+            for (String metric : Arrays.asList("rsrp", "rsrq")) {
+                assertEquals(expectedCell.getMetric(metric).getMin(), cell.getMetric(metric).getMin());
+                assertEquals(expectedCell.getMetric(metric).getQuantile(0.9), cell.getMetric(metric).getQuantile(0.9));
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> total.merge(CellKpiAggregator.<LteRecordDataOrBuilder>newBuilder(CellKey.lte())
+                .addMetric(CellMetric.lteRsrp())
+                .build()));
+    }
+
+    private static LteRecordData lte(int mcc, int mnc, int tac, int eci, Float rsrp, Float rsrq) {
+        final LteRecordData.Builder builder = LteRecordData.newBuilder()
+                .setMcc(Int32Value.of(mcc))
+                .setMnc(Int32Value.of(mnc))
+                .setTac(Int32Value.of(tac))
+                .setEci(Int32Value.of(eci));
+        if (rsrp != null) builder.setRsrp(FloatValue.of(rsrp));
+        if (rsrq != null) builder.setRsrq(FloatValue.of(rsrq));
+        return builder.build();
+    }
+}
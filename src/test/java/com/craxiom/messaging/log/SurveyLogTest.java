@@ -0,0 +1,200 @@
+package com.craxiom.messaging.log;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.craxiom.messaging.TestRecords.lteRecord;
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link SurveyLogWriter} and {@link SurveyLogReader}.
+ */
+public class SurveyLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEveryRecordTypeRoundTrips() throws IOException {
+        final Path file = directory.resolve("survey.nsml");
+        final List<Message> records = randomRecords(2000, 8L);
+        writeAll(file, records, SurveyLogWriter.DEFAULT_SYNC_INTERVAL);
+
+        try (SurveyLogReader reader = SurveyLogReader.open(file)) {
+            assertEquals(records, readAll(reader));
+            assertNull(reader.read());
+            assertEquals(Files.size(file), reader.getPosition());
+        }
+
+        try (SurveyLogReader reader = SurveyLogReader.open(file)) {
+            reader.setAliasing(true);
+            assertEquals(records, readAll(reader));
+        }
+    }
+
+    @Test
+    public void testSmallWindowsAndSeek() throws IOException {
+        final Path file = directory.resolve("survey.nsml");
+        final List<Message> records = randomRecords(1500, 9L);
+        final long[] positions = writeAll(file, records, 512);
+
+        try (SurveyLogReader reader = new SurveyLogReader(file, 1024)) {
+            assertEquals(records, readAll(reader));
+
+            reader.seek(positions[700]);
+            assertEquals(records.get(700), reader.read());
+            assertEquals(records.get(701), reader.read());
+            assertThrows(IllegalArgumentException.class, () -> reader.seek(3));
+        }
+    }
+
+    @Test
+    public void testSeekToBlock() throws IOException {
+        final Path file = directory.resolve("survey.nsml");
+        final List<Message> records = randomRecords(1000, 10L);
+        final long[] positions = writeAll(file, records, 256);
+        final long fileSize = Files.size(file);
+
+        try (SurveyLogReader reader = new SurveyLogReader(file, 2048)) {
+            final Random random = new Random(11L);
+            int blocksFound = 0;
+            for (int i = 0; i < 200; i++) {
+                final long offset = (long) (random.nextDouble() * fileSize);
+                if (!reader.seekToBlock(offset)) {
+                    assertNull(reader.read());
+                    continue;
+                }
+                blocksFound++;
+                final long blockStart = reader.getPosition();
+                assertTrue(blockStart >= offset);
+
+                // The block starts right before the first record written after it
+                int expected = 0;
+                while (expected < positions.length && positions[expected] < blockStart) expected++;
+                assertEquals(records.subList(expected, records.size()), readAll(reader));
+            }
+            assertTrue(blocksFound > 100);
+        }
+    }
+
+    @Test
+    public void testReadSelectedTypes() throws IOException {
+        final Path file = directory.resolve("survey.nsml");
+        final List<Message> records = randomRecords(500, 12L);
+        writeAll(file, records, SurveyLogWriter.DEFAULT_SYNC_INTERVAL);
+
+        final Set<SurveyRecordType> types = EnumSet.of(SurveyRecordType.LTE_RECORD, SurveyRecordType.GNSS_RECORD);
+        final List<Message> expected = new ArrayList<>();
+        for (Message record : records) {
+            if (types.contains(SurveyRecordType.forRecord(record))) expected.add(record);
+        }
+
+        final List<Message> selected = new ArrayList<>();
+        try (SurveyLogReader reader = SurveyLogReader.open(file)) {
+            Message record;
+            while ((record = reader.read(types)) != null) {
+                selected.add(record);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, selected);
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        final Path file = directory.resolve("survey.nsml");
+        final List<Message> records = Arrays.asList(lteRecord(1), lteRecord(2));
+        writeAll(file, records, SurveyLogWriter.DEFAULT_SYNC_INTERVAL);
+        final byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+
+        try (SurveyLogReader reader = SurveyLogReader.open(file)) {
+            assertEquals(records.get(0), reader.read());
+            assertThrows(EOFException.class, reader::read);
+        }
+    }
+
+    @Test
+    public void testCorruptRecordCanBeSkipped() throws IOException {
+        final Path file = directory.resolve("survey.nsml");
+        final List<Message> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(lteRecord(i));
+        }
+        final long[] positions = writeAll(file, records, 200);
+
+        // Replace the type byte of a record with a type that does not exist
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) positions[10]] = (byte) 0xEE;
+        Files.write(file, bytes);
+
+        try (SurveyLogReader reader = SurveyLogReader.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(records.get(i), reader.read());
+            }
+            assertThrows(IOException.class, reader::read);
+            assertEquals(positions[10], reader.getPosition());
+
+            assertTrue(reader.seekToBlock(reader.getPosition() + 1));
+            final List<Message> remaining = readAll(reader);
+            assertFalse(remaining.isEmpty());
+            assertEquals(records.subList(records.size() - remaining.size(), records.size()), remaining);
+        }
+    }
+
+    @Test
+    public void testNotASurveyLog() throws IOException {
+        final Path file = directory.resolve("survey.json");
+        Files.write(file, "{\"version\":\"0.7.0\",\"messageType\":\"LteRecord\"}\n".getBytes());
+        assertThrows(IOException.class, () -> SurveyLogReader.open(file));
+        Files.write(file, new byte[3]);
+        assertThrows(IOException.class, () -> SurveyLogReader.open(file));
+    }
+
+    @Test
+    public void testUnsupportedMessage() throws IOException {
+        try (SurveyLogWriter writer = SurveyLogWriter.create(directory.resolve("survey.nsml"))) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(LteRecordData.getDefaultInstance()));
+        }
+    }
+
+    @Test
+    public void testTypeBytesAreUnique() {
+        final Set<Integer> typeBytes = new HashSet<>();
+        for (SurveyRecordType type : SurveyRecordType.values()) {
+            assertTrue(typeBytes.add(type.getTypeByte()));
+            assertSame(type, SurveyRecordType.forTypeByte(type.getTypeByte()));
+            assertSame(type, SurveyRecordType.forRecord(type.getDefaultInstance()));
+        }
+        assertEquals("LteRecord", SurveyRecordType.LTE_RECORD.getMessageType());
+        assertNull(SurveyRecordType.forTypeByte(0));
+    }
+
+    private static long[] writeAll(Path file, List<Message> records, int syncInterval) throws IOException {
+        final long[] positions = new long[records.size()];
+        try (SurveyLogWriter writer = SurveyLogWriter.create(file, syncInterval)) {
+            for (int i = 0; i < records.size(); i++) {
+                positions[i] = writer.write(records.get(i));
+            }
+            assertEquals(records.size(), writer.getRecordCount());
+        }
+        return positions;
+    }
+
+    private static List<Message> readAll(SurveyLogReader reader) throws IOException {
+        final List<Message> records = new ArrayList<>();
+        Message record;
+        while ((record = reader.read()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,82 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link AliasingParsers}.
+ */
+public class AliasingParsersTest {
+    private static final List<Message> PCAP_RECORD_TYPES = Arrays.asList(WifiOtaRecord.getDefaultInstance(),
+            GsmSignaling.getDefaultInstance(), UmtsNas.getDefaultInstance(), WcdmaRrc.getDefaultInstance(),
+            LteRrc.getDefaultInstance(), LteNas.getDefaultInstance());
+
+    @Test
+    public void testParsesTheSameRecordsAsTheGeneratedParsers() throws InvalidProtocolBufferException {
+        final Random random = new Random(10L);
+        for (Message defaultInstance : PCAP_RECORD_TYPES) {
+            for (Message record : randomRecords(defaultInstance, 50, random)) {
+                final byte[] bytes = record.toByteArray();
+                assertEquals(record, AliasingParsers.parseFrom(defaultInstance.getParserForType(), bytes));
+
+                final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+                direct.put(bytes).flip();
+                assertEquals(record, AliasingParsers.parseFrom(defaultInstance.getParserForType(), direct));
+                assertEquals(0, direct.position());
+            }
+        }
+    }
+
+    @Test
+    public void testBytesFieldsAliasTheInput() throws InvalidProtocolBufferException {
+        final byte[] payload = new byte[200];
+        new Random(1L).nextBytes(payload);
+        final WifiOtaRecord record = WifiOtaRecord.newBuilder()
+                .setMessageType("WifiOtaRecord")
+                .setData(WifiOtaRecordData.newBuilder().setDeviceSerialNumber("1234").setPcapRecord(ByteString.copyFrom(payload)))
+                .build();
+
+        final byte[] bytes = record.toByteArray();
+        final int payloadOffset = indexOf(bytes, payload);
+        final WifiOtaRecord aliased = AliasingParsers.parseFrom(WifiOtaRecord.parser(), bytes);
+        final WifiOtaRecord copied = WifiOtaRecord.parseFrom(bytes);
+
+        bytes[payloadOffset] ^= (byte) 0xFF;
+        assertEquals((byte) (payload[0] ^ 0xFF), aliased.getData().getPcapRecord().byteAt(0));
+        assertEquals(payload[0], copied.getData().getPcapRecord().byteAt(0));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        final WifiOtaRecord aliasedDirect = AliasingParsers.parseFrom(WifiOtaRecord.parser(), direct);
+        direct.put(payloadOffset + 1, (byte) (payload[1] ^ 0xFF));
+        assertEquals((byte) (payload[1] ^ 0xFF), aliasedDirect.getData().getPcapRecord().byteAt(1));
+    }
+
+    @Test
+    public void testMalformedInput() {
+        final byte[] bytes = LteRrc.newBuilder()
+                .setData(LteRrcData.newBuilder().setPcapRecord(ByteString.copyFromUtf8("pcap record")))
+                .build()
+                .toByteArray();
+        assertThrows(InvalidProtocolBufferException.class,
+                () -> AliasingParsers.parseFrom(LteRrc.parser(), bytes, 0, bytes.length - 2));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i <= bytes.length - part.length; i++) {
+            if (Arrays.equals(part, Arrays.copyOfRange(bytes, i, i + part.length))) return i;
+        }
+        throw new AssertionError("The payload was not found");
+    }
+}
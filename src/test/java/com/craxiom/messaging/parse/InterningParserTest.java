@@ -0,0 +1,163 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.RECORD_TYPES;
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link InterningParser} and {@link StringInterner}.
+ */
+public class InterningParserTest {
+    @Test
+    public void testParsesTheSameRecordsAsTheGeneratedParsers() throws InvalidProtocolBufferException {
+        final Random random = new Random(6L);
+        for (Message defaultInstance : RECORD_TYPES) {
+            final InterningParser<? extends Message> parser = InterningParser.newParser(defaultInstance.getClass());
+            for (Message record : randomRecords(defaultInstance, 100, random)) {
+                assertEquals(record, parser.parseFrom(record.toByteArray()), defaultInstance.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @Test
+    public void testHeaderStringsAreShared() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            gnssRecord(i).writeDelimitedTo(out);
+        }
+
+        final InterningParser<GnssRecord> parser = InterningParser.newParser(GnssRecord.class);
+        final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        final GnssRecord first = parser.parseDelimitedFrom(in);
+        GnssRecord record;
+        int count = 1;
+        while ((record = parser.parseDelimitedFrom(in)) != null) {
+            assertEquals(gnssRecord(count++), record);
+            assertSame(first.getVersion(), record.getVersion());
+            assertSame(first.getMessageType(), record.getMessageType());
+            assertSame(first.getData().getDeviceSerialNumber(), record.getData().getDeviceSerialNumber());
+            assertSame(first.getData().getDeviceName(), record.getData().getDeviceName());
+            assertSame(first.getData().getMissionId(), record.getData().getMissionId());
+            assertSame(first.getData().getDeviceModel(), record.getData().getDeviceModel());
+            // Only the header fields are interned
+            assertNotSame(first.getData().getDeviceTime(), record.getData().getDeviceTime());
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void testInternerIsSharedBetweenRecordTypes() throws InvalidProtocolBufferException {
+        final StringInterner interner = new StringInterner();
+        final InterningParser<GnssRecord> gnssParser = InterningParser.newParser(GnssRecord.class, interner);
+        final InterningParser<DeviceStatus> statusParser = InterningParser.newParser(DeviceStatus.class, interner);
+
+        final GnssRecord gnssRecord = gnssParser.parseFrom(gnssRecord(1).toByteArray());
+        final DeviceStatus deviceStatus = statusParser.parseFrom(DeviceStatus.newBuilder()
+                .setData(DeviceStatusData.newBuilder().setDeviceSerialNumber("355123456789012").setDeviceModel("Pixel 8"))
+                .build()
+                .toByteArray());
+
+        assertSame(gnssRecord.getData().getDeviceSerialNumber(), deviceStatus.getData().getDeviceSerialNumber());
+        assertSame(gnssRecord.getData().getDeviceModel(), deviceStatus.getData().getDeviceModel());
+        assertSame(interner, gnssParser.getInterner());
+    }
+
+    @Test
+    public void testInternAlreadyParsedRecord() throws InvalidProtocolBufferException {
+        final InterningParser<GnssRecord> parser = InterningParser.newParser(GnssRecord.class);
+        final GnssRecord parsed = parser.parseFrom(gnssRecord(1).toByteArray());
+        final GnssRecord other = GnssRecord.parseFrom(gnssRecord(2).toByteArray());
+        assertNotSame(parsed.getData().getDeviceSerialNumber(), other.getData().getDeviceSerialNumber());
+
+        final GnssRecord interned = parser.intern(other);
+        assertEquals(other, interned);
+        assertSame(parsed.getData().getDeviceSerialNumber(), interned.getData().getDeviceSerialNumber());
+    }
+
+    @Test
+    public void testInternKeepsNegativeZeros() {
+        final InterningParser<GnssRecord> parser = InterningParser.newParser(GnssRecord.class);
+        final GnssRecord record = gnssRecord(1).toBuilder()
+                .setData(gnssRecord(1).getData().toBuilder().setLatitude(-0.0).setLongitude(-0.0).setAltitude(-0.0f))
+                .build();
+
+        final GnssRecord interned = parser.intern(record);
+        assertEquals(record, interned);
+        assertEquals(Long.MIN_VALUE, Double.doubleToRawLongBits(interned.getData().getLatitude()));
+        assertEquals(Long.MIN_VALUE, Double.doubleToRawLongBits(interned.getData().getLongitude()));
+        assertEquals(Integer.MIN_VALUE, Float.floatToRawIntBits(interned.getData().getAltitude()));
+    }
+
+    @Test
+    public void testRecordWithoutDataIsNotGivenData() throws InvalidProtocolBufferException {
+        final LteRecord record = LteRecord.newBuilder().setVersion("0.7.0").build();
+        final LteRecord parsed = InterningParser.newParser(LteRecord.class).parseFrom(record.toByteArray());
+        assertEquals(record, parsed);
+        assertFalse(parsed.hasData());
+    }
+
+    @Test
+    public void testMalformedInput() {
+        final byte[] bytes = gnssRecord(1).toByteArray();
+        final InterningParser<GnssRecord> parser = InterningParser.newParser(GnssRecord.class);
+        assertThrows(InvalidProtocolBufferException.class, () -> parser.parseFrom(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+
+    @Test
+    public void testUnsupportedType() {
+        assertFalse(InterningParser.isSupported(StringValue.class));
+        assertTrue(InterningParser.isSupported(LteNas.class));
+        assertThrows(IllegalArgumentException.class, () -> InterningParser.newParser(StringValue.class));
+    }
+
+    @Test
+    public void testStringInterner() {
+        final StringInterner interner = new StringInterner(3);
+        final String first = new String("device");
+        final String second = new String("device");
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertEquals(1, interner.getHitCount());
+        assertEquals(1, interner.getMissCount());
+        assertSame("", interner.intern(new String("")));
+
+        // Strings that map to the same slot replace each other instead of growing the cache
+        final StringInterner single = new StringInterner(1);
+        final String a = new String("a");
+        final String b = new String("b");
+        assertSame(a, single.intern(a));
+        assertSame(b, single.intern(b));
+        assertSame(b, single.intern(new String("b")));
+        assertNotSame(a, single.intern(new String("a")));
+
+        interner.clear();
+        assertSame(second, interner.intern(second));
+        assertThrows(IllegalArgumentException.class, () -> new StringInterner(0));
+    }
+
+    private static GnssRecord gnssRecord(int recordNumber) {
+        return GnssRecord.newBuilder()
+                .setVersion("0.7.0")
+                .setMessageType("GnssRecord")
+                .setData(GnssRecordData.newBuilder()
+                        .setDeviceSerialNumber("355123456789012")
+                        .setDeviceName("Survey Phone")
+                        .setMissionId("NS 2024-10-17 10:00")
+                        .setDeviceModel("Pixel 8")
+                        .setRecordNumber(recordNumber)
+                        .setDeviceTime("2024-10-17T10:00:00.000-04:00"))
+                .build();
+    }
+}
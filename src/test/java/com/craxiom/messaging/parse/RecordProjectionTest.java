@@ -0,0 +1,148 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link RecordProjection}.
+ */
+public class RecordProjectionTest {
+    private static final List<String> PATHS = Arrays.asList("messageType", "data.deviceSerialNumber", "data.missionId",
+            "data.latitude", "data.longitude", "data.altitude", "data.recordNumber", "data.mcc", "data.servingCell",
+            "data.pcapRecord", "data.lteBandwidth", "data.rsrp");
+
+    @Test
+    public void testProjectionMatchesFullParse() throws InvalidProtocolBufferException {
+        final RecordProjection projection = RecordProjection.of(PATHS);
+        final ProjectedRecord projected = projection.newRecord();
+        final Random random = new Random(21L);
+        for (MessageType<?, ?> type : MessageTypeRegistry.getMessageTypes()) {
+            for (Message populated : randomRecords(type.getDefaultInstance(), 50, random)) {
+                final Message.Builder builder = populated.toBuilder();
+                builder.setField(builder.getDescriptorForType().findFieldByName("messageType"), type.getMessageType());
+                final Message record = builder.build();
+
+                assertTrue(projection.project(record.toByteArray(), projected));
+                assertSame(type, projected.getMessageType());
+                for (int index = 0; index < PATHS.size(); index++) {
+                    assertField(record, PATHS.get(index), projected, index);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoutingFields() throws InvalidProtocolBufferException {
+        final RecordProjection projection = RecordProjection.of("data.deviceSerialNumber", "data.missionId",
+                "data.latitude", "data.longitude", "data.mcc");
+        final ProjectedRecord projected = projection.newRecord();
+
+        final LteRrc lteRrc = LteRrc.newBuilder()
+                .setMessageType("LteRrc")
+                .setData(LteRrcData.newBuilder()
+                        .setDeviceSerialNumber("356789012345678")
+                        .setLatitude(51.4779)
+                        .setPcapRecord(ByteString.copyFrom(new byte[64 * 1024])))
+                .build();
+        final byte[] bytes = lteRrc.toByteArray();
+        final byte[] padded = new byte[bytes.length + 8];
+        System.arraycopy(bytes, 0, padded, 4, bytes.length);
+        assertTrue(projection.project(padded, 4, bytes.length, projected));
+        assertSame(MessageTypeRegistry.LTE_RRC, projected.getMessageType());
+        assertEquals("356789012345678", projected.getString(projection.indexOf("data.deviceSerialNumber")));
+        assertFalse(projected.has(1));
+        assertEquals("", projected.getString(1));
+        assertEquals(51.4779, projected.getDouble(2));
+        assertFalse(projected.has(3));
+        assertEquals(0.0, projected.getDouble(3));
+        assertFalse(projected.has(4));
+
+        // A wrapper that is set to its default value is still present
+        final LteRecord lteRecord = LteRecord.newBuilder()
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder().setMcc(Int32Value.of(0)))
+                .build();
+        projection.project(MessageTypeRegistry.LTE_RECORD, lteRecord.toByteArray(), 0,
+                lteRecord.getSerializedSize(), projected);
+        assertTrue(projected.has(4));
+        assertEquals(0, projected.getInt(4));
+        assertFalse(projected.has(0));
+
+        assertFalse(projection.project(lteRecord.toBuilder().setMessageType("LteRecord2").build().toByteArray(),
+                projected));
+        assertThrows(InvalidProtocolBufferException.class, () -> projection.project(MessageTypeRegistry.LTE_RRC,
+                Arrays.copyOf(bytes, bytes.length - 10), 0, bytes.length - 10, projected));
+        assertThrows(IllegalArgumentException.class,
+                () -> RecordProjection.of("data.latitude").project(bytes, projected));
+    }
+
+    @Test
+    public void testInvalidPaths() {
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of("data.lattitude"));
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of("data"));
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of("data.cipherSuites"));
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of("data.latitude.value"));
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of("data.mcc", "data.mcc.value"));
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of("version", "version"));
+        assertThrows(IllegalArgumentException.class, () -> RecordProjection.of());
+        assertEquals(1, RecordProjection.of("data.mcc.value").getPaths().size());
+    }
+
+    /**
+     * Checks the projected field against the value of the path in the fully parsed record.
+     */
+    private static void assertField(Message record, String path, ProjectedRecord projected, int index) {
+        Message message = record;
+        final String[] names = path.split("\\.");
+        for (int i = 0; i < names.length; i++) {
+            final FieldDescriptor field = message.getDescriptorForType().findFieldByName(names[i]);
+            if (field == null || !message.hasField(field)) {
+                assertFalse(projected.has(index), path);
+                return;
+            }
+
+            final Object value = message.getField(field);
+            if (i < names.length - 1 || value instanceof Message) {
+                message = (Message) value;
+                if (i == names.length - 1) {
+                    assertTrue(projected.has(index), path);
+                    final FieldDescriptor wrapped = message.getDescriptorForType().findFieldByName("value");
+                    assertValue(message.getField(wrapped), projected, index, path);
+                }
+                continue;
+            }
+
+            assertTrue(projected.has(index), path);
+            assertValue(value, projected, index, path);
+        }
+    }
+
+    private static void assertValue(Object value, ProjectedRecord projected, int index, String path) {
+        if (value instanceof String) {
+            assertEquals(value, projected.getString(index), path);
+        } else if (value instanceof ByteString) {
+            assertEquals(value, projected.getBytes(index), path);
+        } else if (value instanceof Boolean) {
+            assertEquals(value, projected.getBoolean(index), path);
+        } else if (value instanceof Double || value instanceof Float) {
+            assertEquals(((Number) value).doubleValue(), projected.getDouble(index), path);
+        } else if (value instanceof Number) {
+            assertEquals(((Number) value).longValue(), projected.getLong(index), path);
+        } else {
+            assertEquals(((EnumValueDescriptor) value).getNumber(), projected.getInt(index), path);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.craxiom.messaging.parse;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.UInt32Value;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static com.craxiom.messaging.TestRecords.RECORD_TYPES;
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link WrapperCache} and the {@link InterningParser} that uses it.
+ */
+public class WrapperCacheTest {
+    @Test
+    public void testFactoryMethods() {
+        final WrapperCache cache = new WrapperCache(-2, 10);
+        assertEquals(-2, cache.getMinValue());
+        assertEquals(10, cache.getMaxValue());
+
+        assertSame(cache.int32(6), cache.int32(6));
+        assertEquals(6, cache.int32(6).getValue());
+        assertSame(cache.int32(-2), cache.int32(-2));
+        assertEquals(Int32Value.of(11), cache.int32(11));
+        assertNotSame(cache.int32(11), cache.int32(11));
+        assertNotSame(cache.int32(-3), cache.int32(-3));
+
+        assertSame(cache.uint32(0), cache.uint32(0));
+        assertSame(cache.uint32(10), cache.uint32(10));
+        assertEquals(UInt32Value.of(-1), cache.uint32(-1));
+        assertNotSame(cache.uint32(11), cache.uint32(11));
+
+        assertSame(cache.bool(true), cache.bool(true));
+        assertTrue(cache.bool(true).getValue());
+        assertSame(BoolValue.getDefaultInstance(), cache.bool(false));
+
+        // An all negative range has no unsigned values
+        final WrapperCache negative = new WrapperCache(-5, -1);
+        assertSame(negative.int32(-1), negative.int32(-1));
+        assertEquals(UInt32Value.of(0), negative.uint32(0));
+
+        assertThrows(IllegalArgumentException.class, () -> new WrapperCache(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new WrapperCache(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertSame(WrapperCache.getDefault(), WrapperCache.getDefault());
+        assertEquals(WrapperCache.DEFAULT_MIN_VALUE, WrapperCache.getDefault().getMinValue());
+        assertEquals(WrapperCache.DEFAULT_MAX_VALUE, WrapperCache.getDefault().getMaxValue());
+    }
+
+    @Test
+    public void testParsesTheSameRecordsAsTheGeneratedParsers() throws InvalidProtocolBufferException {
+        final Random random = new Random(25L);
+        for (Message defaultInstance : RECORD_TYPES) {
+            final InterningParser<? extends Message> parser = InterningParser.newParser(defaultInstance.getClass(),
+                    new StringInterner(), WrapperCache.getDefault());
+            assertSame(WrapperCache.getDefault(), parser.getWrapperCache());
+            for (Message record : randomRecords(defaultInstance, 100, random)) {
+                assertEquals(record, parser.parseFrom(record.toByteArray()), defaultInstance.getClass().getSimpleName());
+                assertEquals(record, WrapperCache.getDefault().canonicalize(record));
+            }
+        }
+        assertNull(InterningParser.newParser(LteRecord.class).getWrapperCache());
+    }
+
+    @Test
+    public void testParsedWrappersAreShared() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            lteRecord(i).writeDelimitedTo(out);
+        }
+
+        final WrapperCache cache = WrapperCache.getDefault();
+        final InterningParser<LteRecord> parser = InterningParser.newParser(LteRecord.class, new StringInterner(),
+                cache);
+        final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        LteRecord record;
+        int count = 0;
+        while ((record = parser.parseDelimitedFrom(in)) != null) {
+            assertEquals(lteRecord(count), record);
+            final LteRecordData data = record.getData();
+            assertSame(cache.int32(310), data.getMcc());
+            assertSame(cache.int32(count), data.getPci());
+            assertSame(cache.int32(6), data.getTa());
+            assertSame(cache.bool(true), data.getServingCell());
+            // Outside the cached range, and not a cached type
+            assertEquals(181405696 + count, data.getEci().getValue());
+            assertNotSame(cache.int32(181405696 + count), data.getEci());
+            assertEquals(-95.5f, data.getRsrp().getValue());
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void testCanonicalizeBuiltRecords() {
+        final WrapperCache cache = WrapperCache.getDefault();
+        final LteRecord record = lteRecord(3);
+        final LteRecord canonical = cache.canonicalize(record);
+        assertNotSame(record, canonical);
+        assertEquals(record, canonical);
+        assertSame(cache.int32(3), canonical.getData().getPci());
+        assertSame(cache.bool(true), canonical.getData().getServingCell());
+
+        // A record that already uses the cached instances is not copied
+        assertSame(canonical, cache.canonicalize(canonical));
+        final LteRecord built = LteRecord.newBuilder()
+                .setData(LteRecordData.newBuilder()
+                        .setPci(cache.int32(3))
+                        .setEci(Int32Value.of(181405696)))
+                .build();
+        assertSame(built, cache.canonicalize(built));
+
+        // A -0.0 in the copied messages is kept
+        final LteRecord negativeZero = LteRecord.newBuilder()
+                .setData(record.getData().toBuilder().setLatitude(-0.0).setAltitude(-0.0f))
+                .build();
+        final LteRecord canonicalNegativeZero = cache.canonicalize(negativeZero);
+        assertEquals(negativeZero, canonicalNegativeZero);
+        assertEquals(Long.MIN_VALUE, Double.doubleToRawLongBits(canonicalNegativeZero.getData().getLatitude()));
+        assertEquals(Integer.MIN_VALUE, Float.floatToRawIntBits(canonicalNegativeZero.getData().getAltitude()));
+
+        // Also the parser's copy for records that were parsed some other way
+        final InterningParser<LteRecord> parser = InterningParser.newParser(LteRecord.class, new StringInterner(),
+                cache);
+        assertSame(cache.int32(6), parser.intern(record).getData().getTa());
+        assertThrows(NullPointerException.class,
+                () -> InterningParser.newParser(LteRecord.class, new StringInterner(), null));
+    }
+
+    private static LteRecord lteRecord(int i) {
+        return LteRecord.newBuilder()
+                .setVersion("1.6.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("1234")
+                        .setRecordNumber(i)
+                        .setMcc(Int32Value.newBuilder().setValue(310).build())
+                        .setEci(Int32Value.newBuilder().setValue(181405696 + i).build())
+                        .setPci(Int32Value.newBuilder().setValue(i).build())
+                        .setTa(Int32Value.newBuilder().setValue(6).build())
+                        .setRsrp(FloatValue.newBuilder().setValue(-95.5f).build())
+                        .setServingCell(BoolValue.newBuilder().setValue(true).build())
+                        .setLteBandwidth(LteBandwidth.MHZ_20))
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.craxiom.messaging.pcap;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link PcapFileWriter}.
+ */
+public class PcapFileWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testWritesTheFileHeaderAndRecords() throws IOException {
+        final Path path = directory.resolve("wifi.pcap");
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final Random random = new Random(3L);
+        try (PcapFileWriter writer = PcapFileWriter.create(path, PcapFileWriter.LINKTYPE_PPI)) {
+            for (int i = 0; i < 500; i++) {
+                final ByteString pcapRecord = pcapRecord(random, 16 + random.nextInt(400));
+                assertTrue(writer.write(WifiOtaRecord.newBuilder()
+                        .setData(WifiOtaRecordData.newBuilder().setPcapRecord(pcapRecord))
+                        .build()));
+                pcapRecord.writeTo(expected);
+            }
+            // Larger than the staging buffer, so it is written from the byte string directly
+            final ByteString large = pcapRecord(random, 100_000);
+            writer.write(LteRrc.newBuilder().setData(LteRrcData.newBuilder().setPcapRecord(large)).build());
+            large.writeTo(expected);
+
+            assertFalse(writer.write(LteNas.getDefaultInstance()));
+            assertEquals(501, writer.getRecordCount());
+            assertEquals(PcapFileWriter.FILE_HEADER_SIZE + expected.size(), writer.getPosition());
+        }
+
+        final byte[] file = Files.readAllBytes(path);
+        final ByteBuffer header = ByteBuffer.wrap(file, 0, PcapFileWriter.FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0xa1b2c3d4, header.getInt());
+        assertEquals(2, header.getShort());
+        assertEquals(4, header.getShort());
+        header.getLong();
+        assertEquals(PcapFileWriter.DEFAULT_SNAPLEN, header.getInt());
+        assertEquals(PcapFileWriter.LINKTYPE_PPI, header.getInt());
+        assertEquals(ByteString.copyFrom(expected.toByteArray()), ByteString.copyFrom(file, PcapFileWriter.FILE_HEADER_SIZE,
+                file.length - PcapFileWriter.FILE_HEADER_SIZE));
+    }
+
+    @Test
+    public void testInvalidRecords() throws IOException {
+        try (PcapFileWriter writer = PcapFileWriter.create(directory.resolve("invalid.pcap"), PcapFileWriter.LINKTYPE_RAW)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(ByteString.copyFrom(new byte[10])));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(LteRecord.getDefaultInstance()));
+        }
+        assertFalse(PcapRecords.hasPcapRecordField(LteRecord.getDefaultInstance()));
+        assertTrue(PcapRecords.hasPcapRecordField(GsmSignaling.getDefaultInstance()));
+    }
+
+    /**
+     * @return A pcap record header for a payload of the given size followed by random payload bytes.
+     */
+    private static ByteString pcapRecord(Random random, int size) {
+        final byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(1_700_000_000).putInt(0).putInt(size - 16).putInt(size - 16);
+        return ByteString.copyFrom(bytes);
+    }
+}
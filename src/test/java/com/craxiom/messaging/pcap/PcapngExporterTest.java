@@ -0,0 +1,238 @@
+package com.craxiom.messaging.pcap;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link PcapngExporter}.
+ */
+public class PcapngExporterTest {
+    private static final long START_MILLIS = 1_729_173_600_000L;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(11L);
+
+    @Test
+    public void testInterfacesAndPackets() throws IOException {
+        final ByteString lteRrcFrame = frame(100, 1_700_000_000, 5);
+        final ByteString lteNasFrame = frame(3, 1_700_000_001, 6);
+        final ByteString wifiFrame = frame(5000, 1_700_000_002, 7);
+        final ByteString umtsFrame = frame(40, 1_700_000_003, 8);
+
+        final PcapngExporter exporter = PcapngExporter.newBuilder(directory, "capture")
+                .setBufferSize(1024)
+                .setClock(Clock.fixed(Instant.ofEpochMilli(START_MILLIS), ZoneOffset.UTC))
+                .build();
+        assertTrue(exporter.write(LteRrc.newBuilder()
+                .setData(LteRrcData.newBuilder()
+                        .setDeviceTime("2024-10-17T10:00:00.123456-04:00")
+                        .setChannelType(LteRrcChannelType.BCCH_DL_SCH)
+                        .setPcapRecord(lteRrcFrame))
+                .build()));
+        assertTrue(exporter.write(LteNas.newBuilder()
+                .setData(LteNasData.newBuilder().setChannelType(LteNasChannelType.PLAIN).setPcapRecord(lteNasFrame))
+                .build()));
+        assertTrue(exporter.write(WifiOtaRecord.newBuilder()
+                .setData(WifiOtaRecordData.newBuilder().setDeviceTime("not a time").setPcapRecord(wifiFrame))
+                .build()));
+        exporter.accept(LteRrc.newBuilder()
+                .setData(LteRrcData.newBuilder().setChannelType(LteRrcChannelType.BCCH_DL_SCH).setPcapRecord(lteRrcFrame))
+                .build());
+        assertTrue(exporter.write(UmtsNas.newBuilder().setData(UmtsNasData.newBuilder().setPcapRecord(umtsFrame)).build()));
+        assertFalse(exporter.write(LteRecord.getDefaultInstance()));
+        assertFalse(exporter.write(GsmSignaling.getDefaultInstance()));
+        assertThrows(IllegalArgumentException.class, () -> exporter.write(LteRrc.newBuilder()
+                .setData(LteRrcData.newBuilder().setPcapRecord(ByteString.copyFrom(new byte[4])))
+                .build()));
+
+        final Path file = exporter.getCurrentFile();
+        assertEquals("capture_20241017T140000Z_0001.pcapng", file.getFileName().toString());
+        exporter.close();
+        assertEquals(Arrays.asList(file), exporter.getCompletedFiles());
+        assertEquals(5, exporter.getPacketCount());
+
+        final PcapngFile pcapng = new PcapngFile(file);
+        assertEquals(Arrays.asList("LteRrc BCCH_DL_SCH", "LteNas PLAIN", "WifiOtaRecord", "UmtsNas"), pcapng.interfaceNames);
+        assertEquals(Arrays.asList(PcapFileWriter.LINKTYPE_RAW, PcapFileWriter.LINKTYPE_RAW,
+                PcapFileWriter.LINKTYPE_PPI, PcapFileWriter.LINKTYPE_RAW), pcapng.linkTypes);
+        assertEquals(Arrays.asList(0, 1, 2, 0, 3), pcapng.interfaceIds);
+        assertEquals(Arrays.asList(lteRrcFrame.substring(16), lteNasFrame.substring(16), wifiFrame.substring(16),
+                lteRrcFrame.substring(16), umtsFrame.substring(16)), pcapng.packets);
+
+        // The deviceTime is used when it is valid, and the pcap record header otherwise
+        assertEquals(1_729_173_600_123_456L, (long) pcapng.timestamps.get(0));
+        assertEquals(1_700_000_001_000_006L, (long) pcapng.timestamps.get(1));
+        assertEquals(1_700_000_002_000_007L, (long) pcapng.timestamps.get(2));
+    }
+
+    @Test
+    public void testLinkTypePerInterface() throws IOException {
+        final Path file;
+        try (PcapngExporter exporter = PcapngExporter.newBuilder(directory, "linktype").build()) {
+            exporter.write(WifiOtaRecord.newBuilder()
+                    .setData(WifiOtaRecordData.newBuilder().setPcapRecord(frame(60, 1_700_000_000, 0)))
+                    .build());
+            exporter.write(GsmSignaling.newBuilder()
+                    .setData(GsmSignalingData.newBuilder()
+                            .setChannelType(GsmSignalingChannelType.BCCH)
+                            .setPcapRecord(frame(40, 1_700_000_000, 1)))
+                    .build());
+            file = exporter.getCurrentFile();
+        }
+
+        // The Wi-Fi frames start with a PPI header, and the cellular frames are GSMTAP in UDP over IP
+        final PcapngFile pcapng = new PcapngFile(file);
+        assertEquals(Arrays.asList("WifiOtaRecord", "GsmSignaling BCCH"), pcapng.interfaceNames);
+        assertEquals(Arrays.asList(PcapFileWriter.LINKTYPE_PPI, PcapFileWriter.LINKTYPE_RAW), pcapng.linkTypes);
+        assertEquals(PcapFileWriter.LINKTYPE_RAW, PcapRecords.getLinkType(LteNas.getDefaultInstance()));
+        assertThrows(IllegalArgumentException.class, () -> PcapRecords.getLinkType(LteRecord.getDefaultInstance()));
+    }
+
+    @Test
+    public void testRotationBySize() throws IOException {
+        final List<ByteString> frames = new ArrayList<>();
+        try (PcapngExporter exporter = PcapngExporter.newBuilder(directory, "size")
+                .setMaxFileSize(4096)
+                .setClock(Clock.fixed(Instant.ofEpochMilli(START_MILLIS), ZoneOffset.UTC))
+                .build()) {
+            for (int i = 0; i < 100; i++) {
+                final ByteString frame = frame(200, 1_700_000_000 + i, 0);
+                frames.add(frame.substring(16));
+                exporter.write(LteRrc.newBuilder().setData(LteRrcData.newBuilder().setPcapRecord(frame)).build());
+            }
+        }
+
+        final List<ByteString> packets = new ArrayList<>();
+        final List<Path> files = sortedFiles();
+        assertTrue(files.size() > 5);
+        for (Path file : files) {
+            assertTrue(Files.size(file) <= 4096, file.toString());
+            final PcapngFile pcapng = new PcapngFile(file);
+            assertEquals(Arrays.asList("LteRrc UNKNOWN"), pcapng.interfaceNames);
+            packets.addAll(pcapng.packets);
+        }
+        assertEquals(frames, packets);
+    }
+
+    @Test
+    public void testRotationByTime() throws IOException {
+        final MutableClock clock = new MutableClock();
+        try (PcapngExporter exporter = PcapngExporter.newBuilder(directory, "time")
+                .setMaxFileDuration(1, TimeUnit.MINUTES)
+                .setClock(clock)
+                .build()) {
+            for (int i = 0; i < 10; i++) {
+                exporter.write(WifiOtaRecord.newBuilder()
+                        .setData(WifiOtaRecordData.newBuilder().setPcapRecord(frame(50, 1_700_000_000, i)))
+                        .build());
+                clock.millis += TimeUnit.SECONDS.toMillis(25);
+            }
+        }
+        // A new file is started once the current file has been open for a minute: at 0, 75, 150, and 225 seconds
+        final List<Path> files = sortedFiles();
+        assertEquals(4, files.size());
+        assertEquals(Arrays.asList(3, 3, 3, 1), Arrays.asList(new PcapngFile(files.get(0)).packets.size(),
+                new PcapngFile(files.get(1)).packets.size(), new PcapngFile(files.get(2)).packets.size(),
+                new PcapngFile(files.get(3)).packets.size()));
+    }
+
+    private List<Path> sortedFiles() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.list(directory).sorted().forEach(files::add);
+        return files;
+    }
+
+    /**
+     * @return A pcap record header followed by a random frame of the given size.
+     */
+    private ByteString frame(int size, int seconds, int micros) {
+        final byte[] bytes = new byte[16 + size];
+        random.nextBytes(bytes);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(seconds).putInt(micros).putInt(size).putInt(size);
+        return ByteString.copyFrom(bytes);
+    }
+
+    /**
+     * Reads the interfaces and packets of a PCAPNG file with a single section.
+     */
+    private static final class PcapngFile {
+        private final List<String> interfaceNames = new ArrayList<>();
+        private final List<Integer> linkTypes = new ArrayList<>();
+        private final List<Integer> interfaceIds = new ArrayList<>();
+        private final List<Long> timestamps = new ArrayList<>();
+        private final List<ByteString> packets = new ArrayList<>();
+
+        private PcapngFile(Path file) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(0x0A0D0D0A, buffer.getInt(0));
+            assertEquals(0x1A2B3C4D, buffer.getInt(8));
+            while (buffer.hasRemaining()) {
+                final int start = buffer.position();
+                final int type = buffer.getInt();
+                final int length = buffer.getInt();
+                assertEquals(length, buffer.getInt(start + length - 4));
+                if (type == 1) {
+                    linkTypes.add((int) buffer.getShort(start + 8));
+                    assertEquals(2, buffer.getShort(start + 16));
+                    final byte[] name = new byte[buffer.getShort(start + 18)];
+                    buffer.position(start + 20);
+                    buffer.get(name);
+                    interfaceNames.add(new String(name, StandardCharsets.UTF_8));
+                } else if (type == 6) {
+                    interfaceIds.add(buffer.getInt(start + 8));
+                    timestamps.add((long) buffer.getInt(start + 12) << 32 | buffer.getInt(start + 16) & 0xFFFFFFFFL);
+                    final int capturedLength = buffer.getInt(start + 20);
+                    assertEquals(capturedLength, buffer.getInt(start + 24));
+                    packets.add(ByteString.copyFrom(buffer.array(), start + 28, capturedLength));
+                }
+                buffer.position(start + length);
+            }
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private long millis = START_MILLIS;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.craxiom.messaging.queue;
+
+import com.craxiom.messaging.*;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.craxiom.messaging.TestRecords.lteRecord;
+import static com.craxiom.messaging.TestRecords.randomRecords;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link SurveyRecordQueue}.
+ */
+public class SurveyRecordQueueTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCommittedRecordsAreNotReadAfterReopening() throws IOException {
+        final List<Message> records = randomRecords(3000, 22L);
+        try (SurveyRecordQueue queue = openQueue()) {
+            for (Message record : records) {
+                queue.append(record);
+            }
+            assertTrue(queue.getSegmentCount() > 3, "" + queue.getSegmentCount());
+
+            assertEquals(records.subList(0, 1000), read(queue, 1000));
+            queue.commit();
+            assertEquals(records.subList(1000, 1500), read(queue, 500));
+        }
+
+        // The records that were read but not committed are read again
+        try (SurveyRecordQueue queue = openQueue()) {
+            assertEquals(records.subList(1000, 1200), read(queue, 200));
+            queue.rewind();
+            assertEquals(records.subList(1000, records.size()), read(queue, Integer.MAX_VALUE));
+            assertTrue(queue.isEmpty());
+            assertNull(queue.read());
+
+            final int segmentCount = queue.getSegmentCount();
+            queue.commit();
+            queue.sync();
+            assertEquals(1, queue.getSegmentCount());
+            assertTrue(segmentCount > 1);
+            assertEquals(1, segmentFiles().size());
+
+            queue.append(records.get(0));
+        }
+
+        try (SurveyRecordQueue queue = openQueue()) {
+            assertEquals(records.subList(0, 1), read(queue, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testTornEntryIsDroppedWhenOpening() throws IOException {
+        final List<Message> records = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            records.add(lteRecord(i));
+        }
+        try (SurveyRecordQueue queue = openQueue()) {
+            for (Message record : records) {
+                queue.append(record);
+            }
+        }
+
+        // Flip a byte in record 90, as if the power was lost while it was being written out. The records after it
+        // were written out, but they are lost along with it.
+        final Path segment = segmentFiles().get(0);
+        final int recordSize = QueueSegment.ENTRY_HEADER_SIZE + records.get(0).getSerializedSize();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            final long offset = QueueSegment.HEADER_SIZE + 90L * recordSize + recordSize - 1;
+            file.seek(offset);
+            final int value = file.read();
+            file.seek(offset);
+            file.write(value ^ 0xFF);
+        }
+
+        try (SurveyRecordQueue queue = openQueue()) {
+            assertEquals(records.subList(0, 90), read(queue, Integer.MAX_VALUE));
+            queue.append(lteRecord(1000));
+            queue.append(lteRecord(1001));
+        }
+
+        try (SurveyRecordQueue queue = openQueue()) {
+            final List<Message> expected = new ArrayList<>(records.subList(0, 90));
+            expected.add(lteRecord(1000));
+            expected.add(lteRecord(1001));
+            assertEquals(expected, read(queue, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testLastSegmentWithoutHeaderIsRecreated() throws IOException {
+        final List<Message> records = randomRecords(2000, 23L);
+        try (SurveyRecordQueue queue = openQueue()) {
+            for (Message record : records) {
+                queue.append(record);
+            }
+        }
+        final List<Path> segments = segmentFiles();
+        assertTrue(segments.size() > 1, "" + segments.size());
+        final Path last = segments.get(segments.size() - 1);
+
+        // A crash while the next segment was being created, before its header reached the device
+        Files.write(last, new byte[0]);
+        final List<Message> expected;
+        try (SurveyRecordQueue queue = openQueue()) {
+            // Only the records of the earlier segments are left
+            expected = read(queue, Integer.MAX_VALUE);
+            assertTrue(!expected.isEmpty() && expected.size() < records.size(), "" + expected.size());
+            assertEquals(records.subList(0, expected.size()), expected);
+            queue.append(lteRecord(1));
+        }
+        assertEquals(SEGMENT_SIZE, Files.size(last));
+
+        // A zeroed header
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            file.write(new byte[QueueSegment.HEADER_SIZE]);
+        }
+        try (SurveyRecordQueue queue = openQueue()) {
+            assertEquals(expected, read(queue, Integer.MAX_VALUE));
+            queue.append(lteRecord(2));
+        }
+        try (SurveyRecordQueue queue = openQueue()) {
+            final List<Message> withAppended = new ArrayList<>(expected);
+            withAppended.add(lteRecord(2));
+            assertEquals(withAppended, read(queue, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testTornCursorFallsBackToThePreviousPosition() throws IOException {
+        final List<Message> records = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            records.add(lteRecord(i));
+        }
+        try (SurveyRecordQueue queue = openQueue()) {
+            for (Message record : records) {
+                queue.append(record);
+            }
+            read(queue, 3);
+            queue.commit();
+            queue.sync();
+            read(queue, 3);
+            queue.commit();
+        }
+
+        // The second position went to the first slot, which is torn
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(QueueCursor.FILE_NAME).toFile(), "rw")) {
+            file.seek(10);
+            file.write(0x55);
+        }
+
+        try (SurveyRecordQueue queue = openQueue()) {
+            assertEquals(records.subList(3, 10), read(queue, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testInvalidUse() throws IOException, InterruptedException {
+        final SurveyRecordQueue queue = openQueue();
+        assertThrows(IllegalArgumentException.class, () -> queue.append(LteRecordData.getDefaultInstance()));
+        assertThrows(IllegalArgumentException.class, () -> queue.append(LteRrc.newBuilder()
+                .setData(LteRrcData.newBuilder().setPcapRecord(ByteString.copyFrom(new byte[SEGMENT_SIZE])))
+                .build()));
+
+        queue.append(lteRecord(1));
+        assertTrue(queue.awaitRecords(1, TimeUnit.SECONDS));
+        final long start = queue.getReadPosition();
+        queue.read();
+        assertThrows(IllegalArgumentException.class, () -> queue.commit(queue.getReadPosition() + 1));
+        queue.commit();
+        assertThrows(IllegalArgumentException.class, () -> queue.commit(start));
+        assertFalse(queue.awaitRecords(10, TimeUnit.MILLISECONDS));
+
+        queue.close();
+        assertThrows(IOException.class, () -> queue.append(lteRecord(2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> SurveyRecordQueue.newBuilder(directory).setSegmentSize(100));
+
+        Files.write(QueueSegment.pathOf(directory, 7), new byte[100]);
+        assertThrows(IOException.class, this::openQueue);
+    }
+
+    private SurveyRecordQueue openQueue() throws IOException {
+        return SurveyRecordQueue.newBuilder(directory)
+                .setSegmentSize(SEGMENT_SIZE)
+                .setSyncPolicy(100, 1, TimeUnit.SECONDS)
+                .open();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> QueueSegment.indexOf(path) >= 0).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static List<Message> read(SurveyRecordQueue queue, int count) throws IOException {
+        final List<Message> records = new ArrayList<>();
+        Message record;
+        while (records.size() < count && (record = queue.read()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+}
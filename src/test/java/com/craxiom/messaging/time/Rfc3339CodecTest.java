@@ -0,0 +1,117 @@
+package com.craxiom.messaging.time;
+
+import com.craxiom.messaging.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link Rfc3339Codec} and {@link RecordTimes}.
+ */
+public class Rfc3339CodecTest {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final String[] FRACTIONS = {"", ".1", ".123", ".123456", ".123456789"};
+
+    @Test
+    public void testParsesTheSameAsOffsetDateTime() {
+        final Rfc3339Codec codec = new Rfc3339Codec();
+        final Random random = new Random(12L);
+        final long min = OffsetDateTime.parse("1700-01-01T00:00:00Z").toEpochSecond();
+        final long max = OffsetDateTime.parse("2250-01-01T00:00:00Z").toEpochSecond();
+        for (int i = 0; i < 20_000; i++) {
+            final long epochSecond = min + (long) (random.nextDouble() * (max - min));
+            final ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(145) - 72) * 15 * 60);
+            final String text = DATE_TIME.format(OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), offset))
+                    + FRACTIONS[random.nextInt(FRACTIONS.length)] + offset.getId();
+
+            final OffsetDateTime expected = OffsetDateTime.parse(text);
+            final long nanos = codec.parseEpochNanos(text);
+            assertEquals(TimeUnit.SECONDS.toNanos(expected.toEpochSecond()) + expected.getNano(), nanos, text);
+            assertEquals(expected.toInstant().toEpochMilli(), codec.parseEpochMillis(text), text);
+            assertEquals(offset.getTotalSeconds(), codec.getLastOffsetSeconds(), text);
+        }
+    }
+
+    @Test
+    public void testCachedDateAndOffset() {
+        final Rfc3339Codec codec = new Rfc3339Codec();
+        final String[] timestamps = {"2024-10-17T10:00:00.000-04:00", "2024-10-17T10:00:01.250-04:00",
+                "2024-10-18T10:00:01.250-04:00", "2024-10-18T10:00:01.250+02:00", "2024-10-18T10:00:01.250Z",
+                "2024-10-18T10:00:01.250-04:00", "2024-10-17T23:59:59.999-04:00"};
+        for (String timestamp : timestamps) {
+            final OffsetDateTime expected = OffsetDateTime.parse(timestamp);
+            assertEquals(expected.toInstant().toEpochMilli(), codec.parseEpochMillis(timestamp), timestamp);
+        }
+    }
+
+    @Test
+    public void testRfc3339Variants() {
+        final Rfc3339Codec codec = new Rfc3339Codec();
+        final long expected = codec.parseEpochNanos("1996-12-19T16:39:57-08:00");
+        assertEquals(expected, codec.parseEpochNanos("1996-12-19t16:39:57-08:00"));
+        assertEquals(expected, codec.parseEpochNanos("1996-12-19 16:39:57-08:00"));
+        assertEquals(expected, codec.parseEpochNanos("1996-12-20T00:39:57z"));
+        assertEquals(expected + 123_456_789, codec.parseEpochNanos("1996-12-20T00:39:57.1234567891Z"));
+        assertEquals(codec.parseEpochNanos("1990-12-31T16:00:00-08:00"), codec.parseEpochNanos("1990-12-31T15:59:60-08:00"));
+        assertEquals(codec.parseEpochNanos("2024-03-01T00:00:00Z"),
+                codec.parseEpochNanos("2024-02-29T00:00:00Z") + TimeUnit.DAYS.toNanos(1));
+    }
+
+    @Test
+    public void testInvalidTimestamps() {
+        final Rfc3339Codec codec = new Rfc3339Codec();
+        final String[] invalid = {"", "2024-10-17", "2024-10-17T10:00:00", "2024-10-17T10:00:00.Z",
+                "2024-13-17T10:00:00Z", "2023-02-29T10:00:00Z", "2024-10-17T24:00:00Z", "2024-10-17T10:60:00Z",
+                "2024-10-17T10:00:61Z", "2024-10-17X10:00:00Z", "2024-10-17T10:00:00+0400", "2024-10-17T10:00:00+04:00x",
+                "2024-10-17T10:00:00Zx", "2024/10/17T10:00:00Z", "2024-1a-17T10:00:00Z", "3000-01-01T00:00:00Z"};
+        for (String timestamp : invalid) {
+            assertThrows(DateTimeParseException.class, () -> codec.parseEpochNanos(timestamp), timestamp);
+        }
+        // A failed parse does not affect the caches
+        assertEquals(OffsetDateTime.parse("2024-10-17T10:00:00Z").toInstant().toEpochMilli(),
+                codec.parseEpochMillis("2024-10-17T10:00:00Z"));
+    }
+
+    @Test
+    public void testFormat() {
+        final Rfc3339Codec codec = new Rfc3339Codec();
+        final Random random = new Random(13L);
+        for (int i = 0; i < 20_000; i++) {
+            final long epochNanos = (long) ((random.nextDouble() - 0.5) * 2 * 8_000_000_000L) * 1_000_000_000L / 1000
+                    + random.nextInt(1_000_000_000);
+            final int offsetSeconds = (random.nextInt(145) - 72) * 15 * 60;
+            final String formatted = codec.format(epochNanos, offsetSeconds);
+            assertEquals(epochNanos, codec.parseEpochNanos(formatted), formatted);
+            assertEquals(offsetSeconds, codec.getLastOffsetSeconds());
+        }
+
+        assertEquals("1996-12-19T16:39:57-08:00", codec.format(851_042_397_000_000_000L, -8 * 3600));
+        assertEquals("1996-12-20T00:39:57.500Z", codec.format(851_042_397_500_000_000L, 0));
+        assertEquals("1996-12-20T05:09:57.000250+04:30", codec.format(851_042_397_000_250_000L, 4 * 3600 + 1800));
+        assertEquals("1969-12-31T23:59:59.999999999Z", codec.format(-1, 0));
+        final StringBuilder builder = new StringBuilder("time=");
+        codec.formatTo(builder, 0, 0);
+        assertEquals("time=1970-01-01T00:00:00Z", builder.toString());
+        assertThrows(IllegalArgumentException.class, () -> codec.format(0, 30));
+    }
+
+    @Test
+    public void testRecordTimes() {
+        final String deviceTime = "2024-10-17T10:00:00.123-04:00";
+        final long expected = OffsetDateTime.parse(deviceTime).toInstant().toEpochMilli();
+        assertEquals(expected, RecordTimes.epochMillis(LteRecordData.newBuilder().setDeviceTime(deviceTime).build()));
+        assertEquals(expected, RecordTimes.epochMillis(GnssRecordData.newBuilder().setDeviceTime(deviceTime)));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(expected),
+                RecordTimes.epochNanos(WifiOtaRecordData.newBuilder().setDeviceTime(deviceTime).build()));
+        assertEquals(deviceTime, RecordTimes.toDeviceTime(TimeUnit.MILLISECONDS.toNanos(expected), -4 * 3600));
+        assertThrows(DateTimeParseException.class, () -> RecordTimes.epochMillis(DeviceStatusData.getDefaultInstance()));
+    }
+}